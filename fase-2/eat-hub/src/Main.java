@@ -1,10 +1,27 @@
-import eathubUI.EatHubUI;
-import eathubDL.DAOconfig;
-
-public class Main {
-    public static void main(String[] args) throws Exception {
-        DAOconfig.CreateBD();
-        EatHubUI ui = new EatHubUI();
-        ui.run();
-    }
-}
+import eathubUI.EatHubUI;
+import eathubDL.DAOconfig;
+import eathubDL.EstruturasDAO.DiarioCozinha;
+import eathubDL.EstruturasDAO.EscritaDiferida;
+import eathubDL.EstruturasDAO.MotorStock;
+import eathubLN.MotorCozinha;
+import eathubLN.RelatorioArranque;
+
+public class Main {
+    public static void main(String[] args) throws Exception {
+        RelatorioArranque.medirPasso("Esquema da base de dados", DAOconfig::CreateBD);
+        RelatorioArranque.medirPasso("Escrita diferida", () -> EscritaDiferida.getInstance().iniciar());
+        RelatorioArranque.medirPasso("Stock em memória", () -> MotorStock.getInstance().iniciar());
+        EatHubUI ui = RelatorioArranque.medir("Camada de negócio e interface", EatHubUI::new);
+        RelatorioArranque.imprimir();
+        try {
+            ui.run();
+        } finally {
+            MotorCozinha.getInstance().encerrar();
+            DiarioCozinha.getInstance().encerrar();
+            MotorStock.getInstance().encerrar();
+            EscritaDiferida.getInstance().encerrar();
+            DAOconfig.encerrarPool();
+            DAOconfig.encerrarBD();
+        }
+    }
+}
@@ -0,0 +1,796 @@
+package eathubDL;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Motor de armazenamento embebido, estruturado em log, que torna persistente a
+ * BaseDadosMemoria (DAOconfig.BD_EMBUTIDA), para que um restaurante possa correr
+ * o EatHub numa única JVM, sem servidor MySQL.
+ *
+ * Cada tabela tem uma pasta com segmentos numerados (N.seg) onde só se acrescenta.
+ * Cada registo é [crc][comprimento][transação][operação][chave][linha]: gravar uma
+ * linha, remover uma linha ou limpar a tabela. As alterações de uma operação ou
+ * transação da BaseDadosMemoria são escritas no fim, todas com o mesmo número de
+ * transação, e só depois esse número é gravado no ficheiro de confirmações; uma
+ * transação cujo número não chegou a ser gravado não conta.
+ *
+ * Na recuperação os segmentos são lidos (mapeados em memória) e reaplicados por
+ * ordem; um registo incompleto, corrompido ou de uma transação não confirmada só
+ * pode estar no fim do último segmento, que é truncado nesse ponto. O índice da
+ * chave primária é a própria tabela em memória: uma leitura ou inserção não faz
+ * E/S além do acrescento do registo.
+ *
+ * Quando uma tabela acumula muito mais registos do que linhas, é compactada: as
+ * linhas atuais são escritas num segmento novo, que começa por limpar a tabela,
+ * e os segmentos anteriores são apagados.
+ */
+class ArmazenamentoLog {
+
+    /** Operações registadas nos segmentos */
+    private static final byte GRAVAR = 1;
+    private static final byte REMOVER = 2;
+    private static final byte LIMPAR = 3;
+
+    /** Extensão dos segmentos */
+    private static final String EXTENSAO = ".seg";
+
+    /** Nome do ficheiro com o número da última transação confirmada */
+    private static final String CONFIRMACOES = "confirmacoes";
+
+    /** Pasta das sequências de IDs (cujos registos não pertencem a transações) */
+    private static final String SEQUENCIAS = "Sequencia";
+
+    /**
+     * Conversão das linhas de uma tabela de e para bytes
+     *
+     * @param <L> Tipo das linhas
+     */
+    interface Codificador<L> {
+
+        /**
+         * Método que escreve uma linha
+         *
+         * @param out Destino
+         * @param linha Linha a escrever
+         * @throws IOException Se a escrita falhar
+         */
+        void escrever(DataOutput out, L linha) throws IOException;
+
+        /**
+         * Método que lê uma linha
+         *
+         * @param in Origem
+         * @return Linha lida
+         * @throws IOException Se a leitura falhar
+         */
+        L ler(DataInput in) throws IOException;
+
+        /**
+         * Método que converte uma linha em bytes
+         *
+         * @param linha Linha a converter
+         * @return Bytes da linha
+         */
+        default byte[] codificar(L linha) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            try {
+                this.escrever(new DataOutputStream(bytes), linha);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Método que constrói um Codificador a partir das funções de escrita e leitura
+     *
+     * @param <L> Tipo das linhas
+     * @param escritor Função de escrita
+     * @param leitor Função de leitura
+     * @return Codificador
+     */
+    static <L> Codificador<L> codificador(Escritor<L> escritor, Leitor<L> leitor) {
+        return new Codificador<>() {
+            @Override
+            public void escrever(DataOutput out, L linha) throws IOException {
+                escritor.escrever(out, linha);
+            }
+
+            @Override
+            public L ler(DataInput in) throws IOException {
+                return leitor.ler(in);
+            }
+        };
+    }
+
+    /** Função de escrita de uma linha */
+    interface Escritor<L> {
+        void escrever(DataOutput out, L linha) throws IOException;
+    }
+
+    /** Função de leitura de uma linha */
+    interface Leitor<L> {
+        L ler(DataInput in) throws IOException;
+    }
+
+    // Codificadores dos tipos simples
+    static final Codificador<String> TEXTO = codificador((out, s) -> out.writeUTF(s), DataInput::readUTF);
+    static final Codificador<Integer> INTEIRO = codificador((out, i) -> out.writeInt(i), DataInput::readInt);
+    static final Codificador<Double> DECIMAL = codificador((out, d) -> out.writeDouble(d), DataInput::readDouble);
+    static final Codificador<List<String>> LISTA_TEXTO = codificador(
+        (out, l) -> {
+            out.writeInt(l.size());
+            for (String s : l) {
+                out.writeUTF(s);
+            }
+        },
+        in -> {
+            int n = in.readInt();
+            List<String> l = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                l.add(in.readUTF());
+            }
+            return List.copyOf(l);
+        });
+
+    /**
+     * Método que escreve um texto que pode ser null
+     *
+     * @param out Destino
+     * @param s Texto (pode ser null)
+     * @throws IOException Se a escrita falhar
+     */
+    static void escreverOpcional(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    /**
+     * Método que lê um texto que pode ser null
+     *
+     * @param in Origem
+     * @return Texto, ou null
+     * @throws IOException Se a leitura falhar
+     */
+    static String lerOpcional(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /** Alteração de uma linha por persistir: linha null para uma remoção */
+    static final class Alteracao {
+        final String tabela;
+        final String chave;
+        final byte[] linha;
+
+        Alteracao(String tabela, String chave, byte[] linha) {
+            this.tabela = tabela;
+            this.chave = chave;
+            this.linha = linha;
+        }
+    }
+
+    /** Destino dos registos lidos na recuperação de uma tabela */
+    interface Recetor {
+
+        /**
+         * Método que aplica uma linha gravada
+         *
+         * @param chave Chave primária
+         * @param linha Bytes da linha
+         * @throws IOException Se a linha não puder ser lida
+         */
+        void gravar(String chave, DataInput linha) throws IOException;
+
+        /**
+         * Método que aplica uma remoção
+         *
+         * @param chave Chave primária
+         */
+        void remover(String chave);
+
+        /**
+         * Método que limpa a tabela
+         */
+        void limpar();
+    }
+
+    /** Pasta dos dados */
+    private final Path diretorio;
+
+    /** Tamanho (bytes) a partir do qual um segmento é fechado e se começa outro */
+    private final long tamanhoSegmento;
+
+    /** Número de registos a partir do qual uma tabela pode ser compactada */
+    private final long minimoCompactacao;
+
+    /** Razão registos/linhas a partir da qual uma tabela é compactada */
+    private final int fatorCompactacao;
+
+    /** Indica se cada confirmação espera que os dados cheguem ao disco (fsync) */
+    private final boolean sincronizar;
+
+    /** Segmentos de cada tabela (incluindo as sequências) */
+    private final Map<String, Segmentos> segmentos = new HashMap<>();
+
+    /** Último valor gravado de cada sequência de IDs */
+    private final Map<String, Long> sequencias = new HashMap<>();
+
+    /** Ficheiro de confirmações */
+    private FileChannel confirmacoes;
+
+    /** Número da última transação confirmada */
+    private long ultimaTransacao;
+
+    /** Indica se uma falha deixou registos por desfazer nos segmentos (não se aceitam mais escritas) */
+    private boolean falhado = false;
+
+    /**
+     * Construtor do motor de armazenamento (a pasta é criada se não existir)
+     *
+     * @param diretorio Pasta dos dados
+     * @param tamanhoSegmento Tamanho máximo (bytes) de um segmento
+     * @param minimoCompactacao Número de registos a partir do qual uma tabela pode ser compactada
+     * @param fatorCompactacao Razão registos/linhas a partir da qual uma tabela é compactada
+     * @param sincronizar true para fazer fsync em cada confirmação
+     * @throws IOException Se não for possível abrir a pasta ou o ficheiro de confirmações
+     */
+    ArmazenamentoLog(Path diretorio, long tamanhoSegmento, long minimoCompactacao, int fatorCompactacao,
+                     boolean sincronizar) throws IOException {
+        this.diretorio = diretorio;
+        this.tamanhoSegmento = tamanhoSegmento;
+        this.minimoCompactacao = minimoCompactacao;
+        this.fatorCompactacao = fatorCompactacao;
+        this.sincronizar = sincronizar;
+        Files.createDirectories(diretorio);
+        this.confirmacoes = FileChannel.open(diretorio.resolve(CONFIRMACOES),
+                                             StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.ultimaTransacao = this.lerConfirmacao();
+    }
+
+    /**
+     * Método que lê o número da última transação confirmada
+     *
+     * @return Número da transação, ou 0 se ainda não houver nenhuma
+     * @throws IOException Se a leitura falhar
+     */
+    private long lerConfirmacao() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(12);
+        while (buf.hasRemaining() && this.confirmacoes.read(buf, buf.position()) > 0) {
+        }
+        if (buf.position() < 12) {
+            return 0;
+        }
+        buf.flip();
+        long transacao = buf.getLong();
+        return buf.getInt() == crc(ByteBuffer.allocate(8).putLong(0, transacao).array()) ? transacao : 0;
+    }
+
+    /**
+     * Método que recupera uma tabela, reaplicando os seus segmentos
+     *
+     * @param tabela Nome da tabela
+     * @param recetor Destino dos registos
+     * @return Número de registos reaplicados
+     * @throws IOException Se os segmentos não puderem ser lidos
+     */
+    synchronized long recuperar(String tabela, Recetor recetor) throws IOException {
+        Segmentos s = this.segmentos(tabela);
+        return s.recuperar(recetor);
+    }
+
+    /**
+     * Método que recupera as sequências de IDs
+     *
+     * @return Último valor gravado de cada sequência
+     * @throws IOException Se os segmentos não puderem ser lidos
+     */
+    synchronized Map<String, Long> recuperarSequencias() throws IOException {
+        this.segmentos(SEQUENCIAS).recuperar(new Recetor() {
+            @Override
+            public void gravar(String chave, DataInput linha) throws IOException {
+                sequencias.merge(chave, linha.readLong(), Math::max);
+            }
+
+            @Override
+            public void remover(String chave) {
+                sequencias.remove(chave);
+            }
+
+            @Override
+            public void limpar() {
+                sequencias.clear();
+            }
+        });
+        return new HashMap<>(this.sequencias);
+    }
+
+    /**
+     * Método que persiste as alterações de uma operação ou transação: acrescenta os registos
+     * aos segmentos das tabelas e só depois grava o número da transação como confirmado.
+     * Se falhar, os registos já acrescentados são retirados.
+     *
+     * @param alteracoes Alterações, pela ordem em que foram feitas
+     * @throws IOException Se não for possível persistir as alterações (a transação não fica confirmada)
+     */
+    synchronized void confirmar(List<Alteracao> alteracoes) throws IOException {
+        if (this.falhado) {
+            throw new IOException("Armazenamento indisponível depois de uma falha de escrita em " + this.diretorio);
+        }
+        long transacao = this.ultimaTransacao + 1;
+        Map<String, ByteArrayOutputStream> porTabela = new LinkedHashMap<>();
+        Map<String, Integer> contagem = new HashMap<>();
+        for (Alteracao a : alteracoes) {
+            ByteArrayOutputStream bytes = porTabela.computeIfAbsent(a.tabela, t -> new ByteArrayOutputStream());
+            registo(bytes, transacao, a.linha != null ? GRAVAR : REMOVER, a.chave, a.linha);
+            contagem.merge(a.tabela, 1, Integer::sum);
+        }
+
+        Map<Segmentos, Long> inicio = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, ByteArrayOutputStream> e : porTabela.entrySet()) {
+                Segmentos s = this.segmentos(e.getKey());
+                inicio.put(s, s.tamanho());
+                s.acrescentar(e.getValue().toByteArray(), contagem.get(e.getKey()));
+            }
+            if (this.sincronizar) {
+                for (Segmentos s : inicio.keySet()) {
+                    s.sincronizar();
+                }
+            }
+            this.gravarConfirmacao(transacao);
+        } catch (IOException e) {
+            for (Map.Entry<Segmentos, Long> r : inicio.entrySet()) {
+                try {
+                    r.getKey().truncar(r.getValue());
+                } catch (IOException erro) {
+                    erro.printStackTrace();
+                    this.falhado = true;
+                }
+            }
+            throw e;
+        }
+        this.ultimaTransacao = transacao;
+        for (Segmentos s : inicio.keySet()) {
+            s.rodarSeCheio();
+        }
+    }
+
+    /**
+     * Método que grava o número da última transação confirmada
+     *
+     * @param transacao Número da transação
+     * @throws IOException Se a escrita falhar
+     */
+    private void gravarConfirmacao(long transacao) throws IOException {
+        byte[] numero = ByteBuffer.allocate(8).putLong(0, transacao).array();
+        ByteBuffer buf = ByteBuffer.allocate(12).put(numero).putInt(crc(numero));
+        buf.flip();
+        while (buf.hasRemaining()) {
+            this.confirmacoes.write(buf, buf.position());
+        }
+        if (this.sincronizar) {
+            this.confirmacoes.force(false);
+        }
+    }
+
+    /**
+     * Método que grava o valor atual de uma sequência de IDs (fora de qualquer transação,
+     * para que um ID já atribuído nunca volte a ser usado depois de um arranque)
+     *
+     * @param nome Nome da sequência
+     * @param valor Valor atribuído
+     * @throws IOException Se a escrita falhar
+     */
+    synchronized void gravarSequencia(String nome, long valor) throws IOException {
+        this.sequencias.merge(nome, valor, Math::max);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        registo(bytes, 0, GRAVAR, nome, ByteBuffer.allocate(8).putLong(0, valor).array());
+        Segmentos s = this.segmentos(SEQUENCIAS);
+        s.acrescentar(bytes.toByteArray(), 1);
+        if (this.sincronizar) {
+            s.sincronizar();
+        }
+        if (this.deveCompactar(SEQUENCIAS, this.sequencias.size())) {
+            Map<String, byte[]> linhas = new TreeMap<>();
+            for (Map.Entry<String, Long> e : this.sequencias.entrySet()) {
+                linhas.put(e.getKey(), ByteBuffer.allocate(8).putLong(0, e.getValue()).array());
+            }
+            s.compactar(linhas, 0);
+        } else {
+            s.rodarSeCheio();
+        }
+    }
+
+    /**
+     * Método que indica se uma tabela deve ser compactada
+     *
+     * @param tabela Nome da tabela
+     * @param linhas Número atual de linhas da tabela
+     * @return true se os registos da tabela excederem o limite
+     */
+    synchronized boolean deveCompactar(String tabela, int linhas) {
+        Segmentos s = this.segmentos.get(tabela);
+        return s != null && s.registos >= this.minimoCompactacao
+               && s.registos > (long) this.fatorCompactacao * linhas;
+    }
+
+    /**
+     * Método que compacta uma tabela, substituindo os seus segmentos por um só com as linhas atuais
+     * (tem de ser chamado com as escritas da tabela suspensas, para que as linhas sejam as confirmadas)
+     *
+     * @param tabela Nome da tabela
+     * @param linhas Linhas atuais da tabela (chave -> bytes), por ordem da chave
+     * @throws IOException Se o segmento novo não puder ser escrito (os segmentos anteriores mantêm-se)
+     */
+    synchronized void compactar(String tabela, Map<String, byte[]> linhas) throws IOException {
+        this.segmentos(tabela).compactar(linhas, this.ultimaTransacao);
+    }
+
+    /**
+     * Método que fecha os ficheiros abertos
+     */
+    synchronized void encerrar() {
+        for (Segmentos s : this.segmentos.values()) {
+            s.fechar();
+        }
+        this.segmentos.clear();
+        try {
+            this.confirmacoes.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Método que devolve os segmentos de uma tabela, abrindo-os na primeira utilização
+     *
+     * @param tabela Nome da tabela
+     * @return Segmentos da tabela
+     * @throws IOException Se a pasta da tabela não puder ser criada
+     */
+    private Segmentos segmentos(String tabela) throws IOException {
+        Segmentos s = this.segmentos.get(tabela);
+        if (s == null) {
+            s = new Segmentos(this.diretorio.resolve(tabela));
+            this.segmentos.put(tabela, s);
+        }
+        return s;
+    }
+
+    /**
+     * Método que acrescenta um registo a um buffer
+     *
+     * @param destino Buffer de destino
+     * @param transacao Número da transação
+     * @param operacao Operação
+     * @param chave Chave primária (null para LIMPAR)
+     * @param linha Bytes da linha (null se não for GRAVAR)
+     */
+    private static void registo(ByteArrayOutputStream destino, long transacao, byte operacao, String chave, byte[] linha) {
+        ByteArrayOutputStream corpo = new ByteArrayOutputStream(32 + (linha != null ? linha.length : 0));
+        try {
+            DataOutputStream out = new DataOutputStream(corpo);
+            out.writeLong(transacao);
+            out.writeByte(operacao);
+            if (chave != null) {
+                out.writeUTF(chave);
+            }
+            if (linha != null) {
+                out.write(linha);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] bytes = corpo.toByteArray();
+        destino.writeBytes(ByteBuffer.allocate(8).putInt(crc(bytes)).putInt(bytes.length).array());
+        destino.writeBytes(bytes);
+    }
+
+    /**
+     * Método que escreve todos os bytes na posição atual de um ficheiro
+     *
+     * @param c Ficheiro
+     * @param bytes Bytes a escrever
+     * @throws IOException Se a escrita falhar
+     */
+    private static void escreverTudo(FileChannel c, byte[] bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining()) {
+            c.write(buf);
+        }
+    }
+
+    /**
+     * Método que calcula o CRC32 de um conjunto de bytes
+     *
+     * @param bytes Bytes
+     * @return CRC32 (como int)
+     */
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Segmentos de uma tabela: o último está aberto para acrescento
+     */
+    private final class Segmentos {
+
+        /** Pasta da tabela */
+        private final Path pasta;
+
+        /** Número do segmento atual */
+        private long numero = 0;
+
+        /** Segmento atual (aberto na primeira escrita) */
+        private FileChannel atual = null;
+
+        /** Número de registos em todos os segmentos */
+        private long registos = 0;
+
+        /**
+         * Construtor dos segmentos de uma tabela
+         *
+         * @param pasta Pasta da tabela
+         * @throws IOException Se a pasta não puder ser criada
+         */
+        private Segmentos(Path pasta) throws IOException {
+            this.pasta = pasta;
+            Files.createDirectories(pasta);
+            List<Long> existentes = this.existentes();
+            if (!existentes.isEmpty()) {
+                this.numero = existentes.get(existentes.size() - 1);
+            }
+        }
+
+        /**
+         * Método que devolve os números dos segmentos existentes, por ordem
+         *
+         * @return Números dos segmentos
+         * @throws IOException Se a pasta não puder ser lida
+         */
+        private List<Long> existentes() throws IOException {
+            List<Long> numeros = new ArrayList<>();
+            try (DirectoryStream<Path> ficheiros = Files.newDirectoryStream(this.pasta, "*" + EXTENSAO)) {
+                for (Path f : ficheiros) {
+                    String nome = f.getFileName().toString();
+                    try {
+                        numeros.add(Long.parseLong(nome.substring(0, nome.length() - EXTENSAO.length())));
+                    } catch (NumberFormatException e) {
+                        // ficheiro que não é um segmento
+                    }
+                }
+            }
+            numeros.sort(null);
+            return numeros;
+        }
+
+        /**
+         * Método que devolve o caminho de um segmento
+         *
+         * @param n Número do segmento
+         * @return Caminho do segmento
+         */
+        private Path segmento(long n) {
+            return this.pasta.resolve(n + EXTENSAO);
+        }
+
+        /**
+         * Método que reaplica os segmentos, por ordem, até ao primeiro registo inválido ou não confirmado;
+         * o segmento onde esse registo está é truncado e os seguintes são apagados
+         *
+         * @param recetor Destino dos registos
+         * @return Número de registos reaplicados
+         * @throws IOException Se um segmento não puder ser lido
+         */
+        private long recuperar(Recetor recetor) throws IOException {
+            List<Long> numeros = this.existentes();
+            for (int i = 0; i < numeros.size(); i++) {
+                Path f = this.segmento(numeros.get(i));
+                long valido = this.reaplicar(f, recetor);
+                if (valido < Files.size(f)) {
+                    System.err.println("Armazenamento: " + f + " truncado em " + valido + " bytes (registos incompletos ou não confirmados).");
+                    try (FileChannel c = FileChannel.open(f, StandardOpenOption.WRITE)) {
+                        c.truncate(valido);
+                    }
+                    for (int j = i + 1; j < numeros.size(); j++) {
+                        Files.deleteIfExists(this.segmento(numeros.get(j)));
+                    }
+                    this.numero = numeros.get(i);
+                    break;
+                }
+            }
+            return this.registos;
+        }
+
+        /**
+         * Método que reaplica os registos válidos de um segmento
+         *
+         * @param f Segmento
+         * @param recetor Destino dos registos
+         * @return Posição a seguir ao último registo válido
+         * @throws IOException Se o segmento não puder ser lido
+         */
+        private long reaplicar(Path f, Recetor recetor) throws IOException {
+            try (FileChannel c = FileChannel.open(f, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = c.map(FileChannel.MapMode.READ_ONLY, 0, c.size());
+                while (buf.remaining() >= 8) {
+                    int crc = buf.getInt();
+                    int comprimento = buf.getInt();
+                    if (comprimento < 9 || comprimento > buf.remaining()) {
+                        return buf.position() - 8;
+                    }
+                    byte[] corpo = new byte[comprimento];
+                    buf.get(corpo);
+                    if (crc(corpo) != crc) {
+                        return buf.position() - 8 - comprimento;
+                    }
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(corpo));
+                    long transacao = in.readLong();
+                    if (transacao > ultimaTransacao) {
+                        return buf.position() - 8 - comprimento;
+                    }
+                    byte operacao = in.readByte();
+                    if (operacao == LIMPAR) {
+                        recetor.limpar();
+                        this.registos = 0;
+                    } else if (operacao == REMOVER) {
+                        recetor.remover(in.readUTF());
+                    } else {
+                        recetor.gravar(in.readUTF(), in);
+                    }
+                    this.registos++;
+                }
+                return buf.position();
+            }
+        }
+
+        /**
+         * Método que devolve o tamanho do segmento atual
+         *
+         * @return Tamanho (bytes)
+         * @throws IOException Se o segmento não puder ser aberto
+         */
+        private long tamanho() throws IOException {
+            return this.abrir().size();
+        }
+
+        /**
+         * Método que abre (ou cria) o segmento atual para acrescento
+         *
+         * @return Segmento atual
+         * @throws IOException Se o segmento não puder ser aberto
+         */
+        private FileChannel abrir() throws IOException {
+            if (this.atual == null) {
+                this.atual = FileChannel.open(this.segmento(this.numero),
+                                              StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                this.atual.position(this.atual.size());
+            }
+            return this.atual;
+        }
+
+        /**
+         * Método que acrescenta registos ao segmento atual
+         *
+         * @param bytes Registos
+         * @param n Número de registos
+         * @throws IOException Se a escrita falhar
+         */
+        private void acrescentar(byte[] bytes, long n) throws IOException {
+            escreverTudo(this.abrir(), bytes);
+            this.registos += n;
+        }
+
+        /**
+         * Método que força a escrita do segmento atual no disco
+         *
+         * @throws IOException Se a sincronização falhar
+         */
+        private void sincronizar() throws IOException {
+            this.abrir().force(false);
+        }
+
+        /**
+         * Método que retira registos do fim do segmento atual
+         *
+         * @param tamanho Tamanho (bytes) a manter
+         * @throws IOException Se não for possível truncar
+         */
+        private void truncar(long tamanho) throws IOException {
+            FileChannel c = this.abrir();
+            c.truncate(tamanho);
+            c.position(tamanho);
+        }
+
+        /**
+         * Método que passa para um segmento novo se o atual tiver atingido o tamanho máximo
+         *
+         * @throws IOException Se o segmento atual não puder ser fechado
+         */
+        private void rodarSeCheio() throws IOException {
+            if (this.atual != null && this.atual.size() >= tamanhoSegmento) {
+                this.atual.close();
+                this.atual = null;
+                this.numero++;
+            }
+        }
+
+        /**
+         * Método que escreve as linhas atuais num segmento novo (que começa por limpar a tabela),
+         * o torna o segmento atual e apaga os anteriores
+         *
+         * @param linhas Linhas atuais (chave -> bytes)
+         * @param transacao Número da transação dos registos (já confirmada)
+         * @throws IOException Se o segmento novo não puder ser escrito
+         */
+        private void compactar(Map<String, byte[]> linhas, long transacao) throws IOException {
+            long novo = this.numero + 1;
+            Path temporario = this.pasta.resolve(novo + EXTENSAO + ".tmp");
+            try (FileChannel c = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                                                  StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                registo(bytes, transacao, LIMPAR, null, null);
+                for (Map.Entry<String, byte[]> e : linhas.entrySet()) {
+                    registo(bytes, transacao, GRAVAR, e.getKey(), e.getValue());
+                    if (bytes.size() >= 1 << 16) {
+                        escreverTudo(c, bytes.toByteArray());
+                        bytes.reset();
+                    }
+                }
+                escreverTudo(c, bytes.toByteArray());
+                c.force(true);
+            }
+            Files.move(temporario, this.segmento(novo), StandardCopyOption.ATOMIC_MOVE);
+
+            this.fechar();
+            long anterior = this.numero;
+            this.numero = novo;
+            this.registos = linhas.size() + 1;
+            for (long n : this.existentes()) {
+                if (n <= anterior) {
+                    Files.deleteIfExists(this.segmento(n));
+                }
+            }
+        }
+
+        /**
+         * Método que fecha o segmento atual
+         */
+        private void fechar() {
+            if (this.atual != null) {
+                try {
+                    this.atual.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                this.atual = null;
+            }
+        }
+    }
+}
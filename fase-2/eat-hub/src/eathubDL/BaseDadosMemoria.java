@@ -0,0 +1,857 @@
+package eathubDL;
+
+import eathubDL.ArmazenamentoLog.Alteracao;
+import eathubDL.ArmazenamentoLog.Codificador;
+import java.io.DataInput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Base de dados em memória, usada pelas implementações em memória dos DAOs quando
+ * DAOconfig.BD_MEMORIA está ativo (desenvolvimento e testes sem servidor MySQL).
+ *
+ * Cada tabela do esquema (MigracoesBD) é uma Tabela ordenada pela chave primária;
+ * as chaves compostas são construídas com o método chave, pelo que as linhas de
+ * uma mesma entidade (por exemplo, as linhas de um Pedido) ficam contíguas e são
+ * obtidas com comPrefixo. As linhas são imutáveis: os DAOs constroem objetos novos
+ * em cada leitura, tal como fazem a partir de um ResultSet.
+ *
+ * As leituras não bloqueiam. As escritas são serializadas por um único lock e
+ * cada operação de um DAO (escrever) é atómica: se falhar, as alterações que já
+ * tinha feito são desfeitas. Uma unidade de trabalho mantém o lock até ao fim e
+ * regista todas as alterações, que são desfeitas se não for confirmada. Não são
+ * verificadas chaves estrangeiras; as remoções em cascata são feitas pelos DAOs,
+ * tal como nas implementações sobre MySQL.
+ *
+ * Com DAOconfig.BD_EMBUTIDA as tabelas são persistidas pelo ArmazenamentoLog: as
+ * alterações de cada operação ou transação são acrescentadas aos segmentos das
+ * tabelas quando a operação termina (ou a transação é confirmada), e as tabelas
+ * são reconstruídas a partir dos segmentos no arranque.
+ */
+public class BaseDadosMemoria {
+
+    /** Separador das partes de uma chave composta (não ocorre nos IDs) */
+    private static final char SEPARADOR = '\u0000';
+
+    /** Instância única da classe */
+    private static BaseDadosMemoria singleton = null;
+
+    /** Lock das escritas (reentrante, para que as operações dos DAOs se possam compor) */
+    private final ReentrantLock escrita = new ReentrantLock();
+
+    /** Ações que desfazem as alterações da operação ou transação em curso (null se não houver) */
+    private Deque<Runnable> desfazer = null;
+
+    /** Alterações da operação ou transação em curso por persistir (só com o armazenamento ativo) */
+    private final List<Alteracao> alteracoes = new ArrayList<>();
+
+    /** Armazenamento persistente das tabelas (null se os dados só existirem em memória) */
+    private volatile ArmazenamentoLog armazenamento = null;
+
+    /** Último número atribuído por cada sequência de IDs */
+    private final Map<String, AtomicLong> sequencias = new ConcurrentHashMap<>();
+
+    /** Todas as tabelas, pela ordem de declaração */
+    private final List<Tabela<?>> tabelas = new ArrayList<>();
+
+    // Tabelas do esquema
+    public final Tabela<LinhaPedido> pedidos = new Tabela<>("Pedido", LinhaPedido.CODIFICADOR);
+    public final Tabela<Integer> menusPedido = new Tabela<>("MenuPedido", ArmazenamentoLog.INTEIRO);                  // (idPedido, idMenu) -> quantidade
+    public final Tabela<Integer> propostasPedido = new Tabela<>("PropostaPedido", ArmazenamentoLog.INTEIRO);          // (idPedido, idProposta) -> quantidade
+    public final Tabela<LinhaMenu> menus = new Tabela<>("Menu", LinhaMenu.CODIFICADOR);
+    public final Tabela<String> propostasMenu = new Tabela<>("PropostaMenu", ArmazenamentoLog.TEXTO);               // (idMenu, idProposta) -> idProposta
+    public final Tabela<LinhaProposta> propostas = new Tabela<>("Proposta", LinhaProposta.CODIFICADOR);
+    public final Tabela<String> ingredientesProposta = new Tabela<>("IngredienteProposta", ArmazenamentoLog.TEXTO); // (idProposta, nome) -> nome
+    public final Tabela<List<String>> etapasProposta = new Tabela<>("EtapasProposta", ArmazenamentoLog.LISTA_TEXTO); // idProposta -> etapas por ordem
+    public final Tabela<Double> ingredientes = new Tabela<>("Ingrediente", ArmazenamentoLog.DECIMAL);                 // nome -> preço
+    public final Tabela<String> alergenios = new Tabela<>("Alergenio", ArmazenamentoLog.TEXTO);
+    public final Tabela<String> alergeniosIngrediente = new Tabela<>("AlergenioIngrediente", ArmazenamentoLog.TEXTO); // (nome, alergenio) -> alergenio
+    public final Tabela<LinhaPagamento> pagamentos = new Tabela<>("Pagamento", LinhaPagamento.CODIFICADOR);
+    public final Tabela<String> pagamentoPorPedido = new Tabela<>("uq_pagamento_pedido", ArmazenamentoLog.TEXTO);   // idPedido -> idPagamento
+    public final Tabela<LinhaFatura> faturas = new Tabela<>("Fatura", LinhaFatura.CODIFICADOR);
+    public final Tabela<String> taloes = new Tabela<>("Talao", ArmazenamentoLog.TEXTO);                              // idTalao -> idPedido
+    public final Tabela<LinhaRestaurante> restaurantes = new Tabela<>("Restaurante", LinhaRestaurante.CODIFICADOR);
+    public final Tabela<LinhaFuncionario> funcionarios = new Tabela<>("Funcionario", LinhaFuncionario.CODIFICADOR);
+    public final Tabela<String> passwords = new Tabela<>("Password", ArmazenamentoLog.TEXTO);
+    public final Tabela<Integer> stock = new Tabela<>("Stock", ArmazenamentoLog.INTEIRO);                              // (idRestaurante, nome) -> quantidade
+    public final Tabela<LinhaMensagem> mensagens = new Tabela<>("MensagemGestor", LinhaMensagem.CODIFICADOR);
+    public final Tabela<LinhaHistorico> historicos = new Tabela<>("Historico", LinhaHistorico.CODIFICADOR);
+    public final Tabela<LinhaEstatistica> estatisticasDiarias = new Tabela<>("EstatisticaDiaria", LinhaEstatistica.CODIFICADOR); // (idRestaurante, dia)
+
+    /**
+     * Construtor privado para evitar instanciação externa
+     */
+    private BaseDadosMemoria() {
+    }
+
+    /**
+     * Método que devolve a instância única da classe
+     *
+     * @return Instância única da classe
+     */
+    public static synchronized BaseDadosMemoria getInstance() {
+        if (singleton == null) {
+            BaseDadosMemoria bd = new BaseDadosMemoria();
+            if (DAOconfig.BD_EMBUTIDA) {
+                bd.abrirArmazenamento();
+            }
+            singleton = bd;
+        }
+        return singleton;
+    }
+
+    /**
+     * Método que abre o armazenamento persistente e reconstrói as tabelas e as sequências a partir dele
+     */
+    private void abrirArmazenamento() {
+        try {
+            ArmazenamentoLog a = new ArmazenamentoLog(Paths.get(DAOconfig.BD_EMBUTIDA_DIRETORIO),
+                                                      DAOconfig.BD_EMBUTIDA_TAMANHO_SEGMENTO,
+                                                      DAOconfig.BD_EMBUTIDA_MINIMO_COMPACTACAO,
+                                                      DAOconfig.BD_EMBUTIDA_FATOR_COMPACTACAO,
+                                                      DAOconfig.BD_EMBUTIDA_SINCRONIZAR);
+            for (Tabela<?> t : this.tabelas) {
+                a.recuperar(t.nome, t.recetor());
+            }
+            for (Map.Entry<String, Long> e : a.recuperarSequencias().entrySet()) {
+                this.sequencias.put(e.getKey(), new AtomicLong(e.getValue()));
+            }
+            this.armazenamento = a;
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /**
+     * Método que fecha o armazenamento persistente, se estiver aberto
+     * (as alterações já confirmadas estão todas nos segmentos)
+     */
+    public static synchronized void encerrar() {
+        if (singleton != null && singleton.armazenamento != null) {
+            singleton.escrita.lock();
+            try {
+                singleton.armazenamento.encerrar();
+                singleton.armazenamento = null;
+            } finally {
+                singleton.escrita.unlock();
+            }
+        }
+    }
+
+    /**
+     * Método que constrói uma chave composta a partir das suas partes
+     *
+     * @param partes Partes da chave, pela ordem da chave primária
+     * @return Chave composta
+     */
+    public static String chave(String... partes) {
+        return String.join(String.valueOf(SEPARADOR), partes);
+    }
+
+    /**
+     * Método que devolve o prefixo comum às chaves compostas que começam por uma parte
+     *
+     * @param parte Primeira parte da chave
+     * @return Prefixo das chaves compostas
+     */
+    public static String prefixo(String parte) {
+        return parte + SEPARADOR;
+    }
+
+    /**
+     * Método que separa uma chave composta nas suas partes
+     *
+     * @param chave Chave composta
+     * @return Partes da chave
+     */
+    public static String[] partes(String chave) {
+        return chave.split(String.valueOf(SEPARADOR), -1);
+    }
+
+    /**
+     * Método que arredonda um valor como uma coluna DECIMAL(p,2)
+     *
+     * @param valor Valor a arredondar
+     * @return Valor com duas casas decimais
+     */
+    public static double decimal(double valor) {
+        return BigDecimal.valueOf(valor).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    /**
+     * Método que devolve o próximo número de uma sequência (IDs e colunas AUTO_INCREMENT)
+     *
+     * @param nome Nome da sequência
+     * @return Próximo número da sequência, a começar em 1
+     */
+    public long proximoNumero(String nome) {
+        long numero = this.sequencias.computeIfAbsent(nome, n -> new AtomicLong()).incrementAndGet();
+        ArmazenamentoLog a = this.armazenamento;
+        if (a != null) {
+            try {
+                a.gravarSequencia(nome, numero);
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new NullPointerException(e.getMessage());
+            }
+        }
+        return numero;
+    }
+
+    /**
+     * Método que executa uma operação de escrita de forma atómica: as escritas de outras threads
+     * esperam pelo seu fim e, se a operação falhar, as alterações que já fez são desfeitas
+     * (dentro de uma transação ficam a cargo da transação)
+     *
+     * @param <T> Tipo do resultado
+     * @param operacao Operação a executar
+     * @return Resultado da operação
+     */
+    public <T> T escrever(Supplier<T> operacao) {
+        this.escrita.lock();
+        boolean local = this.desfazer == null;
+        if (local) {
+            this.desfazer = new ArrayDeque<>();
+        }
+        try {
+            T res = operacao.get();
+            if (local) {
+                try {
+                    this.persistir();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    throw new NullPointerException(e.getMessage());
+                }
+                this.desfazer = null;
+            }
+            return res;
+        } finally {
+            if (local && this.desfazer != null) {
+                this.reverter();
+            }
+            this.escrita.unlock();
+        }
+    }
+
+    /**
+     * Método que inicia uma transação na thread atual, bloqueando as escritas das outras threads até ao seu fim
+     */
+    void iniciarTransacao() {
+        this.escrita.lock();
+        this.desfazer = new ArrayDeque<>();
+    }
+
+    /**
+     * Método que confirma a transação da thread atual. Se as alterações não puderem ser
+     * persistidas, a transação continua aberta (e deve ser desfeita).
+     *
+     * @throws SQLException Se as alterações não puderem ser persistidas
+     */
+    void confirmarTransacao() throws SQLException {
+        try {
+            this.persistir();
+        } catch (IOException e) {
+            throw new SQLException("Não foi possível persistir a transação: " + e.getMessage(), e);
+        }
+        this.desfazer = null;
+        this.escrita.unlock();
+    }
+
+    /**
+     * Método que desfaz a transação da thread atual
+     */
+    void desfazerTransacao() {
+        try {
+            this.reverter();
+        } finally {
+            this.escrita.unlock();
+        }
+    }
+
+    /**
+     * Método que desfaz as alterações registadas, da mais recente para a mais antiga
+     */
+    private void reverter() {
+        Deque<Runnable> acoes = this.desfazer;
+        this.desfazer = null;
+        this.alteracoes.clear();
+        while (!acoes.isEmpty()) {
+            acoes.pop().run();
+        }
+    }
+
+    /**
+     * Método que persiste as alterações da operação ou transação em curso e compacta
+     * as tabelas que o justifiquem (sem armazenamento não faz nada)
+     *
+     * @throws IOException Se as alterações não puderem ser persistidas (continuam registadas)
+     */
+    private void persistir() throws IOException {
+        if (this.armazenamento == null || this.alteracoes.isEmpty()) {
+            this.alteracoes.clear();
+            return;
+        }
+        this.armazenamento.confirmar(this.alteracoes);
+        this.alteracoes.clear();
+        for (Tabela<?> t : this.tabelas) {
+            if (this.armazenamento.deveCompactar(t.nome, t.tamanho())) {
+                try {
+                    this.armazenamento.compactar(t.nome, t.codificadas());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Método que regista a ação que desfaz uma alteração (se houver operação ou transação em curso)
+     *
+     * @param acao Ação que desfaz a alteração
+     */
+    private void registarDesfazer(Runnable acao) {
+        if (this.desfazer != null) {
+            this.desfazer.push(acao);
+        }
+    }
+
+    /**
+     * Tabela em memória: linhas ordenadas pela chave primária. As escritas tomam o lock
+     * das escritas e são registadas para poderem ser desfeitas.
+     *
+     * @param <L> Tipo das linhas
+     */
+    public final class Tabela<L> {
+
+        /** Nome da tabela (usado nas mensagens de erro e no armazenamento) */
+        private final String nome;
+
+        /** Conversão das linhas para o armazenamento */
+        private final Codificador<L> codificador;
+
+        /** Linhas, por ordem da chave primária */
+        private final ConcurrentSkipListMap<String, L> linhas = new ConcurrentSkipListMap<>();
+
+        /**
+         * Construtor da tabela
+         *
+         * @param nome Nome da tabela
+         * @param codificador Conversão das linhas para o armazenamento
+         */
+        private Tabela(String nome, Codificador<L> codificador) {
+            this.nome = nome;
+            this.codificador = codificador;
+            tabelas.add(this);
+        }
+
+        /**
+         * Método que devolve uma linha a partir da sua chave
+         *
+         * @param chave Chave primária
+         * @return Linha, ou null se não existir
+         */
+        public L get(String chave) {
+            return this.linhas.get(chave);
+        }
+
+        /**
+         * Método que verifica se existe uma linha com uma chave
+         *
+         * @param chave Chave primária
+         * @return true se a linha existir, false caso contrário
+         */
+        public boolean contem(String chave) {
+            return this.linhas.containsKey(chave);
+        }
+
+        /**
+         * Método que devolve o número de linhas da tabela
+         *
+         * @return Número de linhas
+         */
+        public int tamanho() {
+            return this.linhas.size();
+        }
+
+        /**
+         * Método que devolve as chaves da tabela, por ordem
+         *
+         * @return Cópia das chaves
+         */
+        public List<String> chaves() {
+            return new ArrayList<>(this.linhas.keySet());
+        }
+
+        /**
+         * Método que devolve as linhas da tabela, por ordem da chave
+         *
+         * @return Cópia das linhas
+         */
+        public List<L> linhas() {
+            return new ArrayList<>(this.linhas.values());
+        }
+
+        /**
+         * Método que devolve as linhas cuja chave começa por um prefixo, por ordem da chave
+         *
+         * @param prefixo Prefixo das chaves (ver BaseDadosMemoria.prefixo)
+         * @return Cópia das linhas
+         */
+        public List<L> comPrefixo(String prefixo) {
+            return new ArrayList<>(this.intervalo(prefixo).values());
+        }
+
+        /**
+         * Método que devolve as chaves que começam por um prefixo, por ordem
+         *
+         * @param prefixo Prefixo das chaves (ver BaseDadosMemoria.prefixo)
+         * @return Cópia das chaves
+         */
+        public List<String> chavesComPrefixo(String prefixo) {
+            return new ArrayList<>(this.intervalo(prefixo).keySet());
+        }
+
+        /**
+         * Método que devolve as linhas com chave superior a uma dada chave, por ordem
+         * (para a listagem paginada)
+         *
+         * @param depoisDe Chave a partir da qual (exclusive) se lê, ou null para começar no início
+         * @return Vista das linhas seguintes
+         */
+        public Collection<L> depoisDe(String depoisDe) {
+            return (depoisDe == null ? this.linhas : this.linhas.tailMap(depoisDe, false)).values();
+        }
+
+        /**
+         * Método que insere uma linha nova
+         *
+         * @param chave Chave primária
+         * @param linha Linha a inserir
+         * @throws NullPointerException Se já existir uma linha com a mesma chave (como a exceção devolvida pelos DAOs)
+         */
+        public void inserir(String chave, L linha) {
+            escrever(() -> {
+                if (this.linhas.putIfAbsent(chave, linha) != null) {
+                    throw new NullPointerException("Duplicate entry '" + chave + "' for key '" + this.nome + ".PRIMARY'");
+                }
+                registarDesfazer(() -> this.linhas.remove(chave));
+                this.registarAlteracao(chave, linha);
+                return null;
+            });
+        }
+
+        /**
+         * Método que insere ou substitui uma linha
+         *
+         * @param chave Chave primária
+         * @param linha Linha a gravar
+         * @return Linha anterior, ou null se não existia
+         */
+        public L gravar(String chave, L linha) {
+            return escrever(() -> {
+                L anterior = this.linhas.put(chave, linha);
+                registarDesfazer(() -> this.repor(chave, anterior));
+                this.registarAlteracao(chave, linha);
+                return anterior;
+            });
+        }
+
+        /**
+         * Método que remove uma linha
+         *
+         * @param chave Chave primária
+         * @return Linha removida, ou null se não existia
+         */
+        public L remover(String chave) {
+            return escrever(() -> {
+                L anterior = this.linhas.remove(chave);
+                if (anterior != null) {
+                    registarDesfazer(() -> this.linhas.put(chave, anterior));
+                    this.registarAlteracao(chave, null);
+                }
+                return anterior;
+            });
+        }
+
+        /**
+         * Método que remove as linhas cuja chave começa por um prefixo
+         *
+         * @param prefixo Prefixo das chaves (ver BaseDadosMemoria.prefixo)
+         */
+        public void removerComPrefixo(String prefixo) {
+            escrever(() -> {
+                for (String chave : this.chavesComPrefixo(prefixo)) {
+                    this.remover(chave);
+                }
+                return null;
+            });
+        }
+
+        /**
+         * Método que remove todas as linhas da tabela
+         */
+        public void limpar() {
+            escrever(() -> {
+                for (String chave : this.chaves()) {
+                    this.remover(chave);
+                }
+                return null;
+            });
+        }
+
+        /**
+         * Método que regista uma alteração para ser persistida no fim da operação ou transação
+         *
+         * @param chave Chave primária
+         * @param linha Linha gravada, ou null se foi removida
+         */
+        private void registarAlteracao(String chave, L linha) {
+            if (armazenamento != null) {
+                alteracoes.add(new Alteracao(this.nome, chave, linha != null ? this.codificador.codificar(linha) : null));
+            }
+        }
+
+        /**
+         * Método que devolve as linhas atuais convertidas para o armazenamento (para a compactação)
+         *
+         * @return Linhas (chave -> bytes), por ordem da chave
+         */
+        private Map<String, byte[]> codificadas() {
+            Map<String, byte[]> res = new TreeMap<>();
+            for (Map.Entry<String, L> e : this.linhas.entrySet()) {
+                res.put(e.getKey(), this.codificador.codificar(e.getValue()));
+            }
+            return res;
+        }
+
+        /**
+         * Método que devolve o destino dos registos do armazenamento na recuperação da tabela
+         * (aplicados diretamente, sem lock nem registo)
+         *
+         * @return Destino dos registos
+         */
+        private ArmazenamentoLog.Recetor recetor() {
+            return new ArmazenamentoLog.Recetor() {
+                @Override
+                public void gravar(String chave, DataInput linha) throws IOException {
+                    linhas.put(chave, codificador.ler(linha));
+                }
+
+                @Override
+                public void remover(String chave) {
+                    linhas.remove(chave);
+                }
+
+                @Override
+                public void limpar() {
+                    linhas.clear();
+                }
+            };
+        }
+
+        /**
+         * Método que repõe o valor anterior de uma linha (ao desfazer uma gravação)
+         *
+         * @param chave Chave primária
+         * @param anterior Linha anterior, ou null se a linha não existia
+         */
+        private void repor(String chave, L anterior) {
+            if (anterior == null) {
+                this.linhas.remove(chave);
+            } else {
+                this.linhas.put(chave, anterior);
+            }
+        }
+
+        /**
+         * Método que devolve a vista das linhas cuja chave começa por um prefixo
+         *
+         * @param prefixo Prefixo das chaves
+         * @return Vista das linhas
+         */
+        private Map<String, L> intervalo(String prefixo) {
+            return this.linhas.subMap(prefixo, true, prefixo + Character.MAX_VALUE, false);
+        }
+    }
+
+    /** Linha da tabela Pedido */
+    public static final class LinhaPedido {
+        public final String idPedido;
+        public final String tipoServico;
+        public final double tempoEspera;
+        public final int nContribuinte;
+        public final String notas;
+
+        static final Codificador<LinhaPedido> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeUTF(l.idPedido);
+                ArmazenamentoLog.escreverOpcional(out, l.tipoServico);
+                out.writeDouble(l.tempoEspera);
+                out.writeInt(l.nContribuinte);
+                ArmazenamentoLog.escreverOpcional(out, l.notas);
+            },
+            in -> new LinhaPedido(in.readUTF(), ArmazenamentoLog.lerOpcional(in), in.readDouble(), in.readInt(), ArmazenamentoLog.lerOpcional(in)));
+
+        public LinhaPedido(String idPedido, String tipoServico, double tempoEspera, int nContribuinte, String notas) {
+            this.idPedido = idPedido;
+            this.tipoServico = tipoServico;
+            this.tempoEspera = Math.round(tempoEspera); // coluna INT
+            this.nContribuinte = nContribuinte;
+            this.notas = notas;
+        }
+    }
+
+    /** Linha da tabela Menu */
+    public static final class LinhaMenu {
+        public final String idMenu;
+        public final String nome;
+        public final double precoTotal;
+
+        static final Codificador<LinhaMenu> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeUTF(l.idMenu);
+                ArmazenamentoLog.escreverOpcional(out, l.nome);
+                out.writeDouble(l.precoTotal);
+            },
+            in -> new LinhaMenu(in.readUTF(), ArmazenamentoLog.lerOpcional(in), in.readDouble()));
+
+        public LinhaMenu(String idMenu, String nome, double precoTotal) {
+            this.idMenu = idMenu;
+            this.nome = nome;
+            this.precoTotal = decimal(precoTotal);
+        }
+    }
+
+    /** Linha da tabela Proposta */
+    public static final class LinhaProposta {
+        public final String idProposta;
+        public final String nome;
+        public final double preco;
+
+        static final Codificador<LinhaProposta> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeUTF(l.idProposta);
+                ArmazenamentoLog.escreverOpcional(out, l.nome);
+                out.writeDouble(l.preco);
+            },
+            in -> new LinhaProposta(in.readUTF(), ArmazenamentoLog.lerOpcional(in), in.readDouble()));
+
+        public LinhaProposta(String idProposta, String nome, double preco) {
+            this.idProposta = idProposta;
+            this.nome = nome;
+            this.preco = decimal(preco);
+        }
+    }
+
+    /** Linha da tabela Pagamento */
+    public static final class LinhaPagamento {
+        public final String idPagamento;
+        public final double valor;
+        public final String idPedido;
+        public final String metodoPagamento;
+
+        static final Codificador<LinhaPagamento> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeUTF(l.idPagamento);
+                out.writeDouble(l.valor);
+                ArmazenamentoLog.escreverOpcional(out, l.idPedido);
+                ArmazenamentoLog.escreverOpcional(out, l.metodoPagamento);
+            },
+            in -> new LinhaPagamento(in.readUTF(), in.readDouble(), ArmazenamentoLog.lerOpcional(in), ArmazenamentoLog.lerOpcional(in)));
+
+        public LinhaPagamento(String idPagamento, double valor, String idPedido, String metodoPagamento) {
+            this.idPagamento = idPagamento;
+            this.valor = decimal(valor);
+            this.idPedido = idPedido;
+            this.metodoPagamento = metodoPagamento;
+        }
+    }
+
+    /** Linha da tabela Fatura */
+    public static final class LinhaFatura {
+        public final String idFatura;
+        public final String idPagamento;
+        public final double valor;
+        public final int contribuinte;
+        public final String idPedido;
+
+        static final Codificador<LinhaFatura> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeUTF(l.idFatura);
+                ArmazenamentoLog.escreverOpcional(out, l.idPagamento);
+                out.writeDouble(l.valor);
+                out.writeInt(l.contribuinte);
+                ArmazenamentoLog.escreverOpcional(out, l.idPedido);
+            },
+            in -> new LinhaFatura(in.readUTF(), ArmazenamentoLog.lerOpcional(in), in.readDouble(), in.readInt(), ArmazenamentoLog.lerOpcional(in)));
+
+        public LinhaFatura(String idFatura, String idPagamento, double valor, int contribuinte, String idPedido) {
+            this.idFatura = idFatura;
+            this.idPagamento = idPagamento;
+            this.valor = decimal(valor);
+            this.contribuinte = contribuinte;
+            this.idPedido = idPedido;
+        }
+    }
+
+    /** Linha da tabela Restaurante */
+    public static final class LinhaRestaurante {
+        public final String idRestaurante;
+        public final String nome;
+        public final String idChefe;
+
+        static final Codificador<LinhaRestaurante> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeUTF(l.idRestaurante);
+                ArmazenamentoLog.escreverOpcional(out, l.nome);
+                ArmazenamentoLog.escreverOpcional(out, l.idChefe);
+            },
+            in -> new LinhaRestaurante(in.readUTF(), ArmazenamentoLog.lerOpcional(in), ArmazenamentoLog.lerOpcional(in)));
+
+        public LinhaRestaurante(String idRestaurante, String nome, String idChefe) {
+            this.idRestaurante = idRestaurante;
+            this.nome = nome;
+            this.idChefe = idChefe;
+        }
+    }
+
+    /** Linha da tabela Funcionario */
+    public static final class LinhaFuncionario {
+        public final String idFuncionario;
+        public final String nome;
+        public final String posto;
+        public final String tarefa;
+        public final String idRestaurante;
+        public final String tipo;
+
+        static final Codificador<LinhaFuncionario> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeUTF(l.idFuncionario);
+                ArmazenamentoLog.escreverOpcional(out, l.nome);
+                ArmazenamentoLog.escreverOpcional(out, l.posto);
+                ArmazenamentoLog.escreverOpcional(out, l.tarefa);
+                ArmazenamentoLog.escreverOpcional(out, l.idRestaurante);
+                ArmazenamentoLog.escreverOpcional(out, l.tipo);
+            },
+            in -> new LinhaFuncionario(in.readUTF(), ArmazenamentoLog.lerOpcional(in), ArmazenamentoLog.lerOpcional(in), ArmazenamentoLog.lerOpcional(in), ArmazenamentoLog.lerOpcional(in), ArmazenamentoLog.lerOpcional(in)));
+
+        public LinhaFuncionario(String idFuncionario, String nome, String posto, String tarefa, String idRestaurante, String tipo) {
+            this.idFuncionario = idFuncionario;
+            this.nome = nome;
+            this.posto = posto;
+            this.tarefa = tarefa;
+            this.idRestaurante = idRestaurante;
+            this.tipo = tipo;
+        }
+    }
+
+    /** Linha da tabela MensagemGestor */
+    public static final class LinhaMensagem {
+        public final int idMensagem;
+        public final String conteudo;
+        public final LocalDateTime dataEnvio;
+        public final String idFuncionario;
+
+        static final Codificador<LinhaMensagem> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeInt(l.idMensagem);
+                ArmazenamentoLog.escreverOpcional(out, l.conteudo);
+                ArmazenamentoLog.escreverOpcional(out, l.dataEnvio != null ? l.dataEnvio.toString() : null);
+                ArmazenamentoLog.escreverOpcional(out, l.idFuncionario);
+            },
+            in -> {
+                int id = in.readInt();
+                String conteudo = ArmazenamentoLog.lerOpcional(in);
+                String data = ArmazenamentoLog.lerOpcional(in);
+                return new LinhaMensagem(id, conteudo, data != null ? LocalDateTime.parse(data) : null, ArmazenamentoLog.lerOpcional(in));
+            });
+
+        public LinhaMensagem(int idMensagem, String conteudo, LocalDateTime dataEnvio, String idFuncionario) {
+            this.idMensagem = idMensagem;
+            this.conteudo = conteudo;
+            this.dataEnvio = dataEnvio;
+            this.idFuncionario = idFuncionario;
+        }
+    }
+
+    /** Linha da tabela Historico */
+    public static final class LinhaHistorico {
+        public final String idHistorico;
+        public final String idPedido;
+        public final String idRestaurante;
+        public final LocalDateTime dataFinalizacao;
+
+        static final Codificador<LinhaHistorico> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeUTF(l.idHistorico);
+                ArmazenamentoLog.escreverOpcional(out, l.idPedido);
+                ArmazenamentoLog.escreverOpcional(out, l.idRestaurante);
+                out.writeUTF(l.dataFinalizacao.toString());
+            },
+            in -> new LinhaHistorico(in.readUTF(), ArmazenamentoLog.lerOpcional(in), ArmazenamentoLog.lerOpcional(in),
+                                     LocalDateTime.parse(in.readUTF())));
+
+        public LinhaHistorico(String idHistorico, String idPedido, String idRestaurante, LocalDateTime dataFinalizacao) {
+            this.idHistorico = idHistorico;
+            this.idPedido = idPedido;
+            this.idRestaurante = idRestaurante;
+            this.dataFinalizacao = dataFinalizacao;
+        }
+    }
+
+    /** Linha da tabela EstatisticaDiaria (agregado de um restaurante num dia) */
+    public static final class LinhaEstatistica {
+        public final String idRestaurante;
+        public final LocalDate dia;
+        public final int nPedidos;
+        public final int nItens;
+        public final double valorTotal;
+        public final double valorGasto;
+        public final long somaTempoEspera;
+        public final int nTempoEspera;
+
+        static final Codificador<LinhaEstatistica> CODIFICADOR = ArmazenamentoLog.codificador(
+            (out, l) -> {
+                out.writeUTF(l.idRestaurante);
+                out.writeUTF(l.dia.toString());
+                out.writeInt(l.nPedidos);
+                out.writeInt(l.nItens);
+                out.writeDouble(l.valorTotal);
+                out.writeDouble(l.valorGasto);
+                out.writeLong(l.somaTempoEspera);
+                out.writeInt(l.nTempoEspera);
+            },
+            in -> new LinhaEstatistica(in.readUTF(), LocalDate.parse(in.readUTF()), in.readInt(), in.readInt(),
+                                       in.readDouble(), in.readDouble(), in.readLong(), in.readInt()));
+
+        public LinhaEstatistica(String idRestaurante, LocalDate dia, int nPedidos, int nItens, double valorTotal,
+                                double valorGasto, long somaTempoEspera, int nTempoEspera) {
+            this.idRestaurante = idRestaurante;
+            this.dia = dia;
+            this.nPedidos = nPedidos;
+            this.nItens = nItens;
+            this.valorTotal = decimal(valorTotal);
+            this.valorGasto = decimal(valorGasto);
+            this.somaTempoEspera = somaTempoEspera;
+            this.nTempoEspera = nTempoEspera;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package eathubDL;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Cache limitada (LRU) de leitura para objetos do catálogo (Menus, Propostas, Ingredientes).
+ *
+ * Os DAOs consultam a cache antes de irem à base de dados e guardam nela o
+ * resultado carregado; qualquer escrita no catálogo invalida as entradas
+ * afetadas. Cada invalidação incrementa uma geração, para que um valor
+ * carregado antes da invalidação não volte a ser colocado na cache.
+ *
+ * @param <K> Tipo da chave
+ * @param <V> Tipo do valor
+ */
+public class CacheCatalogo<K, V> {
+
+    /** Nome da cache (usado nas estatísticas) */
+    private final String nome;
+
+    /** Número máximo de entradas */
+    private final int capacidade;
+
+    /** Entradas em cache, a menos usada recentemente primeiro */
+    private final LinkedHashMap<K, V> entradas;
+
+    /** Geração atual (incrementada a cada invalidação) */
+    private long geracao;
+
+    /** Número de consultas servidas pela cache */
+    private long acertos;
+
+    /** Número de consultas que tiveram de ir à base de dados */
+    private long falhas;
+
+    /** Número de entradas removidas por falta de espaço */
+    private long despejos;
+
+    /** Número de invalidações */
+    private long invalidacoes;
+
+    /**
+     * Função que carrega um valor a partir da base de dados
+     *
+     * @param <K> Tipo da chave
+     * @param <V> Tipo do valor
+     * @param <E> Tipo da exceção lançada pelo carregamento
+     */
+    @FunctionalInterface
+    public interface Carregador<K, V, E extends Exception> {
+        V carregar(K chave) throws E;
+    }
+
+    /**
+     * Construtor da cache
+     *
+     * @param nome Nome da cache
+     * @param capacidade Número máximo de entradas
+     */
+    public CacheCatalogo(String nome, int capacidade) {
+        this.nome = nome;
+        this.capacidade = capacidade;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true);
+        this.geracao = 0;
+    }
+
+    /**
+     * Método que devolve o valor associado a uma chave, carregando-o (e guardando-o) se não estiver em cache.
+     * Valores nulos não são guardados.
+     *
+     * @param chave Chave a procurar
+     * @param carregar Função que carrega o valor da base de dados
+     * @return Valor associado à chave, ou null se não existir
+     * @throws E Se o carregamento falhar
+     */
+    public <E extends Exception> V obter(K chave, Carregador<K, V, E> carregar) throws E {
+        long geracaoLeitura;
+        synchronized (this) {
+            V valor = entradas.get(chave);
+            if (valor != null) {
+                acertos++;
+                return valor;
+            }
+            falhas++;
+            geracaoLeitura = geracao;
+        }
+
+        V valor = carregar.carregar(chave);
+
+        if (valor != null) {
+            synchronized (this) {
+                if (geracaoLeitura == geracao) {
+                    entradas.put(chave, valor);
+                    if (entradas.size() > capacidade) {
+                        K maisAntiga = entradas.keySet().iterator().next();
+                        entradas.remove(maisAntiga);
+                        despejos++;
+                    }
+                }
+            }
+        }
+        return valor;
+    }
+
+    /**
+     * Método que remove uma entrada da cache
+     *
+     * @param chave Chave a invalidar
+     */
+    public synchronized void invalidar(Object chave) {
+        entradas.remove(chave);
+        geracao++;
+        invalidacoes++;
+    }
+
+    /**
+     * Método que remove todas as entradas da cache
+     */
+    public synchronized void invalidarTudo() {
+        entradas.clear();
+        geracao++;
+        invalidacoes++;
+    }
+
+    /**
+     * Método que devolve o número de consultas servidas pela cache
+     *
+     * @return Número de acertos
+     */
+    public synchronized long getAcertos() {
+        return acertos;
+    }
+
+    /**
+     * Método que devolve o número de consultas que tiveram de ir à base de dados
+     *
+     * @return Número de falhas
+     */
+    public synchronized long getFalhas() {
+        return falhas;
+    }
+
+    /**
+     * Método que devolve o número de entradas removidas por falta de espaço
+     *
+     * @return Número de despejos
+     */
+    public synchronized long getDespejos() {
+        return despejos;
+    }
+
+    /**
+     * Método que devolve o número de entradas atualmente em cache
+     *
+     * @return Número de entradas
+     */
+    public synchronized int getTamanho() {
+        return entradas.size();
+    }
+
+    /**
+     * Método que devolve as estatísticas atuais da cache
+     *
+     * @return Representação textual das estatísticas da cache
+     */
+    public synchronized String getEstatisticas() {
+        long consultas = acertos + falhas;
+        double taxa = consultas == 0 ? 0.0 : (100.0 * acertos) / consultas;
+        return "Cache " + nome + "[entradas=" + entradas.size() +
+               ", capacidade=" + capacidade +
+               ", acertos=" + acertos +
+               ", falhas=" + falhas +
+               ", taxaAcerto=" + String.format("%.1f%%", taxa) +
+               ", despejos=" + despejos +
+               ", invalidacoes=" + invalidacoes + "]";
+    }
+}
@@ -0,0 +1,217 @@
+package eathubDL;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterador preguiçoso sobre o resultado de uma consulta.
+ *
+ * A consulta é executada num cursor apenas de avanço (forward-only, read-only)
+ * com um fetch size limitado, pelo que as linhas são lidas da base de dados à
+ * medida que são consumidas e a memória usada não depende do tamanho da
+ * tabela. A conexão fica emprestada enquanto o cursor estiver aberto e é
+ * devolvida ao pool quando a última linha é lida, quando ocorre um erro ou
+ * quando o cursor (ou o Stream obtido a partir dele) é fechado.
+ *
+ * @param <T> Tipo dos objetos construídos a partir de cada linha
+ */
+public class CursorBD<T> implements Iterator<T>, AutoCloseable {
+
+    /**
+     * Função que constrói um objeto a partir da linha atual do ResultSet
+     * (devolver null ignora a linha)
+     *
+     * @param <T> Tipo do objeto construído
+     */
+    @FunctionalInterface
+    public interface LeitorLinha<T> {
+        T ler(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Função que prepara o leitor de linhas com a conexão do cursor (por exemplo,
+     * para abrir cursores auxiliares percorridos em paralelo com o principal)
+     *
+     * @param <T> Tipo do objeto construído
+     */
+    @FunctionalInterface
+    public interface FabricaLeitor<T> {
+        LeitorLinha<T> criar(Connection conn) throws SQLException;
+    }
+
+    /** Conexão emprestada pelo cursor */
+    private Connection conn;
+
+    /** Resultado da consulta principal */
+    private ResultSet rs;
+
+    /** Leitor de linhas */
+    private final LeitorLinha<T> leitor;
+
+    /** Próximo objeto, já lido mas ainda não devolvido */
+    private T proximo;
+
+    /** Indica se o cursor já foi fechado */
+    private boolean fechado;
+
+    /**
+     * Construtor privado; usar os métodos abrir e abrirComConexao
+     *
+     * @param conn Conexão emprestada
+     * @param rs Resultado da consulta principal
+     * @param leitor Leitor de linhas
+     */
+    private CursorBD(Connection conn, ResultSet rs, LeitorLinha<T> leitor) {
+        this.conn = conn;
+        this.rs = rs;
+        this.leitor = leitor;
+        this.proximo = null;
+        this.fechado = false;
+    }
+
+    /**
+     * Método que abre um cursor sobre uma consulta
+     *
+     * @param <T> Tipo dos objetos construídos
+     * @param sql Consulta a executar
+     * @param leitor Leitor de linhas
+     * @param params Parâmetros da consulta
+     * @return Cursor aberto
+     */
+    public static <T> CursorBD<T> abrir(String sql, LeitorLinha<T> leitor, String... params) {
+        return abrirComConexao(sql, c -> leitor, params);
+    }
+
+    /**
+     * Método que abre um cursor sobre uma consulta, criando o leitor com a conexão do cursor
+     *
+     * @param <T> Tipo dos objetos construídos
+     * @param sql Consulta a executar
+     * @param fabrica Fábrica do leitor de linhas
+     * @param params Parâmetros da consulta
+     * @return Cursor aberto
+     */
+    public static <T> CursorBD<T> abrirComConexao(String sql, FabricaLeitor<T> fabrica, String... params) {
+        Connection conn = null;
+        try {
+            conn = DAOconfig.getConnection();
+            LeitorLinha<T> leitor = fabrica.criar(conn);
+            ResultSet rs = consultar(conn, sql, params);
+            return new CursorBD<>(conn, rs, leitor);
+        } catch (SQLException e) {
+            fecharConexao(conn);
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /**
+     * Método que executa uma consulta num cursor apenas de avanço, com o fetch size configurado.
+     * O ResultSet é fechado juntamente com a conexão.
+     *
+     * @param conn Conexão a utilizar
+     * @param sql Consulta a executar
+     * @param params Parâmetros da consulta
+     * @return Resultado da consulta
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    public static ResultSet consultar(Connection conn, String sql, String... params) throws SQLException {
+        PreparedStatement pstm = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pstm.setFetchSize(DAOconfig.TAMANHO_FETCH);
+        for (int i = 0; i < params.length; i++) {
+            pstm.setString(i + 1, params[i]);
+        }
+        return pstm.executeQuery();
+    }
+
+    /**
+     * Método que verifica se existe mais algum objeto, lendo a próxima linha se necessário
+     *
+     * @return true se existir mais algum objeto, false caso contrário
+     */
+    @Override
+    public boolean hasNext() {
+        if (proximo != null) {
+            return true;
+        }
+        if (fechado) {
+            return false;
+        }
+        try {
+            // As linhas para as quais o leitor devolve null são ignoradas
+            while (rs.next()) {
+                proximo = leitor.ler(rs);
+                if (proximo != null) {
+                    return true;
+                }
+            }
+        } catch (SQLException e) {
+            this.close();
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        this.close();
+        return false;
+    }
+
+    /**
+     * Método que devolve o próximo objeto
+     *
+     * @return Próximo objeto
+     */
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T res = proximo;
+        proximo = null;
+        return res;
+    }
+
+    /**
+     * Método que devolve um Stream sequencial sobre os objetos restantes; fechar o Stream fecha o cursor
+     *
+     * @return Stream dos objetos
+     */
+    public Stream<T> stream() {
+        Spliterator<T> s = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(s, false).onClose(this::close);
+    }
+
+    /**
+     * Método que fecha o cursor e devolve a conexão ao pool
+     */
+    @Override
+    public void close() {
+        if (!fechado) {
+            fechado = true;
+            rs = null;
+            fecharConexao(conn);
+            conn = null;
+        }
+    }
+
+    /**
+     * Método que fecha uma conexão (e, com ela, os seus statements), ignorando erros
+     *
+     * @param conn Conexão a fechar (pode ser null)
+     */
+    private static void fecharConexao(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package eathubDL;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
 
 public class DAOconfig {
     public static final String USERNAME = "me";
@@ -11,188 +9,167 @@ public class DAOconfig {
     private static final String DATABASE = "EatHub";     
     //private static final String DRIVER = "jdbc:mariadb";        // Usar para MariaDB
     private static final String DRIVER = "jdbc:mysql";        // Usar para MySQL
-    public static final String URL = DRIVER+"://localhost:3306/"+DATABASE;
+    public static final String URL = DRIVER+"://localhost:3306/"+DATABASE+"?useServerPrepStmts=true&rewriteBatchedStatements=true&useCursorFetch=true";
+
+    // Configuração do pool de conexões (tempos em milissegundos)
+    private static final int POOL_TAMANHO_MINIMO = 2;
+    private static final int POOL_TAMANHO_MAXIMO = 10;
+    private static final long POOL_TEMPO_MAXIMO_INATIVO = 5 * 60 * 1000;
+    private static final long POOL_LIMITE_FUGA = 60 * 1000;
+    private static final long POOL_TEMPO_MAXIMO_ESPERA = 10 * 1000;
+    private static final long POOL_INTERVALO_VALIDACAO = 30 * 1000;
+    private static final int POOL_CACHE_STATEMENTS = 64;
+    // Guardar o local (stack trace) de cada empréstimo para o reportar nas fugas; ativar com -Deathub.pool.origemFugas=true
+    private static final boolean POOL_ORIGEM_FUGAS = Boolean.getBoolean("eathub.pool.origemFugas");
+
+    // Capacidade das caches do catálogo (número de entradas)
+    public static final int CACHE_MENUS = 256;
+    public static final int CACHE_PROPOSTAS = 512;
+    public static final int CACHE_INGREDIENTES = 1024;
+    public static final int CACHE_PEDIDOS_PAGOS = 1024;   // pedidos com pagamento confirmado (SSComercialFacade)
+
+    // Número de linhas obtidas de cada vez pelos cursores de leitura (CursorBD)
+    public static final int TAMANHO_FETCH = 200;
+
+    // Número de IDs reservados de cada vez por cada sequência (hi/lo)
+    public static final int BLOCO_IDS = 50;
+
+    // Base de dados embebida: a BaseDadosMemoria persistida num armazenamento em log (ArmazenamentoLog) na pasta dada,
+    // para instalações numa única JVM sem servidor MySQL; ativar com -Deathub.bdEmbutida=<pasta>
+    public static final String BD_EMBUTIDA_DIRETORIO = System.getProperty("eathub.bdEmbutida");
+    public static final boolean BD_EMBUTIDA = BD_EMBUTIDA_DIRETORIO != null && !BD_EMBUTIDA_DIRETORIO.isBlank();
+    public static final boolean BD_EMBUTIDA_SINCRONIZAR = Boolean.getBoolean("eathub.bdEmbutida.fsync"); // fsync em cada confirmação
+    public static final long BD_EMBUTIDA_TAMANHO_SEGMENTO = 64L * 1024 * 1024;   // bytes por segmento
+    public static final long BD_EMBUTIDA_MINIMO_COMPACTACAO = 10000;             // registos de uma tabela antes de a compactar
+    public static final int BD_EMBUTIDA_FATOR_COMPACTACAO = 4;                   // compactar com mais de 4 registos por linha
+
+    // Base de dados em memória (BaseDadosMemoria) em vez de MySQL, escolhida no arranque; ativar com -Deathub.bdMemoria=true
+    // Sem a base de dados embebida os dados não são persistidos; a escrita diferida e o stock em memória ficam desativados
+    public static final boolean BD_MEMORIA = BD_EMBUTIDA || Boolean.getBoolean("eathub.bdMemoria");
+
+    // Escrita diferida (write-behind) de Historico, Talao e Fatura; ativar com -Deathub.escritaDiferida=true
+    public static final boolean ESCRITA_DIFERIDA = !BD_MEMORIA && Boolean.getBoolean("eathub.escritaDiferida");
+    public static final String ESCRITA_DIFERIDA_FICHEIRO = "eathub-escritas.diario";
+    public static final int ESCRITA_DIFERIDA_LOTE = 100;            // registos por transação
+    public static final long ESCRITA_DIFERIDA_INTERVALO = 200;      // milissegundos entre descargas
+    public static final int ESCRITA_DIFERIDA_CAPACIDADE = 10000;    // registos pendentes em memória
+
+    // Stock em memória (MotorStock) com persistência periódica; ativar com -Deathub.stockEmMemoria=true
+    public static final boolean STOCK_EM_MEMORIA = !BD_MEMORIA && Boolean.getBoolean("eathub.stockEmMemoria");
+    public static final long STOCK_INTERVALO_PERSISTENCIA = 1000;   // milissegundos entre persistências
+    public static final int STOCK_LISTRAS = 64;                     // número de locks (lock striping)
+
+    // Snapshot binário do catálogo (SnapshotCatalogo) exportado depois das alterações e lido no arranque; ativar com -Deathub.snapshotCatalogo=true
+    public static final boolean SNAPSHOT_CATALOGO = !BD_MEMORIA && Boolean.getBoolean("eathub.snapshotCatalogo");
+    public static final String SNAPSHOT_CATALOGO_FICHEIRO = "eathub-catalogo.snapshot";
+    public static final long SNAPSHOT_CATALOGO_ATRASO = 1000;       // milissegundos entre uma alteração e a exportação (agrupa as alterações seguintes)
+
+    // Diário do estado da cozinha (DiarioCozinha): pedidos pendentes, filas de espera e progresso dos pedidos,
+    // com snapshots periódicos; ativar com -Deathub.diarioCozinha=true (sem efeito com a base de dados em memória não persistida)
+    public static final boolean DIARIO_COZINHA = (!BD_MEMORIA || BD_EMBUTIDA) && Boolean.getBoolean("eathub.diarioCozinha");
+    public static final boolean DIARIO_COZINHA_SINCRONIZAR = Boolean.getBoolean("eathub.diarioCozinha.fsync"); // fsync em cada transição
+    public static final String DIARIO_COZINHA_FICHEIRO = "eathub-cozinha.diario";
+    public static final String DIARIO_COZINHA_SNAPSHOT = "eathub-cozinha.snapshot";
+    public static final int DIARIO_COZINHA_REGISTOS_SNAPSHOT = 1000;   // transições no diário antes de um novo snapshot
+
+    // Motor da cozinha (MotorCozinha): os pedidos da fila são confecionados em segundo plano, com uma estação por tarefa
+    // e um trabalhador por funcionário; ativar com -Deathub.motorCozinha=true (a interface passa a só acompanhar o progresso)
+    public static final boolean MOTOR_COZINHA = Boolean.getBoolean("eathub.motorCozinha");
+    public static final long MOTOR_COZINHA_DURACAO_ETAPA = Long.getLong("eathub.motorCozinha.duracaoEtapa", 2000); // milissegundos por etapa
+    public static final long MOTOR_COZINHA_INTERVALO_FILA = 500;    // milissegundos entre consultas das filas de espera
+    public static final int MOTOR_COZINHA_EVENTOS = 20;             // eventos recentes guardados por restaurante
+
+    // Relatório dos tempos das fases do arranque (RelatorioArranque) em System.err; ativar com -Deathub.relatorioArranque=true
+    public static final boolean RELATORIO_ARRANQUE = Boolean.getBoolean("eathub.relatorioArranque");
+    public static final int ARRANQUE_THREADS = 3;                   // subsistemas inicializados em paralelo
+
+    private static volatile PoolConexoes pool = null;
+
+    /**
+     * Método que devolve o pool de conexões, criando-o na primeira utilização
+     *
+     * @return Pool de conexões partilhado
+     */
+    private static PoolConexoes getPool() {
+        PoolConexoes p = pool;
+        if (p == null) {
+            synchronized (DAOconfig.class) {
+                p = pool;
+                if (p == null) {
+                    p = new PoolConexoes(URL, USERNAME, PASSWORD,
+                                         POOL_TAMANHO_MINIMO, POOL_TAMANHO_MAXIMO,
+                                         POOL_TEMPO_MAXIMO_INATIVO, POOL_LIMITE_FUGA,
+                                         POOL_TEMPO_MAXIMO_ESPERA, POOL_INTERVALO_VALIDACAO,
+                                         POOL_CACHE_STATEMENTS, POOL_ORIGEM_FUGAS);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
 
+    /**
+     * Método que empresta uma conexão do pool. Fechar a conexão devolve-a ao pool.
+     * Se existir uma unidade de trabalho aberta na thread atual, devolve a conexão
+     * dessa unidade de trabalho, que participa na sua transação.
+     *
+     * @return Conexão à base de dados
+     * @throws SQLException Se não for possível obter uma conexão dentro do tempo limite
+     */
+    public static Connection getConnection() throws SQLException {
+        Connection conn = UnidadeTrabalho.conexaoAtual();
+        return conn != null ? conn : getPool().getConnection();
+    }
 
-    public static void CreateBD(){
+    /**
+     * Método que empresta uma conexão do pool que nunca participa numa unidade de trabalho
+     * (para escritas que têm de ser confirmadas independentemente do caso de uso em curso)
+     *
+     * @return Conexão à base de dados
+     * @throws SQLException Se não for possível obter uma conexão dentro do tempo limite
+     */
+    public static Connection getConnectionIsolada() throws SQLException {
+        return getPool().getConnection();
+    }
+
+    /**
+     * Método que devolve as estatísticas atuais do pool de conexões
+     *
+     * @return Representação textual das estatísticas do pool
+     */
+    public static String getEstatisticasPool() {
+        return getPool().getEstatisticas();
+    }
 
-        String[] sqlCreates = {
-        "CREATE TABLE IF NOT EXISTS Pedido (" +
-            "idPedido VARCHAR(50) PRIMARY KEY," +
-            "tipoServico VARCHAR(50)," +
-            "tempoEspera INT," + ///Talvez mudar para DECIMAL(10,2)
-            "nContribuinte INT," +
-            "notas TEXT" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Menu (" +
-            "idM VARCHAR(50) PRIMARY KEY," +
-            "precoTotal DECIMAL(10,2)," +
-            "nome VARCHAR(100)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS MenuPedido (" +
-            "idM_FK VARCHAR(50)," +
-            "idPedido_FK VARCHAR(50)," +
-            "quantidade INT," +
-            "PRIMARY KEY (idM_FK, idPedido_FK)," +
-            "FOREIGN KEY (idM_FK) REFERENCES Menu(idM)," +
-            "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Proposta (" +
-            "idProposta VARCHAR(50) PRIMARY KEY," +
-            "nome VARCHAR(100)," +
-            "preco DECIMAL(10,2)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS PropostaMenu (" +
-            "idProposta_FK VARCHAR(50)," +
-            "idM_FK VARCHAR(50)," +
-            "PRIMARY KEY (idProposta_FK, idM_FK)," +
-            "FOREIGN KEY (idProposta_FK) REFERENCES Proposta(idProposta)," +
-            "FOREIGN KEY (idM_FK) REFERENCES Menu(idM)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS PropostaPedido (" +
-            "idProposta_FK VARCHAR(50)," +
-            "idPedido_FK VARCHAR(50)," +
-            "quantidade INT," +
-            "PRIMARY KEY (idProposta_FK, idPedido_FK)," +
-            "FOREIGN KEY (idProposta_FK) REFERENCES Proposta(idProposta)," +
-            "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Ingrediente (" +
-            "nome VARCHAR(100) PRIMARY KEY" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS IngredienteProposta (" +
-            "nomeIngrediente_FK VARCHAR(100)," +
-            "idProposta_FK VARCHAR(50)," +
-            "PRIMARY KEY (nomeIngrediente_FK, idProposta_FK)," +
-            "FOREIGN KEY (nomeIngrediente_FK) REFERENCES Ingrediente(nome)," +
-            "FOREIGN KEY (idProposta_FK) REFERENCES Proposta(idProposta)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Alergenio (" +
-            "alergenio VARCHAR(100) PRIMARY KEY" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS AlergenioIngrediente (" +
-            "alergenio_FK VARCHAR(100)," +
-            "nomeIngrediente_FK VARCHAR(100)," +
-            "PRIMARY KEY (nomeIngrediente_FK, alergenio_FK)," +
-            "FOREIGN KEY (alergenio_FK) REFERENCES Alergenio(alergenio)," +
-            "FOREIGN KEY (nomeIngrediente_FK) REFERENCES Ingrediente(nome)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Pagamento (" +
-            "idPagamento VARCHAR(50) PRIMARY KEY," +
-            "valor DECIMAL(10,2)," +
-            "idPedido VARCHAR(50)," +
-            "metodoPagamento VARCHAR(50)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Fatura (" +
-            "idFatura VARCHAR(50) PRIMARY KEY," +
-            "idPagamento_FK VARCHAR(50)," +
-            "valor DECIMAL(10,2)," +
-            "contribuinte INT," +
-            "idPedido_FK VARCHAR(50)," +
-            "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)," +
-            "FOREIGN KEY (idPagamento_FK) REFERENCES Pagamento(idPagamento)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Talao (" +
-            "idTalao VARCHAR(50) PRIMARY KEY," +
-            "idPedido_FK VARCHAR(50)," +
-            "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Restaurante (" +
-            "idRestaurante VARCHAR(50) PRIMARY KEY," +
-            "nome VARCHAR(100)," +
-            "idFuncionario_FK VARCHAR(50)" +  // Sem FK inicialmente
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Funcionario (" +
-            "idFuncionario VARCHAR(50) PRIMARY KEY," +
-            "nome VARCHAR(100)," +
-            "posto VARCHAR(50)," +
-            "tarefa VARCHAR(50)," +
-            "idRestaurante_FK VARCHAR(50)," +
-            "tipo VARCHAR(50)," +
-            "FOREIGN KEY (idRestaurante_FK) REFERENCES Restaurante(idRestaurante)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Stock (" +
-            "nomeIngrediente_FK VARCHAR(100)," +
-            "idRestaurante_FK VARCHAR(50)," +
-            "quantidade INT," +
-            "PRIMARY KEY (nomeIngrediente_FK, idRestaurante_FK)," +
-            "FOREIGN KEY (nomeIngrediente_FK) REFERENCES Ingrediente(nome)," +
-            "FOREIGN KEY (idRestaurante_FK) REFERENCES Restaurante(idRestaurante)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS MensagemGestor (" +
-            "idMensagem INT AUTO_INCREMENT," +
-            "conteudo TEXT," +
-            "dataEnvio DATETIME," +
-            "idFuncionario_FK VARCHAR(50)," +
-            "FOREIGN KEY (idFuncionario_FK) REFERENCES Funcionario(idFuncionario)," +
-            "PRIMARY KEY (idMensagem)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS EtapasProposta (" +
-            "etapa VARCHAR(255)," +
-            "idProposta_FK VARCHAR(50)," +
-            "ordem INT," +
-            "PRIMARY KEY (idProposta_FK, ordem)," +
-            "FOREIGN KEY (idProposta_FK) REFERENCES Proposta(idProposta)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Historico (" +
-            "idHistorico VARCHAR(50)," +
-            "idPedido_FK VARCHAR(50)," +
-            "idRestaurante_FK VARCHAR(50)," +
-            "dataFinalizacao DATETIME," +
-            "PRIMARY KEY (idHistorico)," +
-            "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)," +
-            "FOREIGN KEY (idRestaurante_FK) REFERENCES Restaurante(idRestaurante)" +
-        ")",
-
-        "CREATE TABLE IF NOT EXISTS Password (" +
-            "idFuncionario_FK VARCHAR(50) PRIMARY KEY," +
-            "codigo VARCHAR(255)," +
-            "FOREIGN KEY (idFuncionario_FK) REFERENCES Funcionario(idFuncionario)" +
-        ")"
-    };
-
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement()) {
-
-            for (String sql : sqlCreates) {
-                stm.executeUpdate(sql);
+    /**
+     * Método que encerra o pool de conexões, fechando as conexões livres
+     */
+    public static void encerrarPool() {
+        synchronized (DAOconfig.class) {
+            if (pool != null) {
+                pool.encerrar();
+                pool = null;
             }
-            
-        } catch (SQLException e) {
-            // Erro a criar tabela...
-            e.printStackTrace();
-            throw new NullPointerException(e.getMessage());
         }
+    }
 
-        // Adicionar a FK depois de ambas as tabelas existirem, apenas se não existir
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement()) {
-                stm.executeUpdate(
-                    "ALTER TABLE Restaurante ADD CONSTRAINT fk_restaurante_chefe " +
-                    "FOREIGN KEY (idFuncionario_FK) REFERENCES Funcionario(idFuncionario)"
-                );
-        } catch (SQLException e) {
-            // Constraint já existe, ignorar
+    /**
+     * Método que fecha a base de dados embebida (se estiver ativa)
+     */
+    public static void encerrarBD() {
+        if (BD_EMBUTIDA) {
+            BaseDadosMemoria.encerrar();
         }
     }
-}
-    
 
+    /**
+     * Método que prepara o esquema da base de dados, aplicando as migrações ainda não aplicadas
+     * (com a base de dados em memória as tabelas já existem e não há nada a fazer)
+     */
+    public static void CreateBD(){
+        if (BD_MEMORIA) {
+            return;
+        }
+        MigracoesBD.migrar();
+    }
+}
@@ -0,0 +1,870 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.DAOconfig;
+import eathubLN.ssPedidos.Pedido;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Diário (write-ahead log) do estado da cozinha: pedidos pendentes, filas de espera, pedido em
+ * confeção, pedidos adiados e pedidos em confeção no MotorCozinha de cada restaurante, que só
+ * existem em memória no SSPedidosFacade.
+ *
+ * Com o modo ativo (DAOconfig.DIARIO_COZINHA), cada transição (pedido pendente criado ou alterado,
+ * pedido colocado ou retirado da fila, pedido iniciado, etapa avançada, pedido adiado, retomado ou
+ * terminado) é acrescentada ao diário como um registo com CRC. A cada
+ * DAOconfig.DIARIO_COZINHA_REGISTOS_SNAPSHOT registos o estado completo é exportado para um snapshot
+ * (escrito num ficheiro temporário e movido de forma atómica) e o diário recomeça vazio; o snapshot
+ * é uma sequência das mesmas transições que reconstrói o estado a partir do zero.
+ *
+ * O snapshot e o diário guardam um número de geração: o diário só é reaplicado sobre o snapshot da
+ * mesma geração, pelo que uma falha entre a escrita do snapshot e a do novo diário não reaplica
+ * transições já incluídas no snapshot. No arranque o snapshot é lido e o diário reaplicado até ao
+ * primeiro registo incompleto ou corrompido; logo a seguir é escrito um novo snapshot, pelo que a
+ * recuperação nunca tem de reaplicar mais do que um snapshot e um diário curto.
+ *
+ * As alterações feitas diretamente a um pedido pendente (fora dos métodos do SSPedidosFacade) só
+ * ficam registadas na transição seguinte desse pedido ou no próximo snapshot.
+ *
+ * As transições são registadas pelo SSPedidosFacade com o seu lock (ordem SSPedidosFacade → diário).
+ * O estado do snapshot é exportado fora do monitor do diário, que só é obtido depois para escrever
+ * os ficheiros; como a thread que atinge o limite ainda tem o lock do SSPedidosFacade, nenhuma
+ * transição fica entre a exportação e o novo diário.
+ *
+ * Implementa o padrão Singleton.
+ */
+public class DiarioCozinha implements TransicoesCozinha {
+
+    /** Identificação do diário ("EHDC") */
+    private static final int MAGIA_DIARIO = 0x45484443;
+
+    /** Identificação do snapshot ("EHSC") */
+    private static final int MAGIA_SNAPSHOT = 0x45485343;
+
+    /** Versão do formato dos ficheiros */
+    private static final int FORMATO = 1;
+
+    /** Tamanho do cabeçalho dos ficheiros: magia, formato e geração */
+    private static final int CABECALHO = 16;
+
+    // Tipos de registo
+    private static final byte PENDENTE = 1;
+    private static final byte PENDENTE_REMOVIDO = 2;
+    private static final byte ENFILEIRADO = 3;
+    private static final byte RETIRADO = 4;
+    private static final byte INICIADO = 5;
+    private static final byte AVANCADO = 6;
+    private static final byte ADIADO = 7;
+    private static final byte RETOMADO = 8;
+    private static final byte TERMINADO = 9;
+    private static final byte CONFECAO_INICIADA = 10;
+    private static final byte CONFECAO_AVANCADA = 11;
+    private static final byte CONFECAO_TERMINADA = 12;
+
+    /** Instância única da classe */
+    private static DiarioCozinha singleton = null;
+
+    /** Ficheiro do diário */
+    private final Path ficheiro;
+
+    /** Ficheiro do snapshot */
+    private final Path ficheiroSnapshot;
+
+    /** Número de registos no diário a partir do qual é escrito um novo snapshot */
+    private final int registosSnapshot;
+
+    /** Exporta o estado completo da cozinha como uma sequência de transições */
+    private Consumer<TransicoesCozinha> exportar;
+
+    /** Canal do diário atual */
+    private FileChannel canal;
+
+    /** Geração do snapshot e do diário atuais */
+    private long geracao;
+
+    /** Número de registos no diário atual */
+    private int registos;
+
+    /** Indica se o diário está ativo */
+    private volatile boolean ativo;
+
+    /**
+     * Construtor privado para evitar instanciação externa
+     */
+    private DiarioCozinha() {
+        this.ficheiro = Paths.get(DAOconfig.DIARIO_COZINHA_FICHEIRO);
+        this.ficheiroSnapshot = Paths.get(DAOconfig.DIARIO_COZINHA_SNAPSHOT);
+        this.registosSnapshot = DAOconfig.DIARIO_COZINHA_REGISTOS_SNAPSHOT;
+        this.ativo = false;
+    }
+
+    /**
+     * Método que devolve a instância única da classe
+     *
+     * @return Instância única da classe
+     */
+    public static synchronized DiarioCozinha getInstance() {
+        if (singleton == null) {
+            singleton = new DiarioCozinha();
+        }
+        return singleton;
+    }
+
+    /**
+     * Método que, se o modo estiver configurado, reaplica o snapshot e o diário de uma execução
+     * anterior, escreve um novo snapshot e começa a registar as transições
+     *
+     * @param destino Recetor das transições recuperadas
+     * @param exportar Exporta o estado completo da cozinha (usado para escrever os snapshots)
+     */
+    public void iniciar(TransicoesCozinha destino, Consumer<TransicoesCozinha> exportar) {
+        if (!DAOconfig.DIARIO_COZINHA) {
+            return;
+        }
+        synchronized (this) {
+            if (this.ativo) {
+                return;
+            }
+            this.geracao = this.lerSnapshot(destino);
+            this.lerDiario(destino);
+            this.exportar = exportar;
+        }
+        List<byte[]> estado = this.exportarEstado();
+        synchronized (this) {
+            if (this.ativo) {
+                return;
+            }
+            try {
+                this.escreverSnapshot(estado);
+                this.ativo = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new NullPointerException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Método que indica se o diário está ativo
+     *
+     * @return true se as transições estão a ser registadas
+     */
+    public synchronized boolean isAtivo() {
+        return this.ativo;
+    }
+
+    /**
+     * Método que fecha o diário (as transições já registadas ficam no ficheiro)
+     */
+    public synchronized void encerrar() {
+        if (!this.ativo) {
+            return;
+        }
+        this.ativo = false;
+        try {
+            this.canal.force(false);
+            this.canal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void pendente(String idRestaurante, Pedido pedido) {
+        if (this.ativo) {
+            this.registar(codificarPendente(idRestaurante, pedido));
+        }
+    }
+
+    @Override
+    public void pendenteRemovido(String idRestaurante, String codPedido) {
+        if (this.ativo) {
+            this.registar(codificar(PENDENTE_REMOVIDO, idRestaurante, codPedido));
+        }
+    }
+
+    @Override
+    public void enfileirado(String idRestaurante, String codPedido, double tempoEspera) {
+        if (this.ativo) {
+            this.registar(codificarEnfileirado(idRestaurante, codPedido, tempoEspera));
+        }
+    }
+
+    @Override
+    public void retirado(String idRestaurante, String codPedido) {
+        if (this.ativo) {
+            this.registar(codificar(RETIRADO, idRestaurante, codPedido));
+        }
+    }
+
+    @Override
+    public void iniciado(String idRestaurante, Pedido pedido, Map<String, Integer> etapasPropostas,
+                                      Map<String, Map<String, Integer>> etapasMenus) {
+        if (this.ativo) {
+            this.registar(codificarIniciado(INICIADO, idRestaurante, pedido, etapasPropostas, etapasMenus));
+        }
+    }
+
+    @Override
+    public void avancado(String idRestaurante, String codProposta, String codMenu) {
+        if (this.ativo) {
+            this.registar(codificar(AVANCADO, idRestaurante, codProposta, codMenu));
+        }
+    }
+
+    @Override
+    public void adiado(String idRestaurante) {
+        if (this.ativo) {
+            this.registar(codificar(ADIADO, idRestaurante));
+        }
+    }
+
+    @Override
+    public void retomado(String idRestaurante, String codPedido) {
+        if (this.ativo) {
+            this.registar(codificar(RETOMADO, idRestaurante, codPedido));
+        }
+    }
+
+    @Override
+    public void terminado(String idRestaurante) {
+        if (this.ativo) {
+            this.registar(codificar(TERMINADO, idRestaurante));
+        }
+    }
+
+    @Override
+    public void confecaoIniciada(String idRestaurante, Pedido pedido, Map<String, Integer> etapasPropostas,
+                                              Map<String, Map<String, Integer>> etapasMenus) {
+        if (this.ativo) {
+            this.registar(codificarIniciado(CONFECAO_INICIADA, idRestaurante, pedido, etapasPropostas, etapasMenus));
+        }
+    }
+
+    @Override
+    public void confecaoAvancada(String idRestaurante, String codPedido, String codProposta, String codMenu) {
+        if (this.ativo) {
+            this.registar(codificar(CONFECAO_AVANCADA, idRestaurante, codPedido, codProposta, codMenu));
+        }
+    }
+
+    @Override
+    public void confecaoTerminada(String idRestaurante, String codPedido) {
+        if (this.ativo) {
+            this.registar(codificar(CONFECAO_TERMINADA, idRestaurante, codPedido));
+        }
+    }
+
+    /**
+     * Método que acrescenta um registo ao diário e, se o diário tiver atingido o limite, escreve um
+     * novo snapshot. A transição já foi aplicada ao estado em memória, pelo que o snapshot a inclui.
+     * O estado é exportado fora do monitor do diário (ver a descrição da classe). Se a exportação
+     * falhar, o diário atual continua em uso e o snapshot é tentado no registo seguinte.
+     *
+     * @param registo Conteúdo do registo
+     */
+    private void registar(byte[] registo) {
+        synchronized (this) {
+            if (!this.ativo) {
+                return;
+            }
+            try {
+                escreverTudo(this.canal, moldura(registo));
+                if (DAOconfig.DIARIO_COZINHA_SINCRONIZAR) {
+                    this.canal.force(false);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new NullPointerException(e.getMessage());
+            }
+            if (++this.registos < this.registosSnapshot) {
+                return;
+            }
+        }
+        List<byte[]> estado;
+        try {
+            estado = this.exportarEstado();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return;
+        }
+        synchronized (this) {
+            if (!this.ativo) {
+                return;
+            }
+            try {
+                this.escreverSnapshot(estado);
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new NullPointerException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Método que exporta o estado completo da cozinha como registos do snapshot
+     * (chamado fora do monitor do diário, porque a exportação obtém o lock do SSPedidosFacade)
+     *
+     * @return Registos do estado atual
+     */
+    private List<byte[]> exportarEstado() {
+        List<byte[]> estado = new ArrayList<>();
+        this.exportar.accept(new Exportacao(estado));
+        return estado;
+    }
+
+    /**
+     * Método que escreve um snapshot do estado dado (geração seguinte) e começa um diário vazio
+     * dessa geração (chamado com o monitor do diário)
+     *
+     * @param estado Registos do estado, obtidos com exportarEstado
+     * @throws IOException Se a escrita falhar
+     */
+    private void escreverSnapshot(List<byte[]> estado) throws IOException {
+        long nova = this.geracao + 1;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIA_SNAPSHOT);
+        out.writeInt(FORMATO);
+        out.writeLong(nova);
+        for (byte[] registo : estado) {
+            out.write(moldura(registo).array());
+        }
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+        substituir(this.ficheiroSnapshot, bytes.toByteArray());
+
+        if (this.canal != null) {
+            this.canal.close();
+        }
+        ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO).putInt(MAGIA_DIARIO).putInt(FORMATO).putLong(nova);
+        substituir(this.ficheiro, cabecalho.array());
+        this.canal = FileChannel.open(this.ficheiro, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.geracao = nova;
+        this.registos = 0;
+    }
+
+    /**
+     * Método que reaplica o snapshot, se existir e estiver íntegro
+     *
+     * @param destino Recetor das transições
+     * @return Geração do snapshot, ou 0 se não existir
+     */
+    private long lerSnapshot(TransicoesCozinha destino) {
+        try (FileChannel c = FileChannel.open(this.ficheiroSnapshot, StandardOpenOption.READ)) {
+            long tamanho = c.size();
+            if (tamanho < CABECALHO + 4 || tamanho > Integer.MAX_VALUE) {
+                return 0;
+            }
+            MappedByteBuffer buf = c.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, (int) tamanho - 4));
+            if (buf.getInt(0) != MAGIA_SNAPSHOT || buf.getInt(4) != FORMATO
+                    || (int) crc.getValue() != buf.getInt((int) tamanho - 4)) {
+                System.err.println("Snapshot da cozinha corrompido: " + this.ficheiroSnapshot);
+                return 0;
+            }
+            aplicarRegistos(buf.slice(CABECALHO, (int) tamanho - 4 - CABECALHO), destino);
+            return buf.getLong(8);
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Método que reaplica o diário, se for da geração do snapshot lido
+     *
+     * @param destino Recetor das transições
+     */
+    private void lerDiario(TransicoesCozinha destino) {
+        try (FileChannel c = FileChannel.open(this.ficheiro, StandardOpenOption.READ)) {
+            long tamanho = c.size();
+            if (tamanho < CABECALHO || tamanho > Integer.MAX_VALUE) {
+                return;
+            }
+            MappedByteBuffer buf = c.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            if (buf.getInt(0) != MAGIA_DIARIO || buf.getInt(4) != FORMATO || buf.getLong(8) != this.geracao) {
+                return; // diário de uma geração já incluída no snapshot
+            }
+            int aplicados = aplicarRegistos(buf.slice(CABECALHO, (int) tamanho - CABECALHO), destino);
+            if (aplicados < tamanho - CABECALHO) {
+                System.err.println("Diário da cozinha: " + this.ficheiro + " truncado em " + (CABECALHO + aplicados)
+                                   + " bytes (registos incompletos).");
+            }
+        } catch (NoSuchFileException e) {
+            // Primeira execução
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Método que aplica uma sequência de registos, parando no primeiro incompleto ou corrompido
+     *
+     * @param buf Registos ([comprimento][crc32][conteúdo])
+     * @param destino Recetor das transições
+     * @return Número de bytes aplicados
+     */
+    private static int aplicarRegistos(ByteBuffer buf, TransicoesCozinha destino) {
+        int pos = 0;
+        int limite = buf.limit();
+        while (pos + 8 <= limite) {
+            int comprimento = buf.getInt(pos);
+            if (comprimento <= 0 || comprimento > limite - pos - 8) {
+                break;
+            }
+            ByteBuffer registo = buf.slice(pos + 8, comprimento);
+            CRC32 crc = new CRC32();
+            crc.update(registo.duplicate());
+            if ((int) crc.getValue() != buf.getInt(pos + 4)) {
+                break;
+            }
+            try {
+                aplicar(registo, destino);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                break;
+            }
+            pos += 8 + comprimento;
+        }
+        return pos;
+    }
+
+    /**
+     * Método que descodifica um registo e aplica a transição correspondente
+     *
+     * @param buf Conteúdo do registo
+     * @param destino Recetor da transição
+     */
+    private static void aplicar(ByteBuffer buf, TransicoesCozinha destino) {
+        byte tipo = buf.get();
+        String idRestaurante = lerTexto(buf);
+        switch (tipo) {
+            case PENDENTE:
+                destino.pendente(idRestaurante, lerPedido(buf));
+                break;
+            case PENDENTE_REMOVIDO:
+                destino.pendenteRemovido(idRestaurante, lerTexto(buf));
+                break;
+            case ENFILEIRADO:
+                destino.enfileirado(idRestaurante, lerTexto(buf), buf.getDouble());
+                break;
+            case RETIRADO:
+                destino.retirado(idRestaurante, lerTexto(buf));
+                break;
+            case INICIADO:
+            case CONFECAO_INICIADA: {
+                Pedido pedido = lerPedido(buf);
+                Map<String, Integer> etapasPropostas = lerEtapas(buf);
+                Map<String, Map<String, Integer>> etapasMenus = new LinkedHashMap<>();
+                for (int i = buf.getInt(); i > 0; i--) {
+                    String codMenu = lerTexto(buf);
+                    etapasMenus.put(codMenu, lerEtapas(buf));
+                }
+                if (tipo == INICIADO) {
+                    destino.iniciado(idRestaurante, pedido, etapasPropostas, etapasMenus);
+                } else {
+                    destino.confecaoIniciada(idRestaurante, pedido, etapasPropostas, etapasMenus);
+                }
+                break;
+            }
+            case AVANCADO: {
+                String codProposta = lerTexto(buf);
+                destino.avancado(idRestaurante, codProposta, lerTexto(buf));
+                break;
+            }
+            case ADIADO:
+                destino.adiado(idRestaurante);
+                break;
+            case RETOMADO:
+                destino.retomado(idRestaurante, lerTexto(buf));
+                break;
+            case TERMINADO:
+                destino.terminado(idRestaurante);
+                break;
+            case CONFECAO_AVANCADA: {
+                String codPedido = lerTexto(buf);
+                String codProposta = lerTexto(buf);
+                destino.confecaoAvancada(idRestaurante, codPedido, codProposta, lerTexto(buf));
+                break;
+            }
+            case CONFECAO_TERMINADA:
+                destino.confecaoTerminada(idRestaurante, lerTexto(buf));
+                break;
+            default:
+                throw new IllegalStateException("Tipo de registo desconhecido: " + tipo);
+        }
+    }
+
+    /**
+     * Exportação do estado completo: codifica as transições recebidas como registos do snapshot
+     */
+    private static final class Exportacao implements TransicoesCozinha {
+        private final List<byte[]> registos;
+
+        private Exportacao(List<byte[]> registos) {
+            this.registos = registos;
+        }
+
+        @Override
+        public void pendente(String idRestaurante, Pedido pedido) {
+            this.registos.add(codificarPendente(idRestaurante, pedido));
+        }
+
+        @Override
+        public void pendenteRemovido(String idRestaurante, String codPedido) {
+            this.registos.add(codificar(PENDENTE_REMOVIDO, idRestaurante, codPedido));
+        }
+
+        @Override
+        public void enfileirado(String idRestaurante, String codPedido, double tempoEspera) {
+            this.registos.add(codificarEnfileirado(idRestaurante, codPedido, tempoEspera));
+        }
+
+        @Override
+        public void retirado(String idRestaurante, String codPedido) {
+            this.registos.add(codificar(RETIRADO, idRestaurante, codPedido));
+        }
+
+        @Override
+        public void iniciado(String idRestaurante, Pedido pedido, Map<String, Integer> etapasPropostas,
+                             Map<String, Map<String, Integer>> etapasMenus) {
+            this.registos.add(codificarIniciado(INICIADO, idRestaurante, pedido, etapasPropostas, etapasMenus));
+        }
+
+        @Override
+        public void avancado(String idRestaurante, String codProposta, String codMenu) {
+            this.registos.add(codificar(AVANCADO, idRestaurante, codProposta, codMenu));
+        }
+
+        @Override
+        public void adiado(String idRestaurante) {
+            this.registos.add(codificar(ADIADO, idRestaurante));
+        }
+
+        @Override
+        public void retomado(String idRestaurante, String codPedido) {
+            this.registos.add(codificar(RETOMADO, idRestaurante, codPedido));
+        }
+
+        @Override
+        public void terminado(String idRestaurante) {
+            this.registos.add(codificar(TERMINADO, idRestaurante));
+        }
+
+        @Override
+        public void confecaoIniciada(String idRestaurante, Pedido pedido, Map<String, Integer> etapasPropostas,
+                                     Map<String, Map<String, Integer>> etapasMenus) {
+            this.registos.add(codificarIniciado(CONFECAO_INICIADA, idRestaurante, pedido, etapasPropostas, etapasMenus));
+        }
+
+        @Override
+        public void confecaoAvancada(String idRestaurante, String codPedido, String codProposta, String codMenu) {
+            this.registos.add(codificar(CONFECAO_AVANCADA, idRestaurante, codPedido, codProposta, codMenu));
+        }
+
+        @Override
+        public void confecaoTerminada(String idRestaurante, String codPedido) {
+            this.registos.add(codificar(CONFECAO_TERMINADA, idRestaurante, codPedido));
+        }
+    }
+
+    /**
+     * Método que codifica um registo formado apenas por textos
+     *
+     * @param tipo Tipo do registo
+     * @param textos Textos do registo (o primeiro é o id do restaurante)
+     * @return Conteúdo do registo
+     */
+    private static byte[] codificar(byte tipo, String... textos) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(tipo);
+            for (String s : textos) {
+                escreverTexto(out, s);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Método que codifica a entrada de um pedido na fila
+     *
+     * @param idRestaurante Id do restaurante
+     * @param codPedido Código do pedido
+     * @param tempoEspera Tempo de espera do pedido
+     * @return Conteúdo do registo
+     */
+    private static byte[] codificarEnfileirado(String idRestaurante, String codPedido, double tempoEspera) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(ENFILEIRADO);
+            escreverTexto(out, idRestaurante);
+            escreverTexto(out, codPedido);
+            out.writeDouble(tempoEspera);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Método que codifica um pedido pendente
+     *
+     * @param idRestaurante Id do restaurante
+     * @param pedido Pedido
+     * @return Conteúdo do registo
+     */
+    private static byte[] codificarPendente(String idRestaurante, Pedido pedido) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(PENDENTE);
+            escreverTexto(out, idRestaurante);
+            escreverPedido(out, pedido);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Método que codifica um pedido em confeção (INICIADO ou CONFECAO_INICIADA)
+     *
+     * @param tipo Tipo do registo
+     * @param idRestaurante Id do restaurante
+     * @param pedido Pedido
+     * @param etapasPropostas Etapa atual de cada proposta individual por concluir
+     * @param etapasMenus Etapa atual de cada proposta por concluir de cada menu
+     * @return Conteúdo do registo
+     */
+    private static byte[] codificarIniciado(byte tipo, String idRestaurante, Pedido pedido, Map<String, Integer> etapasPropostas,
+                                            Map<String, Map<String, Integer>> etapasMenus) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(tipo);
+            escreverTexto(out, idRestaurante);
+            escreverPedido(out, pedido);
+            escreverEtapas(out, etapasPropostas);
+            out.writeInt(etapasMenus.size());
+            for (Map.Entry<String, Map<String, Integer>> e : etapasMenus.entrySet()) {
+                escreverTexto(out, e.getKey());
+                escreverEtapas(out, e.getValue());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Método que escreve o conteúdo de um pedido
+     *
+     * @param out Destino
+     * @param pedido Pedido
+     * @throws IOException Se a escrita falhar
+     */
+    private static void escreverPedido(DataOutputStream out, Pedido pedido) throws IOException {
+        escreverTexto(out, pedido.getCodPedido());
+        out.writeDouble(pedido.getTempoEspera());
+        out.writeInt(pedido.getNrContribuinte());
+        escreverTexto(out, pedido.getNotas());
+        escreverTexto(out, pedido.getTipoPedido() == null ? null : pedido.getTipoPedido().name());
+        escreverLista(out, pedido.getCodMenus());
+        escreverLista(out, pedido.getCodPropostas());
+    }
+
+    /**
+     * Método que lê o conteúdo de um pedido
+     *
+     * @param buf Origem
+     * @return Pedido
+     */
+    private static Pedido lerPedido(ByteBuffer buf) {
+        Pedido p = new Pedido(lerTexto(buf));
+        p.alterar_TempoEspera(buf.getDouble());
+        p.setNrContribuinte(buf.getInt());
+        String notas = lerTexto(buf);
+        if (notas != null && !notas.isEmpty()) {
+            p.addNota(notas);
+        }
+        String tipo = lerTexto(buf);
+        if (tipo != null) {
+            p.setTipoPedido(tipo);
+        }
+        for (String codMenu : lerLista(buf)) {
+            p.addMenu(codMenu);
+        }
+        for (String codProposta : lerLista(buf)) {
+            p.addProposta(codProposta);
+        }
+        return p;
+    }
+
+    /**
+     * Método que escreve a etapa atual de cada proposta
+     *
+     * @param out Destino
+     * @param etapas Etapa atual de cada proposta
+     * @throws IOException Se a escrita falhar
+     */
+    private static void escreverEtapas(DataOutputStream out, Map<String, Integer> etapas) throws IOException {
+        out.writeInt(etapas.size());
+        for (Map.Entry<String, Integer> e : etapas.entrySet()) {
+            escreverTexto(out, e.getKey());
+            out.writeInt(e.getValue());
+        }
+    }
+
+    /**
+     * Método que lê a etapa atual de cada proposta
+     *
+     * @param buf Origem
+     * @return Etapa atual de cada proposta
+     */
+    private static Map<String, Integer> lerEtapas(ByteBuffer buf) {
+        Map<String, Integer> etapas = new LinkedHashMap<>();
+        for (int i = buf.getInt(); i > 0; i--) {
+            String codProposta = lerTexto(buf);
+            etapas.put(codProposta, buf.getInt());
+        }
+        return etapas;
+    }
+
+    /**
+     * Método que escreve uma lista de textos
+     *
+     * @param out Destino
+     * @param lista Textos
+     * @throws IOException Se a escrita falhar
+     */
+    private static void escreverLista(DataOutputStream out, List<String> lista) throws IOException {
+        out.writeInt(lista.size());
+        for (String s : lista) {
+            escreverTexto(out, s);
+        }
+    }
+
+    /**
+     * Método que lê uma lista de textos
+     *
+     * @param buf Origem
+     * @return Textos
+     */
+    private static List<String> lerLista(ByteBuffer buf) {
+        List<String> lista = new ArrayList<>();
+        for (int i = buf.getInt(); i > 0; i--) {
+            lista.add(lerTexto(buf));
+        }
+        return lista;
+    }
+
+    /**
+     * Método que escreve um texto (comprimento e bytes UTF-8; -1 para null)
+     *
+     * @param out Destino
+     * @param s Texto (pode ser null)
+     * @throws IOException Se a escrita falhar
+     */
+    private static void escreverTexto(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Método que lê um texto escrito por escreverTexto
+     *
+     * @param buf Origem
+     * @return Texto (ou null)
+     */
+    private static String lerTexto(ByteBuffer buf) {
+        int n = buf.getInt();
+        if (n < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[n];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Método que acrescenta o comprimento e o CRC32 a um registo
+     *
+     * @param registo Conteúdo do registo
+     * @return Registo pronto a escrever
+     */
+    private static ByteBuffer moldura(byte[] registo) {
+        CRC32 crc = new CRC32();
+        crc.update(registo);
+        ByteBuffer buf = ByteBuffer.allocate(8 + registo.length);
+        buf.putInt(registo.length).putInt((int) crc.getValue()).put(registo).flip();
+        return buf;
+    }
+
+    /**
+     * Método que escreve um buffer completo num canal
+     *
+     * @param canal Canal de destino
+     * @param buf Conteúdo a escrever
+     * @throws IOException Se a escrita falhar
+     */
+    private static void escreverTudo(FileChannel canal, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            canal.write(buf);
+        }
+    }
+
+    /**
+     * Método que substitui um ficheiro de forma atómica (escreve um temporário, sincroniza e move)
+     *
+     * @param destino Ficheiro a substituir
+     * @param conteudo Novo conteúdo
+     * @throws IOException Se a escrita falhar
+     */
+    private static void substituir(Path destino, byte[] conteudo) throws IOException {
+        Path tmp = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try (FileChannel c = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            escreverTudo(c, ByteBuffer.wrap(conteudo));
+            c.force(true);
+        }
+        Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
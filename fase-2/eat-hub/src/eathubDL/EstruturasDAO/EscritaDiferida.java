@@ -0,0 +1,619 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.DAOconfig;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Escrita diferida (write-behind) dos registos que só são acrescentados: Historico, Talao e Fatura.
+ *
+ * Com o modo ativo (DAOconfig.ESCRITA_DIFERIDA), cada registo é acrescentado a
+ * um diário local (com fsync) e colocado numa fila limitada em memória; uma
+ * thread de escrita insere a fila na base de dados em lotes, numa transação por
+ * lote, a cada DAOconfig.ESCRITA_DIFERIDA_INTERVALO milissegundos ou quando se
+ * acumulam DAOconfig.ESCRITA_DIFERIDA_LOTE registos. Quando a fila está cheia,
+ * quem regista espera que a thread de escrita liberte espaço.
+ *
+ * Em cada descarga o diário atual é fechado num segmento numerado, que só é
+ * apagado depois de todos os seus registos estarem na base de dados. No arranque
+ * os segmentos e o diário que tenham ficado de uma execução anterior são
+ * reaplicados; as inserções são idempotentes (uma chave já existente é ignorada
+ * e o agregado diário só é atualizado para Historicos realmente inseridos), pelo
+ * que reaplicar um registo já escrito não tem efeito. Os registos rejeitados pela
+ * base de dados são reportados e guardados num novo segmento, que é reaplicado
+ * no próximo arranque.
+ *
+ * As leituras das tabelas Historico, Talao e Fatura podem não ver registos ainda
+ * na fila; as operações que dependem deles (remoções, estatísticas) chamam
+ * sincronizar() antes de consultar a base de dados.
+ *
+ * Implementa o padrão Singleton.
+ */
+public class EscritaDiferida {
+
+    /** Tipos de registo aceites */
+    enum Tipo { HISTORICO, TALAO, FATURA }
+
+    /** Registo por escrever: tipo e valores das colunas, pela ordem da inserção do respetivo DAO */
+    static final class Registo {
+        final Tipo tipo;
+        final String[] campos;
+
+        Registo(Tipo tipo, String[] campos) {
+            this.tipo = tipo;
+            this.campos = campos;
+        }
+    }
+
+    /** Separador dos campos de uma linha do diário (os campos são IDs, números e datas) */
+    private static final char SEPARADOR = '\t';
+
+    /** Instância única da classe */
+    private static EscritaDiferida singleton = null;
+
+    /** Diário atual (os segmentos fechados têm o mesmo nome seguido de ".N") */
+    private final Path ficheiro;
+
+    /** Número máximo de registos por lote (e por transação) */
+    private final int tamanhoLote;
+
+    /** Tempo máximo (ms) que um registo espera na fila */
+    private final long intervalo;
+
+    /** Registos acrescentados ao diário e ainda não entregues à thread de escrita (protegido por this.diario) */
+    private final ArrayDeque<Registo> fila;
+
+    /** Lugares livres na fila; só são devolvidos quando os registos estão na base de dados */
+    private final Semaphore vagas;
+
+    /** Exclusão mútua sobre o diário atual e a fila */
+    private final Object diario;
+
+    /** Exclusão mútua entre descargas */
+    private final ReentrantLock descarga;
+
+    /** Registos retirados da fila e ainda não escritos (protegido por descarga) */
+    private final List<Registo> porEscrever;
+
+    /** Número de registos de porEscrever que ocupam um lugar da fila (protegido por descarga) */
+    private int vagasOcupadas;
+
+    /** Segmentos fechados cujos registos estão em porEscrever (protegido por descarga) */
+    private final List<Path> segmentos;
+
+    /** Canal do diário atual (protegido por this.diario) */
+    private FileChannel canal;
+
+    /** Número do último segmento criado */
+    private long ultimoSegmento;
+
+    /** Indica se o diário atual tem registos */
+    private boolean diarioComRegistos;
+
+    /** Thread de escrita (null se o modo não estiver ativo) */
+    private Thread escritor;
+
+    /** Indica se o modo de escrita diferida está ativo */
+    private volatile boolean ativa;
+
+    /** Indica se foi pedido o encerramento */
+    private volatile boolean encerrando;
+
+    /** Número de registos escritos na base de dados */
+    private long escritos;
+
+    /** Número de lotes (transações) escritos */
+    private long lotes;
+
+    /** Número de registos rejeitados pela base de dados (guardados num segmento para nova tentativa no arranque) */
+    private long rejeitados;
+
+    /**
+     * Construtor privado para evitar instanciação externa
+     */
+    private EscritaDiferida() {
+        this.ficheiro = Paths.get(DAOconfig.ESCRITA_DIFERIDA_FICHEIRO);
+        this.tamanhoLote = DAOconfig.ESCRITA_DIFERIDA_LOTE;
+        this.intervalo = DAOconfig.ESCRITA_DIFERIDA_INTERVALO;
+        this.fila = new ArrayDeque<>();
+        this.vagas = new Semaphore(DAOconfig.ESCRITA_DIFERIDA_CAPACIDADE);
+        this.diario = new Object();
+        this.descarga = new ReentrantLock();
+        this.porEscrever = new ArrayList<>();
+        this.segmentos = new ArrayList<>();
+        this.ativa = false;
+        this.encerrando = false;
+    }
+
+    /**
+     * Método que devolve a instância única da classe
+     *
+     * @return Instância única da classe
+     */
+    public static synchronized EscritaDiferida getInstance() {
+        if (singleton == null) {
+            singleton = new EscritaDiferida();
+        }
+        return singleton;
+    }
+
+    /**
+     * Método que reaplica os registos deixados por uma execução anterior e, se o modo estiver
+     * configurado, inicia a thread de escrita e o hook de encerramento
+     */
+    public void iniciar() {
+        this.descarga.lock();
+        try {
+            this.recuperar();
+            if (!this.porEscrever.isEmpty()) {
+                this.escreverPendentes();
+            }
+        } finally {
+            this.descarga.unlock();
+        }
+
+        if (DAOconfig.ESCRITA_DIFERIDA && !this.ativa) {
+            synchronized (this.diario) {
+                this.canal = this.abrirDiario();
+            }
+            this.escritor = new Thread(this::executar, "EatHub-escrita-diferida");
+            this.escritor.setDaemon(true);
+            this.ativa = true;
+            this.escritor.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::encerrar, "EatHub-escrita-diferida-fim"));
+        }
+    }
+
+    /**
+     * Método que indica se o modo de escrita diferida está ativo
+     *
+     * @return true se os registos devem ser entregues a registar(), false se devem ser escritos diretamente
+     */
+    public boolean isAtiva() {
+        return this.ativa;
+    }
+
+    /**
+     * Método que regista um novo registo: acrescenta-o ao diário (com fsync) e coloca-o na fila.
+     * Espera se a fila estiver cheia.
+     *
+     * @param tipo Tipo do registo
+     * @param campos Valores das colunas
+     */
+    void registar(Tipo tipo, String... campos) {
+        Registo r = new Registo(tipo, campos);
+        byte[] linha = serializar(r).getBytes(StandardCharsets.UTF_8);
+        try {
+            this.vagas.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompido à espera de espaço na fila de escrita diferida.", e);
+        }
+
+        int pendentes;
+        synchronized (this.diario) {
+            try {
+                ByteBuffer buf = ByteBuffer.wrap(linha);
+                while (buf.hasRemaining()) {
+                    this.canal.write(buf);
+                }
+                this.canal.force(false);
+            } catch (IOException e) {
+                this.vagas.release();
+                e.printStackTrace();
+                throw new NullPointerException(e.getMessage());
+            }
+            this.diarioComRegistos = true;
+            this.fila.addLast(r);
+            pendentes = this.fila.size();
+        }
+
+        if (pendentes >= this.tamanhoLote) {
+            synchronized (this) {
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Método que escreve de imediato na base de dados todos os registos pendentes.
+     * Usado antes de operações que dependem de os registos já estarem na base de dados.
+     */
+    public void sincronizar() {
+        this.descarregar();
+    }
+
+    /**
+     * Método que termina a thread de escrita e escreve os registos pendentes (idempotente)
+     */
+    public void encerrar() {
+        if (!this.ativa || this.encerrando) {
+            return;
+        }
+        this.encerrando = true;
+        synchronized (this) {
+            this.notifyAll();
+        }
+        if (this.escritor != null && Thread.currentThread() != this.escritor) {
+            try {
+                this.escritor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.descarregar();
+        this.ativa = false;
+        synchronized (this.diario) {
+            try {
+                this.canal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Método que devolve as estatísticas atuais da escrita diferida
+     *
+     * @return Representação textual das estatísticas
+     */
+    public String getEstatisticas() {
+        int naFila;
+        synchronized (this.diario) {
+            naFila = this.fila.size();
+        }
+        this.descarga.lock();
+        try {
+            return "EscritaDiferida[ativa=" + this.ativa +
+                   ", naFila=" + naFila +
+                   ", porEscrever=" + this.porEscrever.size() +
+                   ", escritos=" + this.escritos +
+                   ", lotes=" + this.lotes +
+                   ", rejeitados=" + this.rejeitados + "]";
+        } finally {
+            this.descarga.unlock();
+        }
+    }
+
+    /**
+     * Ciclo da thread de escrita: espera pelo intervalo (ou por um lote completo) e descarrega
+     */
+    private void executar() {
+        while (!this.encerrando) {
+            synchronized (this) {
+                try {
+                    if (!this.encerrando && this.tamanhoFila() < this.tamanhoLote) {
+                        this.wait(this.intervalo);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            try {
+                this.descarregar();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Método que devolve o número de registos na fila
+     *
+     * @return Número de registos na fila
+     */
+    private int tamanhoFila() {
+        synchronized (this.diario) {
+            return this.fila.size();
+        }
+    }
+
+    /**
+     * Método que retira os registos da fila, fecha o diário atual num segmento e escreve tudo o que
+     * estiver pendente. Se a base de dados estiver indisponível, os registos ficam para a próxima descarga.
+     */
+    private void descarregar() {
+        this.descarga.lock();
+        try {
+            synchronized (this.diario) {
+                if (!this.fila.isEmpty()) {
+                    this.porEscrever.addAll(this.fila);
+                    this.vagasOcupadas += this.fila.size();
+                    this.fila.clear();
+                }
+                if (this.diarioComRegistos) {
+                    this.segmentos.add(this.fecharSegmento());
+                }
+            }
+            if (!this.porEscrever.isEmpty()) {
+                this.escreverPendentes();
+            }
+        } finally {
+            this.descarga.unlock();
+        }
+    }
+
+    /**
+     * Método que escreve os registos pendentes em lotes, apagando os segmentos no fim
+     * (chamado com o bloqueio de descarga)
+     */
+    private void escreverPendentes() {
+        int n = this.porEscrever.size();
+        List<Registo> rejeitadosDescarga = new ArrayList<>();
+        for (int i = 0; i < n; i += this.tamanhoLote) {
+            List<Registo> lote = this.porEscrever.subList(i, Math.min(n, i + this.tamanhoLote));
+            if (!this.escreverLote(lote, rejeitadosDescarga)) {
+                return;
+            }
+        }
+        if (!rejeitadosDescarga.isEmpty() && !this.guardarRejeitados(rejeitadosDescarga)) {
+            // Sem o segmento dos rejeitados os segmentos atuais são mantidos
+            return;
+        }
+        this.porEscrever.clear();
+        this.vagas.release(this.vagasOcupadas);
+        this.vagasOcupadas = 0;
+        for (Path segmento : this.segmentos) {
+            try {
+                Files.deleteIfExists(segmento);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        this.segmentos.clear();
+    }
+
+    /**
+     * Método que guarda os registos rejeitados num novo segmento, que não é apagado nesta execução
+     * e é reaplicado no próximo arranque (chamado com o bloqueio de descarga)
+     *
+     * @param registos Registos rejeitados
+     * @return true se o segmento foi escrito
+     */
+    private boolean guardarRejeitados(List<Registo> registos) {
+        StringBuilder sb = new StringBuilder();
+        for (Registo r : registos) {
+            sb.append(serializar(r));
+        }
+        Path segmento;
+        synchronized (this.diario) {
+            segmento = this.proximoSegmento();
+        }
+        try (FileChannel c = FileChannel.open(segmento, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                c.write(buf);
+            }
+            c.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        System.err.println("[EatHub] " + registos.size() + " registo(s) da escrita diferida rejeitado(s) pela base de dados, guardado(s) em "
+                           + segmento + " para nova tentativa no próximo arranque.");
+        return true;
+    }
+
+    /**
+     * Método que escreve um lote numa única transação. Se a transação for rejeitada, os registos são
+     * escritos um a um e os que continuarem a ser rejeitados são reportados e acrescentados a rejeitados.
+     *
+     * @param lote Registos a escrever
+     * @param rejeitados Lista onde são acrescentados os registos rejeitados
+     * @return true se o lote foi tratado, false se a base de dados estiver indisponível
+     */
+    private boolean escreverLote(List<Registo> lote, List<Registo> rejeitados) {
+        try (Connection conn = DAOconfig.getConnectionIsolada()) {
+            conn.setAutoCommit(false);
+            try {
+                this.aplicar(conn, lote);
+                conn.commit();
+                this.escritos += lote.size();
+                this.lotes++;
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                if (!conn.isValid(1)) {
+                    throw e;
+                }
+                e.printStackTrace();
+            }
+
+            // Lote rejeitado: escrever registo a registo, guardando os inválidos
+            for (Registo r : lote) {
+                try {
+                    this.aplicar(conn, List.of(r));
+                    conn.commit();
+                    this.escritos++;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    if (!conn.isValid(1)) {
+                        throw e;
+                    }
+                    System.err.println("[EatHub] Registo rejeitado pela base de dados: " + serializar(r).trim()
+                                       + " (" + e.getMessage() + ")");
+                    rejeitados.add(r);
+                    this.rejeitados++;
+                }
+            }
+            this.lotes++;
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Método que insere os registos de um lote, agrupados por tipo
+     *
+     * @param conn Conexão (com a transação) a utilizar
+     * @param lote Registos a inserir
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private void aplicar(Connection conn, List<Registo> lote) throws SQLException {
+        List<String[]> historicos = new ArrayList<>();
+        List<String[]> taloes = new ArrayList<>();
+        List<String[]> faturas = new ArrayList<>();
+        for (Registo r : lote) {
+            switch (r.tipo) {
+                case HISTORICO: historicos.add(r.campos); break;
+                case TALAO: taloes.add(r.campos); break;
+                case FATURA: faturas.add(r.campos); break;
+            }
+        }
+        if (!taloes.isEmpty()) {
+            TalaoDAO.getInstance().inserirLote(conn, taloes);
+        }
+        if (!faturas.isEmpty()) {
+            FaturaDAO.getInstance().inserirLote(conn, faturas);
+        }
+        if (!historicos.isEmpty()) {
+            HistoricoDAO.getInstance().inserirLote(conn, historicos);
+        }
+    }
+
+    /**
+     * Método que lê os segmentos e o diário deixados por uma execução anterior para porEscrever
+     * (chamado com o bloqueio de descarga)
+     */
+    private void recuperar() {
+        Path dir = this.ficheiro.toAbsolutePath().getParent();
+        String prefixo = this.ficheiro.getFileName().toString() + ".";
+        TreeMap<Long, Path> encontrados = new TreeMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, prefixo + "*")) {
+            for (Path p : ds) {
+                String sufixo = p.getFileName().toString().substring(prefixo.length());
+                if (sufixo.matches("[0-9]+")) {
+                    encontrados.put(Long.parseLong(sufixo), p);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.ultimoSegmento = encontrados.isEmpty() ? 0 : encontrados.lastKey();
+
+        if (Files.exists(this.ficheiro)) {
+            try {
+                Path segmento = this.proximoSegmento();
+                Files.move(this.ficheiro, segmento, StandardCopyOption.ATOMIC_MOVE);
+                encontrados.put(this.ultimoSegmento, segmento);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        for (Path segmento : encontrados.values()) {
+            try (BufferedReader br = Files.newBufferedReader(segmento, StandardCharsets.UTF_8)) {
+                String linha;
+                while ((linha = br.readLine()) != null) {
+                    Registo r = desserializar(linha);
+                    if (r != null) {
+                        this.porEscrever.add(r);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.segmentos.add(segmento);
+        }
+    }
+
+    /**
+     * Método que fecha o diário atual num segmento numerado e abre um diário vazio
+     * (chamado com o bloqueio do diário)
+     *
+     * @return Caminho do segmento criado
+     */
+    private Path fecharSegmento() {
+        try {
+            this.canal.close();
+            Path segmento = this.proximoSegmento();
+            Files.move(this.ficheiro, segmento, StandardCopyOption.ATOMIC_MOVE);
+            this.canal = this.abrirDiario();
+            this.diarioComRegistos = false;
+            return segmento;
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /**
+     * Método que devolve o caminho do próximo segmento
+     *
+     * @return Caminho do próximo segmento
+     */
+    private Path proximoSegmento() {
+        this.ultimoSegmento++;
+        return this.ficheiro.resolveSibling(this.ficheiro.getFileName().toString() + "." + this.ultimoSegmento);
+    }
+
+    /**
+     * Método que abre (criando se necessário) o diário atual para acrescentar registos
+     *
+     * @return Canal do diário
+     */
+    private FileChannel abrirDiario() {
+        try {
+            return FileChannel.open(this.ficheiro, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /**
+     * Método que converte um registo numa linha do diário
+     *
+     * @param r Registo a converter
+     * @return Linha do diário (terminada em '\n')
+     */
+    private static String serializar(Registo r) {
+        StringBuilder sb = new StringBuilder(r.tipo.name());
+        for (String campo : r.campos) {
+            sb.append(SEPARADOR).append(campo);
+        }
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * Método que converte uma linha do diário num registo
+     *
+     * @param linha Linha do diário
+     * @return Registo lido, ou null se a linha estiver incompleta (escrita interrompida)
+     */
+    private static Registo desserializar(String linha) {
+        String[] partes = linha.split(String.valueOf(SEPARADOR), -1);
+        try {
+            Tipo tipo = Tipo.valueOf(partes[0]);
+            int esperados = tipo == Tipo.FATURA ? 5 : tipo == Tipo.HISTORICO ? 4 : 2;
+            if (partes.length != esperados + 1) {
+                return null;
+            }
+            String[] campos = new String[esperados];
+            System.arraycopy(partes, 1, campos, 0, esperados);
+            return new Registo(tipo, campos);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
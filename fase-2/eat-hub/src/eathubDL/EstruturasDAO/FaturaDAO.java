@@ -1,18 +1,25 @@
 package eathubDL.EstruturasDAO;
 
+import eathubDL.CursorBD;
 import eathubDL.DAOconfig;
+import eathubDL.UnidadeTrabalho;
+import eathubDL.SequenciaIds;
+import eathubLN.Pagina;
 import eathubLN.ssComercial.Fatura;
+import eathubLN.ssPedidos.Pedido;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * DAO responsável pela gestão de faturas.
@@ -25,29 +32,53 @@ import java.util.Set;
  */
 public class FaturaDAO implements Map<String, Fatura> {
 
-    /** ID máximo guardado */
-    private int maxId;
+    /** Sequência que gera os IDs */
+    private final SequenciaIds ids;
 
     /** Instância única da classe */
     private static FaturaDAO singleton = null;
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT * FROM Fatura WHERE idFatura=?";
+    private static final String SQL_DELETE = "DELETE FROM Fatura WHERE idFatura=?";
+    // Inserção idempotente (um registo reaplicado pela escrita diferida é ignorado)
+    private static final String SQL_INSERT_SE_AUSENTE =
+        "INSERT INTO Fatura (idFatura, idPagamento_FK, valor, contribuinte, idPedido_FK) VALUES (?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE idFatura=idFatura";
+
+    // Leitura em cursor: faturas (com o respetivo pedido) e linhas dos pedidos, ordenadas pelo ID do pedido
+    private static final String SQL_CURSOR =
+        "SELECT f.idFatura, f.idPagamento_FK, f.valor, f.contribuinte, f.idPedido_FK, p.* FROM Fatura AS f " +
+        "LEFT JOIN Pedido AS p ON p.idPedido = f.idPedido_FK ORDER BY f.idPedido_FK";
+    private static final String SQL_CURSOR_MENUS =
+        "SELECT idPedido_FK, idM_FK, quantidade FROM MenuPedido " +
+        "WHERE idPedido_FK IN (SELECT idPedido_FK FROM Fatura) ORDER BY idPedido_FK";
+    private static final String SQL_CURSOR_PROPOSTAS =
+        "SELECT idPedido_FK, idProposta_FK, quantidade FROM PropostaPedido " +
+        "WHERE idPedido_FK IN (SELECT idPedido_FK FROM Fatura) ORDER BY idPedido_FK";
+
+    // Listagem paginada (por ID da fatura), com o pedido na mesma consulta (as linhas são lidas pelo PedidoDAO)
+    private static final String SQL_PAGINA =
+        "SELECT f.idFatura, f.idPagamento_FK, f.valor, f.contribuinte, f.idPedido_FK, p.* " +
+        "FROM Fatura AS f LEFT JOIN Pedido AS p ON p.idPedido = f.idPedido_FK " +
+        "WHERE f.idFatura > ? ORDER BY f.idFatura LIMIT ?";
     
     /**
-     * Construtor privado para evitar instanciação externa
-     * 
-     * Inicializa o maxId com o valor máximo presente na base de dados
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, FaturaDAOMemoria)
      */
-    private FaturaDAO() {
-        this.maxId = loadMaxIdFromDatabase();
+    FaturaDAO() {
+        this.ids = new SequenciaIds("Fatura", "FAT", "Fatura", "idFatura", DAOconfig.BLOCO_IDS);
     }
 
     /**
-     * Método que devolve a instância única da classe FaturaDAO
+     * Método que devolve a instância única da classe FaturaDAO (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe FaturaDAO
      */
-    public static FaturaDAO getInstance() {
+    public static synchronized FaturaDAO getInstance() {
         if (singleton == null) {
-            singleton = new FaturaDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new FaturaDAOMemoria() : new FaturaDAO();
         }
         return singleton;
     }
@@ -58,31 +89,51 @@ public class FaturaDAO implements Map<String, Fatura> {
      * @return Novo ID gerado
      */
     public String generateNewId() {
-        this.maxId++;
-        return "FAT" + (maxId);
+        return this.ids.proximoId();
     }
-    
-    /**
-     * Método que carrega o ID máximo presente na base de dados
+
+    /** 
+     * Método que acrescenta uma nova fatura (sem verificar se já existe). Com a escrita diferida ativa
+     * (e fora de uma unidade de trabalho) a fatura é entregue à fila de escrita; caso contrário é inserida
+     * de imediato.
      * 
-     * @return ID máximo presente na base de dados
+     * @param value Fatura a acrescentar
      */
-    private int loadMaxIdFromDatabase() {
-        int max = 0;
-        for (String id : this.keySet()) {
-            if (id.startsWith("FAT")) {
-                try {
-                    int num = Integer.parseInt(id.substring(3));
-                    if (num > max) {
-                        max = num;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora IDs com formato inválido
-                }
+    public void adicionar(Fatura value) {
+        String[] campos = { value.getIdFatura(), value.getIdPagamento(), Double.toString(value.getValor()),
+                            Integer.toString(value.getNrContribuinte()), value.getPedido().getCodPedido() };
+        EscritaDiferida escrita = EscritaDiferida.getInstance();
+        if (escrita.isAtiva() && !UnidadeTrabalho.isAtiva()) {
+            escrita.registar(EscritaDiferida.Tipo.FATURA, campos);
+            return;
+        }
+        try (Connection conn = DAOconfig.getConnection()) {
+            this.inserirLote(conn, List.<String[]>of(campos));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /** 
+     * Método que insere um lote de faturas numa única ida à base de dados
+     * 
+     * @param conn Conexão a utilizar
+     * @param linhas Valores (idFatura, idPagamento, valor, contribuinte, idPedido) de cada fatura
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    void inserirLote(Connection conn, List<String[]> linhas) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_INSERT_SE_AUSENTE)) {
+            for (String[] campos : linhas) {
+                pstm.setString(1, campos[0]);
+                pstm.setString(2, campos[1]);
+                pstm.setDouble(3, Double.parseDouble(campos[2]));
+                pstm.setInt(4, Integer.parseInt(campos[3]));
+                pstm.setString(5, campos[4]);
+                pstm.addBatch();
             }
+            pstm.executeBatch();
         }
-        
-        return max;
     }
     
     // Implementação dos métodos obrigatórios de Map
@@ -95,7 +146,7 @@ public class FaturaDAO implements Map<String, Fatura> {
     @Override
     public int size() {
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Fatura")) {
             if(rs.next()) {
@@ -129,7 +180,7 @@ public class FaturaDAO implements Map<String, Fatura> {
     @Override
     public boolean containsKey(Object key) {
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             PreparedStatement pstm = conn.prepareStatement("SELECT IdFatura FROM Fatura WHERE IdFatura=?")) {
             pstm.setString(1, key.toString());
             try (ResultSet rs = pstm.executeQuery()) {
@@ -164,18 +215,20 @@ public class FaturaDAO implements Map<String, Fatura> {
     @Override
     public Fatura get(Object key) {
         Fatura novo = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Fatura WHERE idFatura='" + key.toString() + "'")) {
-            if (rs.next()) {
-                String idFatura = rs.getString("idFatura");
-                String idPagamento = rs.getString("idPagamento_FK");
-                double valor = rs.getDouble("valor");
-                int contribuinte = rs.getInt("contribuinte");
-                String idPedido = rs.getString("idPedido_FK");
-                
-                PedidoDAO pedidoDAO = PedidoDAO.getInstance();
-                novo = new Fatura(idFatura, idPagamento, pedidoDAO.get(idPedido), valor, contribuinte);
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
+            pstm.setString(1, key.toString());
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (rs.next()) {
+                    String idFatura = rs.getString("idFatura");
+                    String idPagamento = rs.getString("idPagamento_FK");
+                    double valor = rs.getDouble("valor");
+                    int contribuinte = rs.getInt("contribuinte");
+                    String idPedido = rs.getString("idPedido_FK");
+                    
+                    PedidoDAO pedidoDAO = PedidoDAO.getInstance();
+                    novo = new Fatura(idFatura, idPagamento, pedidoDAO.get(idPedido), valor, contribuinte);
+                }
             }
         }
         catch (Exception e) {
@@ -197,7 +250,7 @@ public class FaturaDAO implements Map<String, Fatura> {
     @Override
     public Fatura put(String key, Fatura value) {
         Fatura res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Verificar se já existe
             res = this.get(key);
             
@@ -237,10 +290,12 @@ public class FaturaDAO implements Map<String, Fatura> {
      */
     @Override
     public Fatura remove(Object key) {
+        EscritaDiferida.getInstance().sincronizar();
         Fatura t = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            stm.executeUpdate("DELETE FROM Fatura WHERE idFatura='" + key.toString() + "'");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_DELETE)) {
+            pstm.setString(1, key.toString());
+            pstm.executeUpdate();
             
         } catch (Exception e) {
             // Database error!
@@ -268,7 +323,8 @@ public class FaturaDAO implements Map<String, Fatura> {
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        EscritaDiferida.getInstance().sincronizar();
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
             stm.executeUpdate("DELETE FROM Fatura");
         } catch (SQLException e) {
@@ -285,7 +341,7 @@ public class FaturaDAO implements Map<String, Fatura> {
     @Override
     public Set<String> keySet() {
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT IdFatura FROM Fatura")) {
             while (rs.next()) {
@@ -307,7 +363,7 @@ public class FaturaDAO implements Map<String, Fatura> {
     public Collection<Fatura> values() {
         Fatura novo = null;
         Collection<Fatura> faturas = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Fatura")) {
             while (rs.next()) {
@@ -330,6 +386,52 @@ public class FaturaDAO implements Map<String, Fatura> {
         return faturas;
     }
     
+    /** 
+     * Método que devolve as faturas lidas em cursor, sem carregar a tabela inteira em memória.
+     * O Stream deve ser fechado (ou consumido até ao fim) para devolver a conexão ao pool.
+     * 
+     * @return Stream das faturas
+     */
+    public Stream<Fatura> valuesStream() {
+        return CursorBD.abrirComConexao(SQL_CURSOR, conn -> {
+            CursorBD.LeitorLinha<Pedido> pedidos = PedidoDAO.getInstance().leitorPedidos(conn, SQL_CURSOR_MENUS, SQL_CURSOR_PROPOSTAS);
+            return rs -> new Fatura(rs.getString("idFatura"), rs.getString("idPagamento_FK"),
+                                    pedidos.ler(rs), rs.getDouble("valor"), rs.getInt("contribuinte"));
+        }).stream();
+    }
+
+    /** 
+     * Método que devolve uma página de faturas, por ordem de ID (os pedidos na mesma consulta e as suas linhas em duas consultas)
+     * 
+     * @param depoisDe ID da última fatura da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de faturas na página
+     * @return Página de faturas
+     */
+    public Pagina<Fatura> pagina(String depoisDe, int tamanho) {
+        List<Fatura> lidas = new ArrayList<>();
+        PedidoDAO pedidoDAO = PedidoDAO.getInstance();
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_PAGINA)) {
+            pstm.setString(1, depoisDe != null ? depoisDe : "");
+            pstm.setInt(2, tamanho + 1);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    lidas.add(new Fatura(rs.getString("idFatura"), rs.getString("idPagamento_FK"),
+                                         pedidoDAO.lerPedidoSemLinhas(rs), rs.getDouble("valor"), rs.getInt("contribuinte")));
+                }
+            }
+            List<Pedido> pedidos = new ArrayList<>();
+            for (Fatura f : lidas) {
+                pedidos.add(f.getPedido());
+            }
+            pedidoDAO.carregarLinhasPedidos(conn, pedidos);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        return Pagina.de(lidas, tamanho, Fatura::getIdFatura);
+    }
+
     /** 
      * Método que devolve o conjunto de entradas (ID, Fatura) na base de dados
      * 
@@ -339,7 +441,7 @@ public class FaturaDAO implements Map<String, Fatura> {
     public Set<Entry<String, Fatura>> entrySet() {
         Fatura novo = null;
         Set<Entry<String, Fatura>> faturas = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Fatura")) {
             while (rs.next()) {
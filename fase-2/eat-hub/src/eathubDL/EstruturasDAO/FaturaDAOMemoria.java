@@ -0,0 +1,212 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubDL.BaseDadosMemoria.LinhaFatura;
+import eathubLN.Pagina;
+import eathubLN.ssComercial.Fatura;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Implementação em memória do FaturaDAO, sobre a tabela Fatura da BaseDadosMemoria.
+ */
+class FaturaDAOMemoria extends FaturaDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar FaturaDAO.getInstance)
+     */
+    FaturaDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que constrói uma fatura a partir de uma linha da tabela em memória
+     *
+     * @param linha Linha da tabela Fatura
+     * @return Fatura, ou null se a linha for null
+     */
+    private Fatura lerFatura(LinhaFatura linha) {
+        if (linha == null) {
+            return null;
+        }
+        return new Fatura(linha.idFatura, linha.idPagamento, PedidoDAOMemoria.lerPedido(this.bd, linha.idPedido),
+                          linha.valor, linha.contribuinte);
+    }
+
+    /**
+     * Método que converte uma fatura numa linha da tabela em memória
+     *
+     * @param value Fatura
+     * @return Linha da tabela Fatura
+     */
+    private static LinhaFatura linha(Fatura value) {
+        return new LinhaFatura(value.getIdFatura(), value.getIdPagamento(), value.getValor(),
+                               value.getNrContribuinte(), value.getPedido().getCodPedido());
+    }
+
+    /**
+     * Método que gera um novo ID único para uma fatura
+     *
+     * @return Novo ID único para uma fatura
+     */
+    @Override
+    public String generateNewId() {
+        return "FAT" + this.bd.proximoNumero("Fatura");
+    }
+
+    /**
+     * Método que acrescenta uma nova fatura, se ainda não existir
+     *
+     * @param value Fatura a acrescentar
+     */
+    @Override
+    public void adicionar(Fatura value) {
+        LinhaFatura nova = linha(value);
+        this.bd.escrever(() -> {
+            if (!this.bd.faturas.contem(nova.idFatura)) {
+                this.bd.faturas.inserir(nova.idFatura, nova);
+            }
+            return null;
+        });
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de faturas
+     *
+     * @return Número de faturas
+     */
+    @Override
+    public int size() {
+        return this.bd.faturas.tamanho();
+    }
+
+    /**
+     * Método que verifica se existe uma fatura com o ID dado
+     *
+     * @param key ID da fatura
+     * @return true se existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.bd.faturas.contem(key.toString());
+    }
+
+    /**
+     * Método que devolve a fatura com o ID dado
+     *
+     * @param key ID da fatura a procurar
+     * @return Fatura com o ID dado, ou null se não existir
+     */
+    @Override
+    public Fatura get(Object key) {
+        return this.lerFatura(this.bd.faturas.get(key.toString()));
+    }
+
+    /**
+     * Método que insere ou atualiza uma fatura
+     *
+     * @param key ID da fatura a inserir/atualizar
+     * @param value Fatura a inserir/atualizar
+     * @return Fatura anterior com o mesmo ID, ou null se não existia
+     */
+    @Override
+    public Fatura put(String key, Fatura value) {
+        return this.lerFatura(this.bd.faturas.gravar(value.getIdFatura(), linha(value)));
+    }
+
+    /**
+     * Método que remove uma fatura
+     *
+     * @param key ID da fatura a remover
+     * @return Fatura removida, ou null se não existia
+     */
+    @Override
+    public Fatura remove(Object key) {
+        return this.lerFatura(this.bd.faturas.remover(key.toString()));
+    }
+
+    /**
+     * Método que remove todas as faturas
+     */
+    @Override
+    public void clear() {
+        this.bd.faturas.limpar();
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs das faturas
+     *
+     * @return Conjunto de IDs das faturas
+     */
+    @Override
+    public Set<String> keySet() {
+        return new HashSet<>(this.bd.faturas.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de faturas
+     *
+     * @return Coleção de faturas
+     */
+    @Override
+    public Collection<Fatura> values() {
+        Collection<Fatura> faturas = new HashSet<>();
+        for (LinhaFatura linha : this.bd.faturas.linhas()) {
+            faturas.add(this.lerFatura(linha));
+        }
+        return faturas;
+    }
+
+    /**
+     * Método que devolve as faturas, por ordem de ID
+     *
+     * @return Stream das faturas
+     */
+    @Override
+    public Stream<Fatura> valuesStream() {
+        return this.bd.faturas.linhas().stream().map(this::lerFatura);
+    }
+
+    /**
+     * Método que devolve uma página de faturas, por ordem de ID
+     *
+     * @param depoisDe ID da última fatura da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de faturas na página
+     * @return Página de faturas
+     */
+    @Override
+    public Pagina<Fatura> pagina(String depoisDe, int tamanho) {
+        List<Fatura> lidas = new ArrayList<>();
+        for (LinhaFatura linha : this.bd.faturas.depoisDe(depoisDe)) {
+            if (lidas.size() > tamanho) {
+                break;
+            }
+            lidas.add(this.lerFatura(linha));
+        }
+        return Pagina.de(lidas, tamanho, Fatura::getIdFatura);
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (ID, Fatura)
+     *
+     * @return Conjunto de entradas (ID, Fatura)
+     */
+    @Override
+    public Set<Entry<String, Fatura>> entrySet() {
+        Set<Entry<String, Fatura>> faturas = new HashSet<>();
+        for (LinhaFatura linha : this.bd.faturas.linhas()) {
+            faturas.add(new AbstractMap.SimpleEntry<>(linha.idFatura, this.lerFatura(linha)));
+        }
+        return faturas;
+    }
+}
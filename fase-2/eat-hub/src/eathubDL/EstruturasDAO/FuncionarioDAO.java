@@ -1,12 +1,13 @@
 package eathubDL.EstruturasDAO;
 
 import eathubDL.DAOconfig;
+import eathubDL.SequenciaIds;
+import eathubLN.Pagina;
 import eathubLN.ssCadeia.ChefeRestaurante;
 import eathubLN.ssCadeia.Funcionario;
 import eathubLN.ssCadeia.Gestor;
 import eathubLN.ssCadeia.MensagemGestor;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -16,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,29 +32,40 @@ import java.util.Set;
  */
 public class FuncionarioDAO implements Map<String, Funcionario> {
     
-    /** ID máximo guardado */
-    private int maxId;
+    /** Sequência que gera os IDs */
+    private final SequenciaIds ids;
 
     /** Instância única da classe */
     private static FuncionarioDAO singleton = null;
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT * FROM Funcionario WHERE idFuncionario=?";
+    private static final String SQL_RESTAURANTE_FUNCIONARIO = "SELECT idRestaurante_FK FROM Funcionario WHERE idFuncionario=?";
+    private static final String SQL_IDS_FUNCIONARIOS_RESTAURANTE = "SELECT idFuncionario FROM Funcionario WHERE idRestaurante_FK=?";
+    private static final String SQL_LIMPAR_CHEFE = "UPDATE Restaurante SET idFuncionario_FK = NULL WHERE idFuncionario_FK=?";
+    private static final String SQL_DELETE_PASSWORD = "DELETE FROM Password WHERE idFuncionario_FK=?";
+    private static final String SQL_DELETE = "DELETE FROM Funcionario WHERE idFuncionario=?";
+    private static final String SQL_PAGINA =
+        "SELECT * FROM Funcionario WHERE idFuncionario > ? ORDER BY idFuncionario LIMIT ?";
+    private static final String SQL_PAGINA_RESTAURANTE =
+        "SELECT * FROM Funcionario WHERE idRestaurante_FK = ? AND idFuncionario > ? ORDER BY idFuncionario LIMIT ?";
     
     /** 
-     * Construtor privado para evitar instanciação externa
-     * 
-     * Inicializa o maxId com o valor máximo presente na base de dados
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, FuncionarioDAOMemoria)
      */
-    private FuncionarioDAO() {
-        this.maxId = loadMaxIdFromDatabase();
+    FuncionarioDAO() {
+        this.ids = new SequenciaIds("Funcionario", "F", "Funcionario", "idFuncionario", DAOconfig.BLOCO_IDS);
     }
 
     /** 
-     * Método que devolve a instância única da classe
+     * Método que devolve a instância única da classe (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe
      */
-    public static FuncionarioDAO getInstance() {
+    public static synchronized FuncionarioDAO getInstance() {
         if (singleton == null) {
-            singleton = new FuncionarioDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new FuncionarioDAOMemoria() : new FuncionarioDAO();
         }
         return singleton;
     }
@@ -63,33 +76,9 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      * @return Novo ID gerado
      */
     public String generateNewId() {
-        this.maxId++;
-        return "F" + (maxId);
+        return this.ids.proximoId();
     }
     
-    /** 
-     * Método que carrega o ID máximo presente na base de dados
-     * 
-     * @return ID máximo presente na base de dados
-     */
-    private int loadMaxIdFromDatabase() {
-        int max = 0;
-        for (String id : this.keySet()) {
-            if (id.startsWith("F")) {
-                try {
-                    int num = Integer.parseInt(id.substring(1));
-                    if (num > max) {
-                        max = num;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora IDs com formato inválido
-                }
-            }
-        }
-        
-        return max;
-    }
-
     /** 
      * Método que valida a password de um Funcionario
      * 
@@ -98,7 +87,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      * @return true se a password for válida, false caso contrário
      */
     public boolean validarPassword(String idFuncionario, String password) {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("SELECT codigo FROM Password WHERE idFuncionario_FK = ?")) {
             pstm.setString(1, idFuncionario);
             try (ResultSet rs = pstm.executeQuery()) {
@@ -120,7 +109,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      * @param password Password a associar
      */
     public void associarFuncionarioPassword(String idFuncionario, String password) {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("INSERT INTO Password (idFuncionario_FK, codigo) VALUES (?, ?)")) {
             pstm.setString(1, idFuncionario);
             pstm.setString(2, password);
@@ -143,7 +132,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
         
         // Só atualiza o restaurante se idRestaurante não for null ou vazio
         if (idRestaurante != null && !idRestaurante.trim().isEmpty()) {
-            try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+            try (Connection conn = DAOconfig.getConnection()) {
                 
                 try (PreparedStatement pstm = conn.prepareStatement("UPDATE Funcionario SET idRestaurante_FK=? WHERE idFuncionario=?")) {
                     pstm.setString(1, idRestaurante);
@@ -166,11 +155,13 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      */
     public String getRestauranteFuncionario(String idFuncionario) {
         String novo = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT idRestaurante_FK FROM Funcionario WHERE idFuncionario='" + idFuncionario + "'")) {
-            if(rs.next()) {
-                novo = rs.getString("idRestaurante_FK");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_RESTAURANTE_FUNCIONARIO)) {
+            pstm.setString(1, idFuncionario);
+            try (ResultSet rs = pstm.executeQuery()) {
+                if(rs.next()) {
+                    novo = rs.getString("idRestaurante_FK");
+                }
             }
         }
         catch (Exception e) {
@@ -207,13 +198,14 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      */
     public Collection<String> getIdsFuncionariosRestaurante(String idRestaurante) {
         Collection<String> codsFunc = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT idFuncionario FROM Funcionario WHERE idRestaurante_FK='" + idRestaurante + "'")) {
-
-            while(rs.next()) {
-                String codFunc = rs.getString("idFuncionario");
-                codsFunc.add(codFunc);
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_IDS_FUNCIONARIOS_RESTAURANTE)) {
+            pstm.setString(1, idRestaurante);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while(rs.next()) {
+                    String codFunc = rs.getString("idFuncionario");
+                    codsFunc.add(codFunc);
+                }
             }
             
         } catch (Exception e) {
@@ -231,7 +223,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      */
     public Gestor getGestor() {
         Gestor novo = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Funcionario WHERE tipo='Gestor'")) {
             if(rs.next()) {
@@ -259,7 +251,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      */
     public Collection<MensagemGestor> getMensagensGestor() {
         Collection<MensagemGestor> mensagens = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT conteudo, dataEnvio, idFuncionario_FK, idMensagem FROM MensagemGestor")) {
 
@@ -287,7 +279,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      * @return true se a mensagem foi enviada com sucesso
      */
     public boolean enviar_mensagem_gestor(String conteudo, String idGestor) {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("INSERT INTO MensagemGestor (conteudo, dataEnvio, idFuncionario_FK) VALUES (?, NOW(), ?)")) {
             pstm.setString(1, conteudo);
             pstm.setString(2, idGestor);
@@ -307,7 +299,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      */
     public MensagemGestor remover_mensagem_gestor(int idMensagem) {
         MensagemGestor t = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Primeiro obter a mensagem
             try (PreparedStatement pstm = conn.prepareStatement("SELECT * FROM MensagemGestor WHERE idMensagem=?")) {
                 pstm.setInt(1, idMensagem);
@@ -345,7 +337,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
     @Override
     public int size() {
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Funcionario")) {
             if(rs.next()) {
@@ -379,7 +371,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
     @Override
     public boolean containsKey(Object key) {
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("SELECT idFuncionario FROM Funcionario WHERE idFuncionario=?")) {
             pstm.setString(1, key.toString());
             try (ResultSet rs = pstm.executeQuery()) {
@@ -414,22 +406,24 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
     @Override
     public Funcionario get(Object key) {
         Funcionario novo = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Funcionario WHERE idFuncionario='" + key.toString() + "'")) {
-            if(rs.next()) {
-                String idFuncionario = rs.getString("idFuncionario");
-                String nome = rs.getString("nome");
-                String posto = rs.getString("posto");
-                String tarefa = rs.getString("tarefa");
-                String tipo = rs.getString("tipo");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
+            pstm.setString(1, key.toString());
+            try (ResultSet rs = pstm.executeQuery()) {
+                if(rs.next()) {
+                    String idFuncionario = rs.getString("idFuncionario");
+                    String nome = rs.getString("nome");
+                    String posto = rs.getString("posto");
+                    String tarefa = rs.getString("tarefa");
+                    String tipo = rs.getString("tipo");
 
-                if (tipo.equals("Gestor")) {
-                    novo = new Gestor(idFuncionario, nome, posto, tarefa);
-                } else if( tipo.equals("ChefeRestaurante")) {
-                    novo = new ChefeRestaurante(idFuncionario, nome, posto, tarefa);
-                } else {
-                    novo = new Funcionario(idFuncionario, nome, posto, tarefa);
+                    if (tipo.equals("Gestor")) {
+                        novo = new Gestor(idFuncionario, nome, posto, tarefa);
+                    } else if( tipo.equals("ChefeRestaurante")) {
+                        novo = new ChefeRestaurante(idFuncionario, nome, posto, tarefa);
+                    } else {
+                        novo = new Funcionario(idFuncionario, nome, posto, tarefa);
+                    }
                 }
             }
         }
@@ -451,7 +445,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
     @Override
     public Funcionario put(String key, Funcionario value) {///Não usar sozinho
         Funcionario res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Verificar se já existe
             res = this.get(key);
             
@@ -492,13 +486,21 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
     @Override
     public Funcionario remove(Object key) {
         Funcionario t = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
+        try (Connection conn = DAOconfig.getConnection()) {
             if (t instanceof ChefeRestaurante) {
-                stm.executeUpdate("UPDATE Restaurante SET idFuncionario_FK = NULL WHERE idFuncionario_FK='" + key.toString() + "'");
+                try (PreparedStatement pstm = conn.prepareStatement(SQL_LIMPAR_CHEFE)) {
+                    pstm.setString(1, key.toString());
+                    pstm.executeUpdate();
+                }
+            }
+            try (PreparedStatement pstm = conn.prepareStatement(SQL_DELETE_PASSWORD)) {
+                pstm.setString(1, key.toString());
+                pstm.executeUpdate();
+            }
+            try (PreparedStatement pstm = conn.prepareStatement(SQL_DELETE)) {
+                pstm.setString(1, key.toString());
+                pstm.executeUpdate();
             }
-            stm.executeUpdate("DELETE FROM Password WHERE idFuncionario_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM Funcionario WHERE idFuncionario='" + key.toString() + "'");
             
         } catch (Exception e) {
             // Database error!
@@ -526,7 +528,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
             stm.executeUpdate("DELETE FROM MensagemGestor");
             stm.executeUpdate("UPDATE Restaurante SET idFuncionario_FK = NULL");
@@ -545,7 +547,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
     @Override
     public Set<String> keySet() {
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT idFuncionario FROM Funcionario")) {
             while (rs.next()) {
@@ -567,7 +569,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
     public Collection<Funcionario> values() {
         Funcionario novo = null;
         Collection<Funcionario> funcs = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Funcionario")) {
             while (rs.next()) {
@@ -595,6 +597,58 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
         return funcs;
     }
     
+    /** 
+     * Método que devolve uma página de Funcionarios, por ordem de ID
+     * 
+     * @param depoisDe ID do último Funcionario da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de Funcionarios na página
+     * @param idRestaurante ID do restaurante, ou null para toda a cadeia
+     * @return Página de Funcionarios
+     */
+    public Pagina<Funcionario> pagina(String depoisDe, int tamanho, String idRestaurante) {
+        List<Funcionario> lidos = new ArrayList<>();
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(idRestaurante == null ? SQL_PAGINA : SQL_PAGINA_RESTAURANTE)) {
+            int i = 1;
+            if (idRestaurante != null) {
+                pstm.setString(i++, idRestaurante);
+            }
+            pstm.setString(i++, depoisDe != null ? depoisDe : "");
+            pstm.setInt(i, tamanho + 1);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    lidos.add(this.lerFuncionario(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        return Pagina.de(lidos, tamanho, Funcionario::getIDFunc);
+    }
+
+    /** 
+     * Método que constrói um Funcionario (Gestor, ChefeRestaurante ou Funcionario) a partir da linha atual
+     * 
+     * @param rs Resultado posicionado na linha do Funcionario
+     * @return Funcionario construído
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private Funcionario lerFuncionario(ResultSet rs) throws SQLException {
+        String idFuncionario = rs.getString("idFuncionario");
+        String nome = rs.getString("nome");
+        String posto = rs.getString("posto");
+        String tarefa = rs.getString("tarefa");
+        String tipo = rs.getString("tipo");
+
+        if (tipo.equals("Gestor")) {
+            return new Gestor(idFuncionario, nome, posto, tarefa);
+        } else if (tipo.equals("ChefeRestaurante")) {
+            return new ChefeRestaurante(idFuncionario, nome, posto, tarefa);
+        }
+        return new Funcionario(idFuncionario, nome, posto, tarefa);
+    }
+
     /** 
      * Método que devolve o conjunto de entradas (ID, Funcionario) na base de dados
      * 
@@ -604,7 +658,7 @@ public class FuncionarioDAO implements Map<String, Funcionario> {
     public Set<Entry<String, Funcionario>> entrySet() {
         Funcionario novo = null;
         Set<Entry<String, Funcionario>> funcs = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Funcionario")) {
             while (rs.next()) {
@@ -0,0 +1,386 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubDL.BaseDadosMemoria.LinhaFuncionario;
+import eathubDL.BaseDadosMemoria.LinhaMensagem;
+import eathubDL.BaseDadosMemoria.LinhaRestaurante;
+import eathubLN.Pagina;
+import eathubLN.ssCadeia.ChefeRestaurante;
+import eathubLN.ssCadeia.Funcionario;
+import eathubLN.ssCadeia.Gestor;
+import eathubLN.ssCadeia.MensagemGestor;
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implementação em memória do FuncionarioDAO, sobre as tabelas Funcionario, Password e
+ * MensagemGestor da BaseDadosMemoria.
+ */
+class FuncionarioDAOMemoria extends FuncionarioDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar FuncionarioDAO.getInstance)
+     */
+    FuncionarioDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que constrói um Funcionario (Gestor, ChefeRestaurante ou Funcionario) a partir de uma linha
+     *
+     * @param linha Linha da tabela Funcionario
+     * @return Funcionario construído, ou null se a linha for null
+     */
+    static Funcionario lerFuncionario(LinhaFuncionario linha) {
+        if (linha == null) {
+            return null;
+        }
+        if ("Gestor".equals(linha.tipo)) {
+            return new Gestor(linha.idFuncionario, linha.nome, linha.posto, linha.tarefa);
+        } else if ("ChefeRestaurante".equals(linha.tipo)) {
+            return new ChefeRestaurante(linha.idFuncionario, linha.nome, linha.posto, linha.tarefa);
+        }
+        return new Funcionario(linha.idFuncionario, linha.nome, linha.posto, linha.tarefa);
+    }
+
+    /**
+     * Método que devolve uma cópia da linha de um Funcionario com outro restaurante e tipo
+     *
+     * @param linha Linha da tabela Funcionario
+     * @param idRestaurante Novo ID do restaurante (pode ser null)
+     * @param tipo Novo tipo do Funcionario
+     * @return Nova linha
+     */
+    static LinhaFuncionario comRestaurante(LinhaFuncionario linha, String idRestaurante, String tipo) {
+        return new LinhaFuncionario(linha.idFuncionario, linha.nome, linha.posto, linha.tarefa, idRestaurante, tipo);
+    }
+
+    /**
+     * Método que constrói uma mensagem do gestor a partir de uma linha (a data é reduzida ao dia, como na coluna lida como DATE)
+     *
+     * @param linha Linha da tabela MensagemGestor
+     * @return Mensagem do gestor, ou null se a linha for null
+     */
+    private static MensagemGestor lerMensagem(LinhaMensagem linha) {
+        if (linha == null) {
+            return null;
+        }
+        return new MensagemGestor(linha.idMensagem, linha.conteudo, java.sql.Date.valueOf(linha.dataEnvio.toLocalDate()),
+                                  linha.idFuncionario);
+    }
+
+    /**
+     * Método que devolve a chave de uma mensagem (com zeros à esquerda, para manter a ordem numérica)
+     *
+     * @param idMensagem ID da mensagem
+     * @return Chave da mensagem
+     */
+    private static String chaveMensagem(int idMensagem) {
+        return String.format("%010d", idMensagem);
+    }
+
+    /**
+     * Método que gera um novo ID único para um Funcionario
+     *
+     * @return Novo ID único para um Funcionario
+     */
+    @Override
+    public String generateNewId() {
+        return "F" + this.bd.proximoNumero("Funcionario");
+    }
+
+    /**
+     * Método que valida a password de um Funcionario
+     *
+     * @param idFuncionario ID do Funcionario
+     * @param password Password a validar
+     * @return true se a password for válida, false caso contrário
+     */
+    @Override
+    public boolean validarPassword(String idFuncionario, String password) {
+        String guardada = this.bd.passwords.get(idFuncionario);
+        return guardada != null && guardada.equals(password);
+    }
+
+    /**
+     * Método que associa uma password a um Funcionario
+     *
+     * @param idFuncionario ID do Funcionario
+     * @param password Password a associar
+     */
+    @Override
+    public void associarFuncionarioPassword(String idFuncionario, String password) {
+        try {
+            this.bd.passwords.inserir(idFuncionario, password);
+        } catch (NullPointerException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Método que insere um Funcionario, atribuindo-o a um restaurante
+     *
+     * @param key ID do Funcionario a inserir
+     * @param value Funcionario a inserir
+     * @param idRestaurante ID do restaurante ao qual o Funcionario será atribuído
+     * @return Funcionario previamente associado ao ID, ou null se não existia
+     */
+    @Override
+    public Funcionario putCompleto(String key, Funcionario value, String idRestaurante) {
+        return this.bd.escrever(() -> {
+            Funcionario res = this.put(key, value);
+            if (idRestaurante != null && !idRestaurante.trim().isEmpty()) {
+                LinhaFuncionario linha = this.bd.funcionarios.get(value.getIDFunc());
+                this.bd.funcionarios.gravar(linha.idFuncionario, comRestaurante(linha, idRestaurante, linha.tipo));
+            }
+            return res;
+        });
+    }
+
+    /**
+     * Método que devolve o ID do restaurante associado a um Funcionario
+     *
+     * @param idFuncionario ID do Funcionario
+     * @return ID do restaurante associado ao Funcionario
+     */
+    @Override
+    public String getRestauranteFuncionario(String idFuncionario) {
+        LinhaFuncionario linha = this.bd.funcionarios.get(idFuncionario);
+        return linha != null ? linha.idRestaurante : null;
+    }
+
+    /**
+     * Método que devolve a coleção de IDs dos Funcionarios associados a um restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     * @return Coleção de IDs dos Funcionarios associados ao restaurante
+     */
+    @Override
+    public Collection<String> getIdsFuncionariosRestaurante(String idRestaurante) {
+        Collection<String> codsFunc = new ArrayList<>();
+        for (LinhaFuncionario linha : this.bd.funcionarios.linhas()) {
+            if (idRestaurante != null && idRestaurante.equals(linha.idRestaurante)) {
+                codsFunc.add(linha.idFuncionario);
+            }
+        }
+        return codsFunc;
+    }
+
+    /**
+     * Método que devolve o Gestor
+     *
+     * @return Gestor, ou null se não existir
+     */
+    @Override
+    public Gestor getGestor() {
+        for (LinhaFuncionario linha : this.bd.funcionarios.linhas()) {
+            if ("Gestor".equals(linha.tipo)) {
+                return (Gestor) lerFuncionario(linha);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Método que devolve a coleção de mensagens do gestor
+     *
+     * @return Coleção de mensagens do gestor
+     */
+    @Override
+    public Collection<MensagemGestor> getMensagensGestor() {
+        Collection<MensagemGestor> mensagens = new ArrayList<>();
+        for (LinhaMensagem linha : this.bd.mensagens.linhas()) {
+            mensagens.add(lerMensagem(linha));
+        }
+        return mensagens;
+    }
+
+    /**
+     * Método que envia uma mensagem para o gestor
+     *
+     * @param conteudo Conteúdo da mensagem a enviar
+     * @param idGestor ID do gestor a quem a mensagem será enviada
+     * @return true se a mensagem foi enviada com sucesso
+     */
+    @Override
+    public boolean enviar_mensagem_gestor(String conteudo, String idGestor) {
+        int id = (int) this.bd.proximoNumero("MensagemGestor");
+        this.bd.mensagens.inserir(chaveMensagem(id), new LinhaMensagem(id, conteudo, LocalDateTime.now(), idGestor));
+        return true;
+    }
+
+    /**
+     * Método que remove uma mensagem do gestor
+     *
+     * @param idMensagem ID da mensagem a remover
+     * @return MensagemGestor removida, ou null se não existia
+     */
+    @Override
+    public MensagemGestor remover_mensagem_gestor(int idMensagem) {
+        return lerMensagem(this.bd.mensagens.remover(chaveMensagem(idMensagem)));
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de Funcionarios
+     *
+     * @return Número de Funcionarios
+     */
+    @Override
+    public int size() {
+        return this.bd.funcionarios.tamanho();
+    }
+
+    /**
+     * Método que verifica se um determinado ID de Funcionario existe
+     *
+     * @param key ID do Funcionario
+     * @return true se o ID existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.bd.funcionarios.contem(key.toString());
+    }
+
+    /**
+     * Método que devolve um Funcionario
+     *
+     * @param key ID do Funcionario a devolver
+     * @return Funcionario correspondente ao ID, ou null se não existir
+     */
+    @Override
+    public Funcionario get(Object key) {
+        return lerFuncionario(this.bd.funcionarios.get(key.toString()));
+    }
+
+    /**
+     * Método que insere ou atualiza um Funcionario (fica sem restaurante, como no FuncionarioDAO)
+     *
+     * @param key ID do Funcionario a inserir
+     * @param value Funcionario a inserir
+     * @return Funcionario previamente associado ao ID, ou null se não existia
+     */
+    @Override
+    public Funcionario put(String key, Funcionario value) {
+        return this.bd.escrever(() -> {
+            Funcionario res = this.get(key);
+            LinhaFuncionario linha = new LinhaFuncionario(value.getIDFunc(), value.getNomeFunc(), value.getPostoFunc(),
+                                                          value.getTarefaFunc(), null, value.getTipoFunc());
+            if (res != null) {
+                this.bd.funcionarios.gravar(linha.idFuncionario, linha);
+            } else {
+                this.bd.funcionarios.inserir(linha.idFuncionario, linha);
+            }
+            return res;
+        });
+    }
+
+    /**
+     * Método que remove um Funcionario (e a sua password; se for chefe, os restaurantes ficam sem chefe)
+     *
+     * @param key ID do Funcionario a remover
+     * @return Funcionario removido, ou null se não existia
+     */
+    @Override
+    public Funcionario remove(Object key) {
+        String id = key.toString();
+        return this.bd.escrever(() -> {
+            Funcionario t = this.get(id);
+            if (t instanceof ChefeRestaurante) {
+                for (LinhaRestaurante r : this.bd.restaurantes.linhas()) {
+                    if (id.equals(r.idChefe)) {
+                        this.bd.restaurantes.gravar(r.idRestaurante, new LinhaRestaurante(r.idRestaurante, r.nome, null));
+                    }
+                }
+            }
+            this.bd.passwords.remover(id);
+            this.bd.funcionarios.remover(id);
+            return t;
+        });
+    }
+
+    /**
+     * Método que remove todos os Funcionarios (e as mensagens e passwords; os restaurantes ficam sem chefe)
+     */
+    @Override
+    public void clear() {
+        this.bd.escrever(() -> {
+            this.bd.mensagens.limpar();
+            for (LinhaRestaurante r : this.bd.restaurantes.linhas()) {
+                this.bd.restaurantes.gravar(r.idRestaurante, new LinhaRestaurante(r.idRestaurante, r.nome, null));
+            }
+            this.bd.passwords.limpar();
+            this.bd.funcionarios.limpar();
+            return null;
+        });
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs dos Funcionarios
+     *
+     * @return Conjunto de IDs dos Funcionarios
+     */
+    @Override
+    public Set<String> keySet() {
+        return new HashSet<>(this.bd.funcionarios.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de Funcionarios
+     *
+     * @return Coleção de Funcionarios
+     */
+    @Override
+    public Collection<Funcionario> values() {
+        Collection<Funcionario> funcs = new ArrayList<>();
+        for (LinhaFuncionario linha : this.bd.funcionarios.linhas()) {
+            funcs.add(lerFuncionario(linha));
+        }
+        return funcs;
+    }
+
+    /**
+     * Método que devolve uma página de Funcionarios, por ordem de ID
+     *
+     * @param depoisDe ID do último Funcionario da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de Funcionarios na página
+     * @param idRestaurante ID do restaurante, ou null para toda a cadeia
+     * @return Página de Funcionarios
+     */
+    @Override
+    public Pagina<Funcionario> pagina(String depoisDe, int tamanho, String idRestaurante) {
+        List<Funcionario> lidos = new ArrayList<>();
+        for (LinhaFuncionario linha : this.bd.funcionarios.depoisDe(depoisDe)) {
+            if (lidos.size() > tamanho) {
+                break;
+            }
+            if (idRestaurante == null || idRestaurante.equals(linha.idRestaurante)) {
+                lidos.add(lerFuncionario(linha));
+            }
+        }
+        return Pagina.de(lidos, tamanho, Funcionario::getIDFunc);
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (ID, Funcionario)
+     *
+     * @return Conjunto de entradas (ID, Funcionario)
+     */
+    @Override
+    public Set<Entry<String, Funcionario>> entrySet() {
+        Set<Entry<String, Funcionario>> funcs = new HashSet<>();
+        for (LinhaFuncionario linha : this.bd.funcionarios.linhas()) {
+            funcs.add(new AbstractMap.SimpleEntry<>(linha.idFuncionario, lerFuncionario(linha)));
+        }
+        return funcs;
+    }
+}
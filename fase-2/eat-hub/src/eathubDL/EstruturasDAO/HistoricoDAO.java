@@ -1,20 +1,32 @@
 package eathubDL.EstruturasDAO;
 
+import eathubDL.CursorBD;
 import eathubDL.DAOconfig;
+import eathubDL.UnidadeTrabalho;
+import eathubDL.SequenciaIds;
+import eathubLN.Pagina;
 import eathubLN.ssCadeia.Historico;
+import eathubLN.ssPedidos.Pedido;
 import java.sql.Connection;
 import java.sql.Date;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 import eathubLN.ssCadeia.Estatistica;
 
 /**
@@ -28,29 +40,155 @@ import eathubLN.ssCadeia.Estatistica;
  */
 public class HistoricoDAO implements Map<String, Historico> {
     
-    /** ID máximo guardado */
-    private int maxId;
+    /** Sequência que gera os IDs */
+    private final SequenciaIds ids;
 
     /** Instância única da classe */
     private static HistoricoDAO singleton = null;
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT * FROM Historico WHERE idHistorico=?";
+    private static final String SQL_HISTORICO_RESTAURANTE = "SELECT * FROM Historico WHERE idRestaurante_FK=?";
+    private static final String SQL_DELETE = "DELETE FROM Historico WHERE idHistorico=?";
+    private static final String SQL_MENUS_PEDIDO = "SELECT * FROM MenuPedido WHERE idPedido_FK=?";
+    private static final String SQL_PROPOSTAS_PEDIDO = "SELECT * FROM PropostaPedido WHERE idPedido_FK=?";
+    private static final String SQL_PRECO_INGREDIENTE = "SELECT preco FROM Ingrediente WHERE nome=?";
+    private static final String SQL_INGREDIENTES_PROPOSTA = "SELECT * FROM IngredienteProposta WHERE idProposta_FK=?";
+    private static final String SQL_PROPOSTAS_MENU = "SELECT * FROM PropostaMenu WHERE idM_FK=?";
+
+    // Estatísticas: as consultas somam as linhas da tabela de agregados diários
+    // (restaurante x dia), mantida incrementalmente sempre que um Historico é escrito
+    private static final String SQL_ESTATISTICAS_BASE =
+        "SELECT COALESCE(SUM(nPedidos), 0) AS numPedidos, COALESCE(SUM(nItens), 0) AS numItens, " +
+            "COALESCE(SUM(valorTotal), 0) AS valorTotal, COALESCE(SUM(valorGasto), 0) AS valorGasto, " +
+            "SUM(somaTempoEspera) / NULLIF(SUM(nTempoEspera), 0) AS tempoMedioEntrega, MIN(dia) AS dataInicio " +
+        "FROM EstatisticaDiaria ";
+    private static final String SQL_ESTATISTICAS_RESTAURANTE_DESDE = SQL_ESTATISTICAS_BASE + "WHERE idRestaurante_FK = ? AND dia >= ?";
+    private static final String SQL_ESTATISTICAS_RESTAURANTE = SQL_ESTATISTICAS_BASE + "WHERE idRestaurante_FK = ?";
+    private static final String SQL_ESTATISTICAS_CADEIA_DESDE = SQL_ESTATISTICAS_BASE + "WHERE dia >= ?";
+    private static final String SQL_ESTATISTICAS_CADEIA = SQL_ESTATISTICAS_BASE;
+
+    private static final String SQL_INSERT_ESTATISTICA_DIARIA =
+        "INSERT INTO EstatisticaDiaria (idRestaurante_FK, dia, nPedidos, nItens, valorTotal, valorGasto, somaTempoEspera, nTempoEspera) ";
+    private static final String SQL_SOMAR_ESTATISTICA_DIARIA =
+        "ON DUPLICATE KEY UPDATE nPedidos = nPedidos + VALUES(nPedidos), nItens = nItens + VALUES(nItens), " +
+            "valorTotal = valorTotal + VALUES(valorTotal), valorGasto = valorGasto + VALUES(valorGasto), " +
+            "somaTempoEspera = somaTempoEspera + VALUES(somaTempoEspera), nTempoEspera = nTempoEspera + VALUES(nTempoEspera)";
+    // Soma (sinal 1) ou subtrai (sinal -1) a contribuição de um Historico ao agregado do seu dia
+    private static final String SQL_ACUMULAR_ESTATISTICA_DIARIA = SQL_INSERT_ESTATISTICA_DIARIA +
+        "WITH sinal AS (SELECT CAST(? AS SIGNED) AS s), " +
+        consultaTotaisPedido(
+            "WHERE mp.idPedido_FK = (SELECT idPedido_FK FROM Historico WHERE idHistorico = ?) ",
+            "WHERE pp.idPedido_FK = (SELECT idPedido_FK FROM Historico WHERE idHistorico = ?) ") +
+        "SELECT h.idRestaurante_FK, DATE(h.dataFinalizacao), sinal.s, sinal.s * COALESCE(t.itens, 0), " +
+            "sinal.s * COALESCE(t.valor, 0), sinal.s * COALESCE(t.gasto, 0), " +
+            "sinal.s * COALESCE(p.tempoEspera, 0), sinal.s * (p.tempoEspera IS NOT NULL) " +
+        "FROM Historico AS h " +
+        "INNER JOIN Pedido AS p ON h.idPedido_FK = p.idPedido " +
+        "LEFT JOIN totaisPedido AS t ON t.idPedido = h.idPedido_FK " +
+        "CROSS JOIN sinal " +
+        "WHERE h.idHistorico = ? " +
+        SQL_SOMAR_ESTATISTICA_DIARIA;
+    private static final String SQL_RECONSTRUIR_ESTATISTICAS_DIARIAS = SQL_INSERT_ESTATISTICA_DIARIA +
+        "WITH " + consultaTotaisPedido("", "") +
+        "SELECT h.idRestaurante_FK, DATE(h.dataFinalizacao), COUNT(*), COALESCE(SUM(t.itens), 0), " +
+            "COALESCE(SUM(t.valor), 0), COALESCE(SUM(t.gasto), 0), COALESCE(SUM(p.tempoEspera), 0), COUNT(p.tempoEspera) " +
+        "FROM Historico AS h " +
+        "INNER JOIN Pedido AS p ON h.idPedido_FK = p.idPedido " +
+        "LEFT JOIN totaisPedido AS t ON t.idPedido = h.idPedido_FK " +
+        "GROUP BY h.idRestaurante_FK, DATE(h.dataFinalizacao)";
+    // Leitura em cursor: históricos (com o respetivo pedido) e linhas dos pedidos, ordenados pelo ID do pedido
+    private static final String SQL_CURSOR =
+        "SELECT h.idHistorico, h.idRestaurante_FK, h.dataFinalizacao, p.* FROM Historico AS h " +
+        "INNER JOIN Pedido AS p ON p.idPedido = h.idPedido_FK ";
+    private static final String SQL_CURSOR_CADEIA = SQL_CURSOR + "ORDER BY h.idPedido_FK";
+    private static final String SQL_CURSOR_RESTAURANTE = SQL_CURSOR + "WHERE h.idRestaurante_FK = ? ORDER BY h.idPedido_FK";
+    private static final String SQL_CURSOR_MENUS_CADEIA =
+        "SELECT idPedido_FK, idM_FK, quantidade FROM MenuPedido " +
+        "WHERE idPedido_FK IN (SELECT idPedido_FK FROM Historico) ORDER BY idPedido_FK";
+    private static final String SQL_CURSOR_PROPOSTAS_CADEIA =
+        "SELECT idPedido_FK, idProposta_FK, quantidade FROM PropostaPedido " +
+        "WHERE idPedido_FK IN (SELECT idPedido_FK FROM Historico) ORDER BY idPedido_FK";
+    private static final String SQL_CURSOR_MENUS_RESTAURANTE =
+        "SELECT idPedido_FK, idM_FK, quantidade FROM MenuPedido " +
+        "WHERE idPedido_FK IN (SELECT idPedido_FK FROM Historico WHERE idRestaurante_FK = ?) ORDER BY idPedido_FK";
+    private static final String SQL_CURSOR_PROPOSTAS_RESTAURANTE =
+        "SELECT idPedido_FK, idProposta_FK, quantidade FROM PropostaPedido " +
+        "WHERE idPedido_FK IN (SELECT idPedido_FK FROM Historico WHERE idRestaurante_FK = ?) ORDER BY idPedido_FK";
+
+    // Listagem paginada (por ID do histórico), com o pedido na mesma consulta (as linhas são lidas pelo PedidoDAO)
+    private static final String SQL_PAGINA =
+        "SELECT h.idHistorico, h.idRestaurante_FK, h.dataFinalizacao, p.* " +
+        "FROM Historico AS h INNER JOIN Pedido AS p ON p.idPedido = h.idPedido_FK WHERE h.idHistorico > ? ";
+    private static final String SQL_PAGINA_CADEIA = SQL_PAGINA + "ORDER BY h.idHistorico LIMIT ?";
+    private static final String SQL_PAGINA_CADEIA_DATA = SQL_PAGINA + "AND h.dataFinalizacao >= ? ORDER BY h.idHistorico LIMIT ?";
+    private static final String SQL_PAGINA_RESTAURANTE = SQL_PAGINA + "AND h.idRestaurante_FK = ? ORDER BY h.idHistorico LIMIT ?";
+    private static final String SQL_PAGINA_RESTAURANTE_DATA =
+        SQL_PAGINA + "AND h.idRestaurante_FK = ? AND h.dataFinalizacao >= ? ORDER BY h.idHistorico LIMIT ?";
+
+    // Inserção idempotente (um registo reaplicado pela escrita diferida é ignorado e não conta para o agregado)
+    private static final String SQL_INSERT_SE_AUSENTE =
+        "INSERT INTO Historico (idHistorico, idPedido_FK, idRestaurante_FK, dataFinalizacao) VALUES (?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE idHistorico=idHistorico";
+
+    private static final String SQL_LIMPAR_ESTATISTICAS_VAZIAS = "DELETE FROM EstatisticaDiaria WHERE nPedidos <= 0";
+    private static final String SQL_EXISTENTES = "SELECT idHistorico FROM Historico WHERE idHistorico IN (";
+    private static final String SQL_HISTORICOS_PEDIDO = "SELECT idHistorico FROM Historico WHERE idPedido_FK=?";
+
+    /**
+     * Método que constrói as expressões de tabela comuns que calculam os totais de cada pedido:
+     * custo de cada proposta (soma dos ingredientes), custo de cada menu, linhas do pedido com
+     * preço e custo unitários e, por fim, itens, valor e gasto por pedido
+     *
+     * @param filtroMenus Cláusula WHERE aplicada às linhas de menus (ou vazia)
+     * @param filtroPropostas Cláusula WHERE aplicada às linhas de propostas (ou vazia)
+     * @return Lista de CTEs, terminando em totaisPedido, sem a palavra-chave WITH
+     */
+    private static String consultaTotaisPedido(String filtroMenus, String filtroPropostas) {
+        return "custoProposta AS (" +
+                "SELECT ip.idProposta_FK AS idProposta, SUM(i.preco) AS custo " +
+                "FROM IngredienteProposta AS ip " +
+                "INNER JOIN Ingrediente AS i ON i.nome = ip.nomeIngrediente_FK " +
+                "GROUP BY ip.idProposta_FK" +
+            "), custoMenu AS (" +
+                "SELECT pm.idM_FK AS idMenu, SUM(cp.custo) AS custo " +
+                "FROM PropostaMenu AS pm " +
+                "INNER JOIN custoProposta AS cp ON cp.idProposta = pm.idProposta_FK " +
+                "GROUP BY pm.idM_FK" +
+            "), linhas AS (" +
+                "SELECT mp.idPedido_FK AS idPedido, mp.quantidade, COALESCE(m.precoTotal, 0) AS preco, COALESCE(cm.custo, 0) AS custo " +
+                "FROM MenuPedido AS mp " +
+                "LEFT JOIN Menu AS m ON m.idM = mp.idM_FK " +
+                "LEFT JOIN custoMenu AS cm ON cm.idMenu = mp.idM_FK " +
+                filtroMenus +
+                "UNION ALL " +
+                "SELECT pp.idPedido_FK, pp.quantidade, COALESCE(pr.preco, 0), COALESCE(cp.custo, 0) " +
+                "FROM PropostaPedido AS pp " +
+                "LEFT JOIN Proposta AS pr ON pr.idProposta = pp.idProposta_FK " +
+                "LEFT JOIN custoProposta AS cp ON cp.idProposta = pp.idProposta_FK " +
+                filtroPropostas +
+            "), totaisPedido AS (" +
+                "SELECT idPedido, SUM(quantidade) AS itens, SUM(quantidade * preco) AS valor, SUM(quantidade * custo) AS gasto " +
+                "FROM linhas GROUP BY idPedido" +
+            ") ";
+    }
     
     /** 
-     * Construtor privado para evitar instanciação externa
-     * 
-     * Inicializa o maxId com o maior ID existente na base de dados
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, HistoricoDAOMemoria)
      */
-    private HistoricoDAO() {
-        this.maxId = loadMaxIdFromDatabase();
+    HistoricoDAO() {
+        this.ids = new SequenciaIds("Historico", "H", "Historico", "idHistorico", DAOconfig.BLOCO_IDS);
     }
 
     /** 
-     * Método que devolve a instância única da classe
+     * Método que devolve a instância única da classe (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe
      */
-    public static HistoricoDAO getInstance() {
+    public static synchronized HistoricoDAO getInstance() {
         if (singleton == null) {
-            singleton = new HistoricoDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new HistoricoDAOMemoria() : new HistoricoDAO();
         }
         return singleton;
     }
@@ -61,33 +199,122 @@ public class HistoricoDAO implements Map<String, Historico> {
      * @return Novo ID único para um Historico
      */
     public String generateNewId() {
-        this.maxId++;
-        return "H" + (maxId);
+        return this.ids.proximoId();
     }
-    
+
     /** 
-     * Método que carrega o maior ID existente na base de dados
+     * Método que acrescenta um novo Historico, finalizado agora (sem verificar se já existe). Com a
+     * escrita diferida ativa (e fora de uma unidade de trabalho) o Historico é entregue à fila de escrita; caso contrário é inserido de imediato,
+     * juntamente com a sua contribuição para o agregado diário.
      * 
-     * @return Maior ID existente na base de dados
+     * @param value Historico a acrescentar
      */
-    private int loadMaxIdFromDatabase() {
-        int max = 0;
-        for (String id : this.keySet()) {
-            if (id.startsWith("H")) {
-                try {
-                    int num = Integer.parseInt(id.substring(1));
-                    if (num > max) {
-                        max = num;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora IDs com formato inválido
+    public void adicionar(Historico value) {
+        String[] campos = { value.getIdHistorico(), value.getPedido().getCodPedido(), value.getIdRestaurante(),
+                            Timestamp.valueOf(LocalDateTime.now()).toString() };
+        EscritaDiferida escrita = EscritaDiferida.getInstance();
+        if (escrita.isAtiva() && !UnidadeTrabalho.isAtiva()) {
+            escrita.registar(EscritaDiferida.Tipo.HISTORICO, campos);
+            return;
+        }
+        try (Connection conn = DAOconfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                this.inserirLote(conn, List.<String[]>of(campos));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /** 
+     * Método que insere um lote de Historicos e soma ao agregado diário os que forem realmente inseridos
+     * (deve ser chamado dentro de uma transação). Usa três idas à base de dados por lote: a consulta
+     * dos IDs já existentes, a inserção em batch e uma atualização do agregado por restaurante e dia.
+     * 
+     * @param conn Conexão (com a transação) a utilizar
+     * @param linhas Valores (idHistorico, idPedido, idRestaurante, dataFinalizacao) de cada Historico
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    void inserirLote(Connection conn, List<String[]> linhas) throws SQLException {
+        // Registos ainda não inseridos (um registo reaplicado pela escrita diferida é ignorado)
+        Map<String, String[]> novos = new LinkedHashMap<>();
+        for (String[] campos : linhas) {
+            novos.putIfAbsent(campos[0], campos);
+        }
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_EXISTENTES + marcadores(novos.size()) + ")")) {
+            int i = 1;
+            for (String idHistorico : novos.keySet()) {
+                pstm.setString(i++, idHistorico);
+            }
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    novos.remove(rs.getString("idHistorico"));
                 }
             }
         }
-        
-        return max;
+        if (novos.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_INSERT_SE_AUSENTE)) {
+            for (String[] campos : novos.values()) {
+                pstm.setString(1, campos[0]);
+                pstm.setString(2, campos[1]);
+                pstm.setString(3, campos[2]);
+                pstm.setTimestamp(4, Timestamp.valueOf(campos[3]));
+                pstm.addBatch();
+            }
+            pstm.executeBatch();
+        }
+
+        // Agregado diário: uma única atualização por lote, agrupada por restaurante e dia
+        Set<String> pedidos = new LinkedHashSet<>();
+        for (String[] campos : novos.values()) {
+            pedidos.add(campos[1]);
+        }
+        String filtroPedidos = marcadores(pedidos.size());
+        String sql = SQL_INSERT_ESTATISTICA_DIARIA +
+            "WITH " + consultaTotaisPedido("WHERE mp.idPedido_FK IN (" + filtroPedidos + ") ",
+                                           "WHERE pp.idPedido_FK IN (" + filtroPedidos + ") ") +
+            "SELECT h.idRestaurante_FK, DATE(h.dataFinalizacao), COUNT(*), COALESCE(SUM(t.itens), 0), " +
+                "COALESCE(SUM(t.valor), 0), COALESCE(SUM(t.gasto), 0), COALESCE(SUM(p.tempoEspera), 0), COUNT(p.tempoEspera) " +
+            "FROM Historico AS h " +
+            "INNER JOIN Pedido AS p ON h.idPedido_FK = p.idPedido " +
+            "LEFT JOIN totaisPedido AS t ON t.idPedido = h.idPedido_FK " +
+            "WHERE h.idHistorico IN (" + marcadores(novos.size()) + ") " +
+            "GROUP BY h.idRestaurante_FK, DATE(h.dataFinalizacao) " +
+            SQL_SOMAR_ESTATISTICA_DIARIA;
+        try (PreparedStatement pstm = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (String idPedido : pedidos) {
+                pstm.setString(i++, idPedido);
+            }
+            for (String idPedido : pedidos) {
+                pstm.setString(i++, idPedido);
+            }
+            for (String idHistorico : novos.keySet()) {
+                pstm.setString(i++, idHistorico);
+            }
+            pstm.executeUpdate();
+        }
     }
 
+    /** 
+     * Método que devolve a lista de marcadores de uma cláusula IN
+     * 
+     * @param n Número de marcadores
+     * @return Marcadores separados por vírgulas
+     */
+    private static String marcadores(int n) {
+        return String.join(", ", Collections.nCopies(n, "?"));
+    }
+    
     /** 
      * Método que devolve o número de itens individuais num pedido
      * 
@@ -97,19 +324,22 @@ public class HistoricoDAO implements Map<String, Historico> {
     public int getNItensPedido(String idPedido) {
         int nItens = 0;
 
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();) {
-
-            ResultSet rs = stm.executeQuery("SELECT * FROM MenuPedido WHERE idPedido_FK = '" + idPedido + "'");
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstmMenus = conn.prepareStatement(SQL_MENUS_PEDIDO);
+             PreparedStatement pstmPropostas = conn.prepareStatement(SQL_PROPOSTAS_PEDIDO)) {
 
-            while (rs.next()) {
-                nItens += rs.getInt("quantidade");
+            pstmMenus.setString(1, idPedido);
+            try (ResultSet rs = pstmMenus.executeQuery()) {
+                while (rs.next()) {
+                    nItens += rs.getInt("quantidade");
+                }
             }
 
-            ResultSet rs2 = stm.executeQuery("SELECT * FROM PropostaPedido WHERE idPedido_FK = '" + idPedido + "'");
-
-            while (rs2.next()) {
-                nItens += rs2.getInt("quantidade");
+            pstmPropostas.setString(1, idPedido);
+            try (ResultSet rs2 = pstmPropostas.executeQuery()) {
+                while (rs2.next()) {
+                    nItens += rs2.getInt("quantidade");
+                }
             }
 
         } catch (SQLException e) {
@@ -129,13 +359,14 @@ public class HistoricoDAO implements Map<String, Historico> {
     public double getValorIngrediente(String nomeIngrediente) {
         double valor = 0.0;
 
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();) {
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_PRECO_INGREDIENTE)) {
 
-            ResultSet rs = stm.executeQuery("SELECT preco FROM Ingrediente WHERE nome = '" + nomeIngrediente + "'");
-
-            if (rs.next()) {
-                valor = rs.getDouble("preco");
+            pstm.setString(1, nomeIngrediente);
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (rs.next()) {
+                    valor = rs.getDouble("preco");
+                }
             }
 
         } catch (SQLException e) {
@@ -155,14 +386,15 @@ public class HistoricoDAO implements Map<String, Historico> {
     public double getValorGastoProposta(String idProposta){
         double gasto = 0.0;
 
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();) {
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_INGREDIENTES_PROPOSTA)) {
 
-            ResultSet rs = stm.executeQuery("SELECT * FROM IngredienteProposta WHERE idProposta_FK = '" + idProposta + "'");
-
-            while (rs.next()) {
-                String nomeIngr = rs.getString("nomeIngrediente_FK");
-                gasto += this.getValorIngrediente(nomeIngr);
+            pstm.setString(1, idProposta);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    String nomeIngr = rs.getString("nomeIngrediente_FK");
+                    gasto += this.getValorIngrediente(nomeIngr);
+                }
             }
 
         } catch (SQLException e) {
@@ -183,14 +415,15 @@ public class HistoricoDAO implements Map<String, Historico> {
     public double getValorGastoMenu(String codMenu){
         double gasto = 0.0;
 
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();) {
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_PROPOSTAS_MENU)) {
 
-            ResultSet rs = stm.executeQuery("SELECT * FROM PropostaMenu WHERE idM_FK = '" + codMenu + "'");
-
-            while (rs.next()) {
-                String idProposta = rs.getString("idProposta_FK");
-                gasto += this.getValorGastoProposta(idProposta);
+            pstm.setString(1, codMenu);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    String idProposta = rs.getString("idProposta_FK");
+                    gasto += this.getValorGastoProposta(idProposta);
+                }
             }
 
         } catch (SQLException e) {
@@ -211,23 +444,26 @@ public class HistoricoDAO implements Map<String, Historico> {
     public double getValorGastoPedido(String idPedido) {
         double gasto = 0.0;
 
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();) {
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstmMenus = conn.prepareStatement(SQL_MENUS_PEDIDO);
+             PreparedStatement pstmPropostas = conn.prepareStatement(SQL_PROPOSTAS_PEDIDO)) {
 
-            ResultSet rs = stm.executeQuery("SELECT * FROM MenuPedido WHERE idPedido_FK = '" + idPedido + "'");
-
-            while (rs.next()) {
-                String codMenu = rs.getString("idM_FK");
-                int quantidade = rs.getInt("quantidade");
-                gasto += this.getValorGastoMenu(codMenu) * quantidade;
+            pstmMenus.setString(1, idPedido);
+            try (ResultSet rs = pstmMenus.executeQuery()) {
+                while (rs.next()) {
+                    String codMenu = rs.getString("idM_FK");
+                    int quantidade = rs.getInt("quantidade");
+                    gasto += this.getValorGastoMenu(codMenu) * quantidade;
+                }
             }
 
-            ResultSet rs2 = stm.executeQuery("SELECT * FROM PropostaPedido WHERE idPedido_FK = '" + idPedido + "'");
-
-            while (rs2.next()) {
-                String idProposta = rs2.getString("idProposta_FK");
-                int quantidade = rs2.getInt("quantidade");
-                gasto += this.getValorGastoProposta(idProposta) * quantidade;
+            pstmPropostas.setString(1, idPedido);
+            try (ResultSet rs2 = pstmPropostas.executeQuery()) {
+                while (rs2.next()) {
+                    String idProposta = rs2.getString("idProposta_FK");
+                    int quantidade = rs2.getInt("quantidade");
+                    gasto += this.getValorGastoProposta(idProposta) * quantidade;
+                }
             }
 
         } catch (SQLException e) {
@@ -248,48 +484,8 @@ public class HistoricoDAO implements Map<String, Historico> {
     public Estatistica calcularEstatisticasRestaurante(String idRestaurante, LocalDate dataLimiteMin) {
         if (dataLimiteMin == null) {
             return this.getEstatisticasFullRestaurante(idRestaurante);
-        } else {
-
-            int numeroPedidosVendidos = 0;
-            double lucro = 0.0;
-            int numeroItensVendidos = 0;
-            double tempoMedioEntrega = 0.0;
-
-            double valorTotal = 0.0;
-            double valorGasto = 0.0;
-
-            try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-                 Statement stm = conn.createStatement();) {
-
-                ResultSet rs = stm.executeQuery("SELECT COUNT(*) AS numPedidos, AVG(p.tempoEspera) AS tempoMedioEntrega " +
-                     "FROM Historico AS h " +
-                     "INNER JOIN Pedido AS p ON h.idPedido_FK = p.idPedido " +
-                     "WHERE h.idRestaurante_FK = '" + idRestaurante + "' AND h.dataFinalizacao >= '" + Date.valueOf(dataLimiteMin) + "'");
-
-                if (rs.next()) {
-                    numeroPedidosVendidos = rs.getInt("numPedidos");
-                    tempoMedioEntrega = rs.getDouble("tempoMedioEntrega");
-                }
-
-                rs = stm.executeQuery("SELECT * FROM Historico " +
-                     "WHERE idRestaurante_FK = '" + idRestaurante + "' AND dataFinalizacao >= '" + Date.valueOf(dataLimiteMin) + "'");
-
-                while (rs.next()) {
-                    String idPedido = rs.getString("idPedido_FK");
-                    valorTotal += PedidoDAO.getInstance().get(idPedido).calculaValorTotalPedido();
-                    numeroItensVendidos += this.getNItensPedido(idPedido);
-                    valorGasto += this.getValorGastoPedido(idPedido);
-                }
-
-                lucro = valorTotal - valorGasto;
-                if (lucro < 0) lucro = 0.0;
-                return new Estatistica(dataLimiteMin, LocalDate.now(), lucro, numeroPedidosVendidos, numeroItensVendidos, tempoMedioEntrega);
-
-            } catch (SQLException e) {
-                e.printStackTrace();
-                throw new NullPointerException(e.getMessage());
-            }
         }
+        return this.calcularEstatisticas(SQL_ESTATISTICAS_RESTAURANTE_DESDE, idRestaurante, dataLimiteMin);
     }
 
     /** 
@@ -299,162 +495,250 @@ public class HistoricoDAO implements Map<String, Historico> {
      * @return Estatísticas completas do restaurante
      */
     public Estatistica getEstatisticasFullRestaurante(String idRestaurante) {
+        return this.calcularEstatisticas(SQL_ESTATISTICAS_RESTAURANTE, idRestaurante, null);
+    }
+
+    /** 
+     * Método que calcula as estatísticas de toda a cadeia num determinado período
+     * 
+     * @param dataLimiteMin Data limite mínima para o cálculo das estatísticas
+     * @return Estatísticas da cadeia no período especificado
+     */
+    public Estatistica calculaEstatisticasCadeia(LocalDate dataLimiteMin) {
+        if (dataLimiteMin == null) {
+            return this.getEstatisticasFullCadeia();
+        }
+        return this.calcularEstatisticas(SQL_ESTATISTICAS_CADEIA_DESDE, null, dataLimiteMin);
+    }
+
+    /** 
+     * Método que calcula as estatísticas completas de toda a cadeia
+     * 
+     * @return Estatísticas completas da cadeia
+     */
+    public Estatistica getEstatisticasFullCadeia() {
+        return this.calcularEstatisticas(SQL_ESTATISTICAS_CADEIA, null, null);
+    }
+
+    /** 
+     * Método que calcula as estatísticas somando os agregados diários: número de pedidos,
+     * tempo médio, itens vendidos, valor faturado e valor gasto em ingredientes
+     * 
+     * @param sql Consulta agregada (com os filtros correspondentes aos parâmetros não nulos)
+     * @param idRestaurante ID do restaurante, ou null para toda a cadeia
+     * @param dataLimiteMin Data limite mínima, ou null para todo o histórico
+     * @return Estatísticas calculadas
+     */
+    private Estatistica calcularEstatisticas(String sql, String idRestaurante, LocalDate dataLimiteMin) {
+        EscritaDiferida.getInstance().sincronizar();
         int numeroPedidosVendidos = 0;
-        double lucro = 0.0;
         int numeroItensVendidos = 0;
         double tempoMedioEntrega = 0.0;
-        LocalDate dataInicio = null;
-        LocalDate dataFim = LocalDate.now();
-
         double valorTotal = 0.0;
         double valorGasto = 0.0;
+        LocalDate dataInicio = dataLimiteMin;
+        LocalDate dataFim = LocalDate.now();
 
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();) {
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(sql)) {
 
-            ResultSet rs = stm.executeQuery("SELECT COUNT(*) AS numPedidos, AVG(p.tempoEspera) AS tempoMedioEntrega, MIN(h.dataFinalizacao) AS dataInicio " +
-                 "FROM Historico AS h " +
-                 "INNER JOIN Pedido AS p ON h.idPedido_FK = p.idPedido " +
-                 "WHERE h.idRestaurante_FK = '" + idRestaurante + "'");
+            int i = 1;
+            if (idRestaurante != null) {
+                pstm.setString(i++, idRestaurante);
+            }
+            if (dataLimiteMin != null) {
+                pstm.setDate(i, Date.valueOf(dataLimiteMin));
+            }
 
-            if (rs.next()) {
-                numeroPedidosVendidos = rs.getInt("numPedidos");
-                tempoMedioEntrega = rs.getDouble("tempoMedioEntrega");
-                Date dataInicioSQL = rs.getDate("dataInicio");
-                if (dataInicioSQL != null) {
-                    dataInicio = dataInicioSQL.toLocalDate();
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (rs.next()) {
+                    numeroPedidosVendidos = rs.getInt("numPedidos");
+                    tempoMedioEntrega = rs.getDouble("tempoMedioEntrega");
+                    numeroItensVendidos = rs.getInt("numItens");
+                    valorTotal = rs.getDouble("valorTotal");
+                    valorGasto = rs.getDouble("valorGasto");
+                    Date dataInicioSQL = rs.getDate("dataInicio");
+                    if (dataInicio == null && dataInicioSQL != null) {
+                        dataInicio = dataInicioSQL.toLocalDate();
+                    }
                 }
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
 
-            rs = stm.executeQuery("SELECT * FROM Historico " +
-                 "WHERE idRestaurante_FK = '" + idRestaurante + "'");
-
-            while (rs.next()) {
-                String idPedido = rs.getString("idPedido_FK");
-                valorTotal += PedidoDAO.getInstance().get(idPedido).calculaValorTotalPedido();
-                numeroItensVendidos += this.getNItensPedido(idPedido);
-                valorGasto += this.getValorGastoPedido(idPedido);
-            }
+        double lucro = valorTotal - valorGasto;
+        if (lucro < 0) lucro = 0.0;
+        if (dataInicio == null) {
+            dataInicio = dataFim;
+        }
+        return new Estatistica(dataInicio, dataFim, lucro, numeroPedidosVendidos, numeroItensVendidos, tempoMedioEntrega);
+    }
 
-            lucro = valorTotal - valorGasto;
-            if (lucro < 0) lucro = 0.0;
-            if (dataInicio == null) {
-                dataInicio = dataFim;
+    /** 
+     * Método que reconstrói a tabela de agregados diários a partir de todo o histórico
+     * 
+     * @return Número de linhas (restaurante x dia) reconstruídas
+     */
+    public int reconstruirEstatisticasDiarias() {
+        EscritaDiferida.getInstance().sincronizar();
+        int linhas;
+        try (Connection conn = DAOconfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stm = conn.createStatement()) {
+                stm.executeUpdate("DELETE FROM EstatisticaDiaria");
+                linhas = stm.executeUpdate(SQL_RECONSTRUIR_ESTATISTICAS_DIARIAS);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
-            return new Estatistica(dataInicio, dataFim, lucro, numeroPedidosVendidos, numeroItensVendidos, tempoMedioEntrega);
-
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
-        
+        return linhas;
     }
 
     /** 
-     * Método que calcula as estatísticas de toda a cadeia num determinado período
+     * Método que soma ou subtrai a contribuição de um Historico ao agregado diário do seu restaurante
      * 
-     * @param dataLimiteMin Data limite mínima para o cálculo das estatísticas
-     * @return Estatísticas da cadeia no período especificado
+     * @param conn Conexão (com a transação) a utilizar
+     * @param idHistorico ID do Historico
+     * @param sinal 1 para somar, -1 para subtrair
+     * @throws SQLException Se ocorrer um erro na base de dados
      */
-    public Estatistica calculaEstatisticasCadeia(LocalDate dataLimiteMin) {
-        if (dataLimiteMin == null) {
-            return this.getEstatisticasFullCadeia();
-        } else {
-            int numeroPedidosVendidos = 0;
-            double lucro = 0.0;
-            int numeroItensVendidos = 0;
-            double tempoMedioEntrega = 0.0;
-
-            double valorTotal = 0.0;
-            double valorGasto = 0.0;
-
-            try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-                 Statement stm = conn.createStatement();) {
-
-                ResultSet rs = stm.executeQuery("SELECT COUNT(*) AS numPedidos, AVG(p.tempoEspera) AS tempoMedioEntrega " +
-                     "FROM Historico AS h " +
-                     "INNER JOIN Pedido AS p ON h.idPedido_FK = p.idPedido " +
-                     "WHERE h.dataFinalizacao >= '" + Date.valueOf(dataLimiteMin) + "'");
-
-                if (rs.next()) {
-                    numeroPedidosVendidos = rs.getInt("numPedidos");
-                    tempoMedioEntrega = rs.getDouble("tempoMedioEntrega");
-                }
-
-                rs = stm.executeQuery("SELECT * FROM Historico " +
-                     "WHERE dataFinalizacao >= '" + Date.valueOf(dataLimiteMin) + "'");
+    private static void acumularEstatisticaDiaria(Connection conn, String idHistorico, int sinal) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_ACUMULAR_ESTATISTICA_DIARIA)) {
+            pstm.setInt(1, sinal);
+            pstm.setString(2, idHistorico);
+            pstm.setString(3, idHistorico);
+            pstm.setString(4, idHistorico);
+            pstm.executeUpdate();
+        }
+        if (sinal < 0) {
+            try (PreparedStatement pstm = conn.prepareStatement(SQL_LIMPAR_ESTATISTICAS_VAZIAS)) {
+                pstm.executeUpdate();
+            }
+        }
+    }
 
+    /** 
+     * Método que subtrai aos agregados diários a contribuição dos Historicos de um pedido,
+     * antes de esses Historicos serem apagados (na mesma transação) pelo PedidoDAO
+     * 
+     * @param conn Conexão (com a transação) a utilizar
+     * @param idPedido ID do pedido
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    static void retirarEstatisticasPedido(Connection conn, String idPedido) throws SQLException {
+        List<String> historicos = new ArrayList<>();
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_HISTORICOS_PEDIDO)) {
+            pstm.setString(1, idPedido);
+            try (ResultSet rs = pstm.executeQuery()) {
                 while (rs.next()) {
-                    String idPedido = rs.getString("idPedido_FK");
-                    valorTotal += PedidoDAO.getInstance().get(idPedido).calculaValorTotalPedido();
-                    numeroItensVendidos += this.getNItensPedido(idPedido);
-                    valorGasto += this.getValorGastoPedido(idPedido);
+                    historicos.add(rs.getString("idHistorico"));
                 }
-
-                lucro = valorTotal - valorGasto;
-                if (lucro < 0) lucro = 0.0;
-                return new Estatistica(dataLimiteMin, LocalDate.now(), lucro, numeroPedidosVendidos, numeroItensVendidos, tempoMedioEntrega);
-
-            } catch (SQLException e) {
-                e.printStackTrace();
-                throw new NullPointerException(e.getMessage());
             }
         }
+        for (String idHistorico : historicos) {
+            acumularEstatisticaDiaria(conn, idHistorico, -1);
+        }
     }
 
     /** 
-     * Método que calcula as estatísticas completas de toda a cadeia
+     * Método que devolve os Historicos de toda a cadeia lidos em cursor, sem carregar a tabela inteira
+     * em memória. O Stream deve ser fechado (ou consumido até ao fim) para devolver a conexão ao pool.
      * 
-     * @return Estatísticas completas da cadeia
+     * @return Stream dos Historicos
      */
-    public Estatistica getEstatisticasFullCadeia() {
-        int numeroPedidosVendidos = 0;
-        double lucro = 0.0;
-        int numeroItensVendidos = 0;
-        double tempoMedioEntrega = 0.0;
-        LocalDate dataInicio = null;
-        LocalDate dataFim = LocalDate.now();
-
-        double valorTotal = 0.0;
-        double valorGasto = 0.0;
+    public Stream<Historico> valuesStream() {
+        return CursorBD.abrirComConexao(SQL_CURSOR_CADEIA,
+                                        conn -> this.leitorHistoricos(conn, SQL_CURSOR_MENUS_CADEIA, SQL_CURSOR_PROPOSTAS_CADEIA)).stream();
+    }
 
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();) {
+    /** 
+     * Método que devolve os Historicos de um restaurante lidos em cursor.
+     * O Stream deve ser fechado (ou consumido até ao fim) para devolver a conexão ao pool.
+     * 
+     * @param idRestaurante ID do restaurante
+     * @return Stream dos Historicos do restaurante
+     */
+    public Stream<Historico> valuesStreamRestaurante(String idRestaurante) {
+        return CursorBD.abrirComConexao(SQL_CURSOR_RESTAURANTE,
+                                        conn -> this.leitorHistoricos(conn, SQL_CURSOR_MENUS_RESTAURANTE, SQL_CURSOR_PROPOSTAS_RESTAURANTE, idRestaurante),
+                                        idRestaurante).stream();
+    }
 
-            ResultSet rs = stm.executeQuery("SELECT COUNT(*) AS numPedidos, AVG(p.tempoEspera) AS tempoMedioEntrega, MIN(h.dataFinalizacao) AS dataInicio " +
-                 "FROM Historico AS h " +
-                 "INNER JOIN Pedido AS p ON h.idPedido_FK = p.idPedido");
+    /** 
+     * Método que devolve uma página de Historicos, por ordem de ID (os pedidos na mesma consulta e as suas linhas em duas consultas)
+     * 
+     * @param depoisDe ID do último Historico da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de Historicos na página
+     * @param idRestaurante ID do restaurante, ou null para toda a cadeia
+     * @param desde Data mínima de finalização, ou null para todas as datas
+     * @return Página de Historicos
+     */
+    public Pagina<Historico> pagina(String depoisDe, int tamanho, String idRestaurante, LocalDate desde) {
+        String sql;
+        if (idRestaurante == null) {
+            sql = desde == null ? SQL_PAGINA_CADEIA : SQL_PAGINA_CADEIA_DATA;
+        } else {
+            sql = desde == null ? SQL_PAGINA_RESTAURANTE : SQL_PAGINA_RESTAURANTE_DATA;
+        }
 
-            if (rs.next()) {
-                numeroPedidosVendidos = rs.getInt("numPedidos");
-                tempoMedioEntrega = rs.getDouble("tempoMedioEntrega");
-                Date dataInicioSQL = rs.getDate("dataInicio");
-                if (dataInicioSQL != null) {
-                    dataInicio = dataInicioSQL.toLocalDate();
-                }
+        List<Historico> lidos = new ArrayList<>();
+        PedidoDAO pedidoDAO = PedidoDAO.getInstance();
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(sql)) {
+            int i = 1;
+            pstm.setString(i++, depoisDe != null ? depoisDe : "");
+            if (idRestaurante != null) {
+                pstm.setString(i++, idRestaurante);
             }
-
-            rs = stm.executeQuery("SELECT * FROM Historico");
-
-            while (rs.next()) {
-                String idPedido = rs.getString("idPedido_FK");
-                valorTotal += PedidoDAO.getInstance().get(idPedido).calculaValorTotalPedido();
-                numeroItensVendidos += this.getNItensPedido(idPedido);
-                valorGasto += this.getValorGastoPedido(idPedido);
+            if (desde != null) {
+                pstm.setDate(i++, Date.valueOf(desde));
             }
-
-            lucro = valorTotal - valorGasto;
-            if (lucro < 0) lucro = 0.0;
-            if (dataInicio == null) {
-                dataInicio = dataFim;
+            pstm.setInt(i, tamanho + 1);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    Date dataFinalizacao = rs.getDate("dataFinalizacao");
+                    lidos.add(new Historico(rs.getString("idHistorico"), pedidoDAO.lerPedidoSemLinhas(rs),
+                                            rs.getString("idRestaurante_FK"),
+                                            dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null));
+                }
             }
-            return new Estatistica(dataInicio, dataFim, lucro, numeroPedidosVendidos, numeroItensVendidos, tempoMedioEntrega);
-
+            List<Pedido> pedidos = new ArrayList<>();
+            for (Historico h : lidos) {
+                pedidos.add(h.getPedido());
+            }
+            pedidoDAO.carregarLinhasPedidos(conn, pedidos);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
-        
+        return Pagina.de(lidos, tamanho, Historico::getIdHistorico);
+    }
+
+    /** 
+     * Método que cria um leitor de Historicos (com o respetivo Pedido) para o cursor principal
+     * 
+     * @param conn Conexão do cursor
+     * @param sqlMenus Consulta das linhas de Menus dos pedidos, ordenada por idPedido_FK
+     * @param sqlPropostas Consulta das linhas de Propostas dos pedidos, ordenada por idPedido_FK
+     * @param params Parâmetros das consultas das linhas
+     * @return Leitor de Historicos
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private CursorBD.LeitorLinha<Historico> leitorHistoricos(Connection conn, String sqlMenus, String sqlPropostas,
+                                                             String... params) throws SQLException {
+        CursorBD.LeitorLinha<Pedido> pedidos = PedidoDAO.getInstance().leitorPedidos(conn, sqlMenus, sqlPropostas, params);
+        return rs -> {
+            Date dataFinalizacao = rs.getDate("dataFinalizacao");
+            return new Historico(rs.getString("idHistorico"), pedidos.ler(rs), rs.getString("idRestaurante_FK"),
+                                 dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null);
+        };
     }
 
     /** 
@@ -466,17 +750,19 @@ public class HistoricoDAO implements Map<String, Historico> {
     public Collection<Historico> getValuesRestaurante(String idRestaurante) {
         Historico novo = null;
         Collection<Historico> historicos = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Historico WHERE idRestaurante_FK='" + idRestaurante + "'")) {
-            while (rs.next()) {
-                String idHistorico = rs.getString("idHistorico");
-                String idPedido = rs.getString("idPedido_FK");
-                Date dataFinalizacao = rs.getDate("dataFinalizacao");
-                
-                PedidoDAO pedidoDAO = PedidoDAO.getInstance();
-                novo = new Historico(idHistorico, pedidoDAO.get(idPedido), idRestaurante, dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null);
-                historicos.add(novo);
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_HISTORICO_RESTAURANTE)) {
+            pstm.setString(1, idRestaurante);
+            Map<String, Pedido> pedidos = PedidoDAO.getInstance().getPedidosHistorico(idRestaurante);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    String idHistorico = rs.getString("idHistorico");
+                    String idPedido = rs.getString("idPedido_FK");
+                    Date dataFinalizacao = rs.getDate("dataFinalizacao");
+                    
+                    novo = new Historico(idHistorico, pedidos.get(idPedido), idRestaurante, dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null);
+                    historicos.add(novo);
+                }
             }
         }
         catch (Exception e) {
@@ -497,7 +783,7 @@ public class HistoricoDAO implements Map<String, Historico> {
     @Override
     public int size() {
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Historico")) {
             if(rs.next()) {
@@ -531,7 +817,7 @@ public class HistoricoDAO implements Map<String, Historico> {
     @Override
     public boolean containsKey(Object key) {
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             PreparedStatement pstm = conn.prepareStatement("SELECT idHistorico FROM Historico WHERE idHistorico=?")) {
             pstm.setString(1, key.toString());
             try (ResultSet rs = pstm.executeQuery()) {
@@ -566,18 +852,20 @@ public class HistoricoDAO implements Map<String, Historico> {
     @Override
     public Historico get(Object key) {
         Historico novo = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Historico WHERE idHistorico='" + key.toString() + "'")) {
-            if (rs.next()) {
-                String idHistorico = rs.getString("idHistorico");
-                String idPedido = rs.getString("idPedido_FK");
-                String idRestaurante = rs.getString("idRestaurante_FK");
-                Date dataFinalizacao = rs.getDate("dataFinalizacao");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
+            pstm.setString(1, key.toString());
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (rs.next()) {
+                    String idHistorico = rs.getString("idHistorico");
+                    String idPedido = rs.getString("idPedido_FK");
+                    String idRestaurante = rs.getString("idRestaurante_FK");
+                    Date dataFinalizacao = rs.getDate("dataFinalizacao");
 
-                
-                PedidoDAO pedidoDAO = PedidoDAO.getInstance();
-                novo = new Historico(idHistorico, pedidoDAO.get(idPedido), idRestaurante, dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null);
+                    
+                    PedidoDAO pedidoDAO = PedidoDAO.getInstance();
+                    novo = new Historico(idHistorico, pedidoDAO.get(idPedido), idRestaurante, dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null);
+                }
             }
         }
         catch (Exception e) {
@@ -598,26 +886,35 @@ public class HistoricoDAO implements Map<String, Historico> {
     @Override
     public Historico put(String key, Historico value) {
         Historico res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Verificar se já existe
             res = this.get(key);
-            
-            if (res != null) {
-                // Atualizar
-                try (PreparedStatement pstm = conn.prepareStatement("UPDATE Historico SET idPedido_FK=?, idRestaurante_FK=?, dataFinalizacao=NOW() WHERE idHistorico=?")) {
-                    pstm.setString(1, value.getPedido().getCodPedido());
-                    pstm.setString(2, value.getIdRestaurante());
-                    pstm.setString(3, value.getIdHistorico());
-                    pstm.executeUpdate();
-                }
-            } else {
-                // Inserir novo
-                try (PreparedStatement pstm = conn.prepareStatement("INSERT INTO Historico (idHistorico, idPedido_FK, idRestaurante_FK, dataFinalizacao) VALUES (?, ?, ?, NOW())")) {
-                    pstm.setString(1, value.getIdHistorico());
-                    pstm.setString(2, value.getPedido().getCodPedido());
-                    pstm.setString(3, value.getIdRestaurante());
-                    pstm.executeUpdate();
+
+            conn.setAutoCommit(false);
+            try {
+                if (res != null) {
+                    // Atualizar (retirando a contribuição antiga ao agregado diário)
+                    acumularEstatisticaDiaria(conn, value.getIdHistorico(), -1);
+                    try (PreparedStatement pstm = conn.prepareStatement("UPDATE Historico SET idPedido_FK=?, idRestaurante_FK=?, dataFinalizacao=NOW() WHERE idHistorico=?")) {
+                        pstm.setString(1, value.getPedido().getCodPedido());
+                        pstm.setString(2, value.getIdRestaurante());
+                        pstm.setString(3, value.getIdHistorico());
+                        pstm.executeUpdate();
+                    }
+                } else {
+                    // Inserir novo
+                    try (PreparedStatement pstm = conn.prepareStatement("INSERT INTO Historico (idHistorico, idPedido_FK, idRestaurante_FK, dataFinalizacao) VALUES (?, ?, ?, NOW())")) {
+                        pstm.setString(1, value.getIdHistorico());
+                        pstm.setString(2, value.getPedido().getCodPedido());
+                        pstm.setString(3, value.getIdRestaurante());
+                        pstm.executeUpdate();
+                    }
                 }
+                acumularEstatisticaDiaria(conn, value.getIdHistorico(), 1);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -634,11 +931,19 @@ public class HistoricoDAO implements Map<String, Historico> {
      */
     @Override
     public Historico remove(Object key) {
+        EscritaDiferida.getInstance().sincronizar();
         Historico t = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            stm.executeUpdate("DELETE FROM Historico WHERE idHistorico='" + key.toString() + "'");
-            
+        try (Connection conn = DAOconfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstm = conn.prepareStatement(SQL_DELETE)) {
+                acumularEstatisticaDiaria(conn, key.toString(), -1);
+                pstm.setString(1, key.toString());
+                pstm.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
@@ -664,8 +969,10 @@ public class HistoricoDAO implements Map<String, Historico> {
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        EscritaDiferida.getInstance().sincronizar();
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
+            stm.executeUpdate("DELETE FROM EstatisticaDiaria");
             stm.executeUpdate("DELETE FROM Historico");
         } catch (SQLException e) {
             e.printStackTrace();
@@ -681,7 +988,7 @@ public class HistoricoDAO implements Map<String, Historico> {
     @Override
     public Set<String> keySet() {
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT IdHistorico FROM Historico")) {
             while (rs.next()) {
@@ -703,17 +1010,17 @@ public class HistoricoDAO implements Map<String, Historico> {
     public Collection<Historico> values() {
         Historico novo = null;
         Collection<Historico> historicos = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Historico")) {
+            Map<String, Pedido> pedidos = PedidoDAO.getInstance().getPedidosHistorico(null);
             while (rs.next()) {
                 String idHistorico = rs.getString("idHistorico");
                 String idPedido = rs.getString("idPedido_FK");
                 String idRestaurante = rs.getString("idRestaurante_FK");
                 Date dataFinalizacao = rs.getDate("dataFinalizacao");
                 
-                PedidoDAO pedidoDAO = PedidoDAO.getInstance();
-                novo = new Historico(idHistorico, pedidoDAO.get(idPedido), idRestaurante, dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null);
+                novo = new Historico(idHistorico, pedidos.get(idPedido), idRestaurante, dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null);
                 historicos.add(novo);
             }
         }
@@ -734,17 +1041,17 @@ public class HistoricoDAO implements Map<String, Historico> {
     public Set<Entry<String, Historico>> entrySet() {
         Historico novo = null;
         Set<Entry<String, Historico>> historicos = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Historico")) {
+            Map<String, Pedido> pedidos = PedidoDAO.getInstance().getPedidosHistorico(null);
             while (rs.next()) {
                 String idHistorico = rs.getString("idHistorico");
                 String idPedido = rs.getString("idPedido_FK");
                 String idRestaurante = rs.getString("idRestaurante_FK");
                 Date dataFinalizacao = rs.getDate("dataFinalizacao");
                 
-                PedidoDAO pedidoDAO = PedidoDAO.getInstance();
-                novo = new Historico(idHistorico, pedidoDAO.get(idPedido), idRestaurante, dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null);
+                novo = new Historico(idHistorico, pedidos.get(idPedido), idRestaurante, dataFinalizacao != null ? dataFinalizacao.toLocalDate() : null);
                 historicos.add(new AbstractMap.SimpleEntry<>(idHistorico, novo));
             }
         }
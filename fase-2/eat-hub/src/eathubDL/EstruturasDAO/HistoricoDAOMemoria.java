@@ -0,0 +1,559 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubDL.BaseDadosMemoria.LinhaEstatistica;
+import eathubDL.BaseDadosMemoria.LinhaHistorico;
+import eathubDL.BaseDadosMemoria.LinhaMenu;
+import eathubDL.BaseDadosMemoria.LinhaPedido;
+import eathubDL.BaseDadosMemoria.LinhaProposta;
+import eathubLN.Pagina;
+import eathubLN.ssCadeia.Estatistica;
+import eathubLN.ssCadeia.Historico;
+import eathubLN.ssPedidos.Pedido;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Implementação em memória do HistoricoDAO, sobre as tabelas Historico e EstatisticaDiaria
+ * da BaseDadosMemoria. Tal como no HistoricoDAO, o agregado diário (restaurante x dia) é
+ * atualizado sempre que um Historico é escrito ou removido, e as estatísticas somam esse agregado.
+ */
+class HistoricoDAOMemoria extends HistoricoDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar HistoricoDAO.getInstance)
+     */
+    HistoricoDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que devolve o custo de uma proposta (soma dos preços dos seus ingredientes existentes)
+     *
+     * @param bd Base de dados em memória
+     * @param idProposta ID da proposta
+     * @return Custo da proposta
+     */
+    private static double custoProposta(BaseDadosMemoria bd, String idProposta) {
+        double custo = 0.0;
+        for (String nome : bd.ingredientesProposta.comPrefixo(BaseDadosMemoria.prefixo(idProposta))) {
+            Double preco = bd.ingredientes.get(nome);
+            if (preco != null) {
+                custo += preco;
+            }
+        }
+        return custo;
+    }
+
+    /**
+     * Método que devolve o custo de um menu (soma dos custos das suas propostas)
+     *
+     * @param bd Base de dados em memória
+     * @param idMenu ID do menu
+     * @return Custo do menu
+     */
+    private static double custoMenu(BaseDadosMemoria bd, String idMenu) {
+        double custo = 0.0;
+        for (String idProposta : bd.propostasMenu.comPrefixo(BaseDadosMemoria.prefixo(idMenu))) {
+            custo += custoProposta(bd, idProposta);
+        }
+        return custo;
+    }
+
+    /**
+     * Método que soma (sinal 1) ou subtrai (sinal -1) a contribuição de um Historico ao agregado diário
+     * do seu restaurante; os agregados que ficam sem pedidos são removidos. Um Historico cujo pedido
+     * não exista não contribui.
+     *
+     * @param bd Base de dados em memória
+     * @param h Linha do Historico
+     * @param sinal 1 para somar, -1 para subtrair
+     */
+    private static void acumular(BaseDadosMemoria bd, LinhaHistorico h, int sinal) {
+        LinhaPedido p = bd.pedidos.get(h.idPedido);
+        if (p == null) {
+            return;
+        }
+        String prefixo = BaseDadosMemoria.prefixo(h.idPedido);
+        int itens = 0;
+        double valor = 0.0;
+        double gasto = 0.0;
+        for (String chave : bd.menusPedido.chavesComPrefixo(prefixo)) {
+            String idMenu = chave.substring(prefixo.length());
+            int quantidade = bd.menusPedido.get(chave);
+            LinhaMenu m = bd.menus.get(idMenu);
+            itens += quantidade;
+            valor += quantidade * (m != null ? m.precoTotal : 0.0);
+            gasto += quantidade * custoMenu(bd, idMenu);
+        }
+        for (String chave : bd.propostasPedido.chavesComPrefixo(prefixo)) {
+            String idProposta = chave.substring(prefixo.length());
+            int quantidade = bd.propostasPedido.get(chave);
+            LinhaProposta pr = bd.propostas.get(idProposta);
+            itens += quantidade;
+            valor += quantidade * (pr != null ? pr.preco : 0.0);
+            gasto += quantidade * custoProposta(bd, idProposta);
+        }
+
+        LocalDate dia = h.dataFinalizacao.toLocalDate();
+        String chave = BaseDadosMemoria.chave(h.idRestaurante, dia.toString());
+        LinhaEstatistica e = bd.estatisticasDiarias.get(chave);
+        LinhaEstatistica nova = new LinhaEstatistica(h.idRestaurante, dia,
+            (e != null ? e.nPedidos : 0) + sinal,
+            (e != null ? e.nItens : 0) + sinal * itens,
+            (e != null ? e.valorTotal : 0.0) + sinal * valor,
+            (e != null ? e.valorGasto : 0.0) + sinal * gasto,
+            (e != null ? e.somaTempoEspera : 0L) + sinal * (long) p.tempoEspera,
+            (e != null ? e.nTempoEspera : 0) + sinal);
+        if (sinal < 0 && nova.nPedidos <= 0) {
+            bd.estatisticasDiarias.remover(chave);
+        } else {
+            bd.estatisticasDiarias.gravar(chave, nova);
+        }
+    }
+
+    /**
+     * Método que remove um Historico, retirando a sua contribuição ao agregado diário
+     *
+     * @param bd Base de dados em memória
+     * @param idHistorico ID do Historico
+     * @return Linha removida, ou null se não existia
+     */
+    static LinhaHistorico removerHistorico(BaseDadosMemoria bd, String idHistorico) {
+        return bd.escrever(() -> {
+            LinhaHistorico h = bd.historicos.get(idHistorico);
+            if (h != null) {
+                acumular(bd, h, -1);
+                bd.historicos.remover(idHistorico);
+            }
+            return h;
+        });
+    }
+
+    /**
+     * Método que constrói um Historico a partir de uma linha (com o pedido, que pode ser null se não existir)
+     *
+     * @param linha Linha da tabela Historico
+     * @return Historico, ou null se a linha for null
+     */
+    private Historico lerHistorico(LinhaHistorico linha) {
+        if (linha == null) {
+            return null;
+        }
+        return new Historico(linha.idHistorico, PedidoDAOMemoria.lerPedido(this.bd, linha.idPedido), linha.idRestaurante,
+                             linha.dataFinalizacao.toLocalDate());
+    }
+
+    /**
+     * Método que calcula as estatísticas somando os agregados diários
+     *
+     * @param idRestaurante ID do restaurante, ou null para toda a cadeia
+     * @param dataLimiteMin Data limite mínima, ou null para todo o histórico
+     * @return Estatísticas calculadas
+     */
+    private Estatistica calcular(String idRestaurante, LocalDate dataLimiteMin) {
+        int numeroPedidosVendidos = 0;
+        int numeroItensVendidos = 0;
+        double valorTotal = 0.0;
+        double valorGasto = 0.0;
+        long somaTempo = 0;
+        int nTempo = 0;
+        LocalDate dataInicio = null;
+        LocalDate dataFim = LocalDate.now();
+
+        for (LinhaEstatistica e : this.bd.estatisticasDiarias.linhas()) {
+            if ((idRestaurante != null && !idRestaurante.equals(e.idRestaurante))
+                || (dataLimiteMin != null && e.dia.isBefore(dataLimiteMin))) {
+                continue;
+            }
+            numeroPedidosVendidos += e.nPedidos;
+            numeroItensVendidos += e.nItens;
+            valorTotal += e.valorTotal;
+            valorGasto += e.valorGasto;
+            somaTempo += e.somaTempoEspera;
+            nTempo += e.nTempoEspera;
+            if (dataInicio == null || e.dia.isBefore(dataInicio)) {
+                dataInicio = e.dia;
+            }
+        }
+
+        double lucro = valorTotal - valorGasto;
+        if (lucro < 0) lucro = 0.0;
+        if (dataLimiteMin != null) {
+            dataInicio = dataLimiteMin;
+        }
+        if (dataInicio == null) {
+            dataInicio = dataFim;
+        }
+        double tempoMedioEntrega = nTempo != 0 ? (double) somaTempo / nTempo : 0.0;
+        return new Estatistica(dataInicio, dataFim, lucro, numeroPedidosVendidos, numeroItensVendidos, tempoMedioEntrega);
+    }
+
+    /**
+     * Método que devolve os Historicos (com pedido existente) que satisfazem os filtros, por ordem de ID
+     *
+     * @param linhas Linhas a filtrar
+     * @param idRestaurante ID do restaurante, ou null para toda a cadeia
+     * @param desde Data mínima de finalização, ou null para todas as datas
+     * @return Historicos filtrados
+     */
+    private Stream<Historico> filtrar(Collection<LinhaHistorico> linhas, String idRestaurante, LocalDate desde) {
+        return linhas.stream()
+                     .filter(h -> idRestaurante == null || idRestaurante.equals(h.idRestaurante))
+                     .filter(h -> desde == null || !h.dataFinalizacao.toLocalDate().isBefore(desde))
+                     .filter(h -> this.bd.pedidos.contem(h.idPedido))
+                     .map(this::lerHistorico);
+    }
+
+    /**
+     * Método que gera um novo ID único para um Historico
+     *
+     * @return Novo ID único para um Historico
+     */
+    @Override
+    public String generateNewId() {
+        return "H" + this.bd.proximoNumero("Historico");
+    }
+
+    /**
+     * Método que acrescenta um novo Historico (finalizado agora), se ainda não existir, somando-o ao agregado diário
+     *
+     * @param value Historico a acrescentar
+     */
+    @Override
+    public void adicionar(Historico value) {
+        LinhaHistorico linha = new LinhaHistorico(value.getIdHistorico(), value.getPedido().getCodPedido(),
+                                                  value.getIdRestaurante(), LocalDateTime.now());
+        this.bd.escrever(() -> {
+            if (!this.bd.historicos.contem(linha.idHistorico)) {
+                this.bd.historicos.inserir(linha.idHistorico, linha);
+                acumular(this.bd, linha, 1);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Método que devolve o número de itens individuais num pedido
+     *
+     * @param idPedido ID do pedido
+     * @return Número de itens no pedido
+     */
+    @Override
+    public int getNItensPedido(String idPedido) {
+        int nItens = 0;
+        for (int quantidade : this.bd.menusPedido.comPrefixo(BaseDadosMemoria.prefixo(idPedido))) {
+            nItens += quantidade;
+        }
+        for (int quantidade : this.bd.propostasPedido.comPrefixo(BaseDadosMemoria.prefixo(idPedido))) {
+            nItens += quantidade;
+        }
+        return nItens;
+    }
+
+    /**
+     * Método que devolve o valor de um ingrediente
+     *
+     * @param nomeIngrediente Nome do ingrediente
+     * @return Valor do ingrediente (0 se não existir)
+     */
+    @Override
+    public double getValorIngrediente(String nomeIngrediente) {
+        Double preco = this.bd.ingredientes.get(nomeIngrediente);
+        return preco != null ? preco : 0.0;
+    }
+
+    /**
+     * Método que devolve o valor gasto numa proposta
+     *
+     * @param idProposta ID da proposta
+     * @return Valor gasto na proposta
+     */
+    @Override
+    public double getValorGastoProposta(String idProposta) {
+        return custoProposta(this.bd, idProposta);
+    }
+
+    /**
+     * Método que devolve o valor gasto num menu
+     *
+     * @param codMenu Código do menu
+     * @return Valor gasto no menu
+     */
+    @Override
+    public double getValorGastoMenu(String codMenu) {
+        return custoMenu(this.bd, codMenu);
+    }
+
+    /**
+     * Método que devolve o valor gasto num pedido
+     *
+     * @param idPedido ID do pedido
+     * @return Valor gasto no pedido
+     */
+    @Override
+    public double getValorGastoPedido(String idPedido) {
+        String prefixo = BaseDadosMemoria.prefixo(idPedido);
+        double gasto = 0.0;
+        for (String chave : this.bd.menusPedido.chavesComPrefixo(prefixo)) {
+            gasto += custoMenu(this.bd, chave.substring(prefixo.length())) * this.bd.menusPedido.get(chave);
+        }
+        for (String chave : this.bd.propostasPedido.chavesComPrefixo(prefixo)) {
+            gasto += custoProposta(this.bd, chave.substring(prefixo.length())) * this.bd.propostasPedido.get(chave);
+        }
+        return gasto;
+    }
+
+    /**
+     * Método que calcula as estatísticas de um restaurante num determinado período
+     *
+     * @param idRestaurante ID do restaurante
+     * @param dataLimiteMin Data limite mínima para o cálculo das estatísticas
+     * @return Estatísticas do restaurante no período especificado
+     */
+    @Override
+    public Estatistica calcularEstatisticasRestaurante(String idRestaurante, LocalDate dataLimiteMin) {
+        return this.calcular(idRestaurante, dataLimiteMin);
+    }
+
+    /**
+     * Método que calcula as estatísticas completas de um restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     * @return Estatísticas completas do restaurante
+     */
+    @Override
+    public Estatistica getEstatisticasFullRestaurante(String idRestaurante) {
+        return this.calcular(idRestaurante, null);
+    }
+
+    /**
+     * Método que calcula as estatísticas de toda a cadeia num determinado período
+     *
+     * @param dataLimiteMin Data limite mínima para o cálculo das estatísticas
+     * @return Estatísticas da cadeia no período especificado
+     */
+    @Override
+    public Estatistica calculaEstatisticasCadeia(LocalDate dataLimiteMin) {
+        return this.calcular(null, dataLimiteMin);
+    }
+
+    /**
+     * Método que calcula as estatísticas completas de toda a cadeia
+     *
+     * @return Estatísticas completas da cadeia
+     */
+    @Override
+    public Estatistica getEstatisticasFullCadeia() {
+        return this.calcular(null, null);
+    }
+
+    /**
+     * Método que reconstrói o agregado diário a partir de todo o histórico
+     *
+     * @return Número de linhas (restaurante x dia) reconstruídas
+     */
+    @Override
+    public int reconstruirEstatisticasDiarias() {
+        return this.bd.escrever(() -> {
+            this.bd.estatisticasDiarias.limpar();
+            for (LinhaHistorico h : this.bd.historicos.linhas()) {
+                acumular(this.bd, h, 1);
+            }
+            return this.bd.estatisticasDiarias.tamanho();
+        });
+    }
+
+    /**
+     * Método que devolve os Historicos de toda a cadeia, por ordem do ID do pedido
+     *
+     * @return Stream dos Historicos
+     */
+    @Override
+    public Stream<Historico> valuesStream() {
+        return this.valuesStreamRestaurante(null);
+    }
+
+    /**
+     * Método que devolve os Historicos de um restaurante, por ordem do ID do pedido
+     *
+     * @param idRestaurante ID do restaurante (null para toda a cadeia)
+     * @return Stream dos Historicos do restaurante
+     */
+    @Override
+    public Stream<Historico> valuesStreamRestaurante(String idRestaurante) {
+        List<LinhaHistorico> linhas = this.bd.historicos.linhas();
+        linhas.sort(Comparator.comparing(h -> h.idPedido));
+        return this.filtrar(linhas, idRestaurante, null);
+    }
+
+    /**
+     * Método que devolve uma página de Historicos, por ordem de ID
+     *
+     * @param depoisDe ID do último Historico da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de Historicos na página
+     * @param idRestaurante ID do restaurante, ou null para toda a cadeia
+     * @param desde Data mínima de finalização, ou null para todas as datas
+     * @return Página de Historicos
+     */
+    @Override
+    public Pagina<Historico> pagina(String depoisDe, int tamanho, String idRestaurante, LocalDate desde) {
+        List<Historico> lidos = new ArrayList<>();
+        this.filtrar(this.bd.historicos.depoisDe(depoisDe), idRestaurante, desde)
+            .limit(tamanho + 1L)
+            .forEach(lidos::add);
+        return Pagina.de(lidos, tamanho, Historico::getIdHistorico);
+    }
+
+    /**
+     * Método que devolve os Historicos de um restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     * @return Coleção de Historicos do restaurante
+     */
+    @Override
+    public Collection<Historico> getValuesRestaurante(String idRestaurante) {
+        Collection<Historico> historicos = new HashSet<>();
+        for (LinhaHistorico h : this.bd.historicos.linhas()) {
+            if (idRestaurante.equals(h.idRestaurante)) {
+                historicos.add(this.lerHistorico(h));
+            }
+        }
+        return historicos;
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de Historicos
+     *
+     * @return Número de Historicos
+     */
+    @Override
+    public int size() {
+        return this.bd.historicos.tamanho();
+    }
+
+    /**
+     * Método que verifica se um determinado ID de Historico existe
+     *
+     * @param key ID do Historico
+     * @return true se o ID existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.bd.historicos.contem(key.toString());
+    }
+
+    /**
+     * Método que devolve um Historico a partir do seu ID
+     *
+     * @param key ID do Historico
+     * @return Historico correspondente ao ID, ou null se não existir
+     */
+    @Override
+    public Historico get(Object key) {
+        return this.lerHistorico(this.bd.historicos.get(key.toString()));
+    }
+
+    /**
+     * Método que insere ou atualiza um Historico (finalizado agora), atualizando o agregado diário
+     *
+     * @param key ID do Historico
+     * @param value Historico a inserir ou atualizar
+     * @return Historico previamente associado ao ID, ou null se não existia
+     */
+    @Override
+    public Historico put(String key, Historico value) {
+        LinhaHistorico linha = new LinhaHistorico(value.getIdHistorico(), value.getPedido().getCodPedido(),
+                                                  value.getIdRestaurante(), LocalDateTime.now());
+        return this.bd.escrever(() -> {
+            Historico res = this.get(key);
+            LinhaHistorico anterior = this.bd.historicos.get(linha.idHistorico);
+            if (anterior != null) {
+                acumular(this.bd, anterior, -1);
+                this.bd.historicos.gravar(linha.idHistorico, linha);
+            } else {
+                this.bd.historicos.inserir(linha.idHistorico, linha);
+            }
+            acumular(this.bd, linha, 1);
+            return res;
+        });
+    }
+
+    /**
+     * Método que remove um Historico, retirando-o do agregado diário
+     *
+     * @param key ID do Historico a remover
+     * @return Historico removido, ou null se não existia
+     */
+    @Override
+    public Historico remove(Object key) {
+        return this.bd.escrever(() -> {
+            Historico t = this.get(key);
+            removerHistorico(this.bd, key.toString());
+            return t;
+        });
+    }
+
+    /**
+     * Método que remove todos os Historicos (e o agregado diário)
+     */
+    @Override
+    public void clear() {
+        this.bd.escrever(() -> {
+            this.bd.estatisticasDiarias.limpar();
+            this.bd.historicos.limpar();
+            return null;
+        });
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs dos Historicos
+     *
+     * @return Conjunto de IDs dos Historicos
+     */
+    @Override
+    public Set<String> keySet() {
+        return new HashSet<>(this.bd.historicos.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de Historicos
+     *
+     * @return Coleção de Historicos
+     */
+    @Override
+    public Collection<Historico> values() {
+        Collection<Historico> historicos = new HashSet<>();
+        for (LinhaHistorico h : this.bd.historicos.linhas()) {
+            historicos.add(this.lerHistorico(h));
+        }
+        return historicos;
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (ID, Historico)
+     *
+     * @return Conjunto de entradas (ID, Historico)
+     */
+    @Override
+    public Set<Entry<String, Historico>> entrySet() {
+        Set<Entry<String, Historico>> historicos = new HashSet<>();
+        for (LinhaHistorico h : this.bd.historicos.linhas()) {
+            historicos.add(new AbstractMap.SimpleEntry<>(h.idHistorico, this.lerHistorico(h)));
+        }
+        return historicos;
+    }
+}
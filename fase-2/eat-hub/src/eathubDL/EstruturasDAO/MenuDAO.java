@@ -1,10 +1,11 @@
 package eathubDL.EstruturasDAO;
 
+import eathubDL.CacheCatalogo;
 import eathubDL.DAOconfig;
+import eathubDL.SequenciaIds;
 import eathubLN.ssPedidos.Menu;
 import eathubLN.ssPedidos.Proposta;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -28,64 +29,66 @@ import java.util.Set;
  */
 public class MenuDAO implements Map<String, Menu> {
     
-    /** ID máximo guardado */
-    private int maxId;
+    /** Sequência que gera os IDs */
+    private final SequenciaIds ids;
 
     /** Instância única da classe */
     private static MenuDAO singleton = null;
+
+    /** Cache de leitura dos Menus (invalidada nas escritas) */
+    private final CacheCatalogo<String, Menu> cache;
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT * FROM Menu WHERE idM=?";
+    private static final String SQL_PROPOSTAS_MENU = "SELECT idProposta_FK FROM PropostaMenu WHERE idM_FK=?";
+    private static final String SQL_INSERT_PROPOSTA_MENU = "INSERT INTO PropostaMenu (idProposta_FK, idM_FK) VALUES (?, ?)";
+    private static final String SQL_DELETE_PROPOSTAS_MENU = "DELETE FROM PropostaMenu WHERE idM_FK=?";
+    private static final String SQL_DELETE = "DELETE FROM Menu WHERE idM=?";
     
     /** 
-     * Construtor privado para evitar instanciação externa
-     * 
-     * Inicializa o maxId com o maior ID existente na base de dados
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, MenuDAOMemoria)
      */
-    private MenuDAO() {
-        this.maxId = loadMaxIdFromDatabase();
+    MenuDAO() {
+        this.cache = new CacheCatalogo<>("Menus", DAOconfig.CACHE_MENUS);
+        this.ids = new SequenciaIds("Menu", "M", "Menu", "idM", DAOconfig.BLOCO_IDS);
     }
 
     /** 
-     * Método que devolve a instância única da classe
+     * Método que devolve a instância única da classe (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe
      */
-    public static MenuDAO getInstance() {
+    public static synchronized MenuDAO getInstance() {
         if (singleton == null) {
-            singleton = new MenuDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new MenuDAOMemoria() : new MenuDAO();
         }
         return singleton;
     }
     
     /** 
-     * Método que gera um novo ID único para um Menu
+     * Método que invalida todos os Menus em cache (por exemplo, quando uma Proposta muda)
+     */
+    public void invalidarCache() {
+        this.cache.invalidarTudo();
+    }
+
+    /** 
+     * Método que devolve as estatísticas da cache de Menus
      * 
-     * @return Novo ID único para um Menu
+     * @return Representação textual das estatísticas da cache
      */
-    public String generateNewId() {
-        this.maxId++;
-        return "M" + (maxId);
+    public String getEstatisticasCache() {
+        return this.cache.getEstatisticas();
     }
-    
+
     /** 
-     * Método que carrega o maior ID existente na base de dados
+     * Método que gera um novo ID único para um Menu
      * 
-     * @return Maior ID existente na base de dados
+     * @return Novo ID único para um Menu
      */
-    private int loadMaxIdFromDatabase() {
-        int max = 0;
-        for (String id : this.keySet()) {
-            if (id.startsWith("M")) {
-                try {
-                    int num = Integer.parseInt(id.substring(1));
-                    if (num > max) {
-                        max = num;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora IDs com formato inválido
-                }
-            }
-        }
-        
-        return max;
+    public String generateNewId() {
+        return this.ids.proximoId();
     }
     
     // Implementação dos métodos obrigatórios de Map
@@ -98,7 +101,7 @@ public class MenuDAO implements Map<String, Menu> {
     @Override
     public int size() {
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Menu")) {
             if(rs.next()) {
@@ -132,7 +135,7 @@ public class MenuDAO implements Map<String, Menu> {
     @Override
     public boolean containsKey(Object key) {
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("SELECT idM FROM Menu WHERE idM=?")) {
             pstm.setString(1, key.toString());
             try (ResultSet rs = pstm.executeQuery()) {
@@ -166,26 +169,29 @@ public class MenuDAO implements Map<String, Menu> {
      */
     @Override
     public Menu get(Object key) {
+        return this.cache.obter(key.toString(), this::carregarMenu);
+    }
+
+    /** 
+     * Método que carrega um Menu da base de dados, sem passar pela cache
+     * 
+     * @param key ID do Menu
+     * @return Menu correspondente ao ID, ou null se não existir
+     */
+    private Menu carregarMenu(String key) {
         Menu m = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();
-             Statement stm2 = conn.createStatement();
-             ResultSet rs = stm.executeQuery("SELECT * FROM Menu WHERE idM='" + key + "'")) {
-            if (rs.next()) {
-                String idMenu = rs.getString("idM");
-                String nome = rs.getString("nome");
-                double precoTotal = rs.getDouble("precoTotal");
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
+            pstm.setString(1, key);
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (rs.next()) {
+                    String idMenu = rs.getString("idM");
+                    String nome = rs.getString("nome");
+                    double precoTotal = rs.getDouble("precoTotal");
 
-                ResultSet rs2 = stm2.executeQuery("SELECT idProposta_FK FROM PropostaMenu WHERE idM_FK='" + idMenu + "'");
-                List<Proposta> propostas = new ArrayList<>();
-                while (rs2.next()) {
-                    String idProposta = rs2.getString("idProposta_FK");
-                    Proposta p = PropostaDAO.getInstance().get(idProposta);
-                    if (p != null) {
-                        propostas.add(p);
-                    }
+                    List<Proposta> propostas = this.getPropostasMenu(conn, idMenu);
+                    m = new Menu(idMenu, nome, precoTotal, propostas);
                 }
-                m = new Menu(idMenu, nome, precoTotal, propostas);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -194,6 +200,51 @@ public class MenuDAO implements Map<String, Menu> {
         return m;
     }
     
+    /** 
+     * Método que devolve as Propostas associadas a um Menu
+     * 
+     * @param conn Conexão a utilizar
+     * @param idMenu ID do Menu
+     * @return Lista de Propostas do Menu
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private List<Proposta> getPropostasMenu(Connection conn, String idMenu) throws SQLException {
+        List<String> idsPropostas = new ArrayList<>();
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_PROPOSTAS_MENU)) {
+            pstm.setString(1, idMenu);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    idsPropostas.add(rs.getString("idProposta_FK"));
+                }
+            }
+        }
+        List<Proposta> propostas = new ArrayList<>();
+        for (String idProposta : idsPropostas) {
+            Proposta p = PropostaDAO.getInstance().get(idProposta);
+            if (p != null) {
+                propostas.add(p);
+            }
+        }
+        return propostas;
+    }
+
+    /** 
+     * Método que insere as associações entre um Menu e as suas Propostas
+     * 
+     * @param conn Conexão a utilizar
+     * @param value Menu
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private void inserirPropostasMenu(Connection conn, Menu value) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_INSERT_PROPOSTA_MENU)) {
+            for (Proposta p : value.getPropostasMenu()) {
+                pstm.setString(1, p.getIdProposta());
+                pstm.setString(2, value.getIdMenu());
+                pstm.executeUpdate();
+            }
+        }
+    }
+    
     /** 
      * Método que insere ou atualiza um Menu na base de dados
      * 
@@ -204,7 +255,7 @@ public class MenuDAO implements Map<String, Menu> {
     @Override
     public Menu put(String key, Menu value) {
         Menu res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Verificar se já existe
             res = this.get(key);
             
@@ -215,13 +266,12 @@ public class MenuDAO implements Map<String, Menu> {
                     pstm.setDouble(2, value.getPrecoTotal());
                     pstm.setString(3, value.getIdMenu());
                     pstm.executeUpdate();
-
-                    Statement stm = conn.createStatement();
-                    stm.executeUpdate("DELETE FROM PropostaMenu WHERE idM_FK='" + value.getIdMenu() + "'");
-                    for (Proposta p : value.getPropostasMenu()) {
-                        stm.executeUpdate("INSERT INTO PropostaMenu (idProposta_FK, idM_FK) VALUES ('" + p.getIdProposta() + "', '" + value.getIdMenu() + "')");
-                    }
                 }
+                try (PreparedStatement pstm = conn.prepareStatement(SQL_DELETE_PROPOSTAS_MENU)) {
+                    pstm.setString(1, value.getIdMenu());
+                    pstm.executeUpdate();
+                }
+                this.inserirPropostasMenu(conn, value);
             } else {
                 // Inserir novo
                 try (PreparedStatement pstm = conn.prepareStatement("INSERT INTO Menu (idM, precoTotal, nome) VALUES (?, ?, ?)")) {
@@ -229,16 +279,15 @@ public class MenuDAO implements Map<String, Menu> {
                     pstm.setDouble(2, value.getPrecoTotal());
                     pstm.setString(3, value.getNome());
                     pstm.executeUpdate();
-
-                    Statement stm = conn.createStatement();
-                    for (Proposta p : value.getPropostasMenu()) {
-                        stm.executeUpdate("INSERT INTO PropostaMenu (idProposta_FK, idM_FK) VALUES ('" + p.getIdProposta() + "', '" + value.getIdMenu() + "')");
-                    }
                 }
+                this.inserirPropostasMenu(conn, value);
             }
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
+        } finally {
+            this.cache.invalidar(key);
         }
         return res;
     }
@@ -252,15 +301,20 @@ public class MenuDAO implements Map<String, Menu> {
     @Override
     public Menu remove(Object key) {
         Menu t = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            stm.executeUpdate("DELETE FROM PropostaMenu WHERE idM_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM Menu WHERE idM='" + key.toString() + "'");
-            
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstmPropostas = conn.prepareStatement(SQL_DELETE_PROPOSTAS_MENU);
+            PreparedStatement pstm = conn.prepareStatement(SQL_DELETE)) {
+            pstmPropostas.setString(1, key.toString());
+            pstmPropostas.executeUpdate();
+            pstm.setString(1, key.toString());
+            pstm.executeUpdate();
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
+        } finally {
+            this.cache.invalidar(key.toString());
         }
         return t;
     }
@@ -282,13 +336,16 @@ public class MenuDAO implements Map<String, Menu> {
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
             stm.executeUpdate("DELETE FROM PropostaMenu");
             stm.executeUpdate("DELETE FROM Menu");
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
+        } finally {
+            this.cache.invalidarTudo();
         }
     }
     
@@ -300,7 +357,7 @@ public class MenuDAO implements Map<String, Menu> {
     @Override
     public Set<String> keySet() {
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT idM FROM Menu")) {
             while (rs.next()) {
@@ -322,24 +379,15 @@ public class MenuDAO implements Map<String, Menu> {
     public Collection<Menu> values() {
         Menu m = null;
         Collection<Menu> novo = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
-             Statement stm2 = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT * FROM Menu")) {
             while (rs.next()) {
                 String idMenu = rs.getString("idM");
                 String nome = rs.getString("nome");
                 double precoTotal = rs.getDouble("precoTotal");
 
-                ResultSet rs2 = stm2.executeQuery("SELECT idProposta_FK FROM PropostaMenu WHERE idM_FK='" + idMenu + "'");
-                List<Proposta> propostas = new ArrayList<>();
-                while (rs2.next()) {
-                    String idProposta = rs2.getString("idProposta_FK");
-                    Proposta p = PropostaDAO.getInstance().get(idProposta);
-                    if (p != null) {
-                        propostas.add(p);
-                    }
-                }
+                List<Proposta> propostas = this.getPropostasMenu(conn, idMenu);
                 m = new Menu(idMenu, nome, precoTotal, propostas);
                 novo.add(m);
             }
@@ -359,24 +407,15 @@ public class MenuDAO implements Map<String, Menu> {
     public Set<Entry<String, Menu>> entrySet() {
         Menu m = null;
         Set<Entry<String, Menu>> novo = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
-             Statement stm2 = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT * FROM Menu")) {
             while (rs.next()) {
                 String idMenu = rs.getString("idM");
                 String nome = rs.getString("nome");
                 double precoTotal = rs.getDouble("precoTotal");
 
-                ResultSet rs2 = stm2.executeQuery("SELECT idProposta_FK FROM PropostaMenu WHERE idM_FK='" + idMenu + "'");
-                List<Proposta> propostas = new ArrayList<>();
-                while (rs2.next()) {
-                    String idProposta = rs2.getString("idProposta_FK");
-                    Proposta p = PropostaDAO.getInstance().get(idProposta);
-                    if (p != null) {
-                        propostas.add(p);
-                    }
-                }
+                List<Proposta> propostas = this.getPropostasMenu(conn, idMenu);
                 m = new Menu(idMenu, nome, precoTotal, propostas);
                 novo.add(new AbstractMap.SimpleEntry<>(idMenu, m));
             }
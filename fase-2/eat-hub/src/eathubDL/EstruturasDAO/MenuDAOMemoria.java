@@ -0,0 +1,185 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubDL.BaseDadosMemoria.LinhaMenu;
+import eathubLN.ssPedidos.Menu;
+import eathubLN.ssPedidos.Proposta;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implementação em memória do MenuDAO, sobre as tabelas Menu e PropostaMenu da BaseDadosMemoria.
+ * A cache de leitura do MenuDAO não é usada (a leitura já é feita em memória).
+ */
+class MenuDAOMemoria extends MenuDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar MenuDAO.getInstance)
+     */
+    MenuDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que constrói um Menu a partir das tabelas em memória (só com as Propostas que existem)
+     *
+     * @param idMenu ID do Menu
+     * @return Menu, ou null se não existir
+     */
+    private Menu lerMenu(String idMenu) {
+        LinhaMenu linha = this.bd.menus.get(idMenu);
+        if (linha == null) {
+            return null;
+        }
+        List<Proposta> propostas = new ArrayList<>();
+        for (String idProposta : this.bd.propostasMenu.comPrefixo(BaseDadosMemoria.prefixo(idMenu))) {
+            Proposta p = PropostaDAOMemoria.lerProposta(this.bd, idProposta);
+            if (p != null) {
+                propostas.add(p);
+            }
+        }
+        return new Menu(linha.idMenu, linha.nome, linha.precoTotal, propostas);
+    }
+
+    /**
+     * Método que gera um novo ID único para um Menu
+     *
+     * @return Novo ID único para um Menu
+     */
+    @Override
+    public String generateNewId() {
+        return "M" + this.bd.proximoNumero("Menu");
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de Menus
+     *
+     * @return Número de Menus
+     */
+    @Override
+    public int size() {
+        return this.bd.menus.tamanho();
+    }
+
+    /**
+     * Método que verifica se um determinado ID de Menu existe
+     *
+     * @param key ID do Menu
+     * @return true se o ID existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.bd.menus.contem(key.toString());
+    }
+
+    /**
+     * Método que devolve um Menu a partir do seu ID
+     *
+     * @param key ID do Menu
+     * @return Menu correspondente ao ID, ou null se não existir
+     */
+    @Override
+    public Menu get(Object key) {
+        return this.lerMenu(key.toString());
+    }
+
+    /**
+     * Método que insere ou atualiza um Menu (com as suas Propostas)
+     *
+     * @param key ID do Menu
+     * @param value Menu a inserir ou atualizar
+     * @return Menu previamente associado ao ID, ou null se não existia
+     */
+    @Override
+    public Menu put(String key, Menu value) {
+        String id = value.getIdMenu();
+        return this.bd.escrever(() -> {
+            Menu res = this.lerMenu(key);
+            this.bd.menus.gravar(id, new LinhaMenu(id, value.getNome(), value.getPrecoTotal()));
+            this.bd.propostasMenu.removerComPrefixo(BaseDadosMemoria.prefixo(id));
+            for (Proposta p : value.getPropostasMenu()) {
+                this.bd.propostasMenu.inserir(BaseDadosMemoria.chave(id, p.getIdProposta()), p.getIdProposta());
+            }
+            return res;
+        });
+    }
+
+    /**
+     * Método que remove um Menu (e as suas associações a Propostas)
+     *
+     * @param key ID do Menu a remover
+     * @return Menu removido, ou null se não existia
+     */
+    @Override
+    public Menu remove(Object key) {
+        String id = key.toString();
+        return this.bd.escrever(() -> {
+            Menu t = this.lerMenu(id);
+            this.bd.propostasMenu.removerComPrefixo(BaseDadosMemoria.prefixo(id));
+            this.bd.menus.remover(id);
+            return t;
+        });
+    }
+
+    /**
+     * Método que remove todos os Menus
+     */
+    @Override
+    public void clear() {
+        this.bd.escrever(() -> {
+            this.bd.propostasMenu.limpar();
+            this.bd.menus.limpar();
+            return null;
+        });
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs dos Menus
+     *
+     * @return Conjunto de IDs dos Menus
+     */
+    @Override
+    public Set<String> keySet() {
+        return new HashSet<>(this.bd.menus.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de Menus
+     *
+     * @return Coleção de Menus
+     */
+    @Override
+    public Collection<Menu> values() {
+        Collection<Menu> menus = new ArrayList<>();
+        for (String idMenu : this.bd.menus.chaves()) {
+            Menu m = this.lerMenu(idMenu);
+            if (m != null) {
+                menus.add(m);
+            }
+        }
+        return menus;
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (ID, Menu)
+     *
+     * @return Conjunto de entradas (ID, Menu)
+     */
+    @Override
+    public Set<Entry<String, Menu>> entrySet() {
+        Set<Entry<String, Menu>> menus = new HashSet<>();
+        for (Menu m : this.values()) {
+            menus.add(new AbstractMap.SimpleEntry<>(m.getIdMenu(), m));
+        }
+        return menus;
+    }
+}
@@ -0,0 +1,440 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.DAOconfig;
+import eathubLN.ssCadeia.Pair;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Motor de stock em memória, usado pelo StockDAO quando DAOconfig.STOCK_EM_MEMORIA está ativo.
+ *
+ * No arranque todo o stock é carregado para memória, com um contador por
+ * (restaurante, ingrediente). As consultas leem o contador sem bloqueios; as
+ * alterações são feitas sob um de DAOconfig.STOCK_LISTRAS locks (lock striping),
+ * e um consumo de vários ingredientes bloqueia as listras envolvidas por ordem
+ * crescente, pelo que é atómico (ou tem stock para todos, ou não consome nada).
+ *
+ * Cada alteração acumula também um delta por persistir. Uma thread persiste os
+ * deltas a cada DAOconfig.STOCK_INTERVALO_PERSISTENCIA milissegundos, numa
+ * transação com um UPDATE relativo por entrada alterada, e novamente no
+ * encerramento. A criação e a remoção de entradas são escritas de imediato pelo
+ * StockDAO. A memória é a fonte de verdade: o modo só é correto com uma única
+ * instância da aplicação a alterar o stock.
+ *
+ * Implementa o padrão Singleton.
+ */
+public class MotorStock {
+
+    /** Contador de uma entrada (restaurante, ingrediente) */
+    private static final class Entrada {
+
+        /** ID do restaurante */
+        private final String idRestaurante;
+
+        /** Nome do ingrediente */
+        private final String nomeIngrediente;
+
+        /** Quantidade atual (alterada apenas sob o lock da listra da entrada) */
+        private volatile int quantidade;
+
+        /** Alteração ainda não persistida */
+        private final AtomicInteger delta;
+
+        /**
+         * Construtor parametrizado
+         *
+         * @param idRestaurante ID do restaurante
+         * @param nomeIngrediente Nome do ingrediente
+         * @param quantidade Quantidade inicial (já persistida)
+         */
+        private Entrada(String idRestaurante, String nomeIngrediente, int quantidade) {
+            this.idRestaurante = idRestaurante;
+            this.nomeIngrediente = nomeIngrediente;
+            this.quantidade = quantidade;
+            this.delta = new AtomicInteger();
+        }
+    }
+
+    // UPDATE relativo: uma linha entretanto removida não é recriada
+    private static final String SQL_APLICAR_DELTA =
+        "UPDATE Stock SET quantidade = quantidade + ? WHERE nomeIngrediente_FK=? AND idRestaurante_FK=?";
+
+    /** Instância única da classe */
+    private static MotorStock singleton = null;
+
+    /** Entradas, indexadas por chave(idRestaurante, nomeIngrediente) */
+    private final ConcurrentHashMap<String, Entrada> entradas;
+
+    /** Locks das listras */
+    private final ReentrantLock[] listras;
+
+    /** Exclusão mútua entre persistências */
+    private final Object persistencia;
+
+    /** Thread de persistência periódica (null se o motor não estiver ativo) */
+    private ScheduledExecutorService persistidor;
+
+    /** Indica se o motor está ativo */
+    private volatile boolean ativo;
+
+    /** Número de consumos registados */
+    private final LongAdder consumos;
+
+    /** Número de consumos recusados por falta de stock */
+    private final LongAdder recusados;
+
+    /** Número de entradas persistidas */
+    private final LongAdder persistidas;
+
+    /**
+     * Construtor privado para evitar instanciação externa
+     */
+    private MotorStock() {
+        this.entradas = new ConcurrentHashMap<>();
+        this.listras = new ReentrantLock[DAOconfig.STOCK_LISTRAS];
+        for (int i = 0; i < this.listras.length; i++) {
+            this.listras[i] = new ReentrantLock();
+        }
+        this.persistencia = new Object();
+        this.persistidor = null;
+        this.ativo = false;
+        this.consumos = new LongAdder();
+        this.recusados = new LongAdder();
+        this.persistidas = new LongAdder();
+    }
+
+    /**
+     * Método que devolve a instância única da classe
+     *
+     * @return Instância única da classe
+     */
+    public static synchronized MotorStock getInstance() {
+        if (singleton == null) {
+            singleton = new MotorStock();
+        }
+        return singleton;
+    }
+
+    /**
+     * Método que, se o modo estiver configurado, carrega o stock para memória e inicia a
+     * persistência periódica e o hook de encerramento
+     */
+    public synchronized void iniciar() {
+        if (!DAOconfig.STOCK_EM_MEMORIA || this.ativo) {
+            return;
+        }
+        try (Stream<Map.Entry<Pair<String, String>, Integer>> s = StockDAO.getInstance().entrySetStream()) {
+            s.forEach(e -> this.carregar(e.getKey().getFirst(), e.getKey().getSecond(), e.getValue()));
+        }
+        this.persistidor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "EatHub-stock-persistencia");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervalo = DAOconfig.STOCK_INTERVALO_PERSISTENCIA;
+        this.persistidor.scheduleWithFixedDelay(this::persistirPeriodico, intervalo, intervalo, TimeUnit.MILLISECONDS);
+        this.ativo = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::encerrar, "EatHub-stock-fim"));
+    }
+
+    /**
+     * Método que indica se o motor está ativo
+     *
+     * @return true se o stock deve ser lido e alterado em memória, false caso contrário
+     */
+    public boolean isAtivo() {
+        return this.ativo;
+    }
+
+    /**
+     * Método que persiste de imediato todas as alterações pendentes.
+     * Usado antes de leituras feitas diretamente na base de dados.
+     */
+    public void sincronizar() {
+        if (this.ativo) {
+            this.persistir();
+        }
+    }
+
+    /**
+     * Método que termina a persistência periódica e persiste as alterações pendentes (idempotente).
+     * Depois de encerrado, o StockDAO volta a trabalhar diretamente sobre a base de dados.
+     */
+    public synchronized void encerrar() {
+        if (!this.ativo) {
+            return;
+        }
+        this.ativo = false;
+        this.persistidor.shutdown();
+        try {
+            this.persistidor.awaitTermination(DAOconfig.STOCK_INTERVALO_PERSISTENCIA * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.persistir();
+        this.entradas.clear();
+    }
+
+    /**
+     * Método que devolve as estatísticas atuais do motor de stock
+     *
+     * @return Representação textual das estatísticas
+     */
+    public String getEstatisticas() {
+        int porPersistir = 0;
+        for (Entrada e : this.entradas.values()) {
+            if (e.delta.get() != 0) {
+                porPersistir++;
+            }
+        }
+        return "MotorStock[ativo=" + this.ativo +
+               ", entradas=" + this.entradas.size() +
+               ", porPersistir=" + porPersistir +
+               ", consumos=" + this.consumos.sum() +
+               ", recusados=" + this.recusados.sum() +
+               ", persistidas=" + this.persistidas.sum() + "]";
+    }
+
+    /**
+     * Método que devolve a quantidade em stock de um ingrediente num restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @return Quantidade em stock, ou null se não existir a entrada
+     */
+    Integer quantidade(String idRestaurante, String nomeIngrediente) {
+        Entrada e = this.entradas.get(chave(idRestaurante, nomeIngrediente));
+        return e == null ? null : e.quantidade;
+    }
+
+    /**
+     * Método que consome quantidades de vários ingredientes de um restaurante, atomicamente
+     *
+     * @param idRestaurante ID do restaurante
+     * @param quantidades Quantidade a consumir de cada ingrediente
+     * @return Nomes dos ingredientes sem stock suficiente (lista vazia se o consumo foi registado)
+     */
+    List<String> consumir(String idRestaurante, Map<String, Integer> quantidades) {
+        Map<String, Integer> ordenadas = new TreeMap<>(quantidades);
+        Map<Entrada, Integer> alvo = new LinkedHashMap<>();
+        List<String> emFalta = new ArrayList<>();
+        TreeSet<Integer> indices = new TreeSet<>();
+        for (String nome : ordenadas.keySet()) {
+            indices.add(this.listra(idRestaurante, nome));
+        }
+
+        List<ReentrantLock> bloqueados = new ArrayList<>(indices.size());
+        try {
+            for (int i : indices) {
+                this.listras[i].lock();
+                bloqueados.add(this.listras[i]);
+            }
+            for (Map.Entry<String, Integer> q : ordenadas.entrySet()) {
+                Entrada e = this.entradas.get(chave(idRestaurante, q.getKey()));
+                if (e == null || e.quantidade < q.getValue()) {
+                    emFalta.add(q.getKey());
+                } else {
+                    alvo.put(e, q.getValue());
+                }
+            }
+            if (emFalta.isEmpty()) {
+                for (Map.Entry<Entrada, Integer> a : alvo.entrySet()) {
+                    Entrada e = a.getKey();
+                    e.quantidade -= a.getValue();
+                    e.delta.addAndGet(-a.getValue());
+                }
+            }
+        } finally {
+            for (int i = bloqueados.size() - 1; i >= 0; i--) {
+                bloqueados.get(i).unlock();
+            }
+        }
+
+        if (emFalta.isEmpty()) {
+            this.consumos.increment();
+        } else {
+            this.recusados.increment();
+        }
+        return emFalta;
+    }
+
+    /**
+     * Método que acrescenta uma quantidade a uma entrada existente
+     *
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @param quantidade Quantidade a acrescentar
+     * @return true se a entrada existia, false caso contrário (nada é alterado)
+     */
+    boolean repor(String idRestaurante, String nomeIngrediente, int quantidade) {
+        Entrada e = this.entradas.get(chave(idRestaurante, nomeIngrediente));
+        if (e == null) {
+            return false;
+        }
+        ReentrantLock l = this.listras[this.listra(idRestaurante, nomeIngrediente)];
+        l.lock();
+        try {
+            e.quantidade += quantidade;
+            e.delta.addAndGet(quantidade);
+        } finally {
+            l.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Método que define a quantidade de uma entrada existente
+     *
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @param quantidade Nova quantidade
+     * @return Quantidade anterior, ou null se a entrada não existia (nada é alterado)
+     */
+    Integer definir(String idRestaurante, String nomeIngrediente, int quantidade) {
+        Entrada e = this.entradas.get(chave(idRestaurante, nomeIngrediente));
+        if (e == null) {
+            return null;
+        }
+        ReentrantLock l = this.listras[this.listra(idRestaurante, nomeIngrediente)];
+        l.lock();
+        try {
+            int anterior = e.quantidade;
+            e.quantidade = quantidade;
+            e.delta.addAndGet(quantidade - anterior);
+            return anterior;
+        } finally {
+            l.unlock();
+        }
+    }
+
+    /**
+     * Método que carrega uma entrada já persistida (se ainda não existir em memória)
+     *
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @param quantidade Quantidade persistida
+     */
+    void carregar(String idRestaurante, String nomeIngrediente, int quantidade) {
+        this.entradas.putIfAbsent(chave(idRestaurante, nomeIngrediente),
+                                  new Entrada(idRestaurante, nomeIngrediente, quantidade));
+    }
+
+    /**
+     * Método que esquece uma entrada (e as suas alterações por persistir), depois de removida da base de dados
+     *
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     */
+    void remover(String idRestaurante, String nomeIngrediente) {
+        this.entradas.remove(chave(idRestaurante, nomeIngrediente));
+    }
+
+    /**
+     * Método que esquece todas as entradas de um restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     */
+    void removerRestaurante(String idRestaurante) {
+        this.entradas.values().removeIf(e -> e.idRestaurante.equals(idRestaurante));
+    }
+
+    /**
+     * Método que esquece todas as entradas
+     */
+    void limpar() {
+        this.entradas.clear();
+    }
+
+    /**
+     * Persistência periódica: os erros são registados e as alterações ficam para a próxima vez
+     */
+    private void persistirPeriodico() {
+        try {
+            this.persistir();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Método que persiste as alterações pendentes numa única transação. Se a transação
+     * falhar, os deltas são devolvidos às entradas para serem persistidos mais tarde.
+     */
+    private void persistir() {
+        synchronized (this.persistencia) {
+            List<Entrada> alteradas = new ArrayList<>();
+            List<Integer> deltas = new ArrayList<>();
+            for (Entrada e : this.entradas.values()) {
+                int d = e.delta.getAndSet(0);
+                if (d != 0) {
+                    alteradas.add(e);
+                    deltas.add(d);
+                }
+            }
+            if (alteradas.isEmpty()) {
+                return;
+            }
+
+            try (Connection conn = DAOconfig.getConnectionIsolada()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstm = conn.prepareStatement(SQL_APLICAR_DELTA)) {
+                    for (int i = 0; i < alteradas.size(); i++) {
+                        pstm.setInt(1, deltas.get(i));
+                        pstm.setString(2, alteradas.get(i).nomeIngrediente);
+                        pstm.setString(3, alteradas.get(i).idRestaurante);
+                        pstm.addBatch();
+                    }
+                    pstm.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+                this.persistidas.add(alteradas.size());
+            } catch (SQLException e) {
+                for (int i = 0; i < alteradas.size(); i++) {
+                    alteradas.get(i).delta.addAndGet(deltas.get(i));
+                }
+                e.printStackTrace();
+                throw new NullPointerException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Método que devolve o índice da listra de uma entrada
+     *
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @return Índice da listra
+     */
+    private int listra(String idRestaurante, String nomeIngrediente) {
+        return Math.floorMod(chave(idRestaurante, nomeIngrediente).hashCode(), this.listras.length);
+    }
+
+    /**
+     * Método que devolve a chave interna de uma entrada
+     *
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @return Chave da entrada
+     */
+    private static String chave(String idRestaurante, String nomeIngrediente) {
+        return idRestaurante + '\u0000' + nomeIngrediente;
+    }
+}
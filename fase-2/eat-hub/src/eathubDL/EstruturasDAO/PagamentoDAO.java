@@ -1,18 +1,23 @@
 package eathubDL.EstruturasDAO;
 
+import eathubDL.CursorBD;
 import eathubDL.DAOconfig;
+import eathubDL.SequenciaIds;
+import eathubLN.Pagina;
 import eathubLN.ssComercial.Pagamento;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * DAO responsável pela gestão de pagamentos.
@@ -25,29 +30,39 @@ import java.util.Set;
  */
 public class PagamentoDAO implements Map<String, Pagamento>{
     
-    /** ID máximo guardado */
-    private int maxId;
+    /** Sequência que gera os IDs */
+    private final SequenciaIds ids;
 
     /** Instância única da classe */
     private static PagamentoDAO singleton = null;
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT * FROM Pagamento WHERE idPagamento=?";
+    private static final String SQL_DELETE_FATURA = "DELETE FROM Fatura WHERE idPagamento_FK=?";
+    private static final String SQL_DELETE = "DELETE FROM Pagamento WHERE idPagamento=?";
+    private static final String SQL_PAGINA = "SELECT * FROM Pagamento WHERE idPagamento > ? ORDER BY idPagamento LIMIT ?";
+    private static final String SQL_GET_PEDIDO = "SELECT * FROM Pagamento WHERE idPedido=?";
+    private static final String SQL_EXISTE_PEDIDO = "SELECT 1 FROM Pagamento WHERE idPedido=?";
+    // Um pedido tem no máximo um pagamento (índice único uq_pagamento_pedido); um duplicado não é inserido e conta 0 linhas
+    private static final String SQL_REGISTAR =
+        "INSERT IGNORE INTO Pagamento (idPagamento, valor, idPedido, metodoPagamento) VALUES (?, ?, ?, ?)";
     
     /** 
-     * Construtor privado para evitar instanciação externa
-     * 
-     * Inicializa o maxId com o maior ID existente na base de dados
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, PagamentoDAOMemoria)
      */
-    private PagamentoDAO() {
-        this.maxId = loadMaxIdFromDatabase();
+    PagamentoDAO() {
+        this.ids = new SequenciaIds("Pagamento", "PAG", "Pagamento", "idPagamento", DAOconfig.BLOCO_IDS);
     }
 
     /** 
-     * Método que devolve a instância única da classe
+     * Método que devolve a instância única da classe (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe
      */
-    public static PagamentoDAO getInstance() {
+    public static synchronized PagamentoDAO getInstance() {
         if (singleton == null) {
-            singleton = new PagamentoDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new PagamentoDAOMemoria() : new PagamentoDAO();
         }
         return singleton;
     }
@@ -58,31 +73,87 @@ public class PagamentoDAO implements Map<String, Pagamento>{
      * @return Novo ID único para um Pagamento
      */
     public String generateNewId() {
-        this.maxId++;
-        return "PAG" + (maxId);
+        return this.ids.proximoId();
     }
     
     /** 
-     * Método que carrega o maior ID existente na base de dados
+     * Método que devolve o pagamento de um pedido (consulta pelo índice único de idPedido)
      * 
-     * @return Maior ID existente na base de dados
+     * @param idPedido Código do pedido
+     * @return Pagamento do pedido, ou null se o pedido não tiver sido pago
      */
-    private int loadMaxIdFromDatabase() {
-        int max = 0;
-        for (String id : this.keySet()) {
-            if (id.startsWith("PAG")) {
-                try {
-                    int num = Integer.parseInt(id.substring(3));
-                    if (num > max) {
-                        max = num;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora IDs com formato inválido
+    public Pagamento getPorPedido(String idPedido) {
+        Pagamento res = null;
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_GET_PEDIDO)) {
+            pstm.setString(1, idPedido);
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (rs.next()) {
+                    res = this.lerPagamento(rs);
                 }
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        return res;
+    }
+
+    /** 
+     * Método que verifica se um pedido já foi pago (consulta apenas ao índice de idPedido)
+     * 
+     * @param idPedido Código do pedido
+     * @return true se existir um pagamento do pedido, false caso contrário
+     */
+    public boolean existeParaPedido(String idPedido) {
+        boolean r;
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_EXISTE_PEDIDO)) {
+            pstm.setString(1, idPedido);
+            try (ResultSet rs = pstm.executeQuery()) {
+                r = rs.next();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        return r;
+    }
+
+    /** 
+     * Método que regista o pagamento de um pedido de forma idempotente: se o pedido já
+     * tiver um pagamento, nada é inserido e é devolvido o pagamento existente
+     * 
+     * @param value Pagamento a registar
+     * @return Pagamento do pedido (o registado, ou o que já existia)
+     */
+    public Pagamento registar(Pagamento value) {
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_REGISTAR)) {
+            pstm.setString(1, value.getIdPagamento());
+            pstm.setDouble(2, value.getValorPagamento());
+            pstm.setString(3, value.getIdPedido());
+            pstm.setString(4, value.getMetodoPagamento().toString());
+            if (pstm.executeUpdate() == 1) {
+                return value;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
         }
-        
-        return max;
+        return this.getPorPedido(value.getIdPedido());
+    }
+
+    /** 
+     * Método que constrói um Pagamento a partir da linha atual de um ResultSet
+     * 
+     * @param rs ResultSet posicionado numa linha da tabela Pagamento
+     * @return Pagamento lido
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private Pagamento lerPagamento(ResultSet rs) throws SQLException {
+        return new Pagamento(rs.getString("idPagamento"), rs.getDouble("valor"),
+                             rs.getString("idPedido"), rs.getString("metodoPagamento"));
     }
     
     // Implementação dos métodos obrigatórios de Map
@@ -95,7 +166,7 @@ public class PagamentoDAO implements Map<String, Pagamento>{
     @Override
     public int size() {
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Pagamento")) {
             if(rs.next()) {
@@ -129,7 +200,7 @@ public class PagamentoDAO implements Map<String, Pagamento>{
     @Override
     public boolean containsKey(Object key) {
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("SELECT IdPagamento FROM Pagamento WHERE IdPagamento=?")) {
             pstm.setString(1, key.toString());
             try (ResultSet rs = pstm.executeQuery()) {
@@ -164,15 +235,17 @@ public class PagamentoDAO implements Map<String, Pagamento>{
     @Override
     public Pagamento get(Object key) {
         Pagamento novo = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();
-             ResultSet rs = stm.executeQuery("SELECT * FROM Pagamento WHERE idPagamento ='" + key.toString() + "'")) {
-            if(rs.next()) {
-                String idPagamento = rs.getString("idPagamento");
-                double valor = rs.getDouble("valor");
-                String idPedido = rs.getString("idPedido");
-                String metodoPagamento = rs.getString("metodoPagamento");
-                novo = new Pagamento(idPagamento,valor,idPedido,metodoPagamento);
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
+            pstm.setString(1, key.toString());
+            try (ResultSet rs = pstm.executeQuery()) {
+                if(rs.next()) {
+                    String idPagamento = rs.getString("idPagamento");
+                    double valor = rs.getDouble("valor");
+                    String idPedido = rs.getString("idPedido");
+                    String metodoPagamento = rs.getString("metodoPagamento");
+                    novo = new Pagamento(idPagamento,valor,idPedido,metodoPagamento);
+                }
             }
         }
         catch (Exception e) {
@@ -193,7 +266,7 @@ public class PagamentoDAO implements Map<String, Pagamento>{
     @Override
     public Pagamento put(String key, Pagamento value) {
         Pagamento res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Verificar se já existe
             res = this.get(key);
             
@@ -231,11 +304,15 @@ public class PagamentoDAO implements Map<String, Pagamento>{
      */
     @Override
     public Pagamento remove(Object key) {
+        EscritaDiferida.getInstance().sincronizar();
         Pagamento t = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            stm.executeUpdate("DELETE FROM Fatura WHERE idPagamento_FK='" + key.toString() + "'"); 
-            stm.executeUpdate("DELETE FROM Pagamento WHERE idPagamento='" + key.toString() + "'");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstmFatura = conn.prepareStatement(SQL_DELETE_FATURA);
+            PreparedStatement pstm = conn.prepareStatement(SQL_DELETE)) {
+            pstmFatura.setString(1, key.toString());
+            pstmFatura.executeUpdate();
+            pstm.setString(1, key.toString());
+            pstm.executeUpdate();
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
@@ -261,7 +338,8 @@ public class PagamentoDAO implements Map<String, Pagamento>{
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        EscritaDiferida.getInstance().sincronizar();
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
             stm.executeUpdate("DELETE FROM Fatura");
             stm.executeUpdate("DELETE FROM Pagamento");
@@ -279,7 +357,7 @@ public class PagamentoDAO implements Map<String, Pagamento>{
     @Override
     public Set<String> keySet() {
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT idPagamento FROM Pagamento")) {
             while (rs.next()) {
@@ -301,7 +379,7 @@ public class PagamentoDAO implements Map<String, Pagamento>{
     public Collection<Pagamento> values() {
         Pagamento novo = null;
         Collection<Pagamento> pagamentos = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT * FROM Pagamento")) {
             while (rs.next()) {
@@ -321,6 +399,44 @@ public class PagamentoDAO implements Map<String, Pagamento>{
         return pagamentos;
     }
     
+    /** 
+     * Método que devolve os pagamentos lidos em cursor, sem carregar a tabela inteira em memória.
+     * O Stream deve ser fechado (ou consumido até ao fim) para devolver a conexão ao pool.
+     * 
+     * @return Stream dos pagamentos
+     */
+    public Stream<Pagamento> valuesStream() {
+        return CursorBD.abrir("SELECT * FROM Pagamento",
+                              rs -> new Pagamento(rs.getString("idPagamento"), rs.getDouble("valor"),
+                                                  rs.getString("idPedido"), rs.getString("metodoPagamento"))).stream();
+    }
+
+    /** 
+     * Método que devolve uma página de pagamentos, por ordem de ID
+     * 
+     * @param depoisDe ID do último pagamento da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de pagamentos na página
+     * @return Página de pagamentos
+     */
+    public Pagina<Pagamento> pagina(String depoisDe, int tamanho) {
+        List<Pagamento> lidos = new ArrayList<>();
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_PAGINA)) {
+            pstm.setString(1, depoisDe != null ? depoisDe : "");
+            pstm.setInt(2, tamanho + 1);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    lidos.add(new Pagamento(rs.getString("idPagamento"), rs.getDouble("valor"),
+                                            rs.getString("idPedido"), rs.getString("metodoPagamento")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        return Pagina.de(lidos, tamanho, Pagamento::getIdPagamento);
+    }
+
     /** 
      * Método que devolve o conjunto de entradas (ID, Pagamento) na base de dados
      * 
@@ -330,7 +446,7 @@ public class PagamentoDAO implements Map<String, Pagamento>{
     public Set<Entry<String, Pagamento>> entrySet() {
         Pagamento novo = null;
         Set<Entry<String, Pagamento>> pagamentos = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT * FROM Pagamento")) {
             while (rs.next()) {
@@ -0,0 +1,274 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubDL.BaseDadosMemoria.LinhaFatura;
+import eathubDL.BaseDadosMemoria.LinhaPagamento;
+import eathubLN.Pagina;
+import eathubLN.ssComercial.Pagamento;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Implementação em memória do PagamentoDAO, sobre a tabela Pagamento da BaseDadosMemoria.
+ * O índice único de idPedido é mantido na tabela pagamentoPorPedido.
+ */
+class PagamentoDAOMemoria extends PagamentoDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar PagamentoDAO.getInstance)
+     */
+    PagamentoDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que constrói um Pagamento a partir de uma linha da tabela em memória
+     *
+     * @param linha Linha da tabela Pagamento
+     * @return Pagamento, ou null se a linha for null
+     */
+    private static Pagamento lerPagamento(LinhaPagamento linha) {
+        return linha != null ? new Pagamento(linha.idPagamento, linha.valor, linha.idPedido, linha.metodoPagamento) : null;
+    }
+
+    /**
+     * Método que remove um Pagamento, as faturas que o referem e a sua entrada no índice de idPedido
+     *
+     * @param bd Base de dados em memória
+     * @param idPagamento ID do Pagamento
+     * @return Linha removida, ou null se não existia
+     */
+    static LinhaPagamento removerPagamento(BaseDadosMemoria bd, String idPagamento) {
+        return bd.escrever(() -> {
+            for (LinhaFatura f : bd.faturas.linhas()) {
+                if (idPagamento.equals(f.idPagamento)) {
+                    bd.faturas.remover(f.idFatura);
+                }
+            }
+            LinhaPagamento linha = bd.pagamentos.remover(idPagamento);
+            if (linha != null && idPagamento.equals(bd.pagamentoPorPedido.get(linha.idPedido))) {
+                bd.pagamentoPorPedido.remover(linha.idPedido);
+            }
+            return linha;
+        });
+    }
+
+    /**
+     * Método que grava a linha de um Pagamento, mantendo o índice único de idPedido
+     *
+     * @param value Pagamento a gravar
+     * @return Linha anterior, ou null se não existia
+     * @throws NullPointerException Se o pedido já tiver outro pagamento
+     */
+    private LinhaPagamento gravar(Pagamento value) {
+        String id = value.getIdPagamento();
+        LinhaPagamento anterior = this.bd.pagamentos.gravar(id, new LinhaPagamento(id, value.getValorPagamento(), value.getIdPedido(),
+                                                                                 value.getMetodoPagamento().toString()));
+        if (anterior != null && id.equals(this.bd.pagamentoPorPedido.get(anterior.idPedido))) {
+            this.bd.pagamentoPorPedido.remover(anterior.idPedido);
+        }
+        if (!id.equals(this.bd.pagamentoPorPedido.get(value.getIdPedido()))) {
+            this.bd.pagamentoPorPedido.inserir(value.getIdPedido(), id);
+        }
+        return anterior;
+    }
+
+    /**
+     * Método que gera um novo ID único para um Pagamento
+     *
+     * @return Novo ID único para um Pagamento
+     */
+    @Override
+    public String generateNewId() {
+        return "PAG" + this.bd.proximoNumero("Pagamento");
+    }
+
+    /**
+     * Método que devolve o pagamento de um pedido (consulta pelo índice de idPedido)
+     *
+     * @param idPedido Código do pedido
+     * @return Pagamento do pedido, ou null se o pedido não tiver sido pago
+     */
+    @Override
+    public Pagamento getPorPedido(String idPedido) {
+        String idPagamento = this.bd.pagamentoPorPedido.get(idPedido);
+        return idPagamento != null ? lerPagamento(this.bd.pagamentos.get(idPagamento)) : null;
+    }
+
+    /**
+     * Método que verifica se um pedido já foi pago
+     *
+     * @param idPedido Código do pedido
+     * @return true se existir um pagamento do pedido, false caso contrário
+     */
+    @Override
+    public boolean existeParaPedido(String idPedido) {
+        return this.bd.pagamentoPorPedido.contem(idPedido);
+    }
+
+    /**
+     * Método que regista o pagamento de um pedido de forma idempotente: se o pedido já
+     * tiver um pagamento, nada é inserido e é devolvido o pagamento existente
+     *
+     * @param value Pagamento a registar
+     * @return Pagamento do pedido (o registado, ou o que já existia)
+     */
+    @Override
+    public Pagamento registar(Pagamento value) {
+        return this.bd.escrever(() -> {
+            Pagamento existente = this.getPorPedido(value.getIdPedido());
+            if (existente != null) {
+                return existente;
+            }
+            this.bd.pagamentos.inserir(value.getIdPagamento(), new LinhaPagamento(value.getIdPagamento(), value.getValorPagamento(),
+                                                                               value.getIdPedido(), value.getMetodoPagamento().toString()));
+            this.bd.pagamentoPorPedido.inserir(value.getIdPedido(), value.getIdPagamento());
+            return value;
+        });
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de Pagamentos
+     *
+     * @return Número de Pagamentos
+     */
+    @Override
+    public int size() {
+        return this.bd.pagamentos.tamanho();
+    }
+
+    /**
+     * Método que verifica se um determinado ID de Pagamento existe
+     *
+     * @param key ID do Pagamento
+     * @return true se o ID existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.bd.pagamentos.contem(key.toString());
+    }
+
+    /**
+     * Método que devolve um Pagamento a partir do seu ID
+     *
+     * @param key ID do Pagamento
+     * @return Pagamento correspondente ao ID, ou null se não existir
+     */
+    @Override
+    public Pagamento get(Object key) {
+        return lerPagamento(this.bd.pagamentos.get(key.toString()));
+    }
+
+    /**
+     * Método que insere ou atualiza um Pagamento
+     *
+     * @param key ID do Pagamento
+     * @param value Pagamento a inserir ou atualizar
+     * @return Pagamento previamente associado ao ID, ou null se não existia
+     */
+    @Override
+    public Pagamento put(String key, Pagamento value) {
+        return lerPagamento(this.bd.escrever(() -> this.gravar(value)));
+    }
+
+    /**
+     * Método que remove um Pagamento e as faturas que o referem
+     *
+     * @param key ID do Pagamento a remover
+     * @return Pagamento removido, ou null se não existia
+     */
+    @Override
+    public Pagamento remove(Object key) {
+        return lerPagamento(removerPagamento(this.bd, key.toString()));
+    }
+
+    /**
+     * Método que remove todos os Pagamentos (e as faturas)
+     */
+    @Override
+    public void clear() {
+        this.bd.escrever(() -> {
+            this.bd.faturas.limpar();
+            this.bd.pagamentoPorPedido.limpar();
+            this.bd.pagamentos.limpar();
+            return null;
+        });
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs dos Pagamentos
+     *
+     * @return Conjunto de IDs dos Pagamentos
+     */
+    @Override
+    public Set<String> keySet() {
+        return new HashSet<>(this.bd.pagamentos.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de Pagamentos
+     *
+     * @return Coleção de Pagamentos
+     */
+    @Override
+    public Collection<Pagamento> values() {
+        Collection<Pagamento> pagamentos = new HashSet<>();
+        for (LinhaPagamento linha : this.bd.pagamentos.linhas()) {
+            pagamentos.add(lerPagamento(linha));
+        }
+        return pagamentos;
+    }
+
+    /**
+     * Método que devolve os Pagamentos, por ordem de ID
+     *
+     * @return Stream dos Pagamentos
+     */
+    @Override
+    public Stream<Pagamento> valuesStream() {
+        return this.bd.pagamentos.linhas().stream().map(PagamentoDAOMemoria::lerPagamento);
+    }
+
+    /**
+     * Método que devolve uma página de Pagamentos, por ordem de ID
+     *
+     * @param depoisDe ID do último Pagamento da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de Pagamentos na página
+     * @return Página de Pagamentos
+     */
+    @Override
+    public Pagina<Pagamento> pagina(String depoisDe, int tamanho) {
+        List<Pagamento> lidos = new ArrayList<>();
+        for (LinhaPagamento linha : this.bd.pagamentos.depoisDe(depoisDe)) {
+            if (lidos.size() > tamanho) {
+                break;
+            }
+            lidos.add(lerPagamento(linha));
+        }
+        return Pagina.de(lidos, tamanho, Pagamento::getIdPagamento);
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (ID, Pagamento)
+     *
+     * @return Conjunto de entradas (ID, Pagamento)
+     */
+    @Override
+    public Set<Entry<String, Pagamento>> entrySet() {
+        Set<Entry<String, Pagamento>> pagamentos = new HashSet<>();
+        for (LinhaPagamento linha : this.bd.pagamentos.linhas()) {
+            pagamentos.add(new AbstractMap.SimpleEntry<>(linha.idPagamento, lerPagamento(linha)));
+        }
+        return pagamentos;
+    }
+}
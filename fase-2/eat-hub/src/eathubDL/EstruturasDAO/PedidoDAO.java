@@ -1,9 +1,11 @@
 package eathubDL.EstruturasDAO;
 
+import eathubDL.CursorBD;
 import eathubDL.DAOconfig;
+import eathubDL.SequenciaIds;
+import eathubLN.Pagina;
 import eathubLN.ssPedidos.Pedido;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -11,10 +13,15 @@ import java.sql.Statement;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * DAO responsável pela gestão de pedidos.
@@ -27,30 +34,72 @@ import java.util.Set;
  */
 public class PedidoDAO implements Map<String, Pedido> {
     
-    /** ID máximo guardado */
-    private int maxId;
+    /** Sequência que gera os IDs */
+    private final SequenciaIds ids;
 
     /** Instância única da classe */
     private static PedidoDAO singleton = null;
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT * FROM Pedido WHERE idPedido=?";
+    private static final String SQL_MENUS_PEDIDO = "SELECT idM_FK, quantidade FROM MenuPedido WHERE idPedido_FK=?";
+    private static final String SQL_PROPOSTAS_PEDIDO = "SELECT idProposta_FK, quantidade FROM PropostaPedido WHERE idPedido_FK=?";
+    private static final String SQL_INSERT = "INSERT INTO Pedido (idPedido, tipoServico, tempoEspera, nContribuinte, notas) VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_UPDATE = "UPDATE Pedido SET tipoServico=?, nContribuinte=?, notas=?, tempoEspera=? WHERE idPedido=?";
+    private static final String SQL_INSERT_MENU = "INSERT INTO MenuPedido (idM_FK, idPedido_FK, quantidade) VALUES (?, ?, ?)";
+    private static final String SQL_INSERT_PROPOSTA = "INSERT INTO PropostaPedido (idProposta_FK, idPedido_FK, quantidade) VALUES (?, ?, ?)";
+    private static final String SQL_DELETE_MENUS = "DELETE FROM MenuPedido WHERE idPedido_FK=?";
+    private static final String SQL_DELETE_PROPOSTAS = "DELETE FROM PropostaPedido WHERE idPedido_FK=?";
+    private static final String SQL_PAGAMENTO_PEDIDO = "SELECT idPagamento FROM Pagamento WHERE idPedido=?";
+    private static final String SQL_DELETE_FATURA_PAGAMENTO = "DELETE FROM Fatura WHERE idPagamento_FK=?";
+    private static final String SQL_DELETE_PAGAMENTO = "DELETE FROM Pagamento WHERE idPagamento=?";
+    private static final String SQL_DELETE_TALAO = "DELETE FROM Talao WHERE idPedido_FK=?";
+    private static final String SQL_DELETE_HISTORICO = "DELETE FROM Historico WHERE idPedido_FK=?";
+    private static final String SQL_DELETE = "DELETE FROM Pedido WHERE idPedido=?";
+
+    // Carregamento em bloco (um conjunto de linhas por tabela, agrupado em memória)
+    private static final String SQL_TODOS = "SELECT * FROM Pedido";
+    private static final String SQL_TODOS_MENUS = "SELECT idPedido_FK, idM_FK, quantidade FROM MenuPedido";
+    private static final String SQL_TODAS_PROPOSTAS = "SELECT idPedido_FK, idProposta_FK, quantidade FROM PropostaPedido";
+    private static final String SQL_HISTORICO =
+        "SELECT * FROM Pedido WHERE idPedido IN (SELECT idPedido_FK FROM Historico)";
+    private static final String SQL_HISTORICO_MENUS =
+        "SELECT idPedido_FK, idM_FK, quantidade FROM MenuPedido WHERE idPedido_FK IN (SELECT idPedido_FK FROM Historico)";
+    private static final String SQL_HISTORICO_PROPOSTAS =
+        "SELECT idPedido_FK, idProposta_FK, quantidade FROM PropostaPedido WHERE idPedido_FK IN (SELECT idPedido_FK FROM Historico)";
+    private static final String SQL_HISTORICO_RESTAURANTE =
+        "SELECT * FROM Pedido WHERE idPedido IN (SELECT idPedido_FK FROM Historico WHERE idRestaurante_FK=?)";
+    private static final String SQL_HISTORICO_RESTAURANTE_MENUS =
+        "SELECT idPedido_FK, idM_FK, quantidade FROM MenuPedido WHERE idPedido_FK IN (SELECT idPedido_FK FROM Historico WHERE idRestaurante_FK=?)";
+    private static final String SQL_HISTORICO_RESTAURANTE_PROPOSTAS =
+        "SELECT idPedido_FK, idProposta_FK, quantidade FROM PropostaPedido WHERE idPedido_FK IN (SELECT idPedido_FK FROM Historico WHERE idRestaurante_FK=?)";
+
+    // Leitura em cursor: pedidos e linhas ordenados pelo ID do pedido, percorridos em paralelo
+    static final String SQL_MENUS_ORDENADOS = SQL_TODOS_MENUS + " ORDER BY idPedido_FK";
+    static final String SQL_PROPOSTAS_ORDENADAS = SQL_TODAS_PROPOSTAS + " ORDER BY idPedido_FK";
+    private static final String SQL_TODOS_ORDENADOS = SQL_TODOS + " ORDER BY idPedido";
+
+    // Listagem paginada: os pedidos da página e depois as linhas desses pedidos (IN com um marcador por pedido)
+    private static final String SQL_PAGINA = "SELECT p.* FROM Pedido AS p WHERE p.idPedido > ? ORDER BY p.idPedido LIMIT ?";
+    private static final String SQL_MENUS_PEDIDOS = "SELECT idPedido_FK, idM_FK, quantidade FROM MenuPedido WHERE idPedido_FK IN ";
+    private static final String SQL_PROPOSTAS_PEDIDOS = "SELECT idPedido_FK, idProposta_FK, quantidade FROM PropostaPedido WHERE idPedido_FK IN ";
     
     /** 
-     * Construtor privado para evitar instanciação externa
-     * 
-     * Inicializa o maxId com o maior ID existente na base de dados
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, PedidoDAOMemoria)
      */
-    private PedidoDAO() {
-        this.maxId = loadMaxIdFromDatabase();
-        // Vai buscar o maior ID ao inciar o PedidoDAO
+    PedidoDAO() {
+        this.ids = new SequenciaIds("Pedido", "PED", "Pedido", "idPedido", DAOconfig.BLOCO_IDS);
     }
 
     /** 
-     * Método que devolve a instância única da classe
+     * Método que devolve a instância única da classe (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe
      */
-    public static PedidoDAO getInstance() {
+    public static synchronized PedidoDAO getInstance() {
         if (singleton == null) {
-            singleton = new PedidoDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new PedidoDAOMemoria() : new PedidoDAO();
         }
         return singleton;
     }
@@ -61,33 +110,9 @@ public class PedidoDAO implements Map<String, Pedido> {
      * @return Novo ID único para um Pedido
      */
     public String generateNewId() {
-        this.maxId++;
-        return "PED" + (maxId);
+        return this.ids.proximoId();
     }
     
-    /** 
-     * Método que carrega o maior ID existente na base de dados
-     * 
-     * @return Maior ID existente na base de dados
-     */
-    private int loadMaxIdFromDatabase() {
-        int max = 0;
-        for (String id : this.keySet()) {
-            if (id.startsWith("PED")) {
-                try {
-                    int num = Integer.parseInt(id.substring(3));
-                    if (num > max) {
-                        max = num;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora IDs com formato inválido
-                }
-            }
-        }
-        
-        return max;
-    }
-
     /** 
      * Método que devolve o conjunto de IDs dos Restaurantes na base de dados
      * 
@@ -95,7 +120,7 @@ public class PedidoDAO implements Map<String, Pedido> {
      */
     public Set<String> getIdsRestaurantes(){
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT idRestaurante FROM Restaurante")) {
             while (rs.next()) {
@@ -115,25 +140,38 @@ public class PedidoDAO implements Map<String, Pedido> {
      * @return Coleção de códigos dos Menus associados ao Pedido
      */
     public Collection<String> getCodsMenusPedido(String idPedido) {
-        Collection<String> codsMenus = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT idM_FK, quantidade FROM MenuPedido WHERE idPedido_FK='" + idPedido + "'")) {
-
-            while(rs.next()) {
-                int quantidade = rs.getInt("quantidade");
-                String codMenu = rs.getString("idM_FK");
-                while(quantidade > 0) {
-                    codsMenus.add(codMenu);
-                    quantidade--;
-                }
-            }
-            
+        try (Connection conn = DAOconfig.getConnection()) {
+            return this.getCodsMenusPedido(conn, idPedido);
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
+    }
+
+    /** 
+     * Método que lê os códigos dos Menus associados a um Pedido numa ligação já aberta
+     * 
+     * @param conn Ligação à base de dados
+     * @param idPedido ID do Pedido
+     * @return Lista de códigos dos Menus associados ao Pedido
+     * @throws SQLException Erro na consulta
+     */
+    private List<String> getCodsMenusPedido(Connection conn, String idPedido) throws SQLException {
+        List<String> codsMenus = new ArrayList<>();
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_MENUS_PEDIDO)) {
+            pstm.setString(1, idPedido);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while(rs.next()) {
+                    int quantidade = rs.getInt("quantidade");
+                    String codMenu = rs.getString("idM_FK");
+                    while(quantidade > 0) {
+                        codsMenus.add(codMenu);
+                        quantidade--;
+                    }
+                }
+            }
+        }
         return codsMenus;
     }
     
@@ -144,28 +182,313 @@ public class PedidoDAO implements Map<String, Pedido> {
      * @return Coleção de códigos das Propostas associadas ao Pedido
      */
     public Collection<String> getCodsPropostasPedido(String idPedido) {
-        Collection<String> codsP = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT idProposta_FK, quantidade FROM PropostaPedido WHERE idPedido_FK='" + idPedido + "'")) {
-
-            while(rs.next()) {
-                String codProposta = rs.getString("idProposta_FK");
-                int quantidade = rs.getInt("quantidade");
-                while(quantidade > 0) {
-                    codsP.add(codProposta);
-                    quantidade--;
-                }
-            }
-            
+        try (Connection conn = DAOconfig.getConnection()) {
+            return this.getCodsPropostasPedido(conn, idPedido);
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
+    }
+
+    /** 
+     * Método que lê os códigos das Propostas associadas a um Pedido numa ligação já aberta
+     * 
+     * @param conn Ligação à base de dados
+     * @param idPedido ID do Pedido
+     * @return Lista de códigos das Propostas associadas ao Pedido
+     * @throws SQLException Erro na consulta
+     */
+    private List<String> getCodsPropostasPedido(Connection conn, String idPedido) throws SQLException {
+        List<String> codsP = new ArrayList<>();
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_PROPOSTAS_PEDIDO)) {
+            pstm.setString(1, idPedido);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while(rs.next()) {
+                    String codProposta = rs.getString("idProposta_FK");
+                    int quantidade = rs.getInt("quantidade");
+                    while(quantidade > 0) {
+                        codsP.add(codProposta);
+                        quantidade--;
+                    }
+                }
+            }
+        }
         return codsP;
     }
     
+    /** 
+     * Método que devolve os Pedidos presentes no histórico, carregados em bloco
+     * 
+     * @param idRestaurante ID do restaurante, ou null para o histórico de toda a cadeia
+     * @return Mapa de ID do Pedido para Pedido
+     */
+    public Map<String, Pedido> getPedidosHistorico(String idRestaurante) {
+        try (Connection conn = DAOconfig.getConnection()) {
+            if (idRestaurante == null) {
+                return this.carregarPedidos(conn, SQL_HISTORICO, SQL_HISTORICO_MENUS, SQL_HISTORICO_PROPOSTAS);
+            }
+            return this.carregarPedidos(conn, SQL_HISTORICO_RESTAURANTE, SQL_HISTORICO_RESTAURANTE_MENUS,
+                                        SQL_HISTORICO_RESTAURANTE_PROPOSTAS, idRestaurante);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /** 
+     * Método que carrega um conjunto de Pedidos com três consultas (pedidos, menus e propostas),
+     * juntando as linhas em memória em vez de consultar as linhas de cada Pedido em separado
+     * 
+     * @param conn Conexão a utilizar
+     * @param sqlPedidos Consulta dos pedidos
+     * @param sqlMenus Consulta das linhas (idPedido_FK, idM_FK, quantidade) dos mesmos pedidos
+     * @param sqlPropostas Consulta das linhas (idPedido_FK, idProposta_FK, quantidade) dos mesmos pedidos
+     * @param params Parâmetros comuns às três consultas
+     * @return Mapa de ID do Pedido para Pedido
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private Map<String, Pedido> carregarPedidos(Connection conn, String sqlPedidos, String sqlMenus,
+                                                String sqlPropostas, String... params) throws SQLException {
+        Map<String, List<String>> menus = this.carregarLinhas(conn, sqlMenus, "idM_FK", params);
+        Map<String, List<String>> propostas = this.carregarLinhas(conn, sqlPropostas, "idProposta_FK", params);
+
+        Map<String, Pedido> pedidos = new LinkedHashMap<>();
+        try (PreparedStatement pstm = conn.prepareStatement(sqlPedidos)) {
+            for (int i = 0; i < params.length; i++) {
+                pstm.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    String idPedido = rs.getString("idPedido");
+                    List<String> codsMenus = menus.getOrDefault(idPedido, new ArrayList<>());
+                    List<String> codsPropostas = propostas.getOrDefault(idPedido, new ArrayList<>());
+                    pedidos.put(idPedido, this.lerPedido(rs, codsMenus, codsPropostas));
+                }
+            }
+        }
+        return pedidos;
+    }
+
+    /** 
+     * Método que constrói um Pedido a partir da linha atual de uma consulta sobre a tabela Pedido
+     * 
+     * @param rs Resultado posicionado na linha do Pedido
+     * @param codsMenus Códigos dos Menus do Pedido
+     * @param codsPropostas Códigos das Propostas do Pedido
+     * @return Pedido construído
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private Pedido lerPedido(ResultSet rs, List<String> codsMenus, List<String> codsPropostas) throws SQLException {
+        String idPedido = rs.getString("idPedido");
+        String tipoServico = rs.getString("tipoServico");
+        double tempoEspera = rs.getDouble("tempoEspera");
+        int nContribuinte = rs.getInt("nContribuinte");
+        String notas = rs.getString("notas");
+        return new Pedido(idPedido, tempoEspera, nContribuinte, notas, codsMenus, codsPropostas, tipoServico);
+    }
+
+    /** 
+     * Método que devolve os Pedidos lidos em cursor, sem carregar a tabela inteira em memória.
+     * O Stream deve ser fechado (ou consumido até ao fim) para devolver a conexão ao pool.
+     * 
+     * @return Stream dos Pedidos, por ordem de ID
+     */
+    public Stream<Pedido> valuesStream() {
+        return CursorBD.abrirComConexao(SQL_TODOS_ORDENADOS,
+                                        conn -> this.leitorPedidos(conn, SQL_MENUS_ORDENADOS, SQL_PROPOSTAS_ORDENADAS)).stream();
+    }
+
+    /** 
+     * Método que devolve uma página de Pedidos, por ordem de ID (uma consulta para os pedidos e uma por tabela de linhas)
+     * 
+     * @param depoisDe ID do último Pedido da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de Pedidos na página
+     * @return Página de Pedidos
+     */
+    public Pagina<Pedido> pagina(String depoisDe, int tamanho) {
+        List<Pedido> lidos = new ArrayList<>();
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_PAGINA)) {
+            pstm.setString(1, depoisDe != null ? depoisDe : "");
+            pstm.setInt(2, tamanho + 1);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    lidos.add(this.lerPedidoSemLinhas(rs));
+                }
+            }
+            this.carregarLinhasPedidos(conn, lidos);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        return Pagina.de(lidos, tamanho, Pedido::getCodPedido);
+    }
+
+    /** 
+     * Método que constrói um Pedido sem linhas a partir de uma linha de uma consulta que inclui as
+     * colunas de Pedido (as linhas são acrescentadas depois, com carregarLinhasPedidos)
+     * 
+     * @param rs Resultado posicionado na linha do Pedido
+     * @return Pedido construído, ou null se a linha não tiver Pedido associado
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    Pedido lerPedidoSemLinhas(ResultSet rs) throws SQLException {
+        if (rs.getString("idPedido") == null) {
+            return null;
+        }
+        return this.lerPedido(rs, new ArrayList<>(), new ArrayList<>());
+    }
+
+    /** 
+     * Método que acrescenta aos Pedidos dados (lidos com lerPedidoSemLinhas) as suas linhas de Menus e
+     * Propostas, com uma consulta por tabela sobre os IDs desses Pedidos
+     * 
+     * @param conn Conexão a utilizar
+     * @param pedidos Pedidos a completar (os elementos nulos são ignorados)
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    void carregarLinhasPedidos(Connection conn, Collection<Pedido> pedidos) throws SQLException {
+        Set<String> ids = new LinkedHashSet<>();
+        for (Pedido p : pedidos) {
+            if (p != null) {
+                ids.add(p.getCodPedido());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        String marcadores = "(" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        String[] params = ids.toArray(new String[0]);
+        Map<String, List<String>> menus = this.carregarLinhas(conn, SQL_MENUS_PEDIDOS + marcadores, "idM_FK", params);
+        Map<String, List<String>> propostas = this.carregarLinhas(conn, SQL_PROPOSTAS_PEDIDOS + marcadores, "idProposta_FK", params);
+        for (Pedido p : pedidos) {
+            if (p == null) {
+                continue;
+            }
+            for (String codMenu : menus.getOrDefault(p.getCodPedido(), new ArrayList<>())) {
+                p.addMenu(codMenu);
+            }
+            for (String codProposta : propostas.getOrDefault(p.getCodPedido(), new ArrayList<>())) {
+                p.addProposta(codProposta);
+            }
+        }
+    }
+
+    /** 
+     * Método que cria um leitor de Pedidos para uma consulta ordenada pelo ID do pedido. As linhas
+     * de Menus e Propostas são lidas em dois cursores auxiliares, na mesma ordem, e associadas ao
+     * Pedido atual à medida que o cursor principal avança (um único percurso por tabela).
+     * 
+     * @param conn Conexão do cursor principal
+     * @param sqlMenus Consulta das linhas de Menus, ordenada por idPedido_FK
+     * @param sqlPropostas Consulta das linhas de Propostas, ordenada por idPedido_FK
+     * @param params Parâmetros comuns às duas consultas
+     * @return Leitor de Pedidos (devolve null se a linha não tiver Pedido associado)
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    CursorBD.LeitorLinha<Pedido> leitorPedidos(Connection conn, String sqlMenus, String sqlPropostas,
+                                               String... params) throws SQLException {
+        LinhasOrdenadas menus = new LinhasOrdenadas(CursorBD.consultar(conn, sqlMenus, params), "idM_FK");
+        LinhasOrdenadas propostas = new LinhasOrdenadas(CursorBD.consultar(conn, sqlPropostas, params), "idProposta_FK");
+        return rs -> {
+            String idPedido = rs.getString("idPedido");
+            if (idPedido == null) {
+                return null;
+            }
+            return this.lerPedido(rs, menus.linhasDe(idPedido), propostas.linhasDe(idPedido));
+        };
+    }
+
+    /**
+     * Cursor auxiliar sobre as linhas (Menus ou Propostas) de Pedidos, ordenadas por idPedido_FK
+     */
+    private static class LinhasOrdenadas {
+        /** Resultado da consulta das linhas */
+        private final ResultSet rs;
+        /** Coluna com o código do item */
+        private final String colunaCodigo;
+        /** Indica se o cursor está posicionado numa linha ainda não consumida */
+        private boolean pendente;
+        /** Indica se o cursor chegou ao fim */
+        private boolean fim;
+        /** ID do último Pedido servido (o mesmo Pedido pode aparecer em linhas consecutivas) */
+        private String ultimoId;
+        /** Linhas do último Pedido servido */
+        private List<String> ultimasLinhas;
+
+        private LinhasOrdenadas(ResultSet rs, String colunaCodigo) {
+            this.rs = rs;
+            this.colunaCodigo = colunaCodigo;
+            this.pendente = false;
+            this.fim = false;
+        }
+
+        /**
+         * Método que consome as linhas do Pedido indicado, expandidas de acordo com a quantidade
+         *
+         * @param idPedido ID do Pedido (os Pedidos devem ser pedidos pela mesma ordem das linhas)
+         * @return Lista de códigos do Pedido
+         * @throws SQLException Se ocorrer um erro na base de dados
+         */
+        private List<String> linhasDe(String idPedido) throws SQLException {
+            if (idPedido.equals(ultimoId)) {
+                return new ArrayList<>(ultimasLinhas);
+            }
+            List<String> cods = new ArrayList<>();
+            ultimoId = idPedido;
+            ultimasLinhas = cods;
+            while (true) {
+                if (!pendente && !fim) {
+                    pendente = rs.next();
+                    fim = !pendente;
+                }
+                if (!pendente || !idPedido.equals(rs.getString("idPedido_FK"))) {
+                    return new ArrayList<>(cods);
+                }
+                String cod = rs.getString(colunaCodigo);
+                for (int quantidade = rs.getInt("quantidade"); quantidade > 0; quantidade--) {
+                    cods.add(cod);
+                }
+                pendente = false;
+            }
+        }
+    }
+
+    /** 
+     * Método que carrega as linhas (Menus ou Propostas) de vários Pedidos, agrupadas por Pedido
+     * e expandidas de acordo com a quantidade
+     * 
+     * @param conn Conexão a utilizar
+     * @param sql Consulta das linhas
+     * @param colunaCodigo Coluna com o código do item
+     * @param params Parâmetros da consulta
+     * @return Mapa de ID do Pedido para a lista de códigos
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private Map<String, List<String>> carregarLinhas(Connection conn, String sql, String colunaCodigo,
+                                                     String... params) throws SQLException {
+        Map<String, List<String>> linhas = new HashMap<>();
+        try (PreparedStatement pstm = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstm.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    String idPedido = rs.getString("idPedido_FK");
+                    String cod = rs.getString(colunaCodigo);
+                    int quantidade = rs.getInt("quantidade");
+                    List<String> cods = linhas.computeIfAbsent(idPedido, k -> new ArrayList<>());
+                    while (quantidade > 0) {
+                        cods.add(cod);
+                        quantidade--;
+                    }
+                }
+            }
+        }
+        return linhas;
+    }
+    
     // Implementação dos métodos obrigatórios de Map
     
     /** 
@@ -176,7 +499,7 @@ public class PedidoDAO implements Map<String, Pedido> {
     @Override
     public int size() {
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Pedido")) {
             if(rs.next()) {
@@ -210,7 +533,7 @@ public class PedidoDAO implements Map<String, Pedido> {
     @Override
     public boolean containsKey(Object key) {
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             PreparedStatement pstm = conn.prepareStatement("SELECT idPedido FROM Pedido WHERE idPedido=?")) {
             pstm.setString(1, key.toString());
             try (ResultSet rs = pstm.executeQuery()) {
@@ -245,18 +568,20 @@ public class PedidoDAO implements Map<String, Pedido> {
     @Override
     public Pedido get(Object key) {
         Pedido novo = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Pedido WHERE idPedido ='" + key.toString() + "'")) {
-            if(rs.next()) {
-                String tipoServico = rs.getString("tipoServico");
-                double tempoEspera = rs.getDouble("tempoEspera");
-                int nContribuinte = rs.getInt("nContribuinte");
-                String notas = rs.getString("notas");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
+            pstm.setString(1, key.toString());
+            try (ResultSet rs = pstm.executeQuery()) {
+                if(rs.next()) {
+                    String tipoServico = rs.getString("tipoServico");
+                    double tempoEspera = rs.getDouble("tempoEspera");
+                    int nContribuinte = rs.getInt("nContribuinte");
+                    String notas = rs.getString("notas");
 
-                List<String> codsMenus = (List<String>) this.getCodsMenusPedido(key.toString());
-                List<String> codsPropostas = (List<String>) this.getCodsPropostasPedido(key.toString());
-                novo = new Pedido(key.toString(), tempoEspera, nContribuinte, notas, codsMenus, codsPropostas, tipoServico);
+                    List<String> codsMenus = this.getCodsMenusPedido(conn, key.toString());
+                    List<String> codsPropostas = this.getCodsPropostasPedido(conn, key.toString());
+                    novo = new Pedido(key.toString(), tempoEspera, nContribuinte, notas, codsMenus, codsPropostas, tipoServico);
+                }
             }
         }
         catch (Exception e) {
@@ -270,97 +595,88 @@ public class PedidoDAO implements Map<String, Pedido> {
     /** 
      * Método que insere ou atualiza um Pedido na base de dados
      * 
+     * O cabeçalho e todas as linhas são escritos numa única transação: as linhas
+     * são agrupadas por código (uma linha por Menu/Proposta com a respetiva quantidade)
+     * e inseridas em lote.
+     * 
      * @param key ID do Pedido
      * @param value Pedido a inserir ou atualizar
-     * @return Pedido previamente associado ao ID, ou null se não existia
+     * @return null (o Pedido anterior não é lido, para evitar consultas adicionais)
      */
     @Override
     public Pedido put(String key, Pedido value) {
-        Pedido res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
-            // Verificar se já existe
-            res = this.get(key);
-            
-            if (res != null) {
-                // Atualizar
-                try (PreparedStatement pstm = conn.prepareStatement("UPDATE Pedido SET tipoServico=?, nContribuinte=?, notas=?, tempoEspera=? WHERE idPedido=?")) {
+        try (Connection conn = DAOconfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // O driver devolve as linhas encontradas (não só as alteradas), por isso
+                // um UPDATE sem efeito indica que o Pedido ainda não existe
+                boolean existia;
+                try (PreparedStatement pstm = conn.prepareStatement(SQL_UPDATE)) {
                     pstm.setString(1, value.getTipoPedido().toString());
                     pstm.setInt(2, value.getNrContribuinte());
                     pstm.setString(3, value.getNotas());
                     pstm.setDouble(4, value.getTempoEspera());
-                    pstm.setString(5, value.getCodPedido());
-                    pstm.executeUpdate();
-
-                    Statement stm = conn.createStatement();
-                    stm.executeUpdate("DELETE FROM PropostaPedido WHERE idPedido_FK='" + key.toString() + "'");
-                    stm.executeUpdate("DELETE FROM MenuPedido WHERE idPedido_FK='" + key.toString() + "'");
-
-                    // Inserir os menus associados
-                    for (String codMenu : value.getCodMenus()) {
-                        ResultSet rs =  stm.executeQuery("SELECT quantidade FROM MenuPedido WHERE idM_FK = '" + codMenu + "' AND idPedido_FK = '" + value.getCodPedido() + "'");
-                        if(rs.next()) {
-                            int quantidade = rs.getInt("quantidade");
-                            quantidade++;
-                            stm.executeUpdate("UPDATE MenuPedido SET quantidade = " + quantidade + " WHERE idM_FK = '" + codMenu + "' AND idPedido_FK = '" + value.getCodPedido() + "'");
-                        } else {
-                            stm.executeUpdate("INSERT INTO MenuPedido (idM_FK, idPedido_FK, quantidade) VALUES ('" + codMenu + "', '" + value.getCodPedido() + "', 1)");
-                        }
-                    }
+                    pstm.setString(5, key);
+                    existia = pstm.executeUpdate() > 0;
+                }
 
-                    // Inserir as propostas associadas
-                    for (String codProposta : value.getCodPropostas()) {
-                        ResultSet rs =  stm.executeQuery("SELECT quantidade FROM PropostaPedido WHERE idProposta_FK = '" + codProposta + "' AND idPedido_FK = '" + value.getCodPedido() + "'");
-                        if(rs.next()) {
-                            int quantidade = rs.getInt("quantidade");
-                            quantidade++;
-                            stm.executeUpdate("UPDATE PropostaPedido SET quantidade = " + quantidade + " WHERE idProposta_FK = '" + codProposta + "' AND idPedido_FK = '" + value.getCodPedido() + "'");
-                        } else {
-                            stm.executeUpdate("INSERT INTO PropostaPedido (idProposta_FK, idPedido_FK, quantidade) VALUES ('" + codProposta + "', '" + value.getCodPedido() + "', 1)");
-                        }
+                if (existia) {
+                    // Substituir as linhas anteriores
+                    this.executarUpdate(conn, SQL_DELETE_PROPOSTAS, key);
+                    this.executarUpdate(conn, SQL_DELETE_MENUS, key);
+                } else {
+                    try (PreparedStatement pstm = conn.prepareStatement(SQL_INSERT)) {
+                        pstm.setString(1, key);
+                        pstm.setString(2, value.getTipoPedido().toString());
+                        pstm.setDouble(3, value.getTempoEspera());
+                        pstm.setInt(4, value.getNrContribuinte());
+                        pstm.setString(5, value.getNotas());
+                        pstm.executeUpdate();
                     }
                 }
-            } else {
-                // Inserir novo
-                try (PreparedStatement pstm = conn.prepareStatement("INSERT INTO Pedido (idPedido, tipoServico, tempoEspera, nContribuinte, notas) VALUES (?, ?, ?, ?, ?)")) {
-                    pstm.setString(1, value.getCodPedido());
-                    pstm.setString(2, value.getTipoPedido().toString());
-                    pstm.setDouble(3, value.getTempoEspera());
-                    pstm.setInt(4, value.getNrContribuinte());
-                    pstm.setString(5, value.getNotas());
-                    pstm.executeUpdate();
-
-                    Statement stm = conn.createStatement();
 
-                    // Inserir os menus associados
-                    for (String codMenu : value.getCodMenus()) {
-                        ResultSet rs =  stm.executeQuery("SELECT quantidade FROM MenuPedido WHERE idM_FK = '" + codMenu + "' AND idPedido_FK = '" + value.getCodPedido() + "'");
-                        if(rs.next()) {
-                            int quantidade = rs.getInt("quantidade");
-                            quantidade++;
-                            stm.executeUpdate("UPDATE MenuPedido SET quantidade = " + quantidade + " WHERE idM_FK = '" + codMenu + "' AND idPedido_FK = '" + value.getCodPedido() + "'");
-                        } else {
-                            stm.executeUpdate("INSERT INTO MenuPedido (idM_FK, idPedido_FK, quantidade) VALUES ('" + codMenu + "', '" + value.getCodPedido() + "', 1)");
-                        }
-                    }
+                this.inserirLinhas(conn, SQL_INSERT_MENU, key, value.getCodMenus());
+                this.inserirLinhas(conn, SQL_INSERT_PROPOSTA, key, value.getCodPropostas());
 
-                    // Inserir as propostas associadas
-                    for (String codProposta : value.getCodPropostas()) {
-                        ResultSet rs =  stm.executeQuery("SELECT quantidade FROM PropostaPedido WHERE idProposta_FK = '" + codProposta + "' AND idPedido_FK = '" + value.getCodPedido() + "'");
-                        if(rs.next()) {
-                            int quantidade = rs.getInt("quantidade");
-                            quantidade++;
-                            stm.executeUpdate("UPDATE PropostaPedido SET quantidade = " + quantidade + " WHERE idProposta_FK = '" + codProposta + "' AND idPedido_FK = '" + value.getCodPedido() + "'");
-                        } else {
-                            stm.executeUpdate("INSERT INTO PropostaPedido (idProposta_FK, idPedido_FK, quantidade) VALUES ('" + codProposta + "', '" + value.getCodPedido() + "', 1)");
-                        }
-                    }
-                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
-        return res;
+        return null;
+    }
+
+    /** 
+     * Método que insere em lote as linhas de um Pedido, agrupando os códigos repetidos
+     * numa única linha com a respetiva quantidade
+     * 
+     * @param conn Conexão a utilizar
+     * @param sqlInsert Inserção de uma linha (código, idPedido, quantidade)
+     * @param idPedido ID do Pedido
+     * @param cods Códigos dos Menus ou Propostas (um por unidade)
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private void inserirLinhas(Connection conn, String sqlInsert, String idPedido, Collection<String> cods) throws SQLException {
+        if (cods == null || cods.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> quantidades = new LinkedHashMap<>();
+        for (String cod : cods) {
+            quantidades.merge(cod, 1, Integer::sum);
+        }
+        try (PreparedStatement pstm = conn.prepareStatement(sqlInsert)) {
+            for (Map.Entry<String, Integer> linha : quantidades.entrySet()) {
+                pstm.setString(1, linha.getKey());
+                pstm.setString(2, idPedido);
+                pstm.setInt(3, linha.getValue());
+                pstm.addBatch();
+            }
+            pstm.executeBatch();
+        }
     }
     
     /** 
@@ -371,22 +687,37 @@ public class PedidoDAO implements Map<String, Pedido> {
      */
     @Override
     public Pedido remove(Object key) {
+        EscritaDiferida.getInstance().sincronizar();
         Pedido p = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            ResultSet rs = stm.executeQuery("SELECT idPagamento FROM Pagamento WHERE idPedido='" + key.toString() + "'");
-            if (rs.next()) {
-                String idPagamento = rs.getString("idPagamento");
-                stm.executeUpdate("DELETE FROM Fatura WHERE idPagamento_FK='" + idPagamento + "'");
-                stm.executeUpdate("DELETE FROM Pagamento WHERE idPagamento='" + idPagamento + "'");
-            }
-            stm.executeUpdate("DELETE FROM Talao WHERE idPedido_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM Historico WHERE idPedido_FK='" + key.toString() + "'");
+        try (Connection conn = DAOconfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String idPagamento = null;
+                try (PreparedStatement pstm = conn.prepareStatement(SQL_PAGAMENTO_PEDIDO)) {
+                    pstm.setString(1, key.toString());
+                    try (ResultSet rs = pstm.executeQuery()) {
+                        if (rs.next()) {
+                            idPagamento = rs.getString("idPagamento");
+                        }
+                    }
+                }
+                if (idPagamento != null) {
+                    this.executarUpdate(conn, SQL_DELETE_FATURA_PAGAMENTO, idPagamento);
+                    this.executarUpdate(conn, SQL_DELETE_PAGAMENTO, idPagamento);
+                }
+                this.executarUpdate(conn, SQL_DELETE_TALAO, key.toString());
+                // Retirar o pedido dos agregados diários antes de apagar o seu Historico (e as suas linhas)
+                HistoricoDAO.retirarEstatisticasPedido(conn, key.toString());
+                this.executarUpdate(conn, SQL_DELETE_HISTORICO, key.toString());
 
-            stm.executeUpdate("DELETE FROM MenuPedido WHERE idPedido_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM PropostaPedido WHERE idPedido_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM Pedido WHERE idPedido='" + key.toString() + "'");
-            
+                this.executarUpdate(conn, SQL_DELETE_MENUS, key.toString());
+                this.executarUpdate(conn, SQL_DELETE_PROPOSTAS, key.toString());
+                this.executarUpdate(conn, SQL_DELETE, key.toString());
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
@@ -395,6 +726,21 @@ public class PedidoDAO implements Map<String, Pedido> {
         return p;
     }
     
+    /** 
+     * Método que executa uma atualização parametrizada com um único parâmetro
+     * 
+     * @param conn Conexão a utilizar
+     * @param sql Atualização parametrizada
+     * @param id Valor do parâmetro
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private void executarUpdate(Connection conn, String sql, String id) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement(sql)) {
+            pstm.setString(1, id);
+            pstm.executeUpdate();
+        }
+    }
+    
     /** 
      * Método que insere todos os Pedidos de um mapa na base de dados
      * 
@@ -412,15 +758,24 @@ public class PedidoDAO implements Map<String, Pedido> {
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        EscritaDiferida.getInstance().sincronizar();
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
-            stm.executeUpdate("DELETE FROM Fatura");
-            stm.executeUpdate("DELETE FROM Pagamento");
-            stm.executeUpdate("DELETE FROM Talao");
-            stm.executeUpdate("DELETE FROM Historico");
-            stm.executeUpdate("DELETE FROM MenuPedido");
-            stm.executeUpdate("DELETE FROM PropostaPedido");
-            stm.executeUpdate("DELETE FROM Pedido");
+            conn.setAutoCommit(false);
+            try {
+                stm.executeUpdate("DELETE FROM Fatura");
+                stm.executeUpdate("DELETE FROM Pagamento");
+                stm.executeUpdate("DELETE FROM Talao");
+                stm.executeUpdate("DELETE FROM EstatisticaDiaria");
+                stm.executeUpdate("DELETE FROM Historico");
+                stm.executeUpdate("DELETE FROM MenuPedido");
+                stm.executeUpdate("DELETE FROM PropostaPedido");
+                stm.executeUpdate("DELETE FROM Pedido");
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
@@ -435,7 +790,7 @@ public class PedidoDAO implements Map<String, Pedido> {
     @Override
     public Set<String> keySet() {
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT idPedido FROM Pedido")) {
             while (rs.next()) {
@@ -455,30 +810,14 @@ public class PedidoDAO implements Map<String, Pedido> {
      */
     @Override
     public Collection<Pedido> values() {
-        Pedido novo = null;
-        Collection<Pedido> pedidos = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Pedido")) {
-            while(rs.next()) {
-                String idPedido = rs.getString("idPedido");
-                String tipoServico = rs.getString("tipoServico");
-                double tempoEspera = rs.getDouble("tempoEspera");
-                int nContribuinte = rs.getInt("nContribuinte");
-                String notas = rs.getString("notas");
-
-                List<String> codsMenus = (List<String>) this.getCodsMenusPedido(idPedido);
-                List<String> codsPropostas = (List<String>) this.getCodsPropostasPedido(idPedido);
-                novo = new Pedido(idPedido, tempoEspera, nContribuinte, notas, codsMenus, codsPropostas, tipoServico);
-                pedidos.add(novo);
-            }
+        try (Connection conn = DAOconfig.getConnection()) {
+            return new ArrayList<>(this.carregarPedidos(conn, SQL_TODOS, SQL_TODOS_MENUS, SQL_TODAS_PROPOSTAS).values());
         }
         catch (Exception e) {
             // Erro a criar tabela...
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
-        return pedidos;
     }
     
     /** 
@@ -488,22 +827,10 @@ public class PedidoDAO implements Map<String, Pedido> {
      */
     @Override
     public Set<Entry<String, Pedido>> entrySet() {
-        Pedido novo = null;
         Set<Entry<String, Pedido>> pedidos = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Pedido")) {
-            while(rs.next()) {
-                String idPedido = rs.getString("idPedido");
-                String tipoServico = rs.getString("tipoServico");
-                double tempoEspera = rs.getDouble("tempoEspera");
-                int nContribuinte = rs.getInt("nContribuinte");
-                String notas = rs.getString("notas");
-
-                List<String> codsMenus = (List<String>) this.getCodsMenusPedido(idPedido);
-                List<String> codsPropostas = (List<String>) this.getCodsPropostasPedido(idPedido);
-                novo = new Pedido(idPedido, tempoEspera, nContribuinte, notas, codsMenus, codsPropostas, tipoServico);
-                pedidos.add(new AbstractMap.SimpleEntry<>(idPedido, novo));
+        try (Connection conn = DAOconfig.getConnection()) {
+            for (Pedido p : this.carregarPedidos(conn, SQL_TODOS, SQL_TODOS_MENUS, SQL_TODAS_PROPOSTAS).values()) {
+                pedidos.add(new AbstractMap.SimpleEntry<>(p.getCodPedido(), p));
             }
         }
         catch (Exception e) {
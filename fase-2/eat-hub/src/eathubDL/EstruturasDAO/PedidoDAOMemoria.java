@@ -0,0 +1,342 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubDL.BaseDadosMemoria.LinhaHistorico;
+import eathubDL.BaseDadosMemoria.LinhaPedido;
+import eathubLN.Pagina;
+import eathubLN.ssPedidos.Pedido;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Implementação em memória do PedidoDAO, sobre as tabelas Pedido, MenuPedido e
+ * PropostaPedido da BaseDadosMemoria. Mantém a semântica do PedidoDAO, incluindo
+ * a remoção em cascata do pagamento, fatura, talões e históricos de um Pedido.
+ */
+class PedidoDAOMemoria extends PedidoDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar PedidoDAO.getInstance)
+     */
+    PedidoDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que constrói um Pedido a partir das tabelas em memória
+     *
+     * @param bd Base de dados em memória
+     * @param idPedido ID do Pedido
+     * @return Pedido construído, ou null se não existir
+     */
+    static Pedido lerPedido(BaseDadosMemoria bd, String idPedido) {
+        LinhaPedido linha = idPedido != null ? bd.pedidos.get(idPedido) : null;
+        if (linha == null) {
+            return null;
+        }
+        return new Pedido(linha.idPedido, linha.tempoEspera, linha.nContribuinte, linha.notas,
+                          expandir(bd, bd.menusPedido, idPedido), expandir(bd, bd.propostasPedido, idPedido),
+                          linha.tipoServico);
+    }
+
+    /**
+     * Método que expande as linhas (código, quantidade) de um Pedido numa lista de códigos
+     * (cada código repetido tantas vezes quanto a quantidade)
+     *
+     * @param bd Base de dados em memória
+     * @param tabela Tabela de linhas (MenuPedido ou PropostaPedido)
+     * @param idPedido ID do Pedido
+     * @return Lista de códigos
+     */
+    private static List<String> expandir(BaseDadosMemoria bd, BaseDadosMemoria.Tabela<Integer> tabela, String idPedido) {
+        List<String> cods = new ArrayList<>();
+        String prefixo = BaseDadosMemoria.prefixo(idPedido);
+        for (String chave : tabela.chavesComPrefixo(prefixo)) {
+            Integer quantidade = tabela.get(chave);
+            String cod = chave.substring(prefixo.length());
+            for (int q = quantidade != null ? quantidade : 0; q > 0; q--) {
+                cods.add(cod);
+            }
+        }
+        return cods;
+    }
+
+    /**
+     * Método que grava as linhas de um Pedido, agrupando os códigos repetidos numa única linha
+     *
+     * @param tabela Tabela de linhas (MenuPedido ou PropostaPedido)
+     * @param idPedido ID do Pedido
+     * @param cods Códigos dos Menus ou Propostas (um por unidade)
+     */
+    private void inserirLinhas(BaseDadosMemoria.Tabela<Integer> tabela, String idPedido, Collection<String> cods) {
+        if (cods == null) {
+            return;
+        }
+        Map<String, Integer> quantidades = new LinkedHashMap<>();
+        for (String cod : cods) {
+            quantidades.merge(cod, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> linha : quantidades.entrySet()) {
+            tabela.inserir(BaseDadosMemoria.chave(idPedido, linha.getKey()), linha.getValue());
+        }
+    }
+
+    /**
+     * Método que remove os registos que dependem de um Pedido (pagamento e respetivas faturas,
+     * talões e históricos, retirando estes do agregado diário)
+     *
+     * @param bd Base de dados em memória
+     * @param idPedido ID do Pedido
+     */
+    static void removerDependentes(BaseDadosMemoria bd, String idPedido) {
+        String idPagamento = bd.pagamentoPorPedido.get(idPedido);
+        if (idPagamento != null) {
+            PagamentoDAOMemoria.removerPagamento(bd, idPagamento);
+        }
+        for (String idTalao : bd.taloes.chaves()) {
+            if (idPedido.equals(bd.taloes.get(idTalao))) {
+                bd.taloes.remover(idTalao);
+            }
+        }
+        for (LinhaHistorico h : bd.historicos.linhas()) {
+            if (idPedido.equals(h.idPedido)) {
+                HistoricoDAOMemoria.removerHistorico(bd, h.idHistorico);
+            }
+        }
+    }
+
+    /**
+     * Método que gera um novo ID único para um Pedido
+     *
+     * @return Novo ID único para um Pedido
+     */
+    @Override
+    public String generateNewId() {
+        return "PED" + this.bd.proximoNumero("Pedido");
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs dos Restaurantes
+     *
+     * @return Conjunto de IDs dos Restaurantes
+     */
+    @Override
+    public Set<String> getIdsRestaurantes() {
+        return new HashSet<>(this.bd.restaurantes.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de códigos dos Menus associados a um Pedido
+     *
+     * @param idPedido ID do Pedido
+     * @return Coleção de códigos dos Menus associados ao Pedido
+     */
+    @Override
+    public Collection<String> getCodsMenusPedido(String idPedido) {
+        return expandir(this.bd, this.bd.menusPedido, idPedido);
+    }
+
+    /**
+     * Método que devolve a coleção de códigos das Propostas associadas a um Pedido
+     *
+     * @param idPedido ID do Pedido
+     * @return Coleção de códigos das Propostas associadas ao Pedido
+     */
+    @Override
+    public Collection<String> getCodsPropostasPedido(String idPedido) {
+        return expandir(this.bd, this.bd.propostasPedido, idPedido);
+    }
+
+    /**
+     * Método que devolve os Pedidos presentes no histórico
+     *
+     * @param idRestaurante ID do restaurante, ou null para o histórico de toda a cadeia
+     * @return Mapa de ID do Pedido para Pedido
+     */
+    @Override
+    public Map<String, Pedido> getPedidosHistorico(String idRestaurante) {
+        Map<String, Pedido> pedidos = new LinkedHashMap<>();
+        for (LinhaHistorico h : this.bd.historicos.linhas()) {
+            if ((idRestaurante == null || idRestaurante.equals(h.idRestaurante)) && !pedidos.containsKey(h.idPedido)) {
+                Pedido p = lerPedido(this.bd, h.idPedido);
+                if (p != null) {
+                    pedidos.put(h.idPedido, p);
+                }
+            }
+        }
+        return pedidos;
+    }
+
+    /**
+     * Método que devolve os Pedidos, por ordem de ID
+     *
+     * @return Stream dos Pedidos
+     */
+    @Override
+    public Stream<Pedido> valuesStream() {
+        return this.values().stream();
+    }
+
+    /**
+     * Método que devolve uma página de Pedidos, por ordem de ID
+     *
+     * @param depoisDe ID do último Pedido da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de Pedidos na página
+     * @return Página de Pedidos
+     */
+    @Override
+    public Pagina<Pedido> pagina(String depoisDe, int tamanho) {
+        List<Pedido> lidos = new ArrayList<>();
+        for (LinhaPedido linha : this.bd.pedidos.depoisDe(depoisDe)) {
+            if (lidos.size() > tamanho) {
+                break;
+            }
+            lidos.add(lerPedido(this.bd, linha.idPedido));
+        }
+        return Pagina.de(lidos, tamanho, Pedido::getCodPedido);
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de Pedidos
+     *
+     * @return Número de Pedidos
+     */
+    @Override
+    public int size() {
+        return this.bd.pedidos.tamanho();
+    }
+
+    /**
+     * Método que verifica se um determinado ID de Pedido existe
+     *
+     * @param key ID do Pedido
+     * @return true se o ID existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.bd.pedidos.contem(key.toString());
+    }
+
+    /**
+     * Método que devolve um Pedido a partir do seu ID
+     *
+     * @param key ID do Pedido
+     * @return Pedido correspondente ao ID, ou null se não existir
+     */
+    @Override
+    public Pedido get(Object key) {
+        return lerPedido(this.bd, key.toString());
+    }
+
+    /**
+     * Método que insere ou atualiza um Pedido (cabeçalho e linhas, de forma atómica)
+     *
+     * @param key ID do Pedido
+     * @param value Pedido a inserir ou atualizar
+     * @return null (tal como o PedidoDAO)
+     */
+    @Override
+    public Pedido put(String key, Pedido value) {
+        return this.bd.escrever(() -> {
+            String tipo = value.getTipoPedido() != null ? value.getTipoPedido().toString() : null;
+            this.bd.pedidos.gravar(key, new LinhaPedido(key, tipo, value.getTempoEspera(),
+                                                        value.getNrContribuinte(), value.getNotas()));
+            this.bd.menusPedido.removerComPrefixo(BaseDadosMemoria.prefixo(key));
+            this.bd.propostasPedido.removerComPrefixo(BaseDadosMemoria.prefixo(key));
+            this.inserirLinhas(this.bd.menusPedido, key, value.getCodMenus());
+            this.inserirLinhas(this.bd.propostasPedido, key, value.getCodPropostas());
+            return null;
+        });
+    }
+
+    /**
+     * Método que remove um Pedido e, em cascata, o seu pagamento, faturas, talões e históricos
+     *
+     * @param key ID do Pedido a remover
+     * @return Pedido removido, ou null se não existia
+     */
+    @Override
+    public Pedido remove(Object key) {
+        String idPedido = key.toString();
+        return this.bd.escrever(() -> {
+            Pedido p = lerPedido(this.bd, idPedido);
+            removerDependentes(this.bd, idPedido);
+            this.bd.menusPedido.removerComPrefixo(BaseDadosMemoria.prefixo(idPedido));
+            this.bd.propostasPedido.removerComPrefixo(BaseDadosMemoria.prefixo(idPedido));
+            this.bd.pedidos.remover(idPedido);
+            return p;
+        });
+    }
+
+    /**
+     * Método que remove todos os Pedidos e os registos que deles dependem
+     */
+    @Override
+    public void clear() {
+        this.bd.escrever(() -> {
+            this.bd.faturas.limpar();
+            this.bd.pagamentos.limpar();
+            this.bd.pagamentoPorPedido.limpar();
+            this.bd.taloes.limpar();
+            this.bd.historicos.limpar();
+            this.bd.estatisticasDiarias.limpar();
+            this.bd.menusPedido.limpar();
+            this.bd.propostasPedido.limpar();
+            this.bd.pedidos.limpar();
+            return null;
+        });
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs dos Pedidos
+     *
+     * @return Conjunto de IDs dos Pedidos
+     */
+    @Override
+    public Set<String> keySet() {
+        return new HashSet<>(this.bd.pedidos.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de Pedidos
+     *
+     * @return Coleção de Pedidos
+     */
+    @Override
+    public Collection<Pedido> values() {
+        Collection<Pedido> pedidos = new ArrayList<>();
+        for (String idPedido : this.bd.pedidos.chaves()) {
+            Pedido p = lerPedido(this.bd, idPedido);
+            if (p != null) {
+                pedidos.add(p);
+            }
+        }
+        return pedidos;
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (ID, Pedido)
+     *
+     * @return Conjunto de entradas (ID, Pedido)
+     */
+    @Override
+    public Set<Entry<String, Pedido>> entrySet() {
+        Set<Entry<String, Pedido>> pedidos = new HashSet<>();
+        for (Pedido p : this.values()) {
+            pedidos.add(new AbstractMap.SimpleEntry<>(p.getCodPedido(), p));
+        }
+        return pedidos;
+    }
+}
@@ -1,10 +1,11 @@
 package eathubDL.EstruturasDAO;
 
+import eathubDL.CacheCatalogo;
 import eathubDL.DAOconfig;
+import eathubDL.SequenciaIds;
 import eathubLN.ssPedidos.Ingrediente;
 import eathubLN.ssPedidos.Proposta;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -28,29 +29,52 @@ import java.util.Set;
  */
 public class PropostaDAO implements Map<String, Proposta> {
     
-    /** ID máximo guardado */
-    private int maxId;
+    /** Sequência que gera os IDs */
+    private final SequenciaIds ids;
 
     /** Instância única da classe */
     private static PropostaDAO singleton = null;
+
+    /** Cache de leitura das Propostas (invalidada nas escritas) */
+    private final CacheCatalogo<String, Proposta> cachePropostas;
+
+    /** Cache de leitura dos Ingredientes (invalidada nas escritas) */
+    private final CacheCatalogo<String, Ingrediente> cacheIngredientes;
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT * FROM Proposta WHERE idProposta=?";
+    private static final String SQL_INGREDIENTES_PROPOSTA = "SELECT nomeIngrediente_FK FROM IngredienteProposta WHERE idProposta_FK=?";
+    private static final String SQL_ETAPAS_PROPOSTA = "SELECT etapa FROM EtapasProposta WHERE idProposta_FK=? ORDER BY ordem";
+    private static final String SQL_GET_INGREDIENTE = "SELECT * FROM Ingrediente WHERE nome=?";
+    private static final String SQL_ALERGENIOS_INGREDIENTE = "SELECT alergenio_FK FROM AlergenioIngrediente WHERE nomeIngrediente_FK=?";
+    private static final String SQL_GET_ALERGENIO = "SELECT alergenio FROM Alergenio WHERE alergenio=?";
+    private static final String SQL_INSERT_ALERGENIO_INGREDIENTE = "INSERT INTO AlergenioIngrediente (alergenio_FK, nomeIngrediente_FK) VALUES (?, ?)";
+    private static final String SQL_DELETE_ALERGENIOS_INGREDIENTE = "DELETE FROM AlergenioIngrediente WHERE nomeIngrediente_FK=?";
+    private static final String SQL_DELETE_INGREDIENTE = "DELETE FROM Ingrediente WHERE nome=?";
+    private static final String SQL_INSERT_INGREDIENTE_PROPOSTA = "INSERT INTO IngredienteProposta (nomeIngrediente_FK, idProposta_FK) VALUES (?, ?)";
+    private static final String SQL_DELETE_INGREDIENTES_PROPOSTA = "DELETE FROM IngredienteProposta WHERE idProposta_FK=?";
+    private static final String SQL_INSERT_ETAPA = "INSERT INTO EtapasProposta (etapa, idProposta_FK, ordem) VALUES (?, ?, ?)";
+    private static final String SQL_DELETE_ETAPAS = "DELETE FROM EtapasProposta WHERE idProposta_FK=?";
+    private static final String SQL_DELETE = "DELETE FROM Proposta WHERE idProposta=?";
     
     /** 
-     * Construtor privado para evitar instanciação externa
-     * 
-     * Inicializa o maxId com o maior ID existente na base de dados
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, PropostaDAOMemoria)
      */
-    private PropostaDAO() {
-        this.maxId = loadMaxIdFromDatabase();
+    PropostaDAO() {
+        this.cachePropostas = new CacheCatalogo<>("Propostas", DAOconfig.CACHE_PROPOSTAS);
+        this.cacheIngredientes = new CacheCatalogo<>("Ingredientes", DAOconfig.CACHE_INGREDIENTES);
+        this.ids = new SequenciaIds("Proposta", "PROP", "Proposta", "idProposta", DAOconfig.BLOCO_IDS);
     }
 
     /** 
-     * Método que devolve a instância única da classe
+     * Método que devolve a instância única da classe (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe
      */
-    public static PropostaDAO getInstance() {
+    public static synchronized PropostaDAO getInstance() {
         if (singleton == null) {
-            singleton = new PropostaDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new PropostaDAOMemoria() : new PropostaDAO();
         }
         return singleton;
     }
@@ -61,31 +85,40 @@ public class PropostaDAO implements Map<String, Proposta> {
      * @return Novo ID único para uma Proposta
      */
     public String generateNewId() {
-        this.maxId++;
-        return "PROP" + (maxId);
+        return this.ids.proximoId();
     }
     
     /** 
-     * Método que carrega o maior ID existente na base de dados
+     * Método que devolve as estatísticas das caches de Propostas e de Ingredientes
      * 
-     * @return Maior ID existente na base de dados
+     * @return Representação textual das estatísticas das caches
      */
-    private int loadMaxIdFromDatabase() {
-        int max = 0;
-        for (String id : this.keySet()) {
-            if (id.startsWith("PROP")) {
-                try {
-                    int num = Integer.parseInt(id.substring(4));
-                    if (num > max) {
-                        max = num;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora IDs com formato inválido
-                }
-            }
+    public String getEstatisticasCache() {
+        return this.cachePropostas.getEstatisticas() + "\n" + this.cacheIngredientes.getEstatisticas();
+    }
+
+    /** 
+     * Método que invalida as Propostas em cache e, por conterem Propostas, os Menus em cache
+     * 
+     * @param idProposta ID da Proposta alterada, ou null para invalidar todas
+     */
+    private void invalidarPropostas(String idProposta) {
+        if (idProposta == null) {
+            this.cachePropostas.invalidarTudo();
+        } else {
+            this.cachePropostas.invalidar(idProposta);
         }
-        
-        return max;
+        MenuDAO.getInstance().invalidarCache();
+    }
+
+    /** 
+     * Método que invalida um Ingrediente em cache e tudo o que o pode conter (Propostas e Menus)
+     * 
+     * @param nome Nome do Ingrediente alterado
+     */
+    private void invalidarIngrediente(String nome) {
+        this.cacheIngredientes.invalidar(nome);
+        this.invalidarPropostas(null);
     }
 
     /** 
@@ -94,10 +127,11 @@ public class PropostaDAO implements Map<String, Proposta> {
      * @param alergenio Alergenio a adicionar
      */
     public void addAlergenio(String alergenio){
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("INSERT INTO Alergenio (alergenio) VALUES (?)")) {
             pstm.setString(1, alergenio);
             pstm.executeUpdate();
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
@@ -112,10 +146,11 @@ public class PropostaDAO implements Map<String, Proposta> {
      */
     public String removerAlergenio(String alergenio){
         String res = this.getAlergenio(alergenio);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("DELETE FROM Alergenio WHERE alergenio=?")) {
             pstm.setString(1, alergenio);
             pstm.executeUpdate();
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
@@ -132,8 +167,8 @@ public class PropostaDAO implements Map<String, Proposta> {
      */
     public String getAlergenio(String alergenio){
         String res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             PreparedStatement pstm = conn.prepareStatement("SELECT alergenio FROM Alergenio WHERE alergenio=?")) {
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_GET_ALERGENIO)) {
             pstm.setString(1, alergenio);
             try (ResultSet rs = pstm.executeQuery()) {
                 if (rs.next()) {
@@ -154,7 +189,7 @@ public class PropostaDAO implements Map<String, Proposta> {
      */
     public List<String> getAlergenios(){
         List<String> alergenios = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT alergenio FROM Alergenio")) {
             while (rs.next()) {
@@ -175,14 +210,17 @@ public class PropostaDAO implements Map<String, Proposta> {
      * @param preco Preço do ingrediente
      */
     public void addIngrediente(String nome, double preco){
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("INSERT INTO Ingrediente (nome, preco) VALUES (?, ?)")) {
             pstm.setString(1, nome);
             pstm.setDouble(2, preco);
             pstm.executeUpdate();
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
+        } finally {
+            this.invalidarIngrediente(nome);
         }
     }
 
@@ -194,24 +232,30 @@ public class PropostaDAO implements Map<String, Proposta> {
      * @param preco Preço do ingrediente
      */
     public void addIngredienteEAlergenios(String nome, List<String> alergenios, double preco){
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("INSERT INTO Ingrediente (nome, preco) VALUES (?, ?)")) {
             pstm.setString(1, nome);
             pstm.setDouble(2, preco);
             pstm.executeUpdate();
             for(String alergenio : alergenios){
-                Statement  stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT * FROM Alergenio WHERE alergenio='" + alergenio.trim() + "'");
-                if(!rs.next()) continue;
-                try (PreparedStatement pstmAlergenio = conn.prepareStatement("INSERT INTO AlergenioIngrediente (alergenio_FK, nomeIngrediente_FK) VALUES (?, ?)")) {
+                try (PreparedStatement pstmExiste = conn.prepareStatement(SQL_GET_ALERGENIO)) {
+                    pstmExiste.setString(1, alergenio.trim());
+                    try (ResultSet rs = pstmExiste.executeQuery()) {
+                        if(!rs.next()) continue;
+                    }
+                }
+                try (PreparedStatement pstmAlergenio = conn.prepareStatement(SQL_INSERT_ALERGENIO_INGREDIENTE)) {
                     pstmAlergenio.setString(1, alergenio.trim());
                     pstmAlergenio.setString(2, nome);
                     pstmAlergenio.executeUpdate();
                 }
             }
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
+        } finally {
+            this.invalidarIngrediente(nome);
         }
     }
 
@@ -223,13 +267,19 @@ public class PropostaDAO implements Map<String, Proposta> {
      */
     public Ingrediente removerIngrediente(Object key) {
         Ingrediente i = this.getIngredientePorNome(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement()) {
-            stm.executeUpdate("DELETE FROM AlergenioIngrediente WHERE nomeIngrediente_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM Ingrediente WHERE nome='" + key.toString() + "'");
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstmAlergenios = conn.prepareStatement(SQL_DELETE_ALERGENIOS_INGREDIENTE);
+             PreparedStatement pstm = conn.prepareStatement(SQL_DELETE_INGREDIENTE)) {
+            pstmAlergenios.setString(1, key.toString());
+            pstmAlergenios.executeUpdate();
+            pstm.setString(1, key.toString());
+            pstm.executeUpdate();
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
+        } finally {
+            this.invalidarIngrediente(key.toString());
         }
         return i;
     }
@@ -241,7 +291,7 @@ public class PropostaDAO implements Map<String, Proposta> {
      */
     public List<Ingrediente> getIngredientes() {
         List<Ingrediente> ingredientes = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT nome FROM Ingrediente")) {
             while (rs.next()) {
@@ -282,28 +332,125 @@ public class PropostaDAO implements Map<String, Proposta> {
      * @return Ingrediente encontrado
      */
     public Ingrediente getIngredientePorNome(Object key) {
-        Ingrediente i = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();
-             ResultSet rss = stm.executeQuery("SELECT * FROM Ingrediente WHERE nome='" + key.toString() + "'")) {
-            if (!rss.next()) {
-                return null; // Ingrediente não encontrado
+        return this.cacheIngredientes.obter(key.toString(), nome -> {
+            try (Connection conn = DAOconfig.getConnection()) {
+                return this.carregarIngrediente(conn, nome);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                throw new NullPointerException(e.getMessage());
             }
-            
-            double preco = rss.getDouble("preco");
-             
-            ResultSet rsAlergenios = stm.executeQuery("SELECT alergenio_FK FROM AlergenioIngrediente WHERE nomeIngrediente_FK='" + key.toString() + "'");
-            List<String> alergenios = new ArrayList<>();
-            while (rsAlergenios.next()) {
-                String alergenio = rsAlergenios.getString("alergenio_FK");
-                alergenios.add(alergenio);
+        });
+    }
+
+    /** 
+     * Método que devolve um ingrediente da base de dados usando uma conexão já aberta
+     * 
+     * @param conn Conexão a utilizar
+     * @param nome Nome do ingrediente a procurar
+     * @return Ingrediente encontrado, ou null se não existir
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private Ingrediente getIngredientePorNome(Connection conn, String nome) throws SQLException {
+        return this.cacheIngredientes.obter(nome, n -> this.carregarIngrediente(conn, n));
+    }
+
+    /** 
+     * Método que carrega um ingrediente da base de dados, sem passar pela cache
+     * 
+     * @param conn Conexão a utilizar
+     * @param nome Nome do ingrediente a procurar
+     * @return Ingrediente encontrado, ou null se não existir
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private Ingrediente carregarIngrediente(Connection conn, String nome) throws SQLException {
+        double preco;
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_GET_INGREDIENTE)) {
+            pstm.setString(1, nome);
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (!rs.next()) {
+                    return null; // Ingrediente não encontrado
+                }
+                preco = rs.getDouble("preco");
+            }
+        }
+
+        List<String> alergenios = new ArrayList<>();
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_ALERGENIOS_INGREDIENTE)) {
+            pstm.setString(1, nome);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    alergenios.add(rs.getString("alergenio_FK"));
+                }
+            }
+        }
+        return new Ingrediente(nome, alergenios, preco);
+    }
+
+    /** 
+     * Método que constrói uma Proposta, carregando os seus ingredientes e etapas
+     * 
+     * @param conn Conexão a utilizar
+     * @param idProposta ID da Proposta
+     * @param nome Nome da Proposta
+     * @param preco Preço da Proposta
+     * @return Proposta construída
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private Proposta construirProposta(Connection conn, String idProposta, String nome, double preco) throws SQLException {
+        List<String> nomesIngredientes = new ArrayList<>();
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_INGREDIENTES_PROPOSTA)) {
+            pstm.setString(1, idProposta);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    nomesIngredientes.add(rs.getString("nomeIngrediente_FK"));
+                }
+            }
+        }
+        List<Ingrediente> ingredientes = new ArrayList<>();
+        for (String nomeIngrediente : nomesIngredientes) {
+            Ingrediente ingrediente = this.getIngredientePorNome(conn, nomeIngrediente);
+            if (ingrediente != null) {
+                ingredientes.add(ingrediente);
+            }
+        }
+
+        List<String> etapas = new ArrayList<>();
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_ETAPAS_PROPOSTA)) {
+            pstm.setString(1, idProposta);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    etapas.add(rs.getString("etapa"));
+                }
+            }
+        }
+
+        return new Proposta(idProposta, nome, preco, ingredientes, etapas);
+    }
+
+    /** 
+     * Método que insere os ingredientes e as etapas de uma Proposta
+     * 
+     * @param conn Conexão a utilizar
+     * @param value Proposta
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private void inserirIngredientesEEtapas(Connection conn, Proposta value) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_INSERT_INGREDIENTE_PROPOSTA)) {
+            for (Ingrediente ingrediente : value.getIngredientes()) {
+                pstm.setString(1, ingrediente.getNome());
+                pstm.setString(2, value.getIdProposta());
+                pstm.executeUpdate();
+            }
+        }
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_INSERT_ETAPA)) {
+            for (String s : value.getEtapas()) {
+                int ordem = value.getEtapas().indexOf(s) + 1;
+                pstm.setString(1, s);
+                pstm.setString(2, value.getIdProposta());
+                pstm.setInt(3, ordem);
+                pstm.executeUpdate();
             }
-            i = new Ingrediente(key.toString(), alergenios, preco);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            throw new NullPointerException(e.getMessage());
         }
-        return i;
     }
 
     /** 
@@ -333,7 +480,7 @@ public class PropostaDAO implements Map<String, Proposta> {
     @Override
     public int size() {
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Proposta")) {
             if(rs.next()) {
@@ -367,7 +514,7 @@ public class PropostaDAO implements Map<String, Proposta> {
     @Override
     public boolean containsKey(Object key) {
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              PreparedStatement pstm = conn.prepareStatement("SELECT idProposta FROM Proposta WHERE idProposta=?")) {
             pstm.setString(1, key.toString());
             try (ResultSet rs = pstm.executeQuery()) {
@@ -401,33 +548,32 @@ public class PropostaDAO implements Map<String, Proposta> {
      */
     @Override
     public Proposta get(Object key) {
-        Proposta a = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-             Statement stm = conn.createStatement();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stm.executeQuery("SELECT * FROM Proposta WHERE idProposta='" + key + "'")) {
-            if (rs.next()) {
-                String nome = rs.getString("nome");
-                double preco = rs.getDouble("preco");
-
-                ResultSet rsIngredientes = stmt.executeQuery("SELECT nomeIngrediente_FK FROM IngredienteProposta WHERE idProposta_FK='" + key + "'");
-                List<Ingrediente> ingredientes = new ArrayList<>();
-                while (rsIngredientes.next()) {
-                    String nomeIngrediente = rsIngredientes.getString("nomeIngrediente_FK");
-                    Ingrediente ingrediente = this.getIngredientePorNome(nomeIngrediente);
-                    if (ingrediente != null) {
-                        ingredientes.add(ingrediente);
-                    }
-                }
+        return this.cachePropostas.obter(key.toString(), this::carregarProposta);
+    }
 
-                ResultSet rsEtapas = stmt.executeQuery("SELECT etapa FROM EtapasProposta WHERE idProposta_FK='" + key + "' ORDER BY ordem");
-                List<String> etapas = new ArrayList<>();
-                while (rsEtapas.next()) {
-                    String etapa = rsEtapas.getString("etapa");
-                    etapas.add(etapa);
+    /** 
+     * Método que carrega uma Proposta da base de dados, sem passar pela cache
+     * 
+     * @param key ID da Proposta
+     * @return Proposta correspondente ao ID, ou null se não existir
+     */
+    private Proposta carregarProposta(String key) {
+        Proposta a = null;
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
+            pstm.setString(1, key);
+            String nome = null;
+            double preco = 0;
+            boolean existe;
+            try (ResultSet rs = pstm.executeQuery()) {
+                existe = rs.next();
+                if (existe) {
+                    nome = rs.getString("nome");
+                    preco = rs.getDouble("preco");
                 }
-
-                a = new Proposta(key.toString(), nome, preco, ingredientes, etapas);
+            }
+            if (existe) {
+                a = this.construirProposta(conn, key, nome, preco);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -446,7 +592,7 @@ public class PropostaDAO implements Map<String, Proposta> {
     @Override
     public Proposta put(String key, Proposta value) {
         Proposta res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Verificar se já existe
             res = this.get(key);
             
@@ -457,19 +603,15 @@ public class PropostaDAO implements Map<String, Proposta> {
                     pstm.setDouble(2, value.getPreco());
                     pstm.setString(3, value.getIdProposta());
                     pstm.executeUpdate();
-
-                    Statement stm = conn.createStatement();
-                    stm.executeUpdate("DELETE FROM IngredienteProposta WHERE idProposta_FK='" + value.getIdProposta() + "'");
-                    for (Ingrediente ingrediente : value.getIngredientes()) {
-                        stm.executeUpdate("INSERT INTO IngredienteProposta (nomeIngrediente_FK, idProposta_FK) VALUES ('" + ingrediente.getNome() + "', '" + value.getIdProposta() + "')");
-                    }
-
-                    stm.executeUpdate("DELETE FROM EtapasProposta WHERE idProposta_FK='" + value.getIdProposta() + "'");
-                    for (String s : value.getEtapas()) {
-                        int ordem = value.getEtapas().indexOf(s) + 1;
-                        stm.executeUpdate("INSERT INTO EtapasProposta (etapa, idProposta_FK, ordem) VALUES ('" + s + "', '" + value.getIdProposta() + "', " + ordem + ")");
-                    }
                 }
+                try (PreparedStatement pstmIngredientes = conn.prepareStatement(SQL_DELETE_INGREDIENTES_PROPOSTA);
+                     PreparedStatement pstmEtapas = conn.prepareStatement(SQL_DELETE_ETAPAS)) {
+                    pstmIngredientes.setString(1, value.getIdProposta());
+                    pstmIngredientes.executeUpdate();
+                    pstmEtapas.setString(1, value.getIdProposta());
+                    pstmEtapas.executeUpdate();
+                }
+                this.inserirIngredientesEEtapas(conn, value);
             } else {
                 // Inserir novo
                 try (PreparedStatement pstm = conn.prepareStatement("INSERT INTO Proposta (idProposta, nome, preco) VALUES (?, ?, ?)")) {
@@ -477,21 +619,15 @@ public class PropostaDAO implements Map<String, Proposta> {
                     pstm.setString(2, value.getNome());
                     pstm.setDouble(3, value.getPreco());
                     pstm.executeUpdate();
-
-                    Statement stm = conn.createStatement();
-                    for (Ingrediente ingrediente : value.getIngredientes()) {
-                        stm.executeUpdate("INSERT INTO IngredienteProposta (nomeIngrediente_FK, idProposta_FK) VALUES ('" + ingrediente.getNome() + "', '" + value.getIdProposta() + "')");
-                    }
-
-                    for (String s : value.getEtapas()) {
-                        int ordem = value.getEtapas().indexOf(s) + 1;
-                        stm.executeUpdate("INSERT INTO EtapasProposta (etapa, idProposta_FK, ordem) VALUES ('" + s + "', '" + value.getIdProposta() + "', " + ordem + ")");
-                    }
                 }
+                this.inserirIngredientesEEtapas(conn, value);
             }
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
+        } finally {
+            this.invalidarPropostas(key);
         }
         return res;
     }
@@ -505,15 +641,20 @@ public class PropostaDAO implements Map<String, Proposta> {
     @Override
     public Proposta remove(Object key) {
         Proposta t = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            stm.executeUpdate("DELETE FROM IngredienteProposta WHERE idProposta_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM Proposta WHERE idProposta='" + key.toString() + "'");
-            
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstmIngredientes = conn.prepareStatement(SQL_DELETE_INGREDIENTES_PROPOSTA);
+            PreparedStatement pstm = conn.prepareStatement(SQL_DELETE)) {
+            pstmIngredientes.setString(1, key.toString());
+            pstmIngredientes.executeUpdate();
+            pstm.setString(1, key.toString());
+            pstm.executeUpdate();
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
+        } finally {
+            this.invalidarPropostas(key.toString());
         }
         return t;
     }
@@ -535,13 +676,16 @@ public class PropostaDAO implements Map<String, Proposta> {
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
             stm.executeUpdate("DELETE FROM IngredienteProposta");
             stm.executeUpdate("DELETE FROM Proposta");
+            SnapshotCatalogo.getInstance().alterado(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
+        } finally {
+            this.invalidarPropostas(null);
         }
     }
     
@@ -553,7 +697,7 @@ public class PropostaDAO implements Map<String, Proposta> {
     @Override
     public Set<String> keySet() {
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT idProposta FROM Proposta")) {
             while (rs.next()) {
@@ -575,32 +719,15 @@ public class PropostaDAO implements Map<String, Proposta> {
     public Collection<Proposta> values() {
         Proposta a = null;
         Collection<Proposta> novo = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
-             Statement stmt = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT * FROM Proposta")) {
             while (rs.next()) {
                 String idProposta = rs.getString("idProposta");
                 String nome = rs.getString("nome");
                 double preco = rs.getDouble("preco");
 
-                ResultSet rsIngredientes = stmt.executeQuery("SELECT nomeIngrediente_FK FROM IngredienteProposta WHERE idProposta_FK='" + idProposta + "'");
-                List<Ingrediente> ingredientes = new ArrayList<>();
-                while (rsIngredientes.next()) {
-                    String nomeIngrediente = rsIngredientes.getString("nomeIngrediente_FK");
-                    Ingrediente ingrediente = this.getIngredientePorNome(nomeIngrediente);
-                    if (ingrediente != null) {
-                        ingredientes.add(ingrediente);
-                    }
-                }
-                ResultSet rsEtapas = stmt.executeQuery("SELECT etapa FROM EtapasProposta WHERE idProposta_FK='" + idProposta + "' ORDER BY ordem");
-                List<String> etapas = new ArrayList<>();
-                while (rsEtapas.next()) {
-                    String etapa = rsEtapas.getString("etapa");
-                    etapas.add(etapa);
-                }
-
-                a = new Proposta(idProposta, nome, preco, ingredientes, etapas);
+                a = this.construirProposta(conn, idProposta, nome, preco);
 
                 novo.add(a);
             }
@@ -620,33 +747,15 @@ public class PropostaDAO implements Map<String, Proposta> {
     public Set<Entry<String, Proposta>> entrySet() {
         Proposta a = null;
         Set<Entry<String, Proposta>> novo = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
-             Statement stmt = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT * FROM Proposta")) {
             while (rs.next()) {
                 String idProposta = rs.getString("idProposta");
                 String nome = rs.getString("nome");
                 double preco = rs.getDouble("preco");
 
-                ResultSet rsIngredientes = stmt.executeQuery("SELECT nomeIngrediente_FK FROM IngredienteProposta WHERE idProposta_FK='" + idProposta + "'");
-                List<Ingrediente> ingredientes = new ArrayList<>();
-                while (rsIngredientes.next()) {
-                    String nomeIngrediente = rsIngredientes.getString("nomeIngrediente_FK");
-                    Ingrediente ingrediente = this.getIngredientePorNome(nomeIngrediente);
-                    if (ingrediente != null) {
-                        ingredientes.add(ingrediente);
-                    }
-                }
-
-                ResultSet rsEtapas = stmt.executeQuery("SELECT etapa FROM EtapasProposta WHERE idProposta_FK='" + idProposta + "' ORDER BY ordem");
-                List<String> etapas = new ArrayList<>();
-                while (rsEtapas.next()) {
-                    String etapa = rsEtapas.getString("etapa");
-                    etapas.add(etapa);
-                }
-
-                a = new Proposta(idProposta, nome, preco, ingredientes, etapas);
+                a = this.construirProposta(conn, idProposta, nome, preco);
 
                 novo.add(new AbstractMap.SimpleEntry<>(idProposta, a));
             }
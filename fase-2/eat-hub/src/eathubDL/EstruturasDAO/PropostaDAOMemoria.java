@@ -0,0 +1,334 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubDL.BaseDadosMemoria.LinhaProposta;
+import eathubLN.ssPedidos.Ingrediente;
+import eathubLN.ssPedidos.Proposta;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implementação em memória do PropostaDAO, sobre as tabelas Proposta, IngredienteProposta,
+ * EtapasProposta, Ingrediente, Alergenio e AlergenioIngrediente da BaseDadosMemoria.
+ * As caches de leitura do PropostaDAO não são usadas (a leitura já é feita em memória).
+ */
+class PropostaDAOMemoria extends PropostaDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar PropostaDAO.getInstance)
+     */
+    PropostaDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que constrói um ingrediente a partir das tabelas em memória
+     *
+     * @param bd Base de dados em memória
+     * @param nome Nome do ingrediente
+     * @return Ingrediente, ou null se não existir
+     */
+    static Ingrediente lerIngrediente(BaseDadosMemoria bd, String nome) {
+        Double preco = bd.ingredientes.get(nome);
+        if (preco == null) {
+            return null;
+        }
+        return new Ingrediente(nome, bd.alergeniosIngrediente.comPrefixo(BaseDadosMemoria.prefixo(nome)), preco);
+    }
+
+    /**
+     * Método que constrói uma Proposta a partir das tabelas em memória (só com os ingredientes que existem)
+     *
+     * @param bd Base de dados em memória
+     * @param idProposta ID da Proposta
+     * @return Proposta, ou null se não existir
+     */
+    static Proposta lerProposta(BaseDadosMemoria bd, String idProposta) {
+        LinhaProposta linha = bd.propostas.get(idProposta);
+        if (linha == null) {
+            return null;
+        }
+        List<Ingrediente> ingredientes = new ArrayList<>();
+        for (String nome : bd.ingredientesProposta.comPrefixo(BaseDadosMemoria.prefixo(idProposta))) {
+            Ingrediente ingrediente = lerIngrediente(bd, nome);
+            if (ingrediente != null) {
+                ingredientes.add(ingrediente);
+            }
+        }
+        List<String> etapas = bd.etapasProposta.get(idProposta);
+        return new Proposta(linha.idProposta, linha.nome, linha.preco, ingredientes,
+                            etapas != null ? new ArrayList<>(etapas) : new ArrayList<>());
+    }
+
+    /**
+     * Método que gera um novo ID único para uma Proposta
+     *
+     * @return Novo ID único para uma Proposta
+     */
+    @Override
+    public String generateNewId() {
+        return "PROP" + this.bd.proximoNumero("Proposta");
+    }
+
+    /**
+     * Método que adiciona um alergenio
+     *
+     * @param alergenio Alergenio a adicionar
+     */
+    @Override
+    public void addAlergenio(String alergenio) {
+        this.bd.alergenios.inserir(alergenio, alergenio);
+    }
+
+    /**
+     * Método que remove um alergenio (como a chave estrangeira de AlergenioIngrediente,
+     * recusa a remoção enquanto algum ingrediente tiver o alergenio)
+     *
+     * @param alergenio Alergenio a remover
+     * @return Alergenio removido, ou null se não existia
+     * @throws NullPointerException Se algum ingrediente tiver o alergenio (como a exceção devolvida pelo PropostaDAO)
+     */
+    @Override
+    public String removerAlergenio(String alergenio) {
+        return this.bd.escrever(() -> {
+            if (this.bd.alergeniosIngrediente.linhas().contains(alergenio)) {
+                throw new NullPointerException("Cannot delete or update a parent row: a foreign key constraint fails "
+                                               + "(AlergenioIngrediente.alergenio_FK references Alergenio '" + alergenio + "')");
+            }
+            return this.bd.alergenios.remover(alergenio);
+        });
+    }
+
+    /**
+     * Método que devolve um alergenio
+     *
+     * @param alergenio Alergenio a procurar
+     * @return Alergenio encontrado, ou null se não existir
+     */
+    @Override
+    public String getAlergenio(String alergenio) {
+        return this.bd.alergenios.get(alergenio);
+    }
+
+    /**
+     * Método que devolve a lista de alergenios
+     *
+     * @return Lista de alergenios
+     */
+    @Override
+    public List<String> getAlergenios() {
+        return this.bd.alergenios.linhas();
+    }
+
+    /**
+     * Método que adiciona um ingrediente
+     *
+     * @param nome Nome do ingrediente a adicionar
+     * @param preco Preço do ingrediente
+     */
+    @Override
+    public void addIngrediente(String nome, double preco) {
+        this.bd.ingredientes.inserir(nome, BaseDadosMemoria.decimal(preco));
+    }
+
+    /**
+     * Método que adiciona um ingrediente e os seus alergenios (só os alergenios que existem são associados)
+     *
+     * @param nome Nome do ingrediente a adicionar
+     * @param alergenios Lista de alergenios do ingrediente a adicionar
+     * @param preco Preço do ingrediente
+     */
+    @Override
+    public void addIngredienteEAlergenios(String nome, List<String> alergenios, double preco) {
+        this.bd.escrever(() -> {
+            this.bd.ingredientes.inserir(nome, BaseDadosMemoria.decimal(preco));
+            for (String alergenio : alergenios) {
+                String a = alergenio.trim();
+                if (this.bd.alergenios.contem(a)) {
+                    this.bd.alergeniosIngrediente.inserir(BaseDadosMemoria.chave(nome, a), a);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Método que remove um ingrediente e as suas associações a alergenios
+     *
+     * @param key Nome do ingrediente a remover
+     * @return Ingrediente removido, ou null se não existia
+     */
+    @Override
+    public Ingrediente removerIngrediente(Object key) {
+        String nome = key.toString();
+        return this.bd.escrever(() -> {
+            Ingrediente i = lerIngrediente(this.bd, nome);
+            this.bd.alergeniosIngrediente.removerComPrefixo(BaseDadosMemoria.prefixo(nome));
+            this.bd.ingredientes.remover(nome);
+            return i;
+        });
+    }
+
+    /**
+     * Método que devolve a lista de ingredientes
+     *
+     * @return Lista de ingredientes
+     */
+    @Override
+    public List<Ingrediente> getIngredientes() {
+        List<Ingrediente> ingredientes = new ArrayList<>();
+        for (String nome : this.bd.ingredientes.chaves()) {
+            Ingrediente ingrediente = lerIngrediente(this.bd, nome);
+            if (ingrediente != null) {
+                ingredientes.add(ingrediente);
+            }
+        }
+        return ingredientes;
+    }
+
+    /**
+     * Método que devolve um ingrediente
+     *
+     * @param key Nome do ingrediente a procurar
+     * @return Ingrediente encontrado, ou null se não existir
+     */
+    @Override
+    public Ingrediente getIngredientePorNome(Object key) {
+        return lerIngrediente(this.bd, key.toString());
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de Propostas
+     *
+     * @return Número de Propostas
+     */
+    @Override
+    public int size() {
+        return this.bd.propostas.tamanho();
+    }
+
+    /**
+     * Método que verifica se um determinado ID de Proposta existe
+     *
+     * @param key ID da Proposta
+     * @return true se o ID existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.bd.propostas.contem(key.toString());
+    }
+
+    /**
+     * Método que devolve uma Proposta a partir do seu ID
+     *
+     * @param key ID da Proposta
+     * @return Proposta correspondente ao ID, ou null se não existir
+     */
+    @Override
+    public Proposta get(Object key) {
+        return lerProposta(this.bd, key.toString());
+    }
+
+    /**
+     * Método que insere ou atualiza uma Proposta (com os seus ingredientes e etapas)
+     *
+     * @param key ID da Proposta
+     * @param value Proposta a inserir ou atualizar
+     * @return Proposta previamente associada ao ID, ou null se não existia
+     */
+    @Override
+    public Proposta put(String key, Proposta value) {
+        String id = value.getIdProposta();
+        return this.bd.escrever(() -> {
+            Proposta res = lerProposta(this.bd, key);
+            this.bd.propostas.gravar(id, new LinhaProposta(id, value.getNome(), value.getPreco()));
+            this.bd.ingredientesProposta.removerComPrefixo(BaseDadosMemoria.prefixo(id));
+            for (Ingrediente ingrediente : value.getIngredientes()) {
+                this.bd.ingredientesProposta.inserir(BaseDadosMemoria.chave(id, ingrediente.getNome()), ingrediente.getNome());
+            }
+            this.bd.etapasProposta.gravar(id, new ArrayList<>(value.getEtapas()));
+            return res;
+        });
+    }
+
+    /**
+     * Método que remove uma Proposta (com os seus ingredientes e etapas)
+     *
+     * @param key ID da Proposta a remover
+     * @return Proposta removida, ou null se não existia
+     */
+    @Override
+    public Proposta remove(Object key) {
+        String id = key.toString();
+        return this.bd.escrever(() -> {
+            Proposta t = lerProposta(this.bd, id);
+            this.bd.ingredientesProposta.removerComPrefixo(BaseDadosMemoria.prefixo(id));
+            this.bd.etapasProposta.remover(id);
+            this.bd.propostas.remover(id);
+            return t;
+        });
+    }
+
+    /**
+     * Método que remove todas as Propostas
+     */
+    @Override
+    public void clear() {
+        this.bd.escrever(() -> {
+            this.bd.ingredientesProposta.limpar();
+            this.bd.etapasProposta.limpar();
+            this.bd.propostas.limpar();
+            return null;
+        });
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs das Propostas
+     *
+     * @return Conjunto de IDs das Propostas
+     */
+    @Override
+    public Set<String> keySet() {
+        return new HashSet<>(this.bd.propostas.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de Propostas
+     *
+     * @return Coleção de Propostas
+     */
+    @Override
+    public Collection<Proposta> values() {
+        Collection<Proposta> propostas = new ArrayList<>();
+        for (String idProposta : this.bd.propostas.chaves()) {
+            Proposta p = lerProposta(this.bd, idProposta);
+            if (p != null) {
+                propostas.add(p);
+            }
+        }
+        return propostas;
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (ID, Proposta)
+     *
+     * @return Conjunto de entradas (ID, Proposta)
+     */
+    @Override
+    public Set<Entry<String, Proposta>> entrySet() {
+        Set<Entry<String, Proposta>> propostas = new HashSet<>();
+        for (Proposta p : this.values()) {
+            propostas.add(new AbstractMap.SimpleEntry<>(p.getIdProposta(), p));
+        }
+        return propostas;
+    }
+}
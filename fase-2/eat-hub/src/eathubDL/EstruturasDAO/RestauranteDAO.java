@@ -1,10 +1,10 @@
 package eathubDL.EstruturasDAO;
 
 import eathubDL.DAOconfig;
+import eathubDL.SequenciaIds;
 import eathubLN.ssCadeia.ChefeRestaurante;
 import eathubLN.ssCadeia.Restaurante;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -27,29 +27,43 @@ import java.util.Set;
  */
 public class RestauranteDAO implements Map<String, Restaurante> {
     
-    /** ID máximo guardado */
-    private int maxId;
+    /** Sequência que gera os IDs */
+    private final SequenciaIds ids;
 
     /** Instância única da classe */
     private static RestauranteDAO singleton = null;
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT * FROM Restaurante WHERE idRestaurante=?";
+    private static final String SQL_CHEFE_RESTAURANTE = "SELECT idFuncionario_FK FROM Restaurante WHERE idRestaurante=?";
+    private static final String SQL_GET_CHEFE = "SELECT * FROM Funcionario WHERE idFuncionario=?";
+    private static final String SQL_ATUALIZA_CHEFE = "UPDATE Restaurante SET idFuncionario_FK=? WHERE idRestaurante=?";
+    private static final String SQL_DESASSOCIAR_FUNCIONARIOS = "UPDATE Funcionario SET idRestaurante_FK = NULL WHERE idRestaurante_FK=?";
+    private static final String SQL_ASSOCIAR_FUNCIONARIO = "UPDATE Funcionario SET idRestaurante_FK=? WHERE idFuncionario=?";
+    private static final String SQL_DESPROMOVER_CHEFE = "UPDATE Funcionario SET tipo='Funcionario' WHERE idFuncionario=?";
+    private static final String SQL_PROMOVER_CHEFE = "UPDATE Funcionario SET idRestaurante_FK=?, tipo='ChefeRestaurante' WHERE idFuncionario=?";
+    private static final String SQL_REMOVER_CHEFE = "UPDATE Funcionario SET tipo='Funcionario', idRestaurante_FK = NULL WHERE idFuncionario=?";
+    private static final String SQL_DELETE_STOCK = "DELETE FROM Stock WHERE idRestaurante_FK=?";
+    private static final String SQL_DELETE_HISTORICO = "DELETE FROM Historico WHERE idRestaurante_FK=?";
+    private static final String SQL_DELETE_ESTATISTICAS = "DELETE FROM EstatisticaDiaria WHERE idRestaurante_FK=?";
+    private static final String SQL_DELETE = "DELETE FROM Restaurante WHERE idRestaurante=?";
     
     /** 
-     * Construtor privado para evitar instanciação externa
-     * 
-     * Inicializa o maxId com o maior ID existente na base de dados
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, RestauranteDAOMemoria)
      */
-    private RestauranteDAO() {
-        this.maxId = loadMaxIdFromDatabase();
+    RestauranteDAO() {
+        this.ids = new SequenciaIds("Restaurante", "R", "Restaurante", "idRestaurante", DAOconfig.BLOCO_IDS);
     }
 
     /** 
-     * Método que devolve a instância única da classe
+     * Método que devolve a instância única da classe (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe
      */
-    public static RestauranteDAO getInstance() {
+    public static synchronized RestauranteDAO getInstance() {
         if (singleton == null) {
-            singleton = new RestauranteDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new RestauranteDAOMemoria() : new RestauranteDAO();
         }
         return singleton;
     }
@@ -60,33 +74,9 @@ public class RestauranteDAO implements Map<String, Restaurante> {
      * @return Novo ID único para um Restaurante
      */
     public String generateNewId() {
-        this.maxId++;
-        return "R" + (maxId);
+        return this.ids.proximoId();
     }
     
-    /** 
-     * Método que carrega o maior ID existente na base de dados
-     * 
-     * @return Maior ID existente na base de dados
-     */
-    private int loadMaxIdFromDatabase() {
-        int max = 0;
-        for (String id : this.keySet()) {
-            if (id.startsWith("R")) {
-                try {
-                    int num = Integer.parseInt(id.substring(1));
-                    if (num > max) {
-                        max = num;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora IDs com formato inválido
-                }
-            }
-        }
-        
-        return max;
-    }
-
     /** 
      * Método que atualiza o chefe de um restaurante na base de dados
      * 
@@ -98,9 +88,11 @@ public class RestauranteDAO implements Map<String, Restaurante> {
         if (this.getChefeRestaurante(idRestaurante) != null) {
             throw new IllegalArgumentException("Já existe um chefe de restaurante no restaurante " + idRestaurante + ".");
         }
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            stm.executeUpdate("UPDATE Restaurante SET idFuncionario_FK='" + novoChefe + "' WHERE idRestaurante='" + idRestaurante + "'");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_ATUALIZA_CHEFE)) {
+            pstm.setString(1, novoChefe);
+            pstm.setString(2, idRestaurante);
+            pstm.executeUpdate();
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
@@ -117,27 +109,21 @@ public class RestauranteDAO implements Map<String, Restaurante> {
      */
     public ChefeRestaurante getChefeRestaurante(String idRestaurante) {
         ChefeRestaurante chefe = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT idFuncionario_FK FROM Restaurante WHERE idRestaurante='" + idRestaurante + "'")) {
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_CHEFE_RESTAURANTE)) {
             
             String idFuncionario_FK = null;
 
-            if(rs.next()) {
-                idFuncionario_FK = rs.getString("idFuncionario_FK");
-            } else {
-                return null; // Restaurante não encontrado
+            pstm.setString(1, idRestaurante);
+            try (ResultSet rs = pstm.executeQuery()) {
+                if(rs.next()) {
+                    idFuncionario_FK = rs.getString("idFuncionario_FK");
+                } else {
+                    return null; // Restaurante não encontrado
+                }
             }
 
-            ResultSet rss = stm.executeQuery("SELECT * FROM Funcionario WHERE idFuncionario='" + idFuncionario_FK + "'");
-            if (rss.next()){
-                String nomeFunc = rss.getString("nome");
-                String posto = rss.getString("posto");
-                String tarefa = rss.getString("tarefa");
-                chefe = new ChefeRestaurante(idFuncionario_FK,nomeFunc,posto,tarefa);
-            } else {
-                chefe = null; // Chefe do restaurante não existe
-            }
+            chefe = this.getChefe(conn, idFuncionario_FK);
         }
         catch (Exception e) {
             // Erro a criar tabela...
@@ -147,6 +133,49 @@ public class RestauranteDAO implements Map<String, Restaurante> {
         return chefe;
     }
     
+    /** 
+     * Método que devolve o chefe de restaurante com um dado ID usando uma conexão já aberta
+     * 
+     * @param conn Conexão a utilizar
+     * @param idFuncionario ID do chefe
+     * @return Chefe do restaurante, ou null se não existir
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private ChefeRestaurante getChefe(Connection conn, String idFuncionario) throws SQLException {
+        if (idFuncionario == null) {
+            return null;
+        }
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_GET_CHEFE)) {
+            pstm.setString(1, idFuncionario);
+            try (ResultSet rss = pstm.executeQuery()) {
+                if (rss.next()){
+                    String nomeFunc = rss.getString("nome");
+                    String posto = rss.getString("posto");
+                    String tarefa = rss.getString("tarefa");
+                    return new ChefeRestaurante(idFuncionario,nomeFunc,posto,tarefa);
+                }
+            }
+        }
+        return null; // Chefe do restaurante não existe
+    }
+
+    /** 
+     * Método que executa uma atualização parametrizada
+     * 
+     * @param conn Conexão a utilizar
+     * @param sql Atualização parametrizada
+     * @param params Valores dos parâmetros, pela ordem
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private void executarUpdate(Connection conn, String sql, String... params) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstm.setString(i + 1, params[i]);
+            }
+            pstm.executeUpdate();
+        }
+    }
+    
     // Implementação dos métodos obrigatórios de Map
 
     /** 
@@ -157,7 +186,7 @@ public class RestauranteDAO implements Map<String, Restaurante> {
     @Override
     public int size() {
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Restaurante")) {
             if(rs.next()) {
@@ -191,7 +220,7 @@ public class RestauranteDAO implements Map<String, Restaurante> {
     @Override
     public boolean containsKey(Object key) {
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             PreparedStatement pstm = conn.prepareStatement("SELECT idRestaurante FROM Restaurante WHERE idRestaurante=?")) {
             pstm.setString(1, key.toString());
             try (ResultSet rs = pstm.executeQuery()) {
@@ -227,29 +256,23 @@ public class RestauranteDAO implements Map<String, Restaurante> {
     public Restaurante get(Object key) {
         Restaurante novo = null;
         ChefeRestaurante chefe = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Restaurante WHERE idRestaurante='" + key.toString() + "'")) {
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
             
             String idFuncionario_FK = null;
             String nomeRes = null;
 
-            if(rs.next()) {
-                nomeRes = rs.getString("nome");
-                idFuncionario_FK = rs.getString("idFuncionario_FK");
-            } else {
-                return null; // Restaurante não encontrado
+            pstm.setString(1, key.toString());
+            try (ResultSet rs = pstm.executeQuery()) {
+                if(rs.next()) {
+                    nomeRes = rs.getString("nome");
+                    idFuncionario_FK = rs.getString("idFuncionario_FK");
+                } else {
+                    return null; // Restaurante não encontrado
+                }
             }
 
-            ResultSet rss = stm.executeQuery("SELECT * FROM Funcionario WHERE idFuncionario='" + idFuncionario_FK + "'");
-            if (rss.next()){
-                String nomeFunc = rss.getString("nome");
-                String posto = rss.getString("posto");
-                String tarefa = rss.getString("tarefa");
-                chefe = new ChefeRestaurante(idFuncionario_FK,nomeFunc,posto,tarefa);
-            } else {
-                chefe = null; // Chefe do restaurante não existe
-            }
+            chefe = this.getChefe(conn, idFuncionario_FK);
 
             FuncionarioDAO fdao = FuncionarioDAO.getInstance();
             Collection<String> funcionarios = fdao.getIdsFuncionariosRestaurante(key.toString());
@@ -274,7 +297,7 @@ public class RestauranteDAO implements Map<String, Restaurante> {
     @Override
     public Restaurante put(String key, Restaurante value) {
         Restaurante res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Verificar se já existe
             res = this.get(key);
             
@@ -285,20 +308,19 @@ public class RestauranteDAO implements Map<String, Restaurante> {
                     pstm.setString(2, value.getChefeRestaurante().getIDFunc());
                     pstm.setString(3, value.getIdRestaurante());
                     pstm.executeUpdate();
+                }
 
-                    Statement stm = conn.createStatement();
-                    stm.executeUpdate("UPDATE Funcionario SET idRestaurante_FK = NULL WHERE idRestaurante_FK='" + key.toString() + "'");
-                    for (String idFunc : value.getCodsFuncionarios()) {
-                        stm.executeUpdate("UPDATE Funcionario SET idRestaurante_FK='" + value.getIdRestaurante() + "' WHERE idFuncionario='" + idFunc + "'");
-                    }
-
-                    String chefeAnterior = res.getChefeRestaurante().getIDFunc();
-                    if (chefeAnterior != null){
-                        stm.executeUpdate("UPDATE Funcionario SET tipo='Funcionario' WHERE idFuncionario='" + chefeAnterior + "'");
-                    }
+                this.executarUpdate(conn, SQL_DESASSOCIAR_FUNCIONARIOS, key);
+                for (String idFunc : value.getCodsFuncionarios()) {
+                    this.executarUpdate(conn, SQL_ASSOCIAR_FUNCIONARIO, value.getIdRestaurante(), idFunc);
+                }
 
-                    stm.executeUpdate("UPDATE Funcionario SET idRestaurante_FK='" + value.getIdRestaurante() + "', tipo='ChefeRestaurante' WHERE idFuncionario='" + value.getChefeRestaurante().getIDFunc() + "'");
+                String chefeAnterior = res.getChefeRestaurante().getIDFunc();
+                if (chefeAnterior != null){
+                    this.executarUpdate(conn, SQL_DESPROMOVER_CHEFE, chefeAnterior);
                 }
+
+                this.executarUpdate(conn, SQL_PROMOVER_CHEFE, value.getIdRestaurante(), value.getChefeRestaurante().getIDFunc());
             } else {
                 // Inserir novo
                 try (PreparedStatement pstm = conn.prepareStatement("INSERT INTO Restaurante (idRestaurante, nome, idFuncionario_FK) VALUES (?, ?, ?)")) {
@@ -306,14 +328,13 @@ public class RestauranteDAO implements Map<String, Restaurante> {
                     pstm.setString(2, value.getNome());
                     pstm.setString(3, value.getChefeRestaurante().getIDFunc());
                     pstm.executeUpdate();
+                }
 
-                    Statement stm = conn.createStatement();
-                    for (String idFunc : value.getCodsFuncionarios()) {
-                        stm.executeUpdate("UPDATE Funcionario SET idRestaurante_FK='" + value.getIdRestaurante() + "' WHERE idFuncionario='" + idFunc + "'");
-                    }
-
-                    stm.executeUpdate("UPDATE Funcionario SET idRestaurante_FK='" + value.getIdRestaurante() + "', tipo='ChefeRestaurante' WHERE idFuncionario='" + value.getChefeRestaurante().getIDFunc() + "'");
+                for (String idFunc : value.getCodsFuncionarios()) {
+                    this.executarUpdate(conn, SQL_ASSOCIAR_FUNCIONARIO, value.getIdRestaurante(), idFunc);
                 }
+
+                this.executarUpdate(conn, SQL_PROMOVER_CHEFE, value.getIdRestaurante(), value.getChefeRestaurante().getIDFunc());
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -330,23 +351,39 @@ public class RestauranteDAO implements Map<String, Restaurante> {
      */
     @Override
     public Restaurante remove(Object key) {
+        EscritaDiferida.getInstance().sincronizar();
         Restaurante t = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            ResultSet rs = stm.executeQuery("SELECT idFuncionario_FK FROM Restaurante WHERE idRestaurante='" + key.toString() + "'");
-            if (rs.next()){
-                String idChefe = rs.getString("idFuncionario_FK");
-                stm.executeUpdate("UPDATE Funcionario SET tipo='Funcionario', idRestaurante_FK = NULL WHERE idFuncionario='" + idChefe + "'");
+        try (Connection conn = DAOconfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String idChefe = null;
+                try (PreparedStatement pstm = conn.prepareStatement(SQL_CHEFE_RESTAURANTE)) {
+                    pstm.setString(1, key.toString());
+                    try (ResultSet rs = pstm.executeQuery()) {
+                        if (rs.next()){
+                            idChefe = rs.getString("idFuncionario_FK");
+                        }
+                    }
+                }
+                if (idChefe != null) {
+                    this.executarUpdate(conn, SQL_REMOVER_CHEFE, idChefe);
+                }
+                this.executarUpdate(conn, SQL_DESASSOCIAR_FUNCIONARIOS, key.toString());
+                this.executarUpdate(conn, SQL_DELETE_STOCK, key.toString());
+                this.executarUpdate(conn, SQL_DELETE_ESTATISTICAS, key.toString());
+                this.executarUpdate(conn, SQL_DELETE_HISTORICO, key.toString());
+                this.executarUpdate(conn, SQL_DELETE, key.toString());
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
-            stm.executeUpdate("UPDATE Funcionario SET idRestaurante_FK = NULL WHERE idRestaurante_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM Stock WHERE idRestaurante_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM Historico WHERE idRestaurante_FK='" + key.toString() + "'");
-            stm.executeUpdate("DELETE FROM Restaurante WHERE idRestaurante='" + key.toString() + "'");
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
+        MotorStock.getInstance().removerRestaurante(key.toString());
         return t;
     }
     
@@ -367,17 +404,27 @@ public class RestauranteDAO implements Map<String, Restaurante> {
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        EscritaDiferida.getInstance().sincronizar();
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
-            stm.executeUpdate("UPDATE Funcionario SET idRestaurante_FK = NULL");
-            stm.executeUpdate("UPDATE Funcionario SET tipo='Funcionario' WHERE tipo='ChefeRestaurante'");
-            stm.execute("DELETE FROM Stock");
-            stm.executeUpdate("DELETE FROM Historico");
-            stm.executeUpdate("DELETE FROM Restaurante");
+            conn.setAutoCommit(false);
+            try {
+                stm.executeUpdate("UPDATE Funcionario SET idRestaurante_FK = NULL");
+                stm.executeUpdate("UPDATE Funcionario SET tipo='Funcionario' WHERE tipo='ChefeRestaurante'");
+                stm.execute("DELETE FROM Stock");
+                stm.executeUpdate("DELETE FROM EstatisticaDiaria");
+                stm.executeUpdate("DELETE FROM Historico");
+                stm.executeUpdate("DELETE FROM Restaurante");
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
+        MotorStock.getInstance().limpar();
     }
     
     /** 
@@ -388,7 +435,7 @@ public class RestauranteDAO implements Map<String, Restaurante> {
     @Override
     public Set<String> keySet() {
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT idRestaurante FROM Restaurante")) {
             while (rs.next()) {
@@ -411,7 +458,7 @@ public class RestauranteDAO implements Map<String, Restaurante> {
         Restaurante novo = null;
         ChefeRestaurante chefe = null;
         Collection<Restaurante> restaurantes = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Restaurante")) {
             
@@ -424,17 +471,7 @@ public class RestauranteDAO implements Map<String, Restaurante> {
                 nomeRes = rs.getString("nome");
                 idFuncionario_FK = rs.getString("idFuncionario_FK");
 
-                try (Statement stm2 = conn.createStatement();
-                     ResultSet rss = stm2.executeQuery("SELECT * FROM Funcionario WHERE idFuncionario='" + idFuncionario_FK + "'")) {
-                    if (rss.next()){
-                        String nomeFunc = rss.getString("nome");
-                        String posto = rss.getString("posto");
-                        String tarefa = rss.getString("tarefa");
-                        chefe = new ChefeRestaurante(idFuncionario_FK,nomeFunc,posto,tarefa);
-                    } else {
-                        chefe = null; // Chefe do restaurante não existe
-                    }
-                }
+                chefe = this.getChefe(conn, idFuncionario_FK);
 
                 FuncionarioDAO fdao = FuncionarioDAO.getInstance();
                 Collection<String> funcionarios = fdao.getIdsFuncionariosRestaurante(idRestaurante);
@@ -461,7 +498,7 @@ public class RestauranteDAO implements Map<String, Restaurante> {
         Restaurante novo = null;
         ChefeRestaurante chefe = null;
         Set<Entry<String, Restaurante>> restaurantes = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Restaurante")) {
             
@@ -474,17 +511,7 @@ public class RestauranteDAO implements Map<String, Restaurante> {
                 nomeRes = rs.getString("nome");
                 idFuncionario_FK = rs.getString("idFuncionario_FK");
 
-                try (Statement stm2 = conn.createStatement();
-                     ResultSet rss = stm2.executeQuery("SELECT * FROM Funcionario WHERE idFuncionario='" + idFuncionario_FK + "'")) {
-                    if (rss.next()){
-                        String nomeFunc = rss.getString("nome");
-                        String posto = rss.getString("posto");
-                        String tarefa = rss.getString("tarefa");
-                        chefe = new ChefeRestaurante(idFuncionario_FK,nomeFunc,posto,tarefa);
-                    } else {
-                        chefe = null; // Chefe do restaurante não existe
-                    }
-                }
+                chefe = this.getChefe(conn, idFuncionario_FK);
 
                 FuncionarioDAO fdao = FuncionarioDAO.getInstance();
                 Collection<String> funcionarios = fdao.getIdsFuncionariosRestaurante(idRestaurante);
@@ -0,0 +1,278 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubDL.BaseDadosMemoria.LinhaFuncionario;
+import eathubDL.BaseDadosMemoria.LinhaHistorico;
+import eathubDL.BaseDadosMemoria.LinhaRestaurante;
+import eathubLN.ssCadeia.ChefeRestaurante;
+import eathubLN.ssCadeia.Restaurante;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implementação em memória do RestauranteDAO, sobre a tabela Restaurante da BaseDadosMemoria.
+ * Ao remover um restaurante são removidos também o seu stock, o seu histórico e as suas
+ * estatísticas diárias.
+ */
+class RestauranteDAOMemoria extends RestauranteDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar RestauranteDAO.getInstance)
+     */
+    RestauranteDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que constrói um Restaurante a partir das tabelas em memória
+     *
+     * @param linha Linha da tabela Restaurante
+     * @return Restaurante, ou null se a linha for null
+     */
+    private Restaurante lerRestaurante(LinhaRestaurante linha) {
+        if (linha == null) {
+            return null;
+        }
+        List<String> idsFunc = (List<String>) FuncionarioDAO.getInstance().getIdsFuncionariosRestaurante(linha.idRestaurante);
+        return new Restaurante(linha.idRestaurante, linha.nome, this.lerChefe(linha.idChefe), idsFunc);
+    }
+
+    /**
+     * Método que devolve o chefe de restaurante com um dado ID
+     *
+     * @param idFuncionario ID do chefe (pode ser null)
+     * @return Chefe do restaurante, ou null se não existir
+     */
+    private ChefeRestaurante lerChefe(String idFuncionario) {
+        LinhaFuncionario f = idFuncionario != null ? this.bd.funcionarios.get(idFuncionario) : null;
+        return f != null ? new ChefeRestaurante(f.idFuncionario, f.nome, f.posto, f.tarefa) : null;
+    }
+
+    /**
+     * Método que altera o restaurante e o tipo de um Funcionario (se existir)
+     *
+     * @param idFuncionario ID do Funcionario
+     * @param idRestaurante Novo ID do restaurante (pode ser null)
+     * @param tipo Novo tipo, ou null para manter o atual
+     */
+    private void atualizarFuncionario(String idFuncionario, String idRestaurante, String tipo) {
+        LinhaFuncionario f = idFuncionario != null ? this.bd.funcionarios.get(idFuncionario) : null;
+        if (f != null) {
+            this.bd.funcionarios.gravar(f.idFuncionario, FuncionarioDAOMemoria.comRestaurante(f, idRestaurante, tipo != null ? tipo : f.tipo));
+        }
+    }
+
+    /**
+     * Método que desassocia todos os Funcionarios de um restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     */
+    private void desassociarFuncionarios(String idRestaurante) {
+        for (LinhaFuncionario f : this.bd.funcionarios.linhas()) {
+            if (idRestaurante.equals(f.idRestaurante)) {
+                this.bd.funcionarios.gravar(f.idFuncionario, FuncionarioDAOMemoria.comRestaurante(f, null, f.tipo));
+            }
+        }
+    }
+
+    /**
+     * Método que gera um novo ID único para um Restaurante
+     *
+     * @return Novo ID único para um Restaurante
+     */
+    @Override
+    public String generateNewId() {
+        return "R" + this.bd.proximoNumero("Restaurante");
+    }
+
+    /**
+     * Método que atualiza o chefe de um restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     * @param novoChefe ID do novo chefe do restaurante
+     * @throws IllegalArgumentException Se já existir um chefe de restaurante no restaurante
+     */
+    @Override
+    public void atualizaChefeRestaurante(String idRestaurante, String novoChefe) {
+        this.bd.escrever(() -> {
+            if (this.getChefeRestaurante(idRestaurante) != null) {
+                throw new IllegalArgumentException("Já existe um chefe de restaurante no restaurante " + idRestaurante + ".");
+            }
+            LinhaRestaurante r = this.bd.restaurantes.get(idRestaurante);
+            if (r != null) {
+                this.bd.restaurantes.gravar(idRestaurante, new LinhaRestaurante(idRestaurante, r.nome, novoChefe));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Método que devolve o chefe de um restaurante a partir do ID do restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     * @return Chefe do restaurante, ou null se não existir
+     */
+    @Override
+    public ChefeRestaurante getChefeRestaurante(String idRestaurante) {
+        LinhaRestaurante r = this.bd.restaurantes.get(idRestaurante);
+        return r != null ? this.lerChefe(r.idChefe) : null;
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de Restaurantes
+     *
+     * @return Número de Restaurantes
+     */
+    @Override
+    public int size() {
+        return this.bd.restaurantes.tamanho();
+    }
+
+    /**
+     * Método que verifica se um determinado ID de Restaurante existe
+     *
+     * @param key ID do Restaurante
+     * @return true se o ID existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.bd.restaurantes.contem(key.toString());
+    }
+
+    /**
+     * Método que devolve um Restaurante a partir do seu ID
+     *
+     * @param key ID do Restaurante
+     * @return Restaurante correspondente ao ID, ou null se não existir
+     */
+    @Override
+    public Restaurante get(Object key) {
+        return this.lerRestaurante(this.bd.restaurantes.get(key.toString()));
+    }
+
+    /**
+     * Método que insere ou atualiza um Restaurante, associando-lhe os Funcionarios e promovendo o chefe
+     *
+     * @param key ID do Restaurante
+     * @param value Restaurante a inserir ou atualizar
+     * @return Restaurante previamente associado ao ID, ou null se não existia
+     */
+    @Override
+    public Restaurante put(String key, Restaurante value) {
+        String id = value.getIdRestaurante();
+        String idChefe = value.getChefeRestaurante().getIDFunc();
+        return this.bd.escrever(() -> {
+            Restaurante res = this.get(key);
+            LinhaRestaurante linha = new LinhaRestaurante(id, value.getNome(), idChefe);
+            if (res != null) {
+                this.bd.restaurantes.gravar(id, linha);
+                this.desassociarFuncionarios(key);
+            } else {
+                this.bd.restaurantes.inserir(id, linha);
+            }
+            for (String idFunc : value.getCodsFuncionarios()) {
+                this.atualizarFuncionario(idFunc, id, null);
+            }
+            if (res != null && res.getChefeRestaurante() != null) {
+                LinhaFuncionario anterior = this.bd.funcionarios.get(res.getChefeRestaurante().getIDFunc());
+                if (anterior != null) {
+                    this.atualizarFuncionario(anterior.idFuncionario, anterior.idRestaurante, "Funcionario");
+                }
+            }
+            this.atualizarFuncionario(idChefe, id, "ChefeRestaurante");
+            return res;
+        });
+    }
+
+    /**
+     * Método que remove um Restaurante (e o seu stock, histórico e estatísticas; o chefe passa a Funcionario)
+     *
+     * @param key ID do Restaurante a remover
+     * @return Restaurante removido, ou null se não existia
+     */
+    @Override
+    public Restaurante remove(Object key) {
+        String id = key.toString();
+        return this.bd.escrever(() -> {
+            Restaurante t = this.get(id);
+            LinhaRestaurante r = this.bd.restaurantes.get(id);
+            if (r != null && r.idChefe != null) {
+                this.atualizarFuncionario(r.idChefe, null, "Funcionario");
+            }
+            this.desassociarFuncionarios(id);
+            this.bd.stock.removerComPrefixo(BaseDadosMemoria.prefixo(id));
+            for (LinhaHistorico h : this.bd.historicos.linhas()) {
+                if (id.equals(h.idRestaurante)) {
+                    this.bd.historicos.remover(h.idHistorico);
+                }
+            }
+            this.bd.estatisticasDiarias.removerComPrefixo(BaseDadosMemoria.prefixo(id));
+            this.bd.restaurantes.remover(id);
+            return t;
+        });
+    }
+
+    /**
+     * Método que remove todos os Restaurantes (e o stock, o histórico e as estatísticas)
+     */
+    @Override
+    public void clear() {
+        this.bd.escrever(() -> {
+            for (LinhaFuncionario f : this.bd.funcionarios.linhas()) {
+                String tipo = "ChefeRestaurante".equals(f.tipo) ? "Funcionario" : f.tipo;
+                this.bd.funcionarios.gravar(f.idFuncionario, FuncionarioDAOMemoria.comRestaurante(f, null, tipo));
+            }
+            this.bd.stock.limpar();
+            this.bd.historicos.limpar();
+            this.bd.estatisticasDiarias.limpar();
+            this.bd.restaurantes.limpar();
+            return null;
+        });
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs dos Restaurantes
+     *
+     * @return Conjunto de IDs dos Restaurantes
+     */
+    @Override
+    public Set<String> keySet() {
+        return new HashSet<>(this.bd.restaurantes.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de Restaurantes
+     *
+     * @return Coleção de Restaurantes
+     */
+    @Override
+    public Collection<Restaurante> values() {
+        Collection<Restaurante> restaurantes = new HashSet<>();
+        for (LinhaRestaurante linha : this.bd.restaurantes.linhas()) {
+            restaurantes.add(this.lerRestaurante(linha));
+        }
+        return restaurantes;
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (ID, Restaurante)
+     *
+     * @return Conjunto de entradas (ID, Restaurante)
+     */
+    @Override
+    public Set<Entry<String, Restaurante>> entrySet() {
+        Set<Entry<String, Restaurante>> restaurantes = new HashSet<>();
+        for (LinhaRestaurante linha : this.bd.restaurantes.linhas()) {
+            restaurantes.add(new AbstractMap.SimpleEntry<>(linha.idRestaurante, this.lerRestaurante(linha)));
+        }
+        return restaurantes;
+    }
+}
@@ -0,0 +1,606 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.DAOconfig;
+import eathubDL.UnidadeTrabalho;
+import eathubLN.ssCadeia.Pair;
+import eathubLN.ssPedidos.Ingrediente;
+import eathubLN.ssPedidos.Menu;
+import eathubLN.ssPedidos.Proposta;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot binário do catálogo (ingredientes, alergénios, propostas com as etapas por ordem e menus),
+ * para que o arranque não tenha de carregar o catálogo proposta a proposta.
+ *
+ * A tabela VersaoCatalogo guarda um número de versão que, com DAOconfig.SNAPSHOT_CATALOGO, os DAOs do
+ * catálogo incrementam em cada escrita (na mesma conexão, e portanto na mesma transação). Depois de uma
+ * escrita confirmada é agendada uma exportação, DAOconfig.SNAPSHOT_CATALOGO_ATRASO milissegundos depois,
+ * que agrupa as escritas entretanto confirmadas: o catálogo é lido de uma só vez (uma consulta por
+ * tabela, numa transação) e exportado, com a versão lida, para um ficheiro que substitui o anterior de
+ * forma atómica. Se a versão não mudou desde a última exportação nada é exportado.
+ *
+ * No arranque o ficheiro é mapeado em memória e só é usado se a sua versão for igual à da base de
+ * dados; caso contrário (ou se o ficheiro não existir ou estiver corrompido) o catálogo é lido da base
+ * de dados e o snapshot é exportado de novo. Como a versão só é incrementada com o modo ativo, um
+ * arranque com o modo desativado apaga o ficheiro, que deixaria de refletir as escritas seguintes.
+ *
+ * Formato: [magia][formato][versão][ingredientes][alergénios][propostas][menus][crc32], com os textos
+ * em UTF-8 precedidos do seu comprimento.
+ *
+ * Implementa o padrão Singleton.
+ */
+public class SnapshotCatalogo {
+
+    /** Identificação do ficheiro ("EHCT") */
+    private static final int MAGIA = 0x45484354;
+
+    /** Versão do formato do ficheiro */
+    private static final int FORMATO = 1;
+
+    // Consultas do catálogo completo (uma por tabela)
+    private static final String SQL_VERSAO = "SELECT versao FROM VersaoCatalogo WHERE id=1";
+    private static final String SQL_INCREMENTAR = "UPDATE VersaoCatalogo SET versao = versao + 1 WHERE id=1";
+    private static final String SQL_INGREDIENTES = "SELECT nome, preco FROM Ingrediente ORDER BY nome";
+    private static final String SQL_ALERGENIOS_INGREDIENTES = "SELECT nomeIngrediente_FK, alergenio_FK FROM AlergenioIngrediente ORDER BY nomeIngrediente_FK, alergenio_FK";
+    private static final String SQL_ALERGENIOS = "SELECT alergenio FROM Alergenio ORDER BY alergenio";
+    private static final String SQL_PROPOSTAS = "SELECT idProposta, nome, preco FROM Proposta ORDER BY idProposta";
+    private static final String SQL_INGREDIENTES_PROPOSTAS = "SELECT idProposta_FK, nomeIngrediente_FK FROM IngredienteProposta ORDER BY idProposta_FK, nomeIngrediente_FK";
+    private static final String SQL_ETAPAS = "SELECT idProposta_FK, etapa FROM EtapasProposta ORDER BY idProposta_FK, ordem";
+    private static final String SQL_MENUS = "SELECT idM, nome, precoTotal FROM Menu ORDER BY idM";
+    private static final String SQL_PROPOSTAS_MENUS = "SELECT idM_FK, idProposta_FK FROM PropostaMenu ORDER BY idM_FK, idProposta_FK";
+
+    /** Instância única da classe */
+    private static SnapshotCatalogo singleton = null;
+
+    /** Ficheiro do snapshot */
+    private final Path ficheiro;
+
+    /** Thread que executa as exportações agendadas (criada na primeira alteração) */
+    private ScheduledExecutorService exportador;
+
+    /** Indica se existe uma exportação agendada e ainda não iniciada */
+    private final AtomicBoolean exportacaoAgendada;
+
+    /** Versão do catálogo no ficheiro do snapshot (-1 se desconhecida) */
+    private volatile long versaoExportada;
+
+    /**
+     * O catálogo completo numa determinada versão
+     */
+    public static final class Catalogo {
+        private final long versao;
+        private final Map<String, Ingrediente> ingredientes;
+        private final List<String> alergenios;
+        private final Map<String, Proposta> propostas;
+        private final Map<String, Menu> menus;
+
+        private Catalogo(long versao, Map<String, Ingrediente> ingredientes, List<String> alergenios,
+                         Map<String, Proposta> propostas, Map<String, Menu> menus) {
+            this.versao = versao;
+            this.ingredientes = ingredientes;
+            this.alergenios = alergenios;
+            this.propostas = propostas;
+            this.menus = menus;
+        }
+
+        /**
+         * Método que devolve a versão do catálogo
+         *
+         * @return Versão do catálogo
+         */
+        public long getVersao() {
+            return this.versao;
+        }
+
+        /**
+         * Método que devolve os Ingredientes do catálogo, por nome
+         *
+         * @return Ingredientes
+         */
+        public Collection<Ingrediente> getIngredientes() {
+            return new ArrayList<>(this.ingredientes.values());
+        }
+
+        /**
+         * Método que devolve os alergénios do catálogo
+         *
+         * @return Alergénios
+         */
+        public List<String> getAlergenios() {
+            return new ArrayList<>(this.alergenios);
+        }
+
+        /**
+         * Método que devolve as Propostas do catálogo, por ID
+         *
+         * @return Propostas
+         */
+        public Collection<Proposta> getPropostas() {
+            return new ArrayList<>(this.propostas.values());
+        }
+
+        /**
+         * Método que devolve os Menus do catálogo, por ID
+         *
+         * @return Menus
+         */
+        public Collection<Menu> getMenus() {
+            return new ArrayList<>(this.menus.values());
+        }
+    }
+
+    /**
+     * Construtor privado para evitar instanciação externa
+     */
+    private SnapshotCatalogo() {
+        this.ficheiro = Paths.get(DAOconfig.SNAPSHOT_CATALOGO_FICHEIRO);
+        this.exportacaoAgendada = new AtomicBoolean(false);
+        this.versaoExportada = -1;
+    }
+
+    /**
+     * Método que devolve a instância única da classe
+     *
+     * @return Instância única da classe
+     */
+    public static synchronized SnapshotCatalogo getInstance() {
+        if (singleton == null) {
+            singleton = new SnapshotCatalogo();
+        }
+        return singleton;
+    }
+
+    /**
+     * Método chamado pelos DAOs do catálogo depois de uma escrita: com o snapshot ativo, incrementa
+     * a versão do catálogo na conexão da escrita e, depois da confirmação, agenda a exportação
+     *
+     * @param conn Conexão da escrita
+     * @throws SQLException Se não for possível incrementar a versão
+     */
+    void alterado(Connection conn) throws SQLException {
+        if (!DAOconfig.SNAPSHOT_CATALOGO) {
+            return;
+        }
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_INCREMENTAR)) {
+            pstm.executeUpdate();
+        }
+        UnidadeTrabalho.aoConfirmar(this::agendarExportacao);
+    }
+
+    /**
+     * Método que agenda uma exportação, se ainda não existir uma agendada
+     */
+    private void agendarExportacao() {
+        if (!this.exportacaoAgendada.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this.exportacaoAgendada) {
+            if (this.exportador == null) {
+                this.exportador = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "EatHub-catalogo-snapshot");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+        }
+        this.exportador.schedule(this::exportarSeAlterado, DAOconfig.SNAPSHOT_CATALOGO_ATRASO, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Método executado pela exportação agendada: exporta o catálogo se a versão na base de dados
+     * for diferente da do ficheiro (uma falha não é fatal: o próximo arranque lê a base de dados)
+     */
+    private void exportarSeAlterado() {
+        // As escritas confirmadas a partir daqui agendam uma nova exportação
+        this.exportacaoAgendada.set(false);
+        try {
+            long versao;
+            try (Connection conn = DAOconfig.getConnection()) {
+                versao = versao(conn);
+            }
+            if (versao != this.versaoExportada) {
+                this.exportar();
+            }
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Método que devolve o catálogo para o arranque: o do snapshot, se estiver atualizado, ou o da
+     * base de dados (exportando-o de novo)
+     *
+     * @return Catálogo, ou null se o snapshot do catálogo não estiver ativo
+     */
+    public Catalogo carregar() {
+        if (!DAOconfig.SNAPSHOT_CATALOGO) {
+            // Sem o modo ativo a versão não é incrementada: um snapshot antigo deixaria de ser fiável
+            try {
+                Files.deleteIfExists(this.ficheiro);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+        try (Connection conn = DAOconfig.getConnection()) {
+            long versao = versao(conn);
+            Catalogo catalogo = this.lerFicheiro(versao);
+            if (catalogo != null) {
+                this.versaoExportada = versao;
+                return catalogo;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        return this.exportar();
+    }
+
+    /**
+     * Método que lê o catálogo da base de dados e o exporta para o ficheiro do snapshot
+     * (uma falha na escrita do ficheiro não é fatal: o próximo arranque lê a base de dados)
+     *
+     * @return Catálogo exportado
+     */
+    public synchronized Catalogo exportar() {
+        Catalogo catalogo = this.lerBaseDados();
+        try {
+            Path temporario = this.ficheiro.resolveSibling(this.ficheiro.getFileName() + ".tmp");
+            Files.write(temporario, codificar(catalogo));
+            Files.move(temporario, this.ficheiro, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.versaoExportada = catalogo.versao;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return catalogo;
+    }
+
+    /**
+     * Método que devolve a versão atual do catálogo na base de dados
+     *
+     * @param conn Conexão a utilizar
+     * @return Versão do catálogo
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private static long versao(Connection conn) throws SQLException {
+        try (Statement stm = conn.createStatement();
+             ResultSet rs = stm.executeQuery(SQL_VERSAO)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Método que lê o catálogo completo da base de dados, numa transação (para que a versão
+     * corresponda ao conteúdo)
+     *
+     * @return Catálogo lido
+     */
+    private Catalogo lerBaseDados() {
+        try (Connection conn = DAOconfig.getConnectionIsolada()) {
+            int isolamento = conn.getTransactionIsolation();
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try (Statement stm = conn.createStatement()) {
+                long versao = versao(conn);
+
+                Map<String, double[]> precos = new LinkedHashMap<>();
+                try (ResultSet rs = stm.executeQuery(SQL_INGREDIENTES)) {
+                    while (rs.next()) {
+                        precos.put(rs.getString("nome"), new double[] { rs.getDouble("preco") });
+                    }
+                }
+                Map<String, List<String>> alergeniosIngrediente = agrupar(stm, SQL_ALERGENIOS_INGREDIENTES);
+                List<String> alergenios = new ArrayList<>();
+                try (ResultSet rs = stm.executeQuery(SQL_ALERGENIOS)) {
+                    while (rs.next()) {
+                        alergenios.add(rs.getString("alergenio"));
+                    }
+                }
+                Map<String, Ingrediente> ingredientes = new LinkedHashMap<>();
+                for (Map.Entry<String, double[]> e : precos.entrySet()) {
+                    ingredientes.put(e.getKey(), new Ingrediente(e.getKey(),
+                        alergeniosIngrediente.getOrDefault(e.getKey(), List.of()), e.getValue()[0]));
+                }
+
+                Map<String, List<String>> ingredientesProposta = agrupar(stm, SQL_INGREDIENTES_PROPOSTAS);
+                Map<String, List<String>> etapas = agrupar(stm, SQL_ETAPAS);
+                Map<String, Proposta> propostas = new LinkedHashMap<>();
+                try (ResultSet rs = stm.executeQuery(SQL_PROPOSTAS)) {
+                    while (rs.next()) {
+                        String id = rs.getString("idProposta");
+                        propostas.put(id, new Proposta(id, rs.getString("nome"), rs.getDouble("preco"),
+                            ingredientesDe(ingredientesProposta.get(id), ingredientes),
+                            etapas.getOrDefault(id, List.of())));
+                    }
+                }
+
+                Map<String, List<String>> propostasMenu = agrupar(stm, SQL_PROPOSTAS_MENUS);
+                Map<String, Menu> menus = new LinkedHashMap<>();
+                try (ResultSet rs = stm.executeQuery(SQL_MENUS)) {
+                    while (rs.next()) {
+                        String id = rs.getString("idM");
+                        menus.put(id, new Menu(id, rs.getString("nome"), rs.getDouble("precoTotal"),
+                            propostasDe(propostasMenu.get(id), propostas)));
+                    }
+                }
+                conn.commit();
+                return new Catalogo(versao, ingredientes, alergenios, propostas, menus);
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+                conn.setTransactionIsolation(isolamento);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /**
+     * Método que agrupa o resultado de uma consulta de duas colunas (chave, valor) por chave
+     *
+     * @param stm Statement a utilizar
+     * @param sql Consulta, ordenada pela chave
+     * @return Valores de cada chave, pela ordem da consulta
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private static Map<String, List<String>> agrupar(Statement stm, String sql) throws SQLException {
+        Map<String, List<String>> res = new LinkedHashMap<>();
+        try (ResultSet rs = stm.executeQuery(sql)) {
+            while (rs.next()) {
+                res.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(rs.getString(2));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Método que devolve os Ingredientes existentes de uma lista de nomes
+     *
+     * @param nomes Nomes dos ingredientes (pode ser null)
+     * @param ingredientes Ingredientes do catálogo
+     * @return Ingredientes encontrados
+     */
+    private static List<Ingrediente> ingredientesDe(List<String> nomes, Map<String, Ingrediente> ingredientes) {
+        List<Ingrediente> res = new ArrayList<>();
+        if (nomes != null) {
+            for (String nome : nomes) {
+                Ingrediente i = ingredientes.get(nome);
+                if (i != null) {
+                    res.add(i);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Método que devolve as Propostas existentes de uma lista de IDs
+     *
+     * @param ids IDs das propostas (pode ser null)
+     * @param propostas Propostas do catálogo
+     * @return Propostas encontradas
+     */
+    private static List<Proposta> propostasDe(List<String> ids, Map<String, Proposta> propostas) {
+        List<Proposta> res = new ArrayList<>();
+        if (ids != null) {
+            for (String id : ids) {
+                Proposta p = propostas.get(id);
+                if (p != null) {
+                    res.add(p);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Método que converte o catálogo no conteúdo do ficheiro do snapshot
+     *
+     * @param catalogo Catálogo
+     * @return Conteúdo do ficheiro
+     * @throws IOException Se a escrita falhar
+     */
+    private static byte[] codificar(Catalogo catalogo) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIA);
+        out.writeInt(FORMATO);
+        out.writeLong(catalogo.versao);
+
+        out.writeInt(catalogo.ingredientes.size());
+        for (Ingrediente i : catalogo.ingredientes.values()) {
+            escreverTexto(out, i.getNome());
+            out.writeDouble(i.getPreco());
+            Collection<Pair<String, Ingrediente>> alergenios = i.getAlergeniosIngrediente();
+            out.writeInt(alergenios.size());
+            for (Pair<String, Ingrediente> a : alergenios) {
+                escreverTexto(out, a.getFirst());
+            }
+        }
+
+        out.writeInt(catalogo.alergenios.size());
+        for (String a : catalogo.alergenios) {
+            escreverTexto(out, a);
+        }
+
+        out.writeInt(catalogo.propostas.size());
+        for (Proposta p : catalogo.propostas.values()) {
+            escreverTexto(out, p.getIdProposta());
+            escreverTexto(out, p.getNome());
+            out.writeDouble(p.getPreco());
+            out.writeInt(p.getIngredientes().size());
+            for (Ingrediente i : p.getIngredientes()) {
+                escreverTexto(out, i.getNome());
+            }
+            out.writeInt(p.getEtapas().size());
+            for (String etapa : p.getEtapas()) {
+                escreverTexto(out, etapa);
+            }
+        }
+
+        out.writeInt(catalogo.menus.size());
+        for (Menu m : catalogo.menus.values()) {
+            escreverTexto(out, m.getIdMenu());
+            escreverTexto(out, m.getNome());
+            out.writeDouble(m.getPrecoTotal());
+            out.writeInt(m.getPropostasMenu().size());
+            for (Proposta p : m.getPropostasMenu()) {
+                escreverTexto(out, p.getIdProposta());
+            }
+        }
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Método que lê o ficheiro do snapshot (mapeado em memória), se for da versão pedida
+     *
+     * @param versao Versão atual do catálogo na base de dados
+     * @return Catálogo, ou null se o ficheiro não existir, estiver corrompido ou desatualizado
+     */
+    private Catalogo lerFicheiro(long versao) {
+        try (FileChannel c = FileChannel.open(this.ficheiro, StandardOpenOption.READ)) {
+            long tamanho = c.size();
+            if (tamanho < 20 || tamanho > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buf = c.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            if (buf.getInt(0) != MAGIA || buf.getInt(4) != FORMATO || buf.getLong(8) != versao) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, (int) tamanho - 4));
+            if ((int) crc.getValue() != buf.getInt((int) tamanho - 4)) {
+                System.err.println("Snapshot do catálogo corrompido: " + this.ficheiro);
+                return null;
+            }
+            buf.position(16);
+            return descodificar(buf, versao);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Método que reconstrói o catálogo a partir do conteúdo do snapshot (depois do cabeçalho)
+     *
+     * @param buf Conteúdo do ficheiro, posicionado a seguir ao cabeçalho
+     * @param versao Versão do catálogo
+     * @return Catálogo
+     */
+    private static Catalogo descodificar(ByteBuffer buf, long versao) {
+        Map<String, Ingrediente> ingredientes = new LinkedHashMap<>();
+        for (int i = buf.getInt(); i > 0; i--) {
+            String nome = lerTexto(buf);
+            double preco = buf.getDouble();
+            List<String> alergenios = new ArrayList<>();
+            for (int j = buf.getInt(); j > 0; j--) {
+                alergenios.add(lerTexto(buf));
+            }
+            ingredientes.put(nome, new Ingrediente(nome, alergenios, preco));
+        }
+
+        List<String> alergenios = new ArrayList<>();
+        for (int i = buf.getInt(); i > 0; i--) {
+            alergenios.add(lerTexto(buf));
+        }
+
+        Map<String, Proposta> propostas = new LinkedHashMap<>();
+        for (int i = buf.getInt(); i > 0; i--) {
+            String id = lerTexto(buf);
+            String nome = lerTexto(buf);
+            double preco = buf.getDouble();
+            List<String> nomes = new ArrayList<>();
+            for (int j = buf.getInt(); j > 0; j--) {
+                nomes.add(lerTexto(buf));
+            }
+            List<String> etapas = new ArrayList<>();
+            for (int j = buf.getInt(); j > 0; j--) {
+                etapas.add(lerTexto(buf));
+            }
+            propostas.put(id, new Proposta(id, nome, preco, ingredientesDe(nomes, ingredientes), etapas));
+        }
+
+        Map<String, Menu> menus = new LinkedHashMap<>();
+        for (int i = buf.getInt(); i > 0; i--) {
+            String id = lerTexto(buf);
+            String nome = lerTexto(buf);
+            double precoTotal = buf.getDouble();
+            List<String> ids = new ArrayList<>();
+            for (int j = buf.getInt(); j > 0; j--) {
+                ids.add(lerTexto(buf));
+            }
+            menus.put(id, new Menu(id, nome, precoTotal, propostasDe(ids, propostas)));
+        }
+        return new Catalogo(versao, ingredientes, alergenios, propostas, menus);
+    }
+
+    /**
+     * Método que escreve um texto (comprimento e bytes UTF-8; -1 para null)
+     *
+     * @param out Destino
+     * @param s Texto (pode ser null)
+     * @throws IOException Se a escrita falhar
+     */
+    private static void escreverTexto(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Método que lê um texto escrito por escreverTexto
+     *
+     * @param buf Origem
+     * @return Texto lido (pode ser null)
+     */
+    private static String lerTexto(ByteBuffer buf) {
+        int n = buf.getInt();
+        if (n < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[n];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
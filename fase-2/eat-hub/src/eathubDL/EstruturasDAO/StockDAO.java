@@ -1,19 +1,22 @@
 package eathubDL.EstruturasDAO;
 
+import eathubDL.CursorBD;
 import eathubDL.DAOconfig;
 import eathubLN.ssCadeia.Pair;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 import eathubLN.ssPedidos.Ingrediente;
 
 /**
@@ -23,6 +26,10 @@ import eathubLN.ssPedidos.Ingrediente;
  * onde a chave é um par (idRestaurante, idProduto)
  * e o valor corresponde à quantidade disponível.
  *
+ * Com o MotorStock ativo, as consultas e alterações de quantidades são feitas
+ * em memória e persistidas periodicamente; as listagens persistem primeiro as
+ * alterações pendentes e leem a base de dados.
+ *
  * Implementa o padrão Singleton.
  */
 public class StockDAO implements Map<Pair<String, String>, Integer> {
@@ -30,35 +37,151 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
     /** Instância única da classe */
     private static StockDAO singleton = null;
 
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT quantidade FROM Stock WHERE nomeIngrediente_FK=? AND idRestaurante_FK=?";
+    private static final String SQL_STOCK_RESTAURANTE = "SELECT * FROM Stock WHERE idRestaurante_FK=?";
+    private static final String SQL_STOCK = "SELECT * FROM Stock";
+    private static final String SQL_DELETE = "DELETE FROM Stock WHERE nomeIngrediente_FK=? AND idRestaurante_FK=?";
+    // Decremento condicional: só altera a linha se houver quantidade suficiente
+    private static final String SQL_CONSUMIR =
+        "UPDATE Stock SET quantidade = quantidade - ? WHERE nomeIngrediente_FK=? AND idRestaurante_FK=? AND quantidade >= ?";
+    private static final String SQL_REPOR =
+        "INSERT INTO Stock (nomeIngrediente_FK, idRestaurante_FK, quantidade) VALUES (?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE quantidade = quantidade + VALUES(quantidade)";
+
     /** 
-     * Construtor privado para evitar instanciação externa 
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, StockDAOMemoria)
     */
-    private StockDAO() {
+    StockDAO() {
     }
 
     /** 
-     * Método que devolve a instância única da classe
+     * Método que devolve a instância única da classe (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe
      */
-    public static StockDAO getInstance() {
+    public static synchronized StockDAO getInstance() {
         if (singleton == null) {
-            singleton = new StockDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new StockDAOMemoria() : new StockDAO();
         }
         return singleton;
     }
 
-    public boolean registar_Uso_Ingredientes(String idRestaurante, List<Ingrediente> lista){
+    /** 
+     * Método que regista o uso de uma unidade de cada ingrediente da lista no stock de um restaurante
+     * (um ingrediente repetido na lista consome uma unidade por ocorrência)
+     * 
+     * @param idRestaurante ID do restaurante
+     * @param lista Ingredientes utilizados
+     * @return Nomes dos ingredientes sem stock suficiente (lista vazia se o uso foi registado)
+     */
+    public List<String> registar_Uso_Ingredientes(String idRestaurante, List<Ingrediente> lista){
+        Map<String, Integer> quantidades = new TreeMap<>();
         for(Ingrediente ing : lista){
-            Pair<String, String> key = new Pair<>(idRestaurante, ing.getNome());
-            Integer quantidadeAtual = this.get(key);
-            if(quantidadeAtual == null || quantidadeAtual < 1){
-                return false; // Ingrediente não existe ou quantidade insuficiente
+            quantidades.merge(ing.getNome(), 1, Integer::sum);
+        }
+        return this.consumir(idRestaurante, quantidades);
+    }
+
+    /** 
+     * Método que consome quantidades de vários ingredientes do stock de um restaurante numa única
+     * transação. Cada ingrediente é decrementado apenas se tiver quantidade suficiente; se algum não
+     * tiver, a transação é desfeita e nenhum stock é alterado. As linhas são atualizadas por ordem do
+     * nome do ingrediente, para que consumos concorrentes as bloqueiem sempre pela mesma ordem.
+     * 
+     * @param idRestaurante ID do restaurante
+     * @param quantidades Quantidade a consumir de cada ingrediente
+     * @return Nomes dos ingredientes sem stock suficiente (lista vazia se o consumo foi registado)
+     */
+    public List<String> consumir(String idRestaurante, Map<String, Integer> quantidades) {
+        MotorStock motor = MotorStock.getInstance();
+        if (motor.isAtivo()) {
+            return motor.consumir(idRestaurante, quantidades);
+        }
+        Map<String, Integer> ordenadas = new TreeMap<>(quantidades);
+        List<String> emFalta = new ArrayList<>();
+        if (ordenadas.isEmpty()) {
+            return emFalta;
+        }
+        try (Connection conn = DAOconfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstm = conn.prepareStatement(SQL_CONSUMIR)) {
+                List<String> nomes = new ArrayList<>(ordenadas.keySet());
+                for (String nome : nomes) {
+                    int quantidade = ordenadas.get(nome);
+                    pstm.setInt(1, quantidade);
+                    pstm.setString(2, nome);
+                    pstm.setString(3, idRestaurante);
+                    pstm.setInt(4, quantidade);
+                    pstm.addBatch();
+                }
+                int[] alteradas = pstm.executeBatch();
+                for (int i = 0; i < alteradas.length; i++) {
+                    if (alteradas[i] == 0) {
+                        emFalta.add(nomes.get(i));
+                    }
+                }
+                if (emFalta.isEmpty()) {
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        return emFalta;
+    }
+
+    /** 
+     * Método que acrescenta uma quantidade ao stock de um ingrediente num restaurante, criando a
+     * entrada se não existir (incremento atómico, sem ler a quantidade atual)
+     * 
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @param quantidade Quantidade a acrescentar
+     */
+    public void repor(String idRestaurante, String nomeIngrediente, int quantidade) {
+        MotorStock motor = MotorStock.getInstance();
+        if (motor.isAtivo()) {
+            if (motor.repor(idRestaurante, nomeIngrediente, quantidade)) {
+                return;
             }
-            this.put(key, quantidadeAtual - 1);
+            // Entrada nova: criada de imediato na base de dados e só depois carregada
+            synchronized (motor) {
+                if (!motor.repor(idRestaurante, nomeIngrediente, quantidade)) {
+                    this.reporBD(idRestaurante, nomeIngrediente, quantidade);
+                    motor.carregar(idRestaurante, nomeIngrediente, this.getBD(idRestaurante, nomeIngrediente));
+                }
+            }
+            return;
         }
-        return true;
+        this.reporBD(idRestaurante, nomeIngrediente, quantidade);
+    }
 
+    /** 
+     * Método que acrescenta uma quantidade ao stock de um ingrediente diretamente na base de dados
+     * 
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @param quantidade Quantidade a acrescentar
+     */
+    private void reporBD(String idRestaurante, String nomeIngrediente, int quantidade) {
+        try (Connection conn = DAOconfig.getConnection();
+             PreparedStatement pstm = conn.prepareStatement(SQL_REPOR)) {
+            pstm.setString(1, nomeIngrediente);
+            pstm.setString(2, idRestaurante);
+            pstm.setInt(3, quantidade);
+            pstm.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
     }
 
     /**
@@ -68,15 +191,18 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
      * @return Conjunto de entradas (chave, valor) do Stock do restaurante
      */
     public Set<Entry<Pair<String, String>, Integer>> entrySetRestaurante(String idRestaurante) {
+        MotorStock.getInstance().sincronizar();
         int quantidade = 0;
         Set<Entry<Pair<String, String>, Integer>> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Stock WHERE idRestaurante_FK='" + idRestaurante + "'")) {
-            while (rs.next()) {
-                Pair<String, String> key = new Pair<>(rs.getString("idRestaurante_FK"), rs.getString("nomeIngrediente_FK"));
-                quantidade = rs.getInt("quantidade");
-                res.add(new AbstractMap.SimpleEntry<>(key, quantidade));
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_STOCK_RESTAURANTE)) {
+            pstm.setString(1, idRestaurante);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    Pair<String, String> key = new Pair<>(rs.getString("idRestaurante_FK"), rs.getString("nomeIngrediente_FK"));
+                    quantidade = rs.getInt("quantidade");
+                    res.add(new AbstractMap.SimpleEntry<>(key, quantidade));
+                }
             }
         }
         catch (Exception e) {
@@ -87,6 +213,34 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
         return res;
     }
 
+    /**
+     * Método que devolve as entradas (chave, valor) do Stock de um restaurante lidas em cursor.
+     * O Stream deve ser fechado (ou consumido até ao fim) para devolver a conexão ao pool.
+     * 
+     * @param idRestaurante ID do restaurante
+     * @return Stream das entradas (chave, valor) do Stock do restaurante
+     */
+    public Stream<Entry<Pair<String, String>, Integer>> entrySetRestauranteStream(String idRestaurante) {
+        MotorStock.getInstance().sincronizar();
+        return CursorBD.<Entry<Pair<String, String>, Integer>>abrir(SQL_STOCK_RESTAURANTE,
+            rs -> new AbstractMap.SimpleEntry<>(new Pair<>(rs.getString("idRestaurante_FK"), rs.getString("nomeIngrediente_FK")),
+                                                rs.getInt("quantidade")),
+            idRestaurante).stream();
+    }
+
+    /**
+     * Método que devolve todas as entradas (chave, valor) do Stock lidas em cursor.
+     * O Stream deve ser fechado (ou consumido até ao fim) para devolver a conexão ao pool.
+     * 
+     * @return Stream das entradas (chave, valor) do Stock
+     */
+    public Stream<Entry<Pair<String, String>, Integer>> entrySetStream() {
+        MotorStock.getInstance().sincronizar();
+        return CursorBD.<Entry<Pair<String, String>, Integer>>abrir(SQL_STOCK,
+            rs -> new AbstractMap.SimpleEntry<>(new Pair<>(rs.getString("idRestaurante_FK"), rs.getString("nomeIngrediente_FK")),
+                                                rs.getInt("quantidade"))).stream();
+    }
+
     // Implementação dos métodos obrigatórios de Map
     
     /** 
@@ -96,8 +250,9 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
      */
     @Override
     public int size() {
+        MotorStock.getInstance().sincronizar();
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Stock")) {
             if(rs.next()) {
@@ -137,7 +292,7 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
         Pair<String, String> pair = (Pair<String, String>) key;
 
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             PreparedStatement pstm = conn.prepareStatement("SELECT nomeIngrediente_FK, idRestaurante_FK FROM Stock WHERE nomeIngrediente_FK=? AND idRestaurante_FK=?")) {
             pstm.setString(1, pair.getSecond());
             pstm.setString(2, pair.getFirst());
@@ -177,12 +332,30 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
         @SuppressWarnings("unchecked")
         Pair<String, String> pair = (Pair<String, String>) key;
 
+        MotorStock motor = MotorStock.getInstance();
+        if (motor.isAtivo()) {
+            return motor.quantidade(pair.getFirst(), pair.getSecond());
+        }
+        return this.getBD(pair.getFirst(), pair.getSecond());
+    }
+
+    /** 
+     * Método que lê da base de dados a quantidade em stock de um ingrediente num restaurante
+     * 
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @return Quantidade em stock, ou null se não existir a entrada
+     */
+    private Integer getBD(String idRestaurante, String nomeIngrediente) {
         Integer quantidade = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT quantidade FROM Stock WHERE nomeIngrediente_FK='" + pair.getSecond() + "' AND idRestaurante_FK='" + pair.getFirst() + "'")) {
-            if(rs.next()) {
-                quantidade = rs.getInt("quantidade");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
+            pstm.setString(1, nomeIngrediente);
+            pstm.setString(2, idRestaurante);
+            try (ResultSet rs = pstm.executeQuery()) {
+                if(rs.next()) {
+                    quantidade = rs.getInt("quantidade");
+                }
             }
         }
         catch (Exception e) {
@@ -202,10 +375,37 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
      */
     @Override
     public Integer put(Pair<String, String> key, Integer value) {
+        MotorStock motor = MotorStock.getInstance();
+        if (motor.isAtivo()) {
+            Integer anterior = motor.definir(key.getFirst(), key.getSecond(), value);
+            if (anterior != null) {
+                return anterior;
+            }
+            // Entrada nova: criada de imediato na base de dados e só depois carregada
+            synchronized (motor) {
+                anterior = motor.definir(key.getFirst(), key.getSecond(), value);
+                if (anterior == null) {
+                    anterior = this.putBD(key, value);
+                    motor.carregar(key.getFirst(), key.getSecond(), value);
+                }
+            }
+            return anterior;
+        }
+        return this.putBD(key, value);
+    }
+
+    /** 
+     * Método que insere ou atualiza um Stock diretamente na base de dados
+     * 
+     * @param key ID do Stock
+     * @param value Stock a inserir ou atualizar
+     * @return Stock previamente associado ao ID, ou null se não existia
+     */
+    private Integer putBD(Pair<String, String> key, Integer value) {
        Integer res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Verificar se já existe
-            res = this.get(key);
+            res = this.getBD(key.getFirst(), key.getSecond());
             
             if (res != null) {
                 // Atualizar
@@ -246,15 +446,18 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
         Pair<String, String> pair = (Pair<String, String>) key;
 
         int t = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            stm.executeUpdate("DELETE FROM Stock WHERE nomeIngrediente_FK='" + pair.getSecond() + "' AND idRestaurante_FK='" + pair.getFirst() + "'");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_DELETE)) {
+            pstm.setString(1, pair.getSecond());
+            pstm.setString(2, pair.getFirst());
+            pstm.executeUpdate();
             
         } catch (Exception e) {
             // Database error!
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
+        MotorStock.getInstance().remover(pair.getFirst(), pair.getSecond());
         return t;
     }
     
@@ -275,13 +478,14 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
             stm.executeUpdate("DELETE FROM Stock");
         } catch (SQLException e) {
             e.printStackTrace();
             throw new NullPointerException(e.getMessage());
         }
+        MotorStock.getInstance().limpar();
     }
     
     /** 
@@ -291,8 +495,9 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
      */
     @Override
     public Set<Pair<String, String>> keySet() {
+        MotorStock.getInstance().sincronizar();
         Set<Pair<String, String>> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT idRestaurante_FK, nomeIngrediente_FK FROM Stock")) {
             while (rs.next()) {
@@ -312,9 +517,10 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
      */
     @Override
     public Collection<Integer> values() {
+        MotorStock.getInstance().sincronizar();
         int quantidade = 0;
         Collection<Integer> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT quantidade FROM Stock")) {
             while (rs.next()) {
@@ -337,9 +543,10 @@ public class StockDAO implements Map<Pair<String, String>, Integer> {
      */
     @Override
     public Set<Entry<Pair<String, String>, Integer>> entrySet() {
+        MotorStock.getInstance().sincronizar();
         int quantidade = 0;
         Set<Entry<Pair<String, String>, Integer>> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Stock")) {
             while (rs.next()) {
@@ -0,0 +1,263 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubLN.ssCadeia.Pair;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Implementação em memória do StockDAO, sobre a tabela Stock da BaseDadosMemoria
+ * (chave (idRestaurante, nomeIngrediente)). O consumo de vários ingredientes é
+ * atómico: ou todos são decrementados, ou nenhum.
+ */
+class StockDAOMemoria extends StockDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar StockDAO.getInstance)
+     */
+    StockDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que devolve a chave em memória de uma entrada de stock
+     *
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @return Chave da entrada
+     */
+    private static String chave(String idRestaurante, String nomeIngrediente) {
+        return BaseDadosMemoria.chave(idRestaurante, nomeIngrediente);
+    }
+
+    /**
+     * Método que converte uma chave em memória numa entrada (par, quantidade)
+     *
+     * @param chave Chave da entrada
+     * @return Entrada (par, quantidade), ou null se a entrada já não existir
+     */
+    private Entry<Pair<String, String>, Integer> entrada(String chave) {
+        Integer quantidade = this.bd.stock.get(chave);
+        if (quantidade == null) {
+            return null;
+        }
+        String[] partes = BaseDadosMemoria.partes(chave);
+        return new AbstractMap.SimpleEntry<>(new Pair<>(partes[0], partes[1]), quantidade);
+    }
+
+    /**
+     * Método que devolve as entradas cujas chaves são dadas
+     *
+     * @param chaves Chaves das entradas
+     * @return Lista de entradas (par, quantidade)
+     */
+    private List<Entry<Pair<String, String>, Integer>> entradas(List<String> chaves) {
+        List<Entry<Pair<String, String>, Integer>> res = new ArrayList<>();
+        for (String chave : chaves) {
+            Entry<Pair<String, String>, Integer> e = this.entrada(chave);
+            if (e != null) {
+                res.add(e);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Método que consome quantidades de vários ingredientes do stock de um restaurante de forma atómica:
+     * se algum ingrediente não tiver quantidade suficiente (ou não existir), nenhum stock é alterado
+     *
+     * @param idRestaurante ID do restaurante
+     * @param quantidades Quantidade a consumir de cada ingrediente
+     * @return Nomes dos ingredientes sem stock suficiente, por ordem (lista vazia se o consumo foi registado)
+     */
+    @Override
+    public List<String> consumir(String idRestaurante, Map<String, Integer> quantidades) {
+        Map<String, Integer> ordenadas = new TreeMap<>(quantidades);
+        return this.bd.escrever(() -> {
+            List<String> emFalta = new ArrayList<>();
+            for (Map.Entry<String, Integer> e : ordenadas.entrySet()) {
+                Integer atual = this.bd.stock.get(chave(idRestaurante, e.getKey()));
+                if (atual == null || atual < e.getValue()) {
+                    emFalta.add(e.getKey());
+                }
+            }
+            if (emFalta.isEmpty()) {
+                for (Map.Entry<String, Integer> e : ordenadas.entrySet()) {
+                    String k = chave(idRestaurante, e.getKey());
+                    this.bd.stock.gravar(k, this.bd.stock.get(k) - e.getValue());
+                }
+            }
+            return emFalta;
+        });
+    }
+
+    /**
+     * Método que acrescenta uma quantidade ao stock de um ingrediente num restaurante, criando a entrada se não existir
+     *
+     * @param idRestaurante ID do restaurante
+     * @param nomeIngrediente Nome do ingrediente
+     * @param quantidade Quantidade a acrescentar
+     */
+    @Override
+    public void repor(String idRestaurante, String nomeIngrediente, int quantidade) {
+        String k = chave(idRestaurante, nomeIngrediente);
+        this.bd.escrever(() -> {
+            Integer atual = this.bd.stock.get(k);
+            return this.bd.stock.gravar(k, (atual != null ? atual : 0) + quantidade);
+        });
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (chave, valor) do Stock de um restaurante específico
+     *
+     * @param idRestaurante ID do restaurante
+     * @return Conjunto de entradas (chave, valor) do Stock do restaurante
+     */
+    @Override
+    public Set<Entry<Pair<String, String>, Integer>> entrySetRestaurante(String idRestaurante) {
+        return new HashSet<>(this.entradas(this.bd.stock.chavesComPrefixo(BaseDadosMemoria.prefixo(idRestaurante))));
+    }
+
+    /**
+     * Método que devolve as entradas (chave, valor) do Stock de um restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     * @return Stream das entradas (chave, valor) do Stock do restaurante
+     */
+    @Override
+    public Stream<Entry<Pair<String, String>, Integer>> entrySetRestauranteStream(String idRestaurante) {
+        return this.entradas(this.bd.stock.chavesComPrefixo(BaseDadosMemoria.prefixo(idRestaurante))).stream();
+    }
+
+    /**
+     * Método que devolve todas as entradas (chave, valor) do Stock
+     *
+     * @return Stream das entradas (chave, valor) do Stock
+     */
+    @Override
+    public Stream<Entry<Pair<String, String>, Integer>> entrySetStream() {
+        return this.entradas(this.bd.stock.chaves()).stream();
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de entradas de Stock
+     *
+     * @return Número de entradas de Stock
+     */
+    @Override
+    public int size() {
+        return this.bd.stock.tamanho();
+    }
+
+    /**
+     * Método que verifica se existe uma entrada de Stock com a chave dada
+     *
+     * @param key Par (idRestaurante, nomeIngrediente)
+     * @return true se existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof Pair)) {
+            return false;
+        }
+        Pair<?, ?> pair = (Pair<?, ?>) key;
+        return this.bd.stock.contem(chave(String.valueOf(pair.getFirst()), String.valueOf(pair.getSecond())));
+    }
+
+    /**
+     * Método que devolve a quantidade de um ingrediente num restaurante
+     *
+     * @param key Par (idRestaurante, nomeIngrediente)
+     * @return Quantidade, ou null se não existir
+     */
+    @Override
+    public Integer get(Object key) {
+        if (!(key instanceof Pair)) {
+            return null;
+        }
+        Pair<?, ?> pair = (Pair<?, ?>) key;
+        return this.bd.stock.get(chave(String.valueOf(pair.getFirst()), String.valueOf(pair.getSecond())));
+    }
+
+    /**
+     * Método que insere ou atualiza a quantidade de um ingrediente num restaurante
+     *
+     * @param key Par (idRestaurante, nomeIngrediente)
+     * @param value Quantidade
+     * @return Quantidade anterior, ou null se não existia
+     */
+    @Override
+    public Integer put(Pair<String, String> key, Integer value) {
+        return this.bd.stock.gravar(chave(key.getFirst(), key.getSecond()), value);
+    }
+
+    /**
+     * Método que remove uma entrada de Stock
+     *
+     * @param key Par (idRestaurante, nomeIngrediente)
+     * @return Quantidade removida
+     */
+    @Override
+    public Integer remove(Object key) {
+        if (!(key instanceof Pair)) {
+            return null;
+        }
+        Pair<?, ?> pair = (Pair<?, ?>) key;
+        int t = this.bd.stock.remover(chave(String.valueOf(pair.getFirst()), String.valueOf(pair.getSecond())));
+        return t;
+    }
+
+    /**
+     * Método que remove todas as entradas de Stock
+     */
+    @Override
+    public void clear() {
+        this.bd.stock.limpar();
+    }
+
+    /**
+     * Método que devolve o conjunto de chaves (idRestaurante, nomeIngrediente)
+     *
+     * @return Conjunto de chaves
+     */
+    @Override
+    public Set<Pair<String, String>> keySet() {
+        Set<Pair<String, String>> res = new HashSet<>();
+        for (Entry<Pair<String, String>, Integer> e : this.entradas(this.bd.stock.chaves())) {
+            res.add(e.getKey());
+        }
+        return res;
+    }
+
+    /**
+     * Método que devolve as quantidades em stock
+     *
+     * @return Coleção de quantidades
+     */
+    @Override
+    public Collection<Integer> values() {
+        return new HashSet<>(this.bd.stock.linhas());
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (chave, valor) do Stock
+     *
+     * @return Conjunto de entradas (chave, valor)
+     */
+    @Override
+    public Set<Entry<Pair<String, String>, Integer>> entrySet() {
+        return new HashSet<>(this.entradas(this.bd.stock.chaves()));
+    }
+}
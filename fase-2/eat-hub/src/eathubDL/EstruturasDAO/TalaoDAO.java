@@ -1,16 +1,20 @@
 package eathubDL.EstruturasDAO;
 
 import eathubDL.DAOconfig;
+import eathubDL.UnidadeTrabalho;
+import eathubDL.SequenciaIds;
+import eathubLN.Pagina;
 import eathubLN.ssComercial.Talao;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -25,29 +29,36 @@ import java.util.Set;
  */
 public class TalaoDAO implements Map<String, Talao> {
 
-    /** ID máximo guardado */
-    private int maxId;
+    /** Sequência que gera os IDs */
+    private final SequenciaIds ids;
 
     /** Instância única da classe */
     private static TalaoDAO singleton = null;
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_GET = "SELECT * FROM Talao WHERE idTalao=?";
+    private static final String SQL_DELETE = "DELETE FROM Talao WHERE idTalao=?";
+    private static final String SQL_PAGINA = "SELECT * FROM Talao WHERE idTalao > ? ORDER BY idTalao LIMIT ?";
+    // Inserção idempotente (um registo reaplicado pela escrita diferida é ignorado)
+    private static final String SQL_INSERT_SE_AUSENTE =
+        "INSERT INTO Talao (idTalao, idPedido_FK) VALUES (?, ?) ON DUPLICATE KEY UPDATE idTalao=idTalao";
     
     /** 
-     * Construtor privado para evitar instanciação externa
-     * 
-     * Inicializa o maxId com o maior ID existente na base de dados
+     * Construtor para evitar instanciação externa (acessível à implementação em memória, TalaoDAOMemoria)
      */
-    private TalaoDAO() {
-        this.maxId = loadMaxIdFromDatabase();
+    TalaoDAO() {
+        this.ids = new SequenciaIds("Talao", "TAL", "Talao", "idTalao", DAOconfig.BLOCO_IDS);
     }
 
     /** 
-     * Método que devolve a instância única da classe
+     * Método que devolve a instância única da classe (a implementação em memória se
+     * DAOconfig.BD_MEMORIA estiver ativo)
      * 
      * @return Instância única da classe
      */
-    public static TalaoDAO getInstance() {
+    public static synchronized TalaoDAO getInstance() {
         if (singleton == null) {
-            singleton = new TalaoDAO();
+            singleton = DAOconfig.BD_MEMORIA ? new TalaoDAOMemoria() : new TalaoDAO();
         }
         return singleton;
     }
@@ -58,31 +69,47 @@ public class TalaoDAO implements Map<String, Talao> {
      * @return Novo ID único para um Talão
      */
     public String generateNewId() {
-        this.maxId++;
-        return "TAL" + (maxId);
+        return this.ids.proximoId();
     }
-    
+
     /** 
-     * Método que carrega o maior ID existente na base de dados
+     * Método que acrescenta um novo Talão (sem verificar se já existe). Com a escrita diferida ativa
+     * (e fora de uma unidade de trabalho) o Talão é entregue à fila de escrita; caso contrário é inserido
+     * de imediato.
      * 
-     * @return Maior ID existente na base de dados
+     * @param value Talão a acrescentar
      */
-    private int loadMaxIdFromDatabase() {
-        int max = 0;
-        for (String id : this.keySet()) {
-            if (id.startsWith("TAL")) {
-                try {
-                    int num = Integer.parseInt(id.substring(3));
-                    if (num > max) {
-                        max = num;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignora IDs com formato inválido
-                }
+    public void adicionar(Talao value) {
+        String[] campos = { value.getIdTalao(), value.getCodPedidoTalao() };
+        EscritaDiferida escrita = EscritaDiferida.getInstance();
+        if (escrita.isAtiva() && !UnidadeTrabalho.isAtiva()) {
+            escrita.registar(EscritaDiferida.Tipo.TALAO, campos);
+            return;
+        }
+        try (Connection conn = DAOconfig.getConnection()) {
+            this.inserirLote(conn, List.<String[]>of(campos));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /** 
+     * Método que insere um lote de Talões numa única ida à base de dados
+     * 
+     * @param conn Conexão a utilizar
+     * @param linhas Valores (idTalao, idPedido) de cada Talão
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    void inserirLote(Connection conn, List<String[]> linhas) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_INSERT_SE_AUSENTE)) {
+            for (String[] campos : linhas) {
+                pstm.setString(1, campos[0]);
+                pstm.setString(2, campos[1]);
+                pstm.addBatch();
             }
+            pstm.executeBatch();
         }
-        
-        return max;
     }
     
     // Implementação dos métodos obrigatórios de Map
@@ -95,7 +122,7 @@ public class TalaoDAO implements Map<String, Talao> {
     @Override
     public int size() {
         int i = 0;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT count(*) FROM Talao")) {
             if(rs.next()) {
@@ -129,7 +156,7 @@ public class TalaoDAO implements Map<String, Talao> {
     @Override
     public boolean containsKey(Object key) {
         boolean r;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             PreparedStatement pstm = conn.prepareStatement("SELECT idTalao FROM Talao WHERE idTalao=?")) {
             pstm.setString(1, key.toString());
             try (ResultSet rs = pstm.executeQuery()) {
@@ -164,13 +191,15 @@ public class TalaoDAO implements Map<String, Talao> {
     @Override
     public Talao get(Object key) {
         Talao novo = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Talao WHERE idTalao='" + key.toString() + "'")) {
-            if(rs.next()) {
-                String idTalao = rs.getString("idTalao");
-                String idPedido = rs.getString("idPedido_FK");
-                novo = new Talao(idTalao, idPedido);
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_GET)) {
+            pstm.setString(1, key.toString());
+            try (ResultSet rs = pstm.executeQuery()) {
+                if(rs.next()) {
+                    String idTalao = rs.getString("idTalao");
+                    String idPedido = rs.getString("idPedido_FK");
+                    novo = new Talao(idTalao, idPedido);
+                }
             }
         }
         catch (Exception e) {
@@ -191,7 +220,7 @@ public class TalaoDAO implements Map<String, Talao> {
     @Override
     public Talao put(String key, Talao value) {
         Talao res = null;
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD)) {
+        try (Connection conn = DAOconfig.getConnection()) {
             // Verificar se já existe
             res = this.get(key);
             
@@ -225,10 +254,12 @@ public class TalaoDAO implements Map<String, Talao> {
      */
     @Override
     public Talao remove(Object key) {
+        EscritaDiferida.getInstance().sincronizar();
         Talao t = this.get(key);
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
-            Statement stm = conn.createStatement()) {
-            stm.executeUpdate("DELETE FROM Talao WHERE idTalao='" + key.toString() + "'");
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_DELETE)) {
+            pstm.setString(1, key.toString());
+            pstm.executeUpdate();
             
         } catch (Exception e) {
             // Database error!
@@ -255,7 +286,8 @@ public class TalaoDAO implements Map<String, Talao> {
      */
     @Override
     public void clear() {
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        EscritaDiferida.getInstance().sincronizar();
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement()) {
             stm.executeUpdate("DELETE FROM Talao");
         } catch (SQLException e) {
@@ -272,7 +304,7 @@ public class TalaoDAO implements Map<String, Talao> {
     @Override
     public Set<String> keySet() {
         Set<String> res = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
              Statement stm = conn.createStatement();
              ResultSet rs = stm.executeQuery("SELECT idTalao FROM Talao")) {
             while (rs.next()) {
@@ -294,7 +326,7 @@ public class TalaoDAO implements Map<String, Talao> {
     public Collection<Talao> values() {
         Talao novo = null;
         Collection<Talao> taloes = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Talao")) {
             while (rs.next()) {
@@ -312,6 +344,31 @@ public class TalaoDAO implements Map<String, Talao> {
         return taloes;
     }
     
+    /** 
+     * Método que devolve uma página de Talões, por ordem de ID
+     * 
+     * @param depoisDe ID do último Talão da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de Talões na página
+     * @return Página de Talões
+     */
+    public Pagina<Talao> pagina(String depoisDe, int tamanho) {
+        List<Talao> lidos = new ArrayList<>();
+        try (Connection conn = DAOconfig.getConnection();
+            PreparedStatement pstm = conn.prepareStatement(SQL_PAGINA)) {
+            pstm.setString(1, depoisDe != null ? depoisDe : "");
+            pstm.setInt(2, tamanho + 1);
+            try (ResultSet rs = pstm.executeQuery()) {
+                while (rs.next()) {
+                    lidos.add(new Talao(rs.getString("idTalao"), rs.getString("idPedido_FK")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        return Pagina.de(lidos, tamanho, Talao::getIdTalao);
+    }
+
     /** 
      * Método que devolve o conjunto de entradas (ID, Talão) na base de dados
      * 
@@ -321,7 +378,7 @@ public class TalaoDAO implements Map<String, Talao> {
     public Set<Entry<String, Talao>> entrySet() {
         Talao novo = null;
         Set<Entry<String, Talao>> taloes = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DAOconfig.URL, DAOconfig.USERNAME, DAOconfig.PASSWORD);
+        try (Connection conn = DAOconfig.getConnection();
             Statement stm = conn.createStatement();
             ResultSet rs = stm.executeQuery("SELECT * FROM Talao")) {
             while (rs.next()) {
@@ -0,0 +1,183 @@
+package eathubDL.EstruturasDAO;
+
+import eathubDL.BaseDadosMemoria;
+import eathubLN.Pagina;
+import eathubLN.ssComercial.Talao;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementação em memória do TalaoDAO, sobre a tabela Talao da BaseDadosMemoria.
+ */
+class TalaoDAOMemoria extends TalaoDAO {
+
+    /** Base de dados em memória */
+    private final BaseDadosMemoria bd = BaseDadosMemoria.getInstance();
+
+    /**
+     * Construtor da implementação em memória (usar TalaoDAO.getInstance)
+     */
+    TalaoDAOMemoria() {
+        super();
+    }
+
+    /**
+     * Método que gera um novo ID único para um Talão
+     *
+     * @return Novo ID único para um Talão
+     */
+    @Override
+    public String generateNewId() {
+        return "TAL" + this.bd.proximoNumero("Talao");
+    }
+
+    /**
+     * Método que acrescenta um novo Talão, se ainda não existir
+     *
+     * @param value Talão a acrescentar
+     */
+    @Override
+    public void adicionar(Talao value) {
+        this.bd.escrever(() -> {
+            if (!this.bd.taloes.contem(value.getIdTalao())) {
+                this.bd.taloes.inserir(value.getIdTalao(), value.getCodPedidoTalao());
+            }
+            return null;
+        });
+    }
+
+    // Implementação dos métodos obrigatórios de Map
+
+    /**
+     * Método que devolve o número de Talões
+     *
+     * @return Número de Talões
+     */
+    @Override
+    public int size() {
+        return this.bd.taloes.tamanho();
+    }
+
+    /**
+     * Método que verifica se um determinado ID de Talão existe
+     *
+     * @param key ID do Talão
+     * @return true se o ID existir, false caso contrário
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.bd.taloes.contem(key.toString());
+    }
+
+    /**
+     * Método que devolve um Talão a partir do seu ID
+     *
+     * @param key ID do Talão
+     * @return Talão correspondente ao ID, ou null se não existir
+     */
+    @Override
+    public Talao get(Object key) {
+        String idPedido = this.bd.taloes.get(key.toString());
+        return idPedido != null ? new Talao(key.toString(), idPedido) : null;
+    }
+
+    /**
+     * Método que insere ou atualiza um Talão
+     *
+     * @param key ID do Talão
+     * @param value Talão a inserir ou atualizar
+     * @return Talão previamente associado ao ID, ou null se não existia
+     */
+    @Override
+    public Talao put(String key, Talao value) {
+        String anterior = this.bd.taloes.gravar(value.getIdTalao(), value.getCodPedidoTalao());
+        return anterior != null ? new Talao(value.getIdTalao(), anterior) : null;
+    }
+
+    /**
+     * Método que remove um Talão
+     *
+     * @param key ID do Talão a remover
+     * @return Talão removido, ou null se não existia
+     */
+    @Override
+    public Talao remove(Object key) {
+        String anterior = this.bd.taloes.remover(key.toString());
+        return anterior != null ? new Talao(key.toString(), anterior) : null;
+    }
+
+    /**
+     * Método que remove todos os Talões
+     */
+    @Override
+    public void clear() {
+        this.bd.taloes.limpar();
+    }
+
+    /**
+     * Método que devolve o conjunto de IDs dos Talões
+     *
+     * @return Conjunto de IDs dos Talões
+     */
+    @Override
+    public Set<String> keySet() {
+        return new HashSet<>(this.bd.taloes.chaves());
+    }
+
+    /**
+     * Método que devolve a coleção de Talões
+     *
+     * @return Coleção de Talões
+     */
+    @Override
+    public Collection<Talao> values() {
+        Collection<Talao> taloes = new HashSet<>();
+        for (Map.Entry<String, Talao> e : this.entrySet()) {
+            taloes.add(e.getValue());
+        }
+        return taloes;
+    }
+
+    /**
+     * Método que devolve uma página de Talões, por ordem de ID
+     *
+     * @param depoisDe ID do último Talão da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de Talões na página
+     * @return Página de Talões
+     */
+    @Override
+    public Pagina<Talao> pagina(String depoisDe, int tamanho) {
+        List<Talao> lidos = new ArrayList<>();
+        for (String idTalao : this.bd.taloes.chaves()) {
+            if (lidos.size() > tamanho) {
+                break;
+            }
+            if (depoisDe == null || idTalao.compareTo(depoisDe) > 0) {
+                lidos.add(this.get(idTalao));
+            }
+        }
+        return Pagina.de(lidos, tamanho, Talao::getIdTalao);
+    }
+
+    /**
+     * Método que devolve o conjunto de entradas (ID, Talão)
+     *
+     * @return Conjunto de entradas (ID, Talão)
+     */
+    @Override
+    public Set<Entry<String, Talao>> entrySet() {
+        Set<Entry<String, Talao>> taloes = new HashSet<>();
+        for (String idTalao : this.bd.taloes.chaves()) {
+            Talao t = this.get(idTalao);
+            if (t != null) {
+                taloes.add(new AbstractMap.SimpleEntry<>(idTalao, t));
+            }
+        }
+        return taloes;
+    }
+}
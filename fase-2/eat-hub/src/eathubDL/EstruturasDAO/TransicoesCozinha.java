@@ -0,0 +1,117 @@
+package eathubDL.EstruturasDAO;
+
+import eathubLN.ssPedidos.Pedido;
+import java.util.Map;
+
+/**
+ * Transições do estado da cozinha de um restaurante (pedidos pendentes, fila de espera e
+ * progresso dos pedidos, incluindo os pedidos em confeção no MotorCozinha), registadas pelo
+ * DiarioCozinha e aplicadas na recuperação
+ */
+public interface TransicoesCozinha {
+
+    /**
+     * Método que regista um pedido pendente novo ou alterado (com o seu conteúdo completo)
+     *
+     * @param idRestaurante Id do restaurante
+     * @param pedido Pedido pendente
+     */
+    void pendente(String idRestaurante, Pedido pedido);
+
+    /**
+     * Método que regista que um pedido deixou de estar pendente (registado ou cancelado)
+     *
+     * @param idRestaurante Id do restaurante
+     * @param codPedido Código do pedido
+     */
+    void pendenteRemovido(String idRestaurante, String codPedido);
+
+    /**
+     * Método que regista a entrada de um pedido na fila de espera (ou a alteração da sua prioridade)
+     *
+     * @param idRestaurante Id do restaurante
+     * @param codPedido Código do pedido
+     * @param tempoEspera Tempo de espera do pedido (prioridade na fila)
+     */
+    void enfileirado(String idRestaurante, String codPedido, double tempoEspera);
+
+    /**
+     * Método que regista a saída de um pedido da fila de espera
+     *
+     * @param idRestaurante Id do restaurante
+     * @param codPedido Código do pedido
+     */
+    void retirado(String idRestaurante, String codPedido);
+
+    /**
+     * Método que regista o pedido em confeção de um restaurante, com a etapa atual de cada proposta
+     *
+     * @param idRestaurante Id do restaurante
+     * @param pedido Pedido em confeção
+     * @param etapasPropostas Etapa atual de cada proposta individual por concluir
+     * @param etapasMenus Etapa atual de cada proposta por concluir de cada menu
+     */
+    void iniciado(String idRestaurante, Pedido pedido, Map<String, Integer> etapasPropostas,
+                  Map<String, Map<String, Integer>> etapasMenus);
+
+    /**
+     * Método que regista o avanço de uma etapa do pedido em confeção
+     *
+     * @param idRestaurante Id do restaurante
+     * @param codProposta Código da proposta
+     * @param codMenu Código do menu da proposta, ou null se for uma proposta individual
+     */
+    void avancado(String idRestaurante, String codProposta, String codMenu);
+
+    /**
+     * Método que regista que o pedido em confeção foi adiado (passa para a lista de atrasados)
+     *
+     * @param idRestaurante Id do restaurante
+     */
+    void adiado(String idRestaurante);
+
+    /**
+     * Método que regista que um pedido adiado foi retomado (sai da lista de atrasados)
+     *
+     * @param idRestaurante Id do restaurante
+     * @param codPedido Código do pedido
+     */
+    void retomado(String idRestaurante, String codPedido);
+
+    /**
+     * Método que regista que o restaurante deixou de ter um pedido em confeção
+     *
+     * @param idRestaurante Id do restaurante
+     */
+    void terminado(String idRestaurante);
+
+    /**
+     * Método que regista um pedido que entrou em confeção no motor da cozinha, com a etapa atual de
+     * cada proposta
+     *
+     * @param idRestaurante Id do restaurante
+     * @param pedido Pedido em confeção
+     * @param etapasPropostas Etapa atual de cada proposta individual por concluir
+     * @param etapasMenus Etapa atual de cada proposta por concluir de cada menu
+     */
+    void confecaoIniciada(String idRestaurante, Pedido pedido, Map<String, Integer> etapasPropostas,
+                          Map<String, Map<String, Integer>> etapasMenus);
+
+    /**
+     * Método que regista o avanço de uma etapa de um pedido em confeção no motor da cozinha
+     *
+     * @param idRestaurante Id do restaurante
+     * @param codPedido Código do pedido
+     * @param codProposta Código da proposta
+     * @param codMenu Código do menu da proposta, ou null se for uma proposta individual
+     */
+    void confecaoAvancada(String idRestaurante, String codPedido, String codProposta, String codMenu);
+
+    /**
+     * Método que regista que um pedido saiu do motor da cozinha (concluído ou descartado)
+     *
+     * @param idRestaurante Id do restaurante
+     * @param codPedido Código do pedido
+     */
+    void confecaoTerminada(String idRestaurante, String codPedido);
+}
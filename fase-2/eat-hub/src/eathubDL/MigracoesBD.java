@@ -0,0 +1,450 @@
+package eathubDL;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Migrações versionadas do esquema da base de dados.
+ *
+ * A versão aplicada fica registada na tabela VersaoEsquema. No arranque é feita
+ * apenas uma consulta a essa tabela; as instruções DDL só são executadas quando
+ * existem migrações com versão superior à registada. As instruções de cada
+ * migração toleram objetos que já existam, para que uma base de dados criada
+ * antes das migrações (ou uma migração interrompida) possa ser atualizada.
+ *
+ * Novas alterações ao esquema devem ser acrescentadas como uma nova migração
+ * no fim da lista, nunca alterando migrações já publicadas.
+ */
+public class MigracoesBD {
+
+    /** Código de erro MySQL: tabela inexistente */
+    private static final int ERRO_TABELA_INEXISTENTE = 1146;
+
+    /**
+     * Códigos de erro MySQL que indicam que a instrução já foi aplicada: o objeto já existe (tabela,
+     * coluna, índice, chave estrangeira) ou o objeto a remover já não existe
+     */
+    private static final Set<Integer> ERROS_JA_EXISTE = Set.of(1050, 1060, 1061, 1091, 1826);
+
+    /** Nome do bloqueio que serializa a aplicação de migrações entre instâncias */
+    private static final String BLOQUEIO = "EatHub.migracoes";
+
+    /**
+     * Preparação dos dados executada antes das instruções de uma migração
+     */
+    @FunctionalInterface
+    private interface Preparacao {
+        void executar(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Migração do esquema: versão, descrição, preparação dos dados (opcional) e instruções a executar
+     */
+    private static final class Migracao {
+        private final int versao;
+        private final String descricao;
+        private final Preparacao preparacao;
+        private final String[] instrucoes;
+
+        private Migracao(int versao, String descricao, String... instrucoes) {
+            this(versao, descricao, null, instrucoes);
+        }
+
+        private Migracao(int versao, String descricao, Preparacao preparacao, String... instrucoes) {
+            this.versao = versao;
+            this.descricao = descricao;
+            this.preparacao = preparacao;
+            this.instrucoes = instrucoes;
+        }
+    }
+
+    /** Migrações, por ordem crescente de versão */
+    private static final List<Migracao> MIGRACOES = List.of(
+        new Migracao(1, "Esquema base",
+            "CREATE TABLE IF NOT EXISTS Pedido (" +
+                "idPedido VARCHAR(50) PRIMARY KEY," +
+                "tipoServico VARCHAR(50)," +
+                "tempoEspera INT," + ///Talvez mudar para DECIMAL(10,2)
+                "nContribuinte INT," +
+                "notas TEXT" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Menu (" +
+                "idM VARCHAR(50) PRIMARY KEY," +
+                "precoTotal DECIMAL(10,2)," +
+                "nome VARCHAR(100)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS MenuPedido (" +
+                "idM_FK VARCHAR(50)," +
+                "idPedido_FK VARCHAR(50)," +
+                "quantidade INT," +
+                "PRIMARY KEY (idM_FK, idPedido_FK)," +
+                "FOREIGN KEY (idM_FK) REFERENCES Menu(idM)," +
+                "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Proposta (" +
+                "idProposta VARCHAR(50) PRIMARY KEY," +
+                "nome VARCHAR(100)," +
+                "preco DECIMAL(10,2)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS PropostaMenu (" +
+                "idProposta_FK VARCHAR(50)," +
+                "idM_FK VARCHAR(50)," +
+                "PRIMARY KEY (idProposta_FK, idM_FK)," +
+                "FOREIGN KEY (idProposta_FK) REFERENCES Proposta(idProposta)," +
+                "FOREIGN KEY (idM_FK) REFERENCES Menu(idM)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS PropostaPedido (" +
+                "idProposta_FK VARCHAR(50)," +
+                "idPedido_FK VARCHAR(50)," +
+                "quantidade INT," +
+                "PRIMARY KEY (idProposta_FK, idPedido_FK)," +
+                "FOREIGN KEY (idProposta_FK) REFERENCES Proposta(idProposta)," +
+                "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Ingrediente (" +
+                "nome VARCHAR(100) PRIMARY KEY," +
+                "preco DECIMAL(10,2)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS IngredienteProposta (" +
+                "nomeIngrediente_FK VARCHAR(100)," +
+                "idProposta_FK VARCHAR(50)," +
+                "PRIMARY KEY (nomeIngrediente_FK, idProposta_FK)," +
+                "FOREIGN KEY (nomeIngrediente_FK) REFERENCES Ingrediente(nome)," +
+                "FOREIGN KEY (idProposta_FK) REFERENCES Proposta(idProposta)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Alergenio (" +
+                "alergenio VARCHAR(100) PRIMARY KEY" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS AlergenioIngrediente (" +
+                "alergenio_FK VARCHAR(100)," +
+                "nomeIngrediente_FK VARCHAR(100)," +
+                "PRIMARY KEY (nomeIngrediente_FK, alergenio_FK)," +
+                "FOREIGN KEY (alergenio_FK) REFERENCES Alergenio(alergenio)," +
+                "FOREIGN KEY (nomeIngrediente_FK) REFERENCES Ingrediente(nome)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Pagamento (" +
+                "idPagamento VARCHAR(50) PRIMARY KEY," +
+                "valor DECIMAL(10,2)," +
+                "idPedido VARCHAR(50)," +
+                "metodoPagamento VARCHAR(50)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Fatura (" +
+                "idFatura VARCHAR(50) PRIMARY KEY," +
+                "idPagamento_FK VARCHAR(50)," +
+                "valor DECIMAL(10,2)," +
+                "contribuinte INT," +
+                "idPedido_FK VARCHAR(50)," +
+                "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)," +
+                "FOREIGN KEY (idPagamento_FK) REFERENCES Pagamento(idPagamento)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Talao (" +
+                "idTalao VARCHAR(50) PRIMARY KEY," +
+                "idPedido_FK VARCHAR(50)," +
+                "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Restaurante (" +
+                "idRestaurante VARCHAR(50) PRIMARY KEY," +
+                "nome VARCHAR(100)," +
+                "idFuncionario_FK VARCHAR(50)" +  // Sem FK inicialmente
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Funcionario (" +
+                "idFuncionario VARCHAR(50) PRIMARY KEY," +
+                "nome VARCHAR(100)," +
+                "posto VARCHAR(50)," +
+                "tarefa VARCHAR(50)," +
+                "idRestaurante_FK VARCHAR(50)," +
+                "tipo VARCHAR(50)," +
+                "FOREIGN KEY (idRestaurante_FK) REFERENCES Restaurante(idRestaurante)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Stock (" +
+                "nomeIngrediente_FK VARCHAR(100)," +
+                "idRestaurante_FK VARCHAR(50)," +
+                "quantidade INT," +
+                "PRIMARY KEY (nomeIngrediente_FK, idRestaurante_FK)," +
+                "FOREIGN KEY (nomeIngrediente_FK) REFERENCES Ingrediente(nome)," +
+                "FOREIGN KEY (idRestaurante_FK) REFERENCES Restaurante(idRestaurante)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS MensagemGestor (" +
+                "idMensagem INT AUTO_INCREMENT," +
+                "conteudo TEXT," +
+                "dataEnvio DATETIME," +
+                "idFuncionario_FK VARCHAR(50)," +
+                "FOREIGN KEY (idFuncionario_FK) REFERENCES Funcionario(idFuncionario)," +
+                "PRIMARY KEY (idMensagem)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS EtapasProposta (" +
+                "etapa VARCHAR(255)," +
+                "idProposta_FK VARCHAR(50)," +
+                "ordem INT," +
+                "PRIMARY KEY (idProposta_FK, ordem)," +
+                "FOREIGN KEY (idProposta_FK) REFERENCES Proposta(idProposta)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Historico (" +
+                "idHistorico VARCHAR(50)," +
+                "idPedido_FK VARCHAR(50)," +
+                "idRestaurante_FK VARCHAR(50)," +
+                "dataFinalizacao DATETIME," +
+                "PRIMARY KEY (idHistorico)," +
+                "FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido)," +
+                "FOREIGN KEY (idRestaurante_FK) REFERENCES Restaurante(idRestaurante)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS EstatisticaDiaria (" +
+                "idRestaurante_FK VARCHAR(50)," +
+                "dia DATE," +
+                "nPedidos INT," +
+                "nItens INT," +
+                "valorTotal DECIMAL(12,2)," +
+                "valorGasto DECIMAL(12,2)," +
+                "somaTempoEspera BIGINT," +
+                "nTempoEspera INT," +
+                "PRIMARY KEY (idRestaurante_FK, dia)," +
+                "FOREIGN KEY (idRestaurante_FK) REFERENCES Restaurante(idRestaurante)" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Sequencia (" +
+                "nome VARCHAR(50) PRIMARY KEY," +
+                "valor BIGINT NOT NULL" +
+            ")",
+
+            "CREATE TABLE IF NOT EXISTS Password (" +
+                "idFuncionario_FK VARCHAR(50) PRIMARY KEY," +
+                "codigo VARCHAR(255)," +
+                "FOREIGN KEY (idFuncionario_FK) REFERENCES Funcionario(idFuncionario)" +
+            ")",
+
+            // Adicionar a FK depois de ambas as tabelas existirem
+            "ALTER TABLE Restaurante ADD CONSTRAINT fk_restaurante_chefe " +
+                "FOREIGN KEY (idFuncionario_FK) REFERENCES Funcionario(idFuncionario)"
+        ),
+
+        new Migracao(2, "Preço dos ingredientes em bases de dados criadas sem a coluna",
+            "ALTER TABLE Ingrediente ADD COLUMN preco DECIMAL(10,2)"
+        ),
+
+        new Migracao(3, "Índices secundários para as consultas mais frequentes",
+            // Estatísticas e histórico por restaurante e por período
+            "CREATE INDEX idx_historico_restaurante_data ON Historico (idRestaurante_FK, dataFinalizacao)",
+            "CREATE INDEX idx_historico_data ON Historico (dataFinalizacao)",
+            "CREATE INDEX idx_estatisticadiaria_dia ON EstatisticaDiaria (dia)",
+            // Pagamento de um pedido
+            "CREATE INDEX idx_pagamento_pedido ON Pagamento (idPedido)",
+            // Funcionários de um restaurante (e a sua tarefa) e o gestor
+            "CREATE INDEX idx_funcionario_restaurante ON Funcionario (idRestaurante_FK, tarefa)",
+            "CREATE INDEX idx_funcionario_tipo ON Funcionario (tipo)",
+            // Linhas de um pedido, cobrindo a quantidade
+            "CREATE INDEX idx_menupedido_pedido ON MenuPedido (idPedido_FK, idM_FK, quantidade)",
+            "CREATE INDEX idx_propostapedido_pedido ON PropostaPedido (idPedido_FK, idProposta_FK, quantidade)"
+        ),
+
+        new Migracao(4, "Índices para a listagem paginada por restaurante",
+            // Páginas (por ID) do histórico e dos funcionários de um restaurante
+            "CREATE INDEX idx_historico_restaurante_id ON Historico (idRestaurante_FK, idHistorico)",
+            "CREATE INDEX idx_funcionario_restaurante_id ON Funcionario (idRestaurante_FK, idFuncionario)"
+        ),
+
+        new Migracao(5, "No máximo um pagamento por pedido",
+            // Versões anteriores aceitavam um segundo pagamento do mesmo pedido: fica só o mais antigo
+            MigracoesBD::removerPagamentosDuplicados,
+            // O índice único substitui o índice simples sobre idPedido
+            "CREATE UNIQUE INDEX uq_pagamento_pedido ON Pagamento (idPedido)",
+            "DROP INDEX idx_pagamento_pedido ON Pagamento"
+        ),
+
+        new Migracao(6, "Versão do catálogo (incrementada em cada alteração, para validar o snapshot do catálogo)",
+            "CREATE TABLE IF NOT EXISTS VersaoCatalogo (" +
+                "id TINYINT PRIMARY KEY," +
+                "versao BIGINT NOT NULL" +
+            ")",
+            "INSERT IGNORE INTO VersaoCatalogo (id, versao) VALUES (1, 0)"
+        )
+    );
+
+    /**
+     * Construtor privado (classe utilitária)
+     */
+    private MigracoesBD() {
+    }
+
+    /**
+     * Método que aplica as migrações ainda não aplicadas. Se o esquema já estiver
+     * atualizado, executa apenas uma consulta.
+     */
+    public static void migrar() {
+        int versaoAtual = MIGRACOES.get(MIGRACOES.size() - 1).versao;
+        try (Connection conn = DAOconfig.getConnection()) {
+            if (versaoAplicada(conn) >= versaoAtual) {
+                return;
+            }
+
+            try (Statement stm = conn.createStatement()) {
+                stm.executeUpdate("CREATE TABLE IF NOT EXISTS VersaoEsquema (" +
+                                      "versao INT PRIMARY KEY," +
+                                      "descricao VARCHAR(255)," +
+                                      "aplicadaEm DATETIME" +
+                                  ")");
+            }
+
+            bloquear(conn);
+            try {
+                // Outra instância pode ter aplicado as migrações enquanto se esperava pelo bloqueio
+                int versao = versaoAplicada(conn);
+                for (Migracao m : MIGRACOES) {
+                    if (m.versao > versao) {
+                        aplicar(conn, m);
+                    }
+                }
+            } finally {
+                desbloquear(conn);
+            }
+        } catch (SQLException e) {
+            // Erro a criar tabela...
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /**
+     * Método que devolve a versão do esquema registada na base de dados
+     *
+     * @param conn Conexão a utilizar
+     * @return Versão aplicada, ou 0 se nenhuma migração foi aplicada
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private static int versaoAplicada(Connection conn) throws SQLException {
+        try (Statement stm = conn.createStatement();
+             ResultSet rs = stm.executeQuery("SELECT COALESCE(MAX(versao), 0) FROM VersaoEsquema")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ERRO_TABELA_INEXISTENTE) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Método que aplica uma migração e regista a sua versão
+     *
+     * @param conn Conexão a utilizar
+     * @param m Migração a aplicar
+     * @throws SQLException Se alguma instrução falhar por um motivo que não seja o objeto já existir
+     */
+    private static void aplicar(Connection conn, Migracao m) throws SQLException {
+        if (m.preparacao != null) {
+            m.preparacao.executar(conn);
+        }
+        try (Statement stm = conn.createStatement()) {
+            for (String sql : m.instrucoes) {
+                try {
+                    stm.executeUpdate(sql);
+                } catch (SQLException e) {
+                    if (!ERROS_JA_EXISTE.contains(e.getErrorCode())) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        try (PreparedStatement pstm = conn.prepareStatement("INSERT INTO VersaoEsquema (versao, descricao, aplicadaEm) VALUES (?, ?, NOW())")) {
+            pstm.setInt(1, m.versao);
+            pstm.setString(2, m.descricao);
+            pstm.executeUpdate();
+        }
+    }
+
+    /**
+     * Método que deixa no máximo um pagamento por pedido (preparação da migração 5): mantém o
+     * pagamento mais antigo de cada pedido (o de menor ID na sequência), passa para ele as faturas
+     * dos restantes e remove-os. Os pedidos afetados são reportados em System.err.
+     *
+     * @param conn Conexão a utilizar
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private static void removerPagamentosDuplicados(Connection conn) throws SQLException {
+        // p é mais antigo que q: IDs da sequência (prefixo + número) comparados por comprimento e depois por texto
+        String maisAntigo = "(CHAR_LENGTH(%1$s.idPagamento) < CHAR_LENGTH(%2$s.idPagamento) OR " +
+                            "(CHAR_LENGTH(%1$s.idPagamento) = CHAR_LENGTH(%2$s.idPagamento) AND %1$s.idPagamento < %2$s.idPagamento))";
+        List<String> pedidos = new ArrayList<>();
+        try (Statement stm = conn.createStatement()) {
+            try (ResultSet rs = stm.executeQuery("SELECT idPedido FROM Pagamento WHERE idPedido IS NOT NULL " +
+                                                 "GROUP BY idPedido HAVING COUNT(*) > 1")) {
+                while (rs.next()) {
+                    pedidos.add(rs.getString(1));
+                }
+            } catch (SQLException e) {
+                if (e.getErrorCode() == ERRO_TABELA_INEXISTENTE) {
+                    return;
+                }
+                throw e;
+            }
+            if (pedidos.isEmpty()) {
+                return;
+            }
+            System.err.println("[EatHub] Pedidos com mais de um pagamento (fica o mais antigo de cada): " + pedidos);
+            stm.executeUpdate("UPDATE Fatura f " +
+                              "JOIN Pagamento d ON d.idPagamento = f.idPagamento_FK " +
+                              "JOIN (SELECT p.idPedido, p.idPagamento FROM Pagamento p " +
+                                    "WHERE p.idPedido IS NOT NULL AND NOT EXISTS (" +
+                                        "SELECT 1 FROM Pagamento q WHERE q.idPedido = p.idPedido AND " + String.format(maisAntigo, "q", "p") + ")" +
+                              ") k ON k.idPedido = d.idPedido " +
+                              "SET f.idPagamento_FK = k.idPagamento " +
+                              "WHERE f.idPagamento_FK <> k.idPagamento");
+            stm.executeUpdate("DELETE d FROM Pagamento d " +
+                              "JOIN Pagamento k ON k.idPedido = d.idPedido AND " + String.format(maisAntigo, "k", "d"));
+        }
+    }
+
+    /**
+     * Método que obtém o bloqueio de migrações (esperando no máximo 60 segundos)
+     *
+     * @param conn Conexão a utilizar
+     * @throws SQLException Se o bloqueio não for obtido
+     */
+    private static void bloquear(Connection conn) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement("SELECT GET_LOCK(?, 60)")) {
+            pstm.setString(1, BLOQUEIO);
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Não foi possível obter o bloqueio de migrações.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Método que liberta o bloqueio de migrações
+     *
+     * @param conn Conexão a utilizar
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private static void desbloquear(Connection conn) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstm.setString(1, BLOQUEIO);
+            pstm.executeQuery().close();
+        }
+    }
+}
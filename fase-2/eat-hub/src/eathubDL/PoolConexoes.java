@@ -0,0 +1,709 @@
+package eathubDL;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool limitado de conexões JDBC partilhado por todos os DAOs.
+ *
+ * As conexões devolvidas são proxies: fechar a conexão devolve-a ao pool
+ * em vez de terminar a ligação física. O pool garante um número mínimo e
+ * máximo de conexões, valida conexões inativas antes de as reutilizar,
+ * remove conexões inativas há demasiado tempo e deteta conexões que não
+ * foram devolvidas dentro do tempo esperado.
+ *
+ * Cada conexão física mantém ainda uma cache (LRU) de PreparedStatements
+ * indexada pelo texto SQL: preparar a mesma consulta parametrizada na mesma
+ * conexão reutiliza o statement já preparado no servidor, e fechá-lo apenas
+ * o devolve à cache.
+ */
+public class PoolConexoes {
+
+    /** URL da base de dados */
+    private final String url;
+
+    /** Utilizador da base de dados */
+    private final String username;
+
+    /** Password da base de dados */
+    private final String password;
+
+    /** Número mínimo de conexões mantidas abertas */
+    private final int tamanhoMinimo;
+
+    /** Número máximo de conexões abertas em simultâneo */
+    private final int tamanhoMaximo;
+
+    /** Tempo (ms) ao fim do qual uma conexão inativa acima do mínimo é fechada */
+    private final long tempoMaximoInativo;
+
+    /** Tempo (ms) ao fim do qual uma conexão emprestada é considerada uma fuga */
+    private final long limiteFuga;
+
+    /** Tempo máximo (ms) de espera por uma conexão livre */
+    private final long tempoMaximoEspera;
+
+    /** Tempo (ms) de inatividade a partir do qual a conexão é validada antes de ser emprestada */
+    private final long intervaloValidacao;
+
+    /** Número máximo de PreparedStatements guardados em cache por conexão */
+    private final int tamanhoCacheStatements;
+
+    /** Indica se o local de cada empréstimo é guardado para reportar as fugas */
+    private final boolean rastrearOrigem;
+
+    /** Conexões físicas livres, a mais recente no início */
+    private final LinkedBlockingDeque<ConexaoFisica> livres;
+
+    /** Conexões físicas atualmente emprestadas */
+    private final Map<ConexaoFisica, Boolean> emprestadas;
+
+    /** Autorizações de empréstimo (limita o pool ao tamanho máximo) */
+    private final Semaphore autorizacoes;
+
+    /** Tarefa periódica de manutenção (remoção de inativas e deteção de fugas) */
+    private final ScheduledExecutorService manutencao;
+
+    /** Número de conexões físicas abertas */
+    private final AtomicInteger totalConexoes = new AtomicInteger();
+
+    /** Número de threads à espera de uma conexão */
+    private final AtomicInteger emEspera = new AtomicInteger();
+
+    /** Número total de empréstimos */
+    private final AtomicLong totalEmprestimos = new AtomicLong();
+
+    /** Número total de conexões físicas criadas */
+    private final AtomicLong totalCriadas = new AtomicLong();
+
+    /** Número total de conexões descartadas por falharem a validação */
+    private final AtomicLong totalInvalidas = new AtomicLong();
+
+    /** Número total de pedidos que excederam o tempo de espera */
+    private final AtomicLong totalTimeouts = new AtomicLong();
+
+    /** Número total de fugas detetadas */
+    private final AtomicLong totalFugas = new AtomicLong();
+
+    /** Número de PreparedStatements reutilizados a partir da cache */
+    private final AtomicLong statementsReutilizados = new AtomicLong();
+
+    /** Número de PreparedStatements preparados de novo */
+    private final AtomicLong statementsPreparados = new AtomicLong();
+
+    /** Indica se o pool já foi encerrado */
+    private volatile boolean encerrado = false;
+
+    /**
+     * Construtor parametrizado
+     *
+     * @param url URL da base de dados
+     * @param username Utilizador da base de dados
+     * @param password Password da base de dados
+     * @param tamanhoMinimo Número mínimo de conexões
+     * @param tamanhoMaximo Número máximo de conexões
+     * @param tempoMaximoInativo Tempo (ms) máximo de inatividade de uma conexão acima do mínimo
+     * @param limiteFuga Tempo (ms) a partir do qual uma conexão emprestada é reportada como fuga
+     * @param tempoMaximoEspera Tempo (ms) máximo de espera por uma conexão
+     * @param intervaloValidacao Tempo (ms) de inatividade a partir do qual a conexão é validada
+     * @param tamanhoCacheStatements Número máximo de PreparedStatements em cache por conexão (0 desativa)
+     * @param rastrearOrigem Guardar o stack trace de cada empréstimo para o reportar nas fugas
+     */
+    public PoolConexoes(String url, String username, String password,
+                        int tamanhoMinimo, int tamanhoMaximo,
+                        long tempoMaximoInativo, long limiteFuga,
+                        long tempoMaximoEspera, long intervaloValidacao,
+                        int tamanhoCacheStatements, boolean rastrearOrigem) {
+        if (tamanhoMinimo < 0 || tamanhoMaximo < 1 || tamanhoMinimo > tamanhoMaximo) {
+            throw new IllegalArgumentException("Tamanhos do pool inválidos: mínimo " + tamanhoMinimo + ", máximo " + tamanhoMaximo + ".");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.tamanhoMinimo = tamanhoMinimo;
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.tempoMaximoInativo = tempoMaximoInativo;
+        this.limiteFuga = limiteFuga;
+        this.tempoMaximoEspera = tempoMaximoEspera;
+        this.intervaloValidacao = intervaloValidacao;
+        this.tamanhoCacheStatements = Math.max(0, tamanhoCacheStatements);
+        this.rastrearOrigem = rastrearOrigem;
+        this.livres = new LinkedBlockingDeque<>();
+        this.emprestadas = new ConcurrentHashMap<>();
+        this.autorizacoes = new Semaphore(tamanhoMaximo, true);
+
+        this.manutencao = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "eathub-pool-manutencao");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodo = Math.max(1000, Math.min(tempoMaximoInativo, limiteFuga) / 2);
+        this.manutencao.scheduleWithFixedDelay(this::manter, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Método que empresta uma conexão do pool.
+     * A conexão deve ser fechada pelo chamador, o que a devolve ao pool.
+     *
+     * @return Conexão emprestada
+     * @throws SQLException Se o tempo de espera for excedido ou não for possível abrir uma conexão
+     */
+    public Connection getConnection() throws SQLException {
+        if (encerrado) {
+            throw new SQLException("O pool de conexões foi encerrado.");
+        }
+
+        emEspera.incrementAndGet();
+        try {
+            if (!autorizacoes.tryAcquire(tempoMaximoEspera, TimeUnit.MILLISECONDS)) {
+                totalTimeouts.incrementAndGet();
+                throw new SQLException("Tempo de espera por uma conexão excedido (" + tempoMaximoEspera + " ms). " + this.getEstatisticas());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrompido à espera de uma conexão.", e);
+        } finally {
+            emEspera.decrementAndGet();
+        }
+
+        try {
+            ConexaoFisica fisica = obterConexaoValida();
+            fisica.emprestadaEm = System.currentTimeMillis();
+            fisica.origem = rastrearOrigem ? new Throwable("Conexão emprestada aqui") : null;
+            emprestadas.put(fisica, Boolean.TRUE);
+            totalEmprestimos.incrementAndGet();
+            return fisica.novoProxy();
+        } catch (SQLException | RuntimeException e) {
+            autorizacoes.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que obtém uma conexão livre válida ou, se não existir, abre uma nova
+     *
+     * @return Conexão física pronta a ser emprestada
+     * @throws SQLException Se não for possível abrir uma conexão
+     */
+    private ConexaoFisica obterConexaoValida() throws SQLException {
+        ConexaoFisica fisica;
+        while ((fisica = livres.pollFirst()) != null) {
+            if (System.currentTimeMillis() - fisica.devolvidaEm < intervaloValidacao || fisica.valida()) {
+                return fisica;
+            }
+            totalInvalidas.incrementAndGet();
+            fecharFisica(fisica);
+        }
+        return abrirFisica();
+    }
+
+    /**
+     * Método que abre uma nova conexão física
+     *
+     * @return Nova conexão física
+     * @throws SQLException Se não for possível abrir a conexão
+     */
+    private ConexaoFisica abrirFisica() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, username, password);
+        totalConexoes.incrementAndGet();
+        totalCriadas.incrementAndGet();
+        return new ConexaoFisica(conn);
+    }
+
+    /**
+     * Método que fecha definitivamente uma conexão física
+     *
+     * @param fisica Conexão física a fechar
+     */
+    private void fecharFisica(ConexaoFisica fisica) {
+        totalConexoes.decrementAndGet();
+        try {
+            fisica.conexao.close();
+        } catch (SQLException e) {
+            // Conexão já inutilizável, ignorar
+        }
+    }
+
+    /**
+     * Método que devolve uma conexão física ao pool
+     *
+     * @param fisica Conexão física a devolver
+     */
+    private void devolver(ConexaoFisica fisica) {
+        if (emprestadas.remove(fisica) == null) {
+            return; // Já devolvida
+        }
+        try {
+            boolean reutilizavel = !encerrado && !fisica.conexao.isClosed();
+            if (reutilizavel && !fisica.conexao.getAutoCommit()) {
+                // Transação deixada em aberto pelo chamador
+                fisica.conexao.rollback();
+                fisica.conexao.setAutoCommit(true);
+            }
+            if (reutilizavel) {
+                fisica.devolvidaEm = System.currentTimeMillis();
+                fisica.origem = null;
+                livres.offerFirst(fisica);
+            } else {
+                fecharFisica(fisica);
+            }
+        } catch (SQLException e) {
+            fecharFisica(fisica);
+        } finally {
+            autorizacoes.release();
+        }
+    }
+
+    /**
+     * Método de manutenção periódica: fecha conexões inativas acima do mínimo,
+     * repõe o mínimo de conexões e reporta conexões emprestadas há demasiado tempo
+     */
+    private void manter() {
+        if (encerrado) {
+            return;
+        }
+        long agora = System.currentTimeMillis();
+
+        // Remoção de conexões inativas (as mais antigas estão no fim da fila)
+        Iterator<ConexaoFisica> it = livres.descendingIterator();
+        while (it.hasNext() && totalConexoes.get() > tamanhoMinimo) {
+            ConexaoFisica fisica = it.next();
+            if (agora - fisica.devolvidaEm > tempoMaximoInativo && livres.remove(fisica)) {
+                fecharFisica(fisica);
+            }
+        }
+
+        // Repor o número mínimo de conexões
+        try {
+            while (totalConexoes.get() < tamanhoMinimo) {
+                ConexaoFisica fisica = abrirFisica();
+                fisica.devolvidaEm = agora;
+                livres.offerLast(fisica);
+            }
+        } catch (SQLException e) {
+            // Base de dados indisponível, tenta novamente na próxima execução
+        }
+
+        // Deteção de fugas
+        for (ConexaoFisica fisica : emprestadas.keySet()) {
+            if (!fisica.fugaReportada && agora - fisica.emprestadaEm > limiteFuga) {
+                fisica.fugaReportada = true;
+                totalFugas.incrementAndGet();
+                System.err.println("[EatHub] Possível fuga de conexão: emprestada há " + (agora - fisica.emprestadaEm) + " ms.");
+                Throwable origem = fisica.origem;
+                if (origem != null) {
+                    origem.printStackTrace();
+                } else {
+                    System.err.println("[EatHub] Ativar -Deathub.pool.origemFugas=true para ver onde a conexão foi emprestada.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Método que encerra o pool, fechando todas as conexões livres.
+     * As conexões emprestadas são fechadas quando forem devolvidas.
+     */
+    public void encerrar() {
+        encerrado = true;
+        manutencao.shutdownNow();
+        ConexaoFisica fisica;
+        while ((fisica = livres.pollFirst()) != null) {
+            fecharFisica(fisica);
+        }
+    }
+
+    /**
+     * Método que devolve o número de conexões físicas abertas
+     *
+     * @return Número de conexões abertas
+     */
+    public int getTotalConexoes() {
+        return totalConexoes.get();
+    }
+
+    /**
+     * Método que devolve o número de conexões livres
+     *
+     * @return Número de conexões livres
+     */
+    public int getConexoesLivres() {
+        return livres.size();
+    }
+
+    /**
+     * Método que devolve o número de conexões emprestadas
+     *
+     * @return Número de conexões emprestadas
+     */
+    public int getConexoesAtivas() {
+        return emprestadas.size();
+    }
+
+    /**
+     * Método que devolve o número de threads à espera de uma conexão
+     *
+     * @return Número de threads em espera
+     */
+    public int getThreadsEmEspera() {
+        return emEspera.get();
+    }
+
+    /**
+     * Método que devolve o número total de empréstimos
+     *
+     * @return Número total de empréstimos
+     */
+    public long getTotalEmprestimos() {
+        return totalEmprestimos.get();
+    }
+
+    /**
+     * Método que devolve o número total de conexões físicas criadas
+     *
+     * @return Número total de conexões criadas
+     */
+    public long getTotalCriadas() {
+        return totalCriadas.get();
+    }
+
+    /**
+     * Método que devolve o número de pedidos que excederam o tempo de espera
+     *
+     * @return Número de timeouts
+     */
+    public long getTotalTimeouts() {
+        return totalTimeouts.get();
+    }
+
+    /**
+     * Método que devolve o número de fugas detetadas
+     *
+     * @return Número de fugas detetadas
+     */
+    public long getTotalFugas() {
+        return totalFugas.get();
+    }
+
+    /**
+     * Método que devolve o número de PreparedStatements reutilizados a partir da cache
+     *
+     * @return Número de reutilizações
+     */
+    public long getStatementsReutilizados() {
+        return statementsReutilizados.get();
+    }
+
+    /**
+     * Método que devolve o número de PreparedStatements preparados de novo
+     *
+     * @return Número de preparações
+     */
+    public long getStatementsPreparados() {
+        return statementsPreparados.get();
+    }
+
+    /**
+     * Método que devolve uma representação textual das estatísticas do pool
+     *
+     * @return Estatísticas do pool
+     */
+    public String getEstatisticas() {
+        return "Pool[total=" + totalConexoes.get() +
+               ", ativas=" + emprestadas.size() +
+               ", livres=" + livres.size() +
+               ", emEspera=" + emEspera.get() +
+               ", min=" + tamanhoMinimo +
+               ", max=" + tamanhoMaximo +
+               ", emprestimos=" + totalEmprestimos.get() +
+               ", criadas=" + totalCriadas.get() +
+               ", invalidas=" + totalInvalidas.get() +
+               ", timeouts=" + totalTimeouts.get() +
+               ", fugas=" + totalFugas.get() +
+               ", stmtReutilizados=" + statementsReutilizados.get() +
+               ", stmtPreparados=" + statementsPreparados.get() + "]";
+    }
+
+    /** Conexão física gerida pelo pool */
+    private class ConexaoFisica {
+
+        /** Conexão JDBC real */
+        private final Connection conexao;
+
+        /** Instante em que foi emprestada */
+        private volatile long emprestadaEm;
+
+        /** Instante em que foi devolvida */
+        private volatile long devolvidaEm;
+
+        /** Local onde foi emprestada (para reportar fugas; null se o rastreio da origem estiver desativado) */
+        private volatile Throwable origem;
+
+        /** Indica se a fuga desta conexão já foi reportada */
+        private volatile boolean fugaReportada;
+
+        /** Cache LRU de PreparedStatements desta conexão, indexada pelo SQL */
+        private final Map<String, PreparedStatement> cache;
+
+        /** PreparedStatements da cache atualmente em uso */
+        private final Map<PreparedStatement, Boolean> emUso = new IdentityHashMap<>();
+
+        /**
+         * Construtor parametrizado
+         *
+         * @param conexao Conexão JDBC real
+         */
+        private ConexaoFisica(Connection conexao) {
+            this.conexao = conexao;
+            this.devolvidaEm = System.currentTimeMillis();
+            this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= tamanhoCacheStatements || emUso.containsKey(eldest.getValue())) {
+                        return false;
+                    }
+                    try {
+                        eldest.getValue().close();
+                    } catch (SQLException e) {
+                        // Ignorar, o statement deixa de ser usado
+                    }
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Método que devolve um PreparedStatement para o SQL dado, reutilizando
+         * o da cache se existir e estiver livre
+         *
+         * @param sql Consulta parametrizada
+         * @param conexaoLogica Conexão (proxy) a devolver por getConnection()
+         * @return PreparedStatement cujo close() o devolve à cache
+         * @throws SQLException Se não for possível preparar a consulta
+         */
+        private PreparedStatement prepararEmCache(String sql, Connection conexaoLogica) throws SQLException {
+            PreparedStatement ps = cache.get(sql);
+            if (ps != null && ps.isClosed()) {
+                cache.remove(sql);
+                ps = null;
+            }
+            if (ps != null && emUso.containsKey(ps)) {
+                // Mesma consulta já aberta nesta conexão: statement fora da cache
+                statementsPreparados.incrementAndGet();
+                return conexao.prepareStatement(sql);
+            }
+            if (ps == null) {
+                ps = conexao.prepareStatement(sql);
+                statementsPreparados.incrementAndGet();
+                cache.put(sql, ps);
+            } else {
+                statementsReutilizados.incrementAndGet();
+            }
+            emUso.put(ps, Boolean.TRUE);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new StatementEmCache(this, ps, conexaoLogica));
+        }
+
+        /**
+         * Método que devolve um PreparedStatement à cache
+         *
+         * @param ps PreparedStatement a libertar
+         */
+        private void libertar(PreparedStatement ps) {
+            emUso.remove(ps);
+            try {
+                ps.clearParameters();
+                ps.clearBatch();
+            } catch (SQLException e) {
+                cache.values().remove(ps);
+            }
+        }
+
+        /**
+         * Método que verifica se a conexão continua utilizável
+         *
+         * @return true se a conexão for válida, false caso contrário
+         */
+        private boolean valida() {
+            try {
+                return conexao.isValid(2);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Método que cria o proxy entregue ao chamador para um empréstimo
+         *
+         * @return Proxy da conexão
+         */
+        private Connection novoProxy() {
+            this.fugaReportada = false;
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new Emprestimo(this));
+        }
+    }
+
+    /**
+     * Um empréstimo de uma conexão: intercepta close() para devolver a conexão
+     * ao pool e fecha os statements que o chamador tenha deixado abertos
+     */
+    private class Emprestimo implements InvocationHandler {
+
+        /** Conexão física emprestada */
+        private final ConexaoFisica fisica;
+
+        /** Statements criados durante o empréstimo (os da cache são apenas libertados) */
+        private final List<Statement> statements = new ArrayList<>();
+
+        /** Indica se o empréstimo já terminou */
+        private boolean fechado = false;
+
+        /**
+         * Construtor parametrizado
+         *
+         * @param fisica Conexão física emprestada
+         */
+        private Emprestimo(ConexaoFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nome = method.getName();
+            switch (nome) {
+                case "close":
+                    if (!fechado) {
+                        fechado = true;
+                        for (Statement s : statements) {
+                            try {
+                                s.close();
+                            } catch (SQLException e) {
+                                // Ignorar, a conexão será validada na próxima utilização
+                            }
+                        }
+                        statements.clear();
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return fechado || fisica.conexao.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Conexão do pool (" + fisica.conexao + ")";
+                default:
+                    break;
+            }
+            if (fechado) {
+                throw new SQLException("Conexão já devolvida ao pool.");
+            }
+            if (tamanhoCacheStatements > 0 && nome.equals("prepareStatement")
+                    && args != null && args.length == 1) {
+                PreparedStatement ps = fisica.prepararEmCache((String) args[0], (Connection) proxy);
+                statements.add(ps);
+                return ps;
+            }
+            try {
+                Object res = method.invoke(fisica.conexao, args);
+                if (res instanceof Statement) {
+                    statements.add((Statement) res);
+                }
+                return res;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Um PreparedStatement emprestado da cache de uma conexão: close() apenas
+     * limpa os parâmetros (e o batch) e devolve o statement à cache
+     */
+    private class StatementEmCache implements InvocationHandler {
+
+        /** Conexão física a que o statement pertence */
+        private final ConexaoFisica fisica;
+
+        /** PreparedStatement real */
+        private final PreparedStatement ps;
+
+        /** Conexão (proxy) visível para o chamador */
+        private final Connection conexaoLogica;
+
+        /** Indica se o chamador já fechou o statement */
+        private boolean fechado = false;
+
+        /**
+         * Construtor parametrizado
+         *
+         * @param fisica Conexão física a que o statement pertence
+         * @param ps PreparedStatement real
+         * @param conexaoLogica Conexão (proxy) visível para o chamador
+         */
+        private StatementEmCache(ConexaoFisica fisica, PreparedStatement ps, Connection conexaoLogica) {
+            this.fisica = fisica;
+            this.ps = ps;
+            this.conexaoLogica = conexaoLogica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!fechado) {
+                        fechado = true;
+                        fisica.libertar(ps);
+                    }
+                    return null;
+                case "isClosed":
+                    return fechado || ps.isClosed();
+                case "getConnection":
+                    return conexaoLogica;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Statement em cache (" + ps + ")";
+                default:
+                    break;
+            }
+            if (fechado) {
+                throw new SQLException("Statement já fechado.");
+            }
+            try {
+                return method.invoke(ps, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
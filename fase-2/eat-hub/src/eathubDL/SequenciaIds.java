@@ -0,0 +1,136 @@
+package eathubDL;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Gerador de IDs (prefixo + número) com reserva de blocos (hi/lo) na tabela Sequencia.
+ *
+ * Cada sequência guarda na base de dados o último número já reservado. Quando
+ * o bloco em memória se esgota, é reservado um novo bloco numa transação que
+ * bloqueia a linha da sequência (SELECT ... FOR UPDATE), pelo que os IDs são
+ * únicos entre threads e entre várias instâncias da aplicação a partilhar a
+ * mesma base de dados. Os números de um bloco não usado perdem-se quando a
+ * aplicação termina. A reserva usa uma conexão isolada, pelo que fica
+ * confirmada mesmo que a unidade de trabalho em curso seja desfeita.
+ *
+ * Na primeira utilização de uma sequência (linha inexistente), o valor inicial
+ * é o maior número já usado na tabela correspondente.
+ */
+public class SequenciaIds {
+
+    // Consultas parametrizadas (preparadas uma vez por conexão e reutilizadas)
+    private static final String SQL_BLOQUEAR = "SELECT valor FROM Sequencia WHERE nome=? FOR UPDATE";
+    private static final String SQL_AVANCAR = "UPDATE Sequencia SET valor=? WHERE nome=?";
+
+    /** Nome da sequência (chave na tabela Sequencia) */
+    private final String nome;
+
+    /** Prefixo dos IDs gerados */
+    private final String prefixo;
+
+    /** Consulta que cria a linha da sequência a partir do maior ID existente */
+    private final String sqlInicializar;
+
+    /** Número de IDs reservados de cada vez */
+    private final int tamanhoBloco;
+
+    /** Próximo número a atribuir */
+    private long proximo;
+
+    /** Último número do bloco reservado */
+    private long limite;
+
+    /**
+     * Construtor da sequência. Não acede à base de dados; o primeiro bloco é reservado no primeiro pedido de ID.
+     *
+     * @param nome Nome da sequência
+     * @param prefixo Prefixo dos IDs gerados
+     * @param tabela Tabela cujos IDs são gerados
+     * @param colunaId Coluna do ID na tabela
+     * @param tamanhoBloco Número de IDs reservados de cada vez
+     */
+    public SequenciaIds(String nome, String prefixo, String tabela, String colunaId, int tamanhoBloco) {
+        this.nome = nome;
+        this.prefixo = prefixo;
+        this.tamanhoBloco = tamanhoBloco;
+        this.sqlInicializar =
+            "INSERT IGNORE INTO Sequencia (nome, valor) " +
+            "SELECT ?, COALESCE(MAX(CAST(SUBSTRING(" + colunaId + ", " + (prefixo.length() + 1) + ") AS UNSIGNED)), 0) " +
+            "FROM " + tabela + " WHERE " + colunaId + " REGEXP ?";
+        this.proximo = 1;
+        this.limite = 0;
+    }
+
+    /**
+     * Método que devolve um novo ID único, reservando um novo bloco se necessário
+     *
+     * @return Novo ID (prefixo seguido do número)
+     */
+    public synchronized String proximoId() {
+        if (proximo > limite) {
+            this.reservarBloco();
+        }
+        return prefixo + (proximo++);
+    }
+
+    /**
+     * Método que reserva o próximo bloco de números na base de dados
+     */
+    private void reservarBloco() {
+        try (Connection conn = DAOconfig.getConnectionIsolada()) {
+            conn.setAutoCommit(false);
+            try {
+                long ultimo = this.bloquearSequencia(conn);
+                try (PreparedStatement pstm = conn.prepareStatement(SQL_AVANCAR)) {
+                    pstm.setLong(1, ultimo + tamanhoBloco);
+                    pstm.setString(2, nome);
+                    pstm.executeUpdate();
+                }
+                conn.commit();
+                this.proximo = ultimo + 1;
+                this.limite = ultimo + tamanhoBloco;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
+
+    /**
+     * Método que bloqueia a linha da sequência e devolve o último número reservado,
+     * criando a linha (a partir dos IDs existentes) se ainda não existir
+     *
+     * @param conn Conexão (com a transação) a utilizar
+     * @return Último número reservado
+     * @throws SQLException Se ocorrer um erro na base de dados
+     */
+    private long bloquearSequencia(Connection conn) throws SQLException {
+        try (PreparedStatement pstm = conn.prepareStatement(SQL_BLOQUEAR)) {
+            pstm.setString(1, nome);
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong("valor");
+                }
+            }
+
+            try (PreparedStatement pstmInicializar = conn.prepareStatement(sqlInicializar)) {
+                pstmInicializar.setString(1, nome);
+                pstmInicializar.setString(2, "^" + prefixo + "[0-9]+$");
+                pstmInicializar.executeUpdate();
+            }
+
+            try (ResultSet rs = pstm.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong("valor");
+                }
+            }
+        }
+        throw new SQLException("Não foi possível inicializar a sequência " + nome + ".");
+    }
+}
@@ -0,0 +1,329 @@
+package eathubDL;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unidade de trabalho: uma conexão e uma transação associadas a um caso de uso.
+ *
+ * Enquanto existir uma unidade de trabalho aberta na thread atual, todas as
+ * conexões obtidas com DAOconfig.getConnection() são a conexão da unidade de
+ * trabalho. Nessas conexões, setAutoCommit() e commit() não têm efeito e
+ * close() apenas fecha os statements criados através delas; um rollback()
+ * marca a transação para ser desfeita. Assim, os DAOs (e as chamadas
+ * encadeadas entre eles) participam na transação do caso de uso sem
+ * alterações, e o caso de uso faz um único commit no fim:
+ *
+ * <pre>
+ * try (UnidadeTrabalho uow = UnidadeTrabalho.iniciar()) {
+ *     ...
+ *     uow.confirmar();
+ * }
+ * </pre>
+ *
+ * Fechar a unidade de trabalho sem a confirmar desfaz a transação. Abrir uma
+ * unidade de trabalho dentro de outra junta-se à exterior: só a exterior faz
+ * commit, e uma interior fechada sem ser confirmada obriga a exterior a
+ * desfazer a transação.
+ *
+ * Com a base de dados em memória (DAOconfig.BD_MEMORIA) não há conexão: a
+ * transação é a da BaseDadosMemoria, que bloqueia as escritas das outras
+ * threads até ao fim da unidade de trabalho e desfaz as alterações se não
+ * for confirmada.
+ */
+public class UnidadeTrabalho implements AutoCloseable {
+
+    /** Transação partilhada pelas unidades de trabalho abertas numa thread */
+    private static final class Transacao {
+
+        /** Conexão do pool emprestada à transação (null com a base de dados em memória) */
+        private final Connection conexao;
+
+        /** Ações a executar depois do commit */
+        private final List<Runnable> aoConfirmar = new ArrayList<>();
+
+        /** Indica se a transação tem de ser desfeita */
+        private boolean soRollback = false;
+
+        /**
+         * Construtor parametrizado
+         *
+         * @param conexao Conexão do pool emprestada à transação, ou null com a base de dados em memória
+         */
+        private Transacao(Connection conexao) {
+            this.conexao = conexao;
+        }
+    }
+
+    /** Transação aberta na thread atual */
+    private static final ThreadLocal<Transacao> ATUAL = new ThreadLocal<>();
+
+    /** Transação a que esta unidade de trabalho pertence */
+    private final Transacao transacao;
+
+    /** Indica se esta é a unidade de trabalho exterior (a que faz commit) */
+    private final boolean exterior;
+
+    /** Indica se esta unidade de trabalho foi confirmada */
+    private boolean confirmada;
+
+    /** Indica se esta unidade de trabalho já foi fechada */
+    private boolean fechada;
+
+    /**
+     * Construtor privado; usar o método iniciar
+     *
+     * @param transacao Transação a que a unidade de trabalho pertence
+     * @param exterior true se for a unidade de trabalho exterior
+     */
+    private UnidadeTrabalho(Transacao transacao, boolean exterior) {
+        this.transacao = transacao;
+        this.exterior = exterior;
+        this.confirmada = false;
+        this.fechada = false;
+    }
+
+    /**
+     * Método que inicia uma unidade de trabalho na thread atual, ou se junta à que já estiver aberta
+     *
+     * @return Unidade de trabalho (deve ser fechada, tipicamente com try-with-resources)
+     */
+    public static UnidadeTrabalho iniciar() {
+        Transacao t = ATUAL.get();
+        if (t != null) {
+            return new UnidadeTrabalho(t, false);
+        }
+        if (DAOconfig.BD_MEMORIA) {
+            BaseDadosMemoria.getInstance().iniciarTransacao();
+            t = new Transacao(null);
+            ATUAL.set(t);
+            return new UnidadeTrabalho(t, true);
+        }
+        Connection conn = null;
+        try {
+            conn = DAOconfig.getConnectionIsolada();
+            conn.setAutoCommit(false);
+        } catch (SQLException e) {
+            fecharConexao(conn);
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        t = new Transacao(conn);
+        ATUAL.set(t);
+        return new UnidadeTrabalho(t, true);
+    }
+
+    /**
+     * Método que indica se existe uma unidade de trabalho aberta na thread atual
+     *
+     * @return true se existir uma unidade de trabalho aberta, false caso contrário
+     */
+    public static boolean isAtiva() {
+        return ATUAL.get() != null;
+    }
+
+    /**
+     * Método que agenda uma ação para depois do commit da unidade de trabalho atual
+     * (por exemplo, atualizar estado em memória que não pode ser desfeito). Sem
+     * unidade de trabalho aberta a ação é executada de imediato; se a transação
+     * for desfeita a ação é descartada.
+     *
+     * @param acao Ação a executar
+     */
+    public static void aoConfirmar(Runnable acao) {
+        Transacao t = ATUAL.get();
+        if (t == null) {
+            acao.run();
+        } else {
+            t.aoConfirmar.add(acao);
+        }
+    }
+
+    /**
+     * Método que devolve a conexão da unidade de trabalho aberta na thread atual
+     *
+     * @return Conexão participante na transação, ou null se não existir unidade de trabalho aberta (ou sem conexão, em memória)
+     */
+    static Connection conexaoAtual() {
+        Transacao t = ATUAL.get();
+        if (t == null || t.conexao == null) {
+            return null;
+        }
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            new Participacao(t));
+    }
+
+    /**
+     * Método que confirma a unidade de trabalho. Na unidade exterior faz commit da
+     * transação e executa as ações agendadas; numa interior apenas a marca como confirmada.
+     *
+     * @throws IllegalStateException Se a transação tiver sido marcada para ser desfeita
+     */
+    public void confirmar() {
+        if (fechada) {
+            throw new IllegalStateException("A unidade de trabalho já foi fechada.");
+        }
+        if (transacao.soRollback) {
+            throw new IllegalStateException("A transação foi marcada para ser desfeita e não pode ser confirmada.");
+        }
+        this.confirmada = true;
+        if (!exterior) {
+            return;
+        }
+        try {
+            if (transacao.conexao == null) {
+                BaseDadosMemoria.getInstance().confirmarTransacao();
+            } else {
+                transacao.conexao.commit();
+            }
+        } catch (SQLException e) {
+            this.confirmada = false;
+            e.printStackTrace();
+            throw new NullPointerException(e.getMessage());
+        }
+        List<Runnable> acoes = new ArrayList<>(transacao.aoConfirmar);
+        transacao.aoConfirmar.clear();
+        this.terminar();
+        for (Runnable acao : acoes) {
+            acao.run();
+        }
+    }
+
+    /**
+     * Método que fecha a unidade de trabalho. Se não tiver sido confirmada, a transação
+     * é desfeita (na unidade exterior) ou marcada para ser desfeita (numa interior).
+     */
+    @Override
+    public void close() {
+        if (fechada) {
+            return;
+        }
+        if (!confirmada) {
+            transacao.soRollback = true;
+        }
+        if (!exterior) {
+            this.fechada = true;
+            return;
+        }
+        try {
+            if (transacao.conexao == null) {
+                BaseDadosMemoria.getInstance().desfazerTransacao();
+            } else {
+                transacao.conexao.rollback();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        this.terminar();
+    }
+
+    /**
+     * Método que termina a unidade de trabalho exterior, devolvendo a conexão ao pool
+     */
+    private void terminar() {
+        this.fechada = true;
+        ATUAL.remove();
+        fecharConexao(transacao.conexao);
+    }
+
+    /**
+     * Método que fecha uma conexão (devolvendo-a ao pool), ignorando erros
+     *
+     * @param conn Conexão a fechar (pode ser null)
+     */
+    private static void fecharConexao(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A participação de um DAO na transação: a conexão que o DAO recebe. Intercepta o
+     * controlo transacional e o close(), delegando o resto na conexão da transação.
+     */
+    private static class Participacao implements InvocationHandler {
+
+        /** Transação em que se participa */
+        private final Transacao transacao;
+
+        /** Statements criados através desta participação */
+        private final List<Statement> statements = new ArrayList<>();
+
+        /** Indica se a participação já terminou */
+        private boolean fechada = false;
+
+        /**
+         * Construtor parametrizado
+         *
+         * @param transacao Transação em que se participa
+         */
+        private Participacao(Transacao transacao) {
+            this.transacao = transacao;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!fechada) {
+                        fechada = true;
+                        for (Statement s : statements) {
+                            try {
+                                s.close();
+                            } catch (SQLException e) {
+                                // Ignorar, a conexão da transação fecha-os no fim
+                            }
+                        }
+                        statements.clear();
+                    }
+                    return null;
+                case "isClosed":
+                    return fechada || transacao.conexao.isClosed();
+                case "setAutoCommit":
+                case "commit":
+                    return null;
+                case "getAutoCommit":
+                    return false;
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        transacao.soRollback = true;
+                        return null;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Conexão da unidade de trabalho (" + transacao.conexao + ")";
+                default:
+                    break;
+            }
+            if (fechada) {
+                throw new SQLException("Conexão da unidade de trabalho já fechada.");
+            }
+            try {
+                Object res = method.invoke(transacao.conexao, args);
+                if (res instanceof Statement) {
+                    statements.add((Statement) res);
+                }
+                return res;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -4,14 +4,23 @@ import eathubLN.ssCadeia.*;
 import eathubLN.ssComercial.*;
 import eathubLN.ssPedidos.*;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 import Exceptions.PedidoNaoExisteException;
 import Exceptions.PedidoVaiAtrasarException;
 
+import eathubDL.DAOconfig;
+import eathubDL.UnidadeTrabalho;
+
 /** Facade da camada da lógica de negócio do EatHub */
 public class EatHubLNFacade implements IEatHubLN {
     /** Interface do subsistema comercial */
@@ -23,11 +32,60 @@ public class EatHubLNFacade implements IEatHubLN {
 
     /**
      * Construtor vazio do Facade da camada da lógica de negócio do EatHub
+     * 
+     * Os três subsistemas são independentes e são construídos em paralelo; a ementa
+     * (catálogo completo) é carregada em segundo plano, sem atrasar o arranque, para
+     * que a primeira consulta já a encontre pronta. Cada fase fica registada no
+     * RelatorioArranque.
      */
     public EatHubLNFacade() {
-        this.ssComercial = new SSComercialFacade();
-        this.ssPedidos = new SSPedidosFacade();
-        this.ssCadeia = new SSCadeiaFacade();
+        ExecutorService arranque = Executors.newFixedThreadPool(DAOconfig.ARRANQUE_THREADS, r -> {
+            Thread t = new Thread(r, "eathub-arranque");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            CompletableFuture<ISSComercial> comercial = CompletableFuture.supplyAsync(
+                () -> RelatorioArranque.medir("Subsistema comercial", SSComercialFacade::new), arranque);
+            CompletableFuture<ISSPedidos> pedidos = CompletableFuture.supplyAsync(
+                () -> RelatorioArranque.medir("Subsistema de pedidos", SSPedidosFacade::new), arranque);
+            CompletableFuture<ISSCadeia> cadeia = CompletableFuture.supplyAsync(
+                () -> RelatorioArranque.medir("Subsistema da cadeia", SSCadeiaFacade::new), arranque);
+            this.ssComercial = aguardar(comercial);
+            this.ssPedidos = aguardar(pedidos);
+            this.ssCadeia = aguardar(cadeia);
+            arranque.execute(RelatorioArranque.agendar("Ementa (segundo plano)", () -> {
+                try {
+                    Ementa.getInstance();
+                } catch (RuntimeException e) {
+                    // A ementa volta a ser carregada na primeira consulta
+                    e.printStackTrace();
+                }
+            }));
+        } finally {
+            arranque.shutdown();
+        }
+        RelatorioArranque.medirPasso("Motor da cozinha", () -> MotorCozinha.getInstance().iniciar(this.ssPedidos, this.ssCadeia));
+    }
+
+    /**
+     * Método que espera pela construção de um subsistema, propagando a exceção original se falhar
+     * 
+     * @param construcao Construção do subsistema em curso
+     * @return Subsistema construído
+     */
+    private static <T> T aguardar(CompletableFuture<T> construcao) {
+        try {
+            return construcao.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
     }
 
     /**
@@ -139,6 +197,30 @@ public class EatHubLNFacade implements IEatHubLN {
         ssPedidos.regista_nota(nota, codPedido, idRestaurante);
     }
 
+    /** 
+     * Método que adiciona um menu a um pedido pendente
+     * 
+     * @param codMenu Código do menu
+     * @param codPedido Código do pedido
+     * @param idRestaurante Identificador do restaurante
+     * @throws PedidoNaoExisteException Exceção lançada caso o pedido não exista
+     */
+    public void adicionar_menu_pedido(String codMenu, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
+        ssPedidos.adicionar_menu_pedido(codMenu, codPedido, idRestaurante);
+    }
+
+    /** 
+     * Método que adiciona uma proposta a um pedido pendente
+     * 
+     * @param codProposta Código da proposta
+     * @param codPedido Código do pedido
+     * @param idRestaurante Identificador do restaurante
+     * @throws PedidoNaoExisteException Exceção lançada caso o pedido não exista
+     */
+    public void adicionar_proposta_pedido(String codProposta, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
+        ssPedidos.adicionar_proposta_pedido(codProposta, codPedido, idRestaurante);
+    }
+
     /** 
      * Método que regista o tipo de um pedido
      * 
@@ -216,6 +298,34 @@ public class EatHubLNFacade implements IEatHubLN {
         return ssComercial.gera_talao(codPedido);
     }
 
+    /** 
+     * Método que finaliza o pagamento de um pedido pendente numa única transação: regista o
+     * pagamento e o pedido e gera a fatura e o talão. O pedido só sai dos pendentes e entra
+     * na fila do restaurante depois do commit; se algum passo falhar, nada fica registado.
+     * 
+     * @param valor Valor do pagamento
+     * @param codPedido Código do pedido
+     * @param metodoPagamento Método de pagamento
+     * @param idRestaurante Identificador do restaurante
+     * @return Par com a fatura e o talão gerados
+     * @throws PedidoNaoExisteException Exceção lançada caso o pedido não esteja pendente
+     */
+    public Pair<Fatura, Talao> finalizar_pagamento(double valor, String codPedido, String metodoPagamento, String idRestaurante) throws PedidoNaoExisteException {
+        Pedido pedido = ssPedidos.getPedidoPendente(codPedido, idRestaurante);
+        try (UnidadeTrabalho uow = UnidadeTrabalho.iniciar()) {
+            String idPagamento = ssComercial.regista_pagamento(valor, codPedido, metodoPagamento);
+            ssPedidos.regista_pedido(codPedido, idRestaurante);
+            Fatura fatura = ssComercial.gera_fatura(idPagamento, pedido);
+            Talao talao = ssComercial.gera_talao(codPedido);
+            UnidadeTrabalho.aoConfirmar(() -> {
+                ssPedidos.addPedidoQueue(codPedido, pedido.getTempoEspera(), idRestaurante);
+                MotorCozinha.getInstance().notificar(idRestaurante);
+            });
+            uow.confirmar();
+            return new Pair<>(fatura, talao);
+        }
+    }
+
     /** 
      * Método que regista um contribuinte num pedido
      * 
@@ -332,7 +442,9 @@ public class EatHubLNFacade implements IEatHubLN {
      * @return Identificador do funcionário criado
      */
     public String criar_Funcionario(String nome, String posto, String tarefa, String idRestaurante, String tipo, String password) {
-        return ssCadeia.criar_Funcionario(nome, posto, tarefa, idRestaurante, tipo, password);
+        String res = ssCadeia.criar_Funcionario(nome, posto, tarefa, idRestaurante, tipo, password);
+        MotorCozinha.getInstance().atualizarEstacoes(idRestaurante);
+        return res;
     }
 
     /** 
@@ -344,8 +456,15 @@ public class EatHubLNFacade implements IEatHubLN {
      * @return Identificador do restaurante criado
      */
     public String criar_Restaurante(String nome, String chefe, List<String> funcionarios) {
+        List<String> movidos = new ArrayList<>(funcionarios);
+        movidos.add(chefe);
+        Set<String> anteriores = ssCadeia.getRestaurantesDeFuncionarios(movidos);
         String res = ssCadeia.criar_Restaurante(nome, chefe, funcionarios);
         ssPedidos.insert_Maps_Novo_Restaurante(res);
+        MotorCozinha.getInstance().atualizarEstacoes(res);
+        for (String idRestaurante : anteriores) {
+            MotorCozinha.getInstance().atualizarEstacoes(idRestaurante);
+        }
         return res;
     }
 
@@ -623,9 +742,9 @@ public class EatHubLNFacade implements IEatHubLN {
      * 
      * @param idRestaurante Identificador do restaurante
      * @param codProposta Código da proposta
-     * @return true se o registo foi bem sucedido, false caso contrário
+     * @return Nomes dos ingredientes sem stock suficiente (lista vazia se o registo foi bem sucedido)
      */
-    public boolean registar_Ingredientes_Utilizados_Proposta(String idRestaurante, String codProposta) {
+    public List<String> registar_Ingredientes_Utilizados_Proposta(String idRestaurante, String codProposta) {
         List<Ingrediente> ingredientesUtilizados = ssPedidos.propostaGet(codProposta).getIngredientes();
         return ssCadeia.registar_Ingredientes_Utilizados_Proposta(idRestaurante, ingredientesUtilizados);
     }
@@ -651,6 +770,26 @@ public class EatHubLNFacade implements IEatHubLN {
     public String obterIdFuncionarioTarefa_Igual_Etapa(String idRestaurante, String nomeEtapa) {
         return ssCadeia.obterIdFuncionarioTarefa_Igual_Etapa(idRestaurante, nomeEtapa);
     }
+
+    /** 
+     * Método que indica se os pedidos são confecionados em segundo plano pelo motor da cozinha
+     * (nesse caso a interface apenas acompanha o progresso)
+     * 
+     * @return true se o motor da cozinha estiver ativo
+     */
+    public boolean motorCozinhaAtivo() {
+        return MotorCozinha.getInstance().isAtivo();
+    }
+
+    /** 
+     * Método que obtém o estado da cozinha de um restaurante no motor da cozinha
+     * 
+     * @param idRestaurante Identificador do restaurante
+     * @return Linhas com o estado das estações, dos funcionários e dos pedidos em confeção
+     */
+    public List<String> obterEstadoCozinha(String idRestaurante) {
+        return MotorCozinha.getInstance().estado(idRestaurante);
+    }
     
     /**
      * Método que retorna uma coleção de faturas
@@ -661,6 +800,17 @@ public class EatHubLNFacade implements IEatHubLN {
         return ssComercial.faturaValues();
     }
 
+    /**
+     * Método que retorna uma página de faturas, por ordem de ID
+     * 
+     * @param depoisDe Identificador da última fatura da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de faturas na página
+     * @return Página de faturas
+     */
+    public Pagina<Fatura> faturaPagina(String depoisDe, int tamanho) {
+        return ssComercial.faturaPagina(depoisDe, tamanho);
+    }
+
     /** 
      * Método que remove uma fatura
      * 
@@ -690,6 +840,17 @@ public class EatHubLNFacade implements IEatHubLN {
         return ssComercial.pagamentoValues();
     }
 
+    /** 
+     * Método que retorna uma página de pagamentos, por ordem de ID
+     * 
+     * @param depoisDe Identificador do último pagamento da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de pagamentos na página
+     * @return Página de pagamentos
+     */
+    public Pagina<Pagamento> pagamentoPagina(String depoisDe, int tamanho) {
+        return ssComercial.pagamentoPagina(depoisDe, tamanho);
+    }
+
     /**
      * Método que remove um talão
      * 
@@ -709,6 +870,17 @@ public class EatHubLNFacade implements IEatHubLN {
         return ssComercial.talaoValues();
     }
 
+    /**
+     * Método que retorna uma página de talões, por ordem de ID
+     * 
+     * @param depoisDe Identificador do último talão da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de talões na página
+     * @return Página de talões
+     */
+    public Pagina<Talao> talaoPagina(String depoisDe, int tamanho) {
+        return ssComercial.talaoPagina(depoisDe, tamanho);
+    }
+
     // DAO Access Methods - ssPedidos
 
     /**
@@ -788,6 +960,17 @@ public class EatHubLNFacade implements IEatHubLN {
         return ssPedidos.pedidoValues();
     }
 
+    /** 
+     * Método que retorna uma página de pedidos, por ordem de ID
+     * 
+     * @param depoisDe Identificador do último pedido da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de pedidos na página
+     * @return Página de pedidos
+     */
+    public Pagina<Pedido> pedidoPagina(String depoisDe, int tamanho) {
+        return ssPedidos.pedidoPagina(depoisDe, tamanho);
+    }
+
     /** 
      * Método que obtém um pedido
      * 
@@ -883,7 +1066,10 @@ public class EatHubLNFacade implements IEatHubLN {
      * @return Funcionário removido
      */
     public Funcionario funcionarioRemove(String idFuncionario) {
-        return ssCadeia.funcionarioRemove(idFuncionario);
+        String idRestaurante = ssCadeia.getRestauranteDeFuncionario(idFuncionario);
+        Funcionario res = ssCadeia.funcionarioRemove(idFuncionario);
+        MotorCozinha.getInstance().atualizarEstacoes(idRestaurante);
+        return res;
     }
 
     /** 
@@ -895,6 +1081,18 @@ public class EatHubLNFacade implements IEatHubLN {
         return ssCadeia.funcionarioValues();
     }
 
+    /** 
+     * Método que retorna uma página de funcionários, por ordem de ID
+     * 
+     * @param depoisDe Identificador do último funcionário da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de funcionários na página
+     * @param idRestaurante Identificador do restaurante, ou null para toda a cadeia
+     * @return Página de funcionários
+     */
+    public Pagina<Funcionario> funcionarioPagina(String depoisDe, int tamanho, String idRestaurante) {
+        return ssCadeia.funcionarioPagina(depoisDe, tamanho, idRestaurante);
+    }
+
     /** 
      * Método que retorna uma coleção de identificadores de funcionários de um restaurante
      * 
@@ -935,22 +1133,45 @@ public class EatHubLNFacade implements IEatHubLN {
     }
 
     /** 
-     * Método que obtém o histórico de pedidos da cadeia
+     * Método que obtém o stock de um restaurante lido em cursor (o Stream deve ser fechado no fim)
+     * 
+     * @param idRestaurante Identificador do restaurante
+     * @return Stream das entradas de stock do restaurante
+     */
+    public Stream<Map.Entry<Pair<String, String>, Integer>> stockStreamRestaurante(String idRestaurante) {
+        return ssCadeia.stockStreamRestaurante(idRestaurante);
+    }
+
+    /** 
+     * Método que obtém o histórico de pedidos da cadeia lido em cursor (o Stream deve ser fechado no fim)
      * 
-     * @return Coleção do histórico de pedidos da cadeia
+     * @return Stream do histórico de pedidos da cadeia
      */
-    public Collection<Historico> getHistoricoPedidosCadeia() {
-        return ssCadeia.getHistoricoPedidosCadeia();
+    public Stream<Historico> getHistoricoPedidosCadeiaStream() {
+        return ssCadeia.getHistoricoPedidosCadeiaStream();
     }
 
     /** 
-     * Método que obtém o histórico de pedidos de um restaurante
+     * Método que obtém o histórico de pedidos de um restaurante lido em cursor (o Stream deve ser fechado no fim)
      * 
      * @param idRestaurante Identificador do restaurante
-     * @return Coleção do histórico de pedidos do restaurante
+     * @return Stream do histórico de pedidos do restaurante
+     */
+    public Stream<Historico> getHistoricoPedidosRestauranteStream(String idRestaurante) {
+        return ssCadeia.getHistoricoPedidosRestauranteStream(idRestaurante);
+    }
+
+    /** 
+     * Método que obtém uma página do histórico de pedidos, por ordem de ID
+     * 
+     * @param depoisDe Identificador do último histórico da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de históricos na página
+     * @param idRestaurante Identificador do restaurante, ou null para toda a cadeia
+     * @param desde Data mínima de finalização (formato "YYYY-MM-DD"), ou null/vazio para todas
+     * @return Página do histórico de pedidos
      */
-    public Collection<Historico> getHistoricoPedidosRestaurante(String idRestaurante) {
-        return ssCadeia.getHistoricoPedidosRestaurante(idRestaurante);
+    public Pagina<Historico> getHistoricoPedidosPagina(String depoisDe, int tamanho, String idRestaurante, String desde) {
+        return ssCadeia.getHistoricoPedidosPagina(depoisDe, tamanho, idRestaurante, desde);
     }
 
     /** 
@@ -963,6 +1184,15 @@ public class EatHubLNFacade implements IEatHubLN {
         return ssCadeia.remover_historico_pedidos(idHistorico);
     }
 
+    /** 
+     * Método que reconstrói os agregados diários de estatísticas
+     * 
+     * @return Número de agregados reconstruídos
+     */
+    public int reconstruir_estatisticas() {
+        return ssCadeia.reconstruir_estatisticas();
+    }
+
     /** 
      * Método que lista os ingredientes de uma proposta
      * 
@@ -974,28 +1204,32 @@ public class EatHubLNFacade implements IEatHubLN {
     }
 
     /** 
-     * Método que altera os ingredientes de uma proposta num pedido
+     * Método que altera os ingredientes de uma proposta num pedido pendente
      * 
-     * @param pedido Pedido a alterar
+     * @param codPedido Código do pedido a alterar
+     * @param idRestaurante Identificador do restaurante
      * @param codProposta Código da proposta
      * @param lista Lista de ingredientes a adicionar ou remover
      * @param adicionar true para adicionar ingredientes, false para remover
+     * @throws PedidoNaoExisteException Exceção lançada caso o pedido não exista
      */
-    public void alterarIngredientesProposta(Pedido pedido, String codProposta, List<String> lista, boolean adicionar) {
-        ssPedidos.alterarIngredientesProposta(pedido, codProposta, lista, adicionar);
+    public void alterarIngredientesProposta(String codPedido, String idRestaurante, String codProposta, List<String> lista, boolean adicionar) throws PedidoNaoExisteException {
+        ssPedidos.alterarIngredientesProposta(codPedido, idRestaurante, codProposta, lista, adicionar);
     }
 
     /** 
-     * Método que altera os ingredientes de uma proposta num menu de um pedido
+     * Método que altera os ingredientes de uma proposta num menu de um pedido pendente
      * 
-     * @param pedido Pedido a alterar
+     * @param codPedido Código do pedido a alterar
+     * @param idRestaurante Identificador do restaurante
      * @param codMenu Código do menu
      * @param codProposta Código da proposta
      * @param lista Lista de ingredientes a adicionar ou remover
      * @param adicionar true para adicionar ingredientes, false para remover
+     * @throws PedidoNaoExisteException Exceção lançada caso o pedido não exista
      */
-    public void alterarIngredientesPropostaMenu(Pedido pedido, String codMenu, String codProposta, List<String> lista, boolean adicionar) {
-        ssPedidos.alterarIngredientesPropostaMenu(pedido, codMenu, codProposta, lista, adicionar);
+    public void alterarIngredientesPropostaMenu(String codPedido, String idRestaurante, String codMenu, String codProposta, List<String> lista, boolean adicionar) throws PedidoNaoExisteException {
+        ssPedidos.alterarIngredientesPropostaMenu(codPedido, idRestaurante, codMenu, codProposta, lista, adicionar);
     }
 
     /** 
@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.stream.Stream;
 
 import eathubLN.ssCadeia.*;
 import eathubLN.ssComercial.*;
@@ -35,6 +36,10 @@ public interface IEatHubLN {
 
     public void regista_nota(String nota, String codPedido, String idRestaurante) throws PedidoNaoExisteException;
 
+    public void adicionar_menu_pedido(String codMenu, String codPedido, String idRestaurante) throws PedidoNaoExisteException;
+
+    public void adicionar_proposta_pedido(String codProposta, String codPedido, String idRestaurante) throws PedidoNaoExisteException;
+
     public void registar_tipo_pedido(String tipo, String codPedido, String idRestaurante) throws PedidoNaoExisteException;
 
     public void cancelar_pedido(String codPedido, String idRestaurante);
@@ -49,6 +54,8 @@ public interface IEatHubLN {
 
     public Talao gera_talao(String codPedido);
 
+    public Pair<Fatura, Talao> finalizar_pagamento(double valor, String codPedido, String metodoPagamento, String idRestaurante) throws PedidoNaoExisteException;
+
     public void registar_contribuinte_Pedido(int nc, String codPedido, String idRestaurante) throws PedidoNaoExisteException;
 
     public Estatistica obter_estatisticas_restaurante(String idRestaurante, String periodo);
@@ -115,10 +122,16 @@ public interface IEatHubLN {
 
     public String obterIdFuncionarioTarefa_Igual_Etapa(String idRestaurante, String nomeEtapa);
 
+    public boolean motorCozinhaAtivo();
+
+    public List<String> obterEstadoCozinha(String idRestaurante);
+
     public ProgressoPedido obterProgressoAnteriorAtrasado(String idRestaurante, String idPedido);
 
     public Collection<Fatura> faturaValues();
 
+    public Pagina<Fatura> faturaPagina(String depoisDe, int tamanho);
+
     public Fatura faturaRemove(String idFatura);
 
     public Funcionario funcionarioGet(String idFuncionario);
@@ -127,6 +140,8 @@ public interface IEatHubLN {
 
     public Collection<Funcionario> funcionarioValues();
 
+    public Pagina<Funcionario> funcionarioPagina(String depoisDe, int tamanho, String idRestaurante);
+
     public Collection<String> funcionarioGetIdsFuncionariosRestaurante(String idRestaurante);
 
     public Menu menuRemove(String codMenu);
@@ -143,10 +158,14 @@ public interface IEatHubLN {
 
     public Collection<Pagamento> pagamentoValues();
 
+    public Pagina<Pagamento> pagamentoPagina(String depoisDe, int tamanho);
+
     public Pedido pedidoRemove(String idPedido);
 
     public Collection<Pedido> pedidoValues();
 
+    public Pagina<Pedido> pedidoPagina(String depoisDe, int tamanho);
+
     public Pedido pedidoGet(String idPedido);
 
     public void propostaAddAlergenio(String alergenio);
@@ -169,21 +188,29 @@ public interface IEatHubLN {
 
     public Set<Entry<Pair<String, String>, Integer>> stockEntrySetRestaurante(String idRestaurante);
 
+    public Stream<Entry<Pair<String, String>, Integer>> stockStreamRestaurante(String idRestaurante);
+
     public Talao talaoRemove(String idTalao);
 
     public Collection<Talao> talaoValues();
 
-    public Collection<Historico> getHistoricoPedidosCadeia();
+    public Pagina<Talao> talaoPagina(String depoisDe, int tamanho);
 
-    public Collection<Historico> getHistoricoPedidosRestaurante(String idRestaurante);
+    public Stream<Historico> getHistoricoPedidosCadeiaStream();
+
+    public Stream<Historico> getHistoricoPedidosRestauranteStream(String idRestaurante);
+
+    public Pagina<Historico> getHistoricoPedidosPagina(String depoisDe, int tamanho, String idRestaurante, String desde);
 
     public Historico remover_historico_pedidos(String idHistorico);
 
+    public int reconstruir_estatisticas();
+
     public boolean ingredienteExiste(String nomeIngrediente);
 
     public Menu menuGet(String codMenu);
 
-    public boolean registar_Ingredientes_Utilizados_Proposta(String idRestaurante, String codProposta);
+    public List<String> registar_Ingredientes_Utilizados_Proposta(String idRestaurante, String codProposta);
 
     public String getChefeRestaurante(String idRestaurante);
     
@@ -195,9 +222,9 @@ public interface IEatHubLN {
 
     public String listPropostaIngredientes(String codProposta);
 
-    public void alterarIngredientesProposta(Pedido pedido, String codProposta, List<String> lista, boolean adicionar);
+    public void alterarIngredientesProposta(String codPedido, String idRestaurante, String codProposta, List<String> lista, boolean adicionar) throws PedidoNaoExisteException;
 
-    public void alterarIngredientesPropostaMenu(Pedido pedido, String codMenu, String codProposta, List<String> lista, boolean adicionar);
+    public void alterarIngredientesPropostaMenu(String codPedido, String idRestaurante, String codMenu, String codProposta, List<String> lista, boolean adicionar) throws PedidoNaoExisteException;
 
     public String listMenuPropostas(String codMenu);
     
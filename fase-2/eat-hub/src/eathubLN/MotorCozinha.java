@@ -0,0 +1,579 @@
+package eathubLN;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import eathubDL.DAOconfig;
+import eathubLN.ssCadeia.ISSCadeia;
+import eathubLN.ssPedidos.ISSPedidos;
+import eathubLN.ssPedidos.Ingrediente;
+import eathubLN.ssPedidos.ProgressoPedido;
+import eathubLN.ssPedidos.PropostaEtapa;
+
+/**
+ * Motor da cozinha: confeciona em segundo plano os pedidos da fila de espera de cada restaurante.
+ *
+ * Cada restaurante tem uma estação por tarefa (fila de etapas à espera) e um trabalhador por
+ * funcionário, que retira etapas da estação da sua tarefa. As etapas de um pedido são feitas por
+ * ordem (no máximo uma etapa de cada pedido numa estação), mas as etapas de pedidos diferentes
+ * correm em paralelo nas várias estações, pelo que o número de pedidos em confeção ao mesmo
+ * tempo é o número de funcionários do restaurante. Quando um pedido termina, o seguinte da fila
+ * entra em confeção; a fila é também consultada periodicamente.
+ *
+ * O progresso de cada pedido em confeção fica no SSPedidosFacade (e no DiarioCozinha, se estiver
+ * ativo), pelo que os pedidos interrompidos por um encerramento são retomados no arranque seguinte.
+ * A interface apenas consulta o estado (estado).
+ *
+ * O lock de cada cozinha protege apenas as suas estações, trabalhadores e contadores: nunca é
+ * mantido durante as chamadas ao SSPedidosFacade ou ao SSCadeiaFacade (que obtêm os seus próprios
+ * locks e acedem à base de dados).
+ *
+ * Implementa o padrão Singleton.
+ */
+public class MotorCozinha {
+
+    /** Etapa de um pedido à espera numa estação ou em execução por um trabalhador */
+    private static final class Trabalho {
+        private final ProgressoPedido progresso;
+        private final PropostaEtapa etapa;
+
+        private Trabalho(ProgressoPedido progresso, PropostaEtapa etapa) {
+            this.progresso = progresso;
+            this.etapa = etapa;
+        }
+
+        private String getCodPedido() {
+            return this.progresso.getPedido().getCodPedido();
+        }
+    }
+
+    /** Estado da cozinha de um restaurante (protegido pelo lock do próprio objeto) */
+    private static final class Cozinha {
+        private final String idRestaurante;
+        /** Estações: tarefa (em minúsculas) -> etapas à espera */
+        private final Map<String, BlockingQueue<Trabalho>> estacoes = new HashMap<>();
+        /** Trabalhadores: id do funcionário -> trabalhador */
+        private final Map<String, Trabalhador> trabalhadores = new LinkedHashMap<>();
+        /** Etapas sem estação (nenhum funcionário com a tarefa): código do pedido -> etapa */
+        private final Map<String, Trabalho> bloqueados = new LinkedHashMap<>();
+        /** Eventos recentes, do mais antigo para o mais recente */
+        private final Deque<String> eventos = new ArrayDeque<>();
+        /** Número de pedidos em confeção */
+        private int ativos;
+
+        private Cozinha(String idRestaurante) {
+            this.idRestaurante = idRestaurante;
+        }
+    }
+
+    /** Instância única da classe */
+    private static MotorCozinha singleton = null;
+
+    /** Subsistema de pedidos (fila de espera e progresso dos pedidos em confeção) */
+    private ISSPedidos ssPedidos;
+
+    /** Subsistema da cadeia (funcionários, stock e histórico) */
+    private ISSCadeia ssCadeia;
+
+    /** Cozinha de cada restaurante */
+    private final Map<String, Cozinha> cozinhas;
+
+    /** Threads dos trabalhadores */
+    private ExecutorService trabalhadores;
+
+    /** Consulta periódica das filas de espera */
+    private ScheduledExecutorService agendador;
+
+    /** Duração (milissegundos) de cada etapa */
+    private final long duracaoEtapa;
+
+    /** Indica se o motor está ativo */
+    private volatile boolean ativo;
+
+    /**
+     * Construtor privado para evitar instanciação externa
+     */
+    private MotorCozinha() {
+        this.cozinhas = new HashMap<>();
+        this.duracaoEtapa = DAOconfig.MOTOR_COZINHA_DURACAO_ETAPA;
+        this.ativo = false;
+    }
+
+    /**
+     * Método que devolve a instância única da classe
+     *
+     * @return Instância única da classe
+     */
+    public static synchronized MotorCozinha getInstance() {
+        if (singleton == null) {
+            singleton = new MotorCozinha();
+        }
+        return singleton;
+    }
+
+    /**
+     * Método que, se o modo estiver configurado, cria as estações de todos os restaurantes, retoma os
+     * pedidos que estavam em confeção e começa a confecionar os pedidos da fila
+     *
+     * @param ssPedidos Subsistema de pedidos
+     * @param ssCadeia Subsistema da cadeia
+     */
+    public synchronized void iniciar(ISSPedidos ssPedidos, ISSCadeia ssCadeia) {
+        if (!DAOconfig.MOTOR_COZINHA || this.ativo) {
+            return;
+        }
+        this.ssPedidos = ssPedidos;
+        this.ssCadeia = ssCadeia;
+        this.trabalhadores = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "eathub-cozinha");
+            t.setDaemon(true);
+            return t;
+        });
+        this.agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "eathub-cozinha-fila");
+            t.setDaemon(true);
+            return t;
+        });
+        this.ativo = true;
+
+        for (String idRestaurante : ssCadeia.obter_IDs_restaurantes()) {
+            Cozinha cozinha = this.cozinha(idRestaurante);
+            Collection<ProgressoPedido> retomados = ssPedidos.obterPedidosEmConfecao(idRestaurante);
+            synchronized (cozinha) {
+                cozinha.ativos = retomados.size();
+            }
+            this.atualizarEstacoes(idRestaurante);
+            for (ProgressoPedido progresso : retomados) {
+                synchronized (cozinha) {
+                    this.registarEvento(cozinha, "Pedido " + progresso.getPedido().getCodPedido() + " retomado.");
+                }
+                this.despachar(cozinha, progresso);
+            }
+        }
+        this.agendador.scheduleWithFixedDelay(this::consultarFilas, DAOconfig.MOTOR_COZINHA_INTERVALO_FILA,
+                                              DAOconfig.MOTOR_COZINHA_INTERVALO_FILA, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Método que indica se o motor está ativo
+     *
+     * @return true se os pedidos são confecionados pelo motor
+     */
+    public boolean isAtivo() {
+        return this.ativo;
+    }
+
+    /**
+     * Método que para o motor, esperando que os trabalhadores saiam. As etapas em curso não são
+     * registadas e os pedidos em confeção ficam no SSPedidosFacade, de onde são retomados no
+     * próximo arranque.
+     */
+    public synchronized void encerrar() {
+        if (!this.ativo) {
+            return;
+        }
+        this.ativo = false;
+        this.agendador.shutdown();
+        this.trabalhadores.shutdown();
+        try {
+            long espera = this.duracaoEtapa + DAOconfig.MOTOR_COZINHA_INTERVALO_FILA;
+            this.agendador.awaitTermination(espera, TimeUnit.MILLISECONDS);
+            this.trabalhadores.awaitTermination(espera, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Método que acerta as estações e os trabalhadores de um restaurante com os seus funcionários
+     * atuais (chamado quando um restaurante é criado ou os seus funcionários mudam)
+     *
+     * @param idRestaurante Id do restaurante
+     */
+    public void atualizarEstacoes(String idRestaurante) {
+        if (!this.ativo || idRestaurante == null) {
+            return;
+        }
+        Map<String, List<String>> porTarefa = this.ssCadeia.obterFuncionariosPorTarefa(idRestaurante);
+        Map<String, String> tarefaDe = new HashMap<>();
+        for (Map.Entry<String, List<String>> e : porTarefa.entrySet()) {
+            for (String idFuncionario : e.getValue()) {
+                tarefaDe.put(idFuncionario, e.getKey());
+            }
+        }
+        Cozinha cozinha = this.cozinha(idRestaurante);
+        synchronized (cozinha) {
+            // Trabalhadores que saíram ou mudaram de tarefa
+            Iterator<Trabalhador> it = cozinha.trabalhadores.values().iterator();
+            while (it.hasNext()) {
+                Trabalhador t = it.next();
+                if (!t.tarefa.equals(tarefaDe.get(t.idFuncionario))) {
+                    t.parar();
+                    it.remove();
+                }
+            }
+            // Novos trabalhadores (e estações das novas tarefas)
+            for (Map.Entry<String, String> e : tarefaDe.entrySet()) {
+                if (!cozinha.trabalhadores.containsKey(e.getKey())) {
+                    BlockingQueue<Trabalho> estacao = cozinha.estacoes.computeIfAbsent(e.getValue(), k -> new LinkedBlockingQueue<>());
+                    Trabalhador t = new Trabalhador(cozinha, e.getKey(), e.getValue(), estacao);
+                    cozinha.trabalhadores.put(e.getKey(), t);
+                    this.trabalhadores.execute(t);
+                }
+            }
+            // Estações sem trabalhadores: as etapas à espera ficam bloqueadas
+            Iterator<Map.Entry<String, BlockingQueue<Trabalho>>> estacoes = cozinha.estacoes.entrySet().iterator();
+            while (estacoes.hasNext()) {
+                Map.Entry<String, BlockingQueue<Trabalho>> e = estacoes.next();
+                if (!porTarefa.containsKey(e.getKey())) {
+                    for (Trabalho t : e.getValue()) {
+                        cozinha.bloqueados.put(t.getCodPedido(), t);
+                    }
+                    estacoes.remove();
+                }
+            }
+            // Etapas bloqueadas que já têm estação
+            Iterator<Trabalho> bloqueados = cozinha.bloqueados.values().iterator();
+            while (bloqueados.hasNext()) {
+                Trabalho t = bloqueados.next();
+                BlockingQueue<Trabalho> estacao = cozinha.estacoes.get(t.etapa.getNomeEtapa().toLowerCase());
+                if (estacao != null) {
+                    estacao.add(t);
+                    bloqueados.remove();
+                }
+            }
+        }
+        this.admitir(cozinha);
+    }
+
+    /**
+     * Método que avisa o motor de que um restaurante tem pedidos novos na fila de espera
+     *
+     * @param idRestaurante Id do restaurante
+     */
+    public void notificar(String idRestaurante) {
+        if (!this.ativo) {
+            return;
+        }
+        this.admitir(this.cozinha(idRestaurante));
+    }
+
+    /**
+     * Método que devolve o estado da cozinha de um restaurante: estações, trabalhadores, pedidos em
+     * confeção, etapas sem funcionário e eventos recentes
+     *
+     * @param idRestaurante Id do restaurante
+     * @return Linhas de texto com o estado da cozinha
+     */
+    public List<String> estado(String idRestaurante) {
+        List<String> res = new ArrayList<>();
+        if (!this.ativo) {
+            return res;
+        }
+        Cozinha cozinha = this.cozinha(idRestaurante);
+        Collection<ProgressoPedido> emConfecao = this.ssPedidos.obterPedidosEmConfecao(idRestaurante);
+        synchronized (cozinha) {
+            for (Map.Entry<String, BlockingQueue<Trabalho>> e : cozinha.estacoes.entrySet()) {
+                res.add("Estação " + e.getKey() + ": " + e.getValue().size() + " etapa(s) em espera");
+            }
+            for (Trabalhador t : cozinha.trabalhadores.values()) {
+                Trabalho atual = t.atual;
+                res.add("Funcionário " + t.idFuncionario + " (" + t.tarefa + "): "
+                        + (atual == null ? "livre" : descrever(atual)));
+            }
+            for (Trabalho t : cozinha.bloqueados.values()) {
+                res.add("Sem funcionário para a etapa " + t.etapa.getNomeEtapa() + " do pedido " + t.getCodPedido());
+            }
+            for (ProgressoPedido p : emConfecao) {
+                res.add("Pedido em confeção: " + p.getPedido().getCodPedido());
+            }
+            for (String evento : cozinha.eventos) {
+                res.add(evento);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Método que devolve (criando se necessário) a cozinha de um restaurante
+     *
+     * @param idRestaurante Id do restaurante
+     * @return Cozinha do restaurante
+     */
+    private Cozinha cozinha(String idRestaurante) {
+        synchronized (this.cozinhas) {
+            return this.cozinhas.computeIfAbsent(idRestaurante, Cozinha::new);
+        }
+    }
+
+    /**
+     * Método que admite pedidos da fila de espera enquanto houver menos pedidos em confeção do que
+     * trabalhadores (chamado sem o lock da cozinha). O lugar do pedido é reservado antes de o
+     * retirar da fila, para que admissões concorrentes não excedam o número de trabalhadores.
+     *
+     * @param cozinha Cozinha do restaurante
+     */
+    private void admitir(Cozinha cozinha) {
+        while (this.ativo) {
+            synchronized (cozinha) {
+                if (cozinha.ativos >= cozinha.trabalhadores.size()) {
+                    return;
+                }
+                cozinha.ativos++;
+            }
+            ProgressoPedido progresso = null;
+            try {
+                progresso = this.ssPedidos.iniciarConfecao(cozinha.idRestaurante);
+            } finally {
+                if (progresso == null) {
+                    synchronized (cozinha) {
+                        cozinha.ativos--;
+                    }
+                }
+            }
+            if (progresso == null) {
+                return;
+            }
+            synchronized (cozinha) {
+                this.registarEvento(cozinha, "Pedido " + progresso.getPedido().getCodPedido() + " entrou em confeção.");
+            }
+            this.despachar(cozinha, progresso);
+        }
+    }
+
+    /**
+     * Método que coloca a próxima etapa de um pedido na estação da sua tarefa, ou conclui o pedido
+     * se já não tiver etapas (chamado sem o lock da cozinha). No início de cada proposta, os
+     * ingredientes em falta no stock são repostos, como no processamento manual.
+     *
+     * @param cozinha Cozinha do restaurante
+     * @param progresso Progresso do pedido
+     */
+    private void despachar(Cozinha cozinha, ProgressoPedido progresso) {
+        String codPedido = progresso.getPedido().getCodPedido();
+        PropostaEtapa etapa = progresso.obterProximaPropostaParaConfecionar();
+        if (etapa == null) {
+            this.ssPedidos.terminarConfecao(cozinha.idRestaurante, codPedido);
+            this.ssCadeia.criar_Historico(progresso.getPedido(), cozinha.idRestaurante);
+            synchronized (cozinha) {
+                cozinha.ativos--;
+                this.registarEvento(cozinha, "Pedido " + codPedido + " finalizado e prestes a ser entregue.");
+            }
+            return;
+        }
+        List<String> repostos = null;
+        if (etapa.getIndiceEtapa() == 0) {
+            List<String> emFalta = this.ssCadeia.verificaIngredientesEmFaltaRestaurante(
+                cozinha.idRestaurante, this.ssPedidos.propostaGet(etapa.getCodProposta()).getIngredientes());
+            if (emFalta != null && !emFalta.isEmpty()) {
+                for (String s : emFalta) {
+                    this.ssCadeia.adicionar_ingrediente_stock_restaurante(cozinha.idRestaurante, s, 5);
+                }
+                repostos = emFalta;
+            }
+        }
+        Trabalho trabalho = new Trabalho(progresso, etapa);
+        synchronized (cozinha) {
+            if (repostos != null) {
+                this.registarEvento(cozinha, "Pedido " + codPedido + ": ingredientes repostos " + repostos + ".");
+            }
+            BlockingQueue<Trabalho> estacao = cozinha.estacoes.get(etapa.getNomeEtapa().toLowerCase());
+            if (estacao == null) {
+                cozinha.bloqueados.put(codPedido, trabalho);
+                this.registarEvento(cozinha, "Pedido " + codPedido + ": não há funcionário para a etapa " + etapa.getNomeEtapa() + ".");
+            } else {
+                estacao.add(trabalho);
+            }
+        }
+    }
+
+    /**
+     * Método que retira um pedido de confeção sem o concluir (chamado sem o lock da cozinha)
+     *
+     * @param cozinha Cozinha do restaurante
+     * @param codPedido Código do pedido
+     * @param motivo Motivo, para o registo de eventos
+     */
+    private void descartar(Cozinha cozinha, String codPedido, String motivo) {
+        this.ssPedidos.terminarConfecao(cozinha.idRestaurante, codPedido);
+        synchronized (cozinha) {
+            cozinha.ativos--;
+            this.registarEvento(cozinha, "Pedido " + codPedido + " eliminado da confeção: " + motivo);
+        }
+    }
+
+    /**
+     * Método que trata o fim de uma etapa: avança o progresso do pedido, regista os ingredientes
+     * utilizados se a proposta ficou completa e despacha a etapa seguinte
+     *
+     * @param cozinha Cozinha do restaurante
+     * @param trabalho Etapa concluída
+     */
+    private void concluirEtapa(Cozinha cozinha, Trabalho trabalho) {
+        String codPedido = trabalho.getCodPedido();
+        PropostaEtapa etapa = trabalho.etapa;
+        String motivo = null;
+        try {
+            if (!this.ssPedidos.avancarConfecao(cozinha.idRestaurante, codPedido, etapa)) {
+                motivo = "erro ao processar a etapa " + etapa.getNomeEtapa() + ".";
+            } else if (trabalho.progresso.isPropostaCompleta(etapa.getCodProposta(), etapa.getCodMenu())) {
+                List<Ingrediente> ingredientes = this.ssPedidos.propostaGet(etapa.getCodProposta()).getIngredientes();
+                List<String> emFalta = this.ssCadeia.registar_Ingredientes_Utilizados_Proposta(cozinha.idRestaurante, ingredientes);
+                if (!emFalta.isEmpty()) {
+                    // Outros pedidos em confeção gastaram o stock verificado no início da proposta
+                    for (String s : emFalta) {
+                        this.ssCadeia.adicionar_ingrediente_stock_restaurante(cozinha.idRestaurante, s, 5);
+                    }
+                    emFalta = this.ssCadeia.registar_Ingredientes_Utilizados_Proposta(cozinha.idRestaurante, ingredientes);
+                }
+                if (!emFalta.isEmpty()) {
+                    motivo = "ingredientes em falta " + emFalta + ".";
+                }
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            motivo = e.getMessage();
+        }
+        if (motivo != null) {
+            this.descartar(cozinha, codPedido, motivo);
+        } else {
+            this.despachar(cozinha, trabalho.progresso);
+        }
+        this.admitir(cozinha);
+    }
+
+    /**
+     * Método que consulta periodicamente as filas de espera de todos os restaurantes
+     */
+    private void consultarFilas() {
+        List<Cozinha> todas;
+        synchronized (this.cozinhas) {
+            todas = new ArrayList<>(this.cozinhas.values());
+        }
+        for (Cozinha cozinha : todas) {
+            try {
+                this.admitir(cozinha);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Método que acrescenta um evento ao registo de eventos recentes (chamado com o lock da cozinha)
+     *
+     * @param cozinha Cozinha do restaurante
+     * @param evento Descrição do evento
+     */
+    private void registarEvento(Cozinha cozinha, String evento) {
+        cozinha.eventos.addLast(evento);
+        while (cozinha.eventos.size() > DAOconfig.MOTOR_COZINHA_EVENTOS) {
+            cozinha.eventos.removeFirst();
+        }
+    }
+
+    /**
+     * Método que descreve uma etapa em curso
+     *
+     * @param trabalho Etapa
+     * @return Descrição da etapa
+     */
+    private static String descrever(Trabalho trabalho) {
+        PropostaEtapa etapa = trabalho.etapa;
+        return (etapa.getIndiceEtapa() + 1) + "º etapa (" + etapa.getNomeEtapa() + ") da proposta " + etapa.getCodProposta()
+               + (etapa.getCodMenu() == null ? "" : " do menu " + etapa.getCodMenu())
+               + " do pedido " + trabalho.getCodPedido();
+    }
+
+    /** Trabalhador de uma estação: um funcionário que executa as etapas da sua tarefa */
+    private final class Trabalhador implements Runnable {
+        private final Cozinha cozinha;
+        private final String idFuncionario;
+        private final String tarefa;
+        private final BlockingQueue<Trabalho> estacao;
+        /** Etapa em execução, ou null se o trabalhador estiver livre */
+        private volatile Trabalho atual;
+        /** Indica se o trabalhador foi retirado da estação */
+        private volatile boolean parado;
+
+        private Trabalhador(Cozinha cozinha, String idFuncionario, String tarefa, BlockingQueue<Trabalho> estacao) {
+            this.cozinha = cozinha;
+            this.idFuncionario = idFuncionario;
+            this.tarefa = tarefa;
+            this.estacao = estacao;
+        }
+
+        /**
+         * Método que retira o trabalhador da estação; a etapa em curso é concluída
+         * (chamado com o lock da cozinha)
+         */
+        private void parar() {
+            this.parado = true;
+        }
+
+        /**
+         * Método que devolve à estação uma etapa que o trabalhador já não vai executar
+         * (fica bloqueada se a estação deixou de existir)
+         *
+         * @param trabalho Etapa
+         */
+        private void devolver(Trabalho trabalho) {
+            synchronized (this.cozinha) {
+                BlockingQueue<Trabalho> atual = this.cozinha.estacoes.get(this.tarefa);
+                if (atual != null) {
+                    atual.add(trabalho);
+                } else {
+                    this.cozinha.bloqueados.put(trabalho.getCodPedido(), trabalho);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            // As threads não são interrompidas: uma interrupção durante a escrita no diário ou na
+            // base de dados embebida fecharia os seus canais
+            while (ativo && !this.parado) {
+                Trabalho trabalho;
+                try {
+                    trabalho = this.estacao.poll(DAOconfig.MOTOR_COZINHA_INTERVALO_FILA, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (trabalho == null) {
+                    continue;
+                }
+                if (this.parado) {
+                    this.devolver(trabalho);
+                    return;
+                }
+                this.atual = trabalho;
+                long inicio = System.currentTimeMillis();
+                try {
+                    Thread.sleep(duracaoEtapa);
+                } catch (InterruptedException e) {
+                    this.atual = null;
+                    return;
+                }
+                this.atual = null;
+                ssCadeia.registarTempoOcupado(this.idFuncionario, System.currentTimeMillis() - inicio);
+                if (!ativo) {
+                    return; // A etapa volta a ser feita quando o pedido for retomado
+                }
+                concluirEtapa(this.cozinha, trabalho);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package eathubLN;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página de uma listagem paginada por chave (keyset).
+ *
+ * Cada página é obtida com uma consulta do tipo "chave > última chave da
+ * página anterior ORDER BY chave LIMIT tamanho + 1", pelo que o custo de obter
+ * uma página não depende da posição na listagem. A linha extra só serve para
+ * saber se existe uma página seguinte e não é devolvida.
+ *
+ * @param <T> Tipo dos elementos da página
+ */
+public class Pagina<T> {
+
+    /** Elementos da página, pela ordem da chave */
+    private final List<T> itens;
+
+    /** Chave do último elemento da página (a usar para pedir a página seguinte) */
+    private final String ultimaChave;
+
+    /** Indica se existe uma página seguinte */
+    private final boolean temMais;
+
+    /**
+     * Construtor parametrizado de uma página
+     *
+     * @param itens Elementos da página
+     * @param ultimaChave Chave do último elemento da página, ou null se a página estiver vazia
+     * @param temMais true se existir uma página seguinte
+     */
+    public Pagina(List<T> itens, String ultimaChave, boolean temMais) {
+        this.itens = new ArrayList<>(itens);
+        this.ultimaChave = ultimaChave;
+        this.temMais = temMais;
+    }
+
+    /**
+     * Método que constrói uma página a partir das linhas lidas com LIMIT tamanho + 1
+     *
+     * @param <T> Tipo dos elementos da página
+     * @param lidos Elementos lidos (no máximo tamanho + 1)
+     * @param tamanho Tamanho da página
+     * @param chave Função que devolve a chave de um elemento
+     * @return Página construída
+     */
+    public static <T> Pagina<T> de(List<T> lidos, int tamanho, Function<T, String> chave) {
+        boolean temMais = lidos.size() > tamanho;
+        List<T> itens = temMais ? lidos.subList(0, tamanho) : lidos;
+        String ultimaChave = itens.isEmpty() ? null : chave.apply(itens.get(itens.size() - 1));
+        return new Pagina<>(itens, ultimaChave, temMais);
+    }
+
+    /**
+     * Método que devolve os elementos da página
+     *
+     * @return Lista dos elementos da página
+     */
+    public List<T> getItens() {
+        return new ArrayList<>(this.itens);
+    }
+
+    /**
+     * Método que devolve a chave do último elemento da página
+     *
+     * @return Chave do último elemento, ou null se a página estiver vazia
+     */
+    public String getUltimaChave() {
+        return this.ultimaChave;
+    }
+
+    /**
+     * Método que indica se existe uma página seguinte
+     *
+     * @return true se existir uma página seguinte, false caso contrário
+     */
+    public boolean temMais() {
+        return this.temMais;
+    }
+
+    /**
+     * Método que indica se a página está vazia
+     *
+     * @return true se a página não tiver elementos, false caso contrário
+     */
+    public boolean isVazia() {
+        return this.itens.isEmpty();
+    }
+}
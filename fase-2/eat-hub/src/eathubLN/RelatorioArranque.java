@@ -0,0 +1,145 @@
+package eathubLN;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import eathubDL.DAOconfig;
+
+/**
+ * Relatório dos tempos das fases do arranque do EatHub.
+ *
+ * Cada fase é medida com medir/medirPasso e registada com a thread onde correu, pelo
+ * que as fases executadas em paralelo aparecem sobrepostas no relatório (a soma
+ * das durações pode exceder o tempo total). O relatório é impresso no fim do
+ * arranque se estiver ativo em DAOconfig.RELATORIO_ARRANQUE; as fases em segundo plano
+ * que ainda não terminaram aparecem como "em curso".
+ */
+public final class RelatorioArranque {
+
+    /** Fase medida do arranque */
+    private static final class Fase {
+        private final String nome;
+        private final String thread;
+        private final long inicio;
+        private final long duracao;
+
+        private Fase(String nome, String thread, long inicio, long duracao) {
+            this.nome = nome;
+            this.thread = thread;
+            this.inicio = inicio;
+            this.duracao = duracao;
+        }
+    }
+
+    /** Instante (nanossegundos) em que o arranque começou */
+    private static final long INICIO = System.nanoTime();
+
+    /** Fases medidas, pela ordem em que terminaram */
+    private static final List<Fase> fases = new ArrayList<>();
+
+    /** Fases que começaram e ainda não terminaram (com duração -1), protegidas pelo lock de fases */
+    private static final List<Fase> emCurso = new ArrayList<>();
+
+    private RelatorioArranque() {
+    }
+
+    /**
+     * Método que executa e mede uma fase do arranque
+     *
+     * @param nome Nome da fase
+     * @param passo Trabalho da fase
+     * @return Resultado do trabalho da fase
+     */
+    public static <T> T medir(String nome, Supplier<T> passo) {
+        return medir(nome, passo, null);
+    }
+
+    /**
+     * Método que executa e mede uma fase do arranque, substituindo a fase agendada dada (se existir)
+     *
+     * @param nome Nome da fase
+     * @param passo Trabalho da fase
+     * @param agendada Fase registada por agendar, ou null
+     * @return Resultado do trabalho da fase
+     */
+    private static <T> T medir(String nome, Supplier<T> passo, Fase agendada) {
+        long inicio = System.nanoTime();
+        Fase atual = new Fase(nome, Thread.currentThread().getName(), inicio - INICIO, -1);
+        synchronized (fases) {
+            emCurso.remove(agendada);
+            emCurso.add(atual);
+        }
+        try {
+            return passo.get();
+        } finally {
+            long fim = System.nanoTime();
+            synchronized (fases) {
+                emCurso.remove(atual);
+                fases.add(new Fase(nome, atual.thread, inicio - INICIO, fim - inicio));
+            }
+        }
+    }
+
+    /**
+     * Método que executa e mede uma fase do arranque sem resultado
+     *
+     * @param nome Nome da fase
+     * @param passo Trabalho da fase
+     */
+    public static void medirPasso(String nome, Runnable passo) {
+        medir(nome, () -> {
+            passo.run();
+            return null;
+        });
+    }
+
+    /**
+     * Método que prepara uma fase para correr em segundo plano: a fase aparece logo no relatório
+     * como em curso, mesmo que ainda não tenha começado
+     *
+     * @param nome Nome da fase
+     * @param passo Trabalho da fase
+     * @return Trabalho a entregar ao executor, que mede a fase
+     */
+    public static Runnable agendar(String nome, Runnable passo) {
+        Fase agendada = new Fase(nome, "por iniciar", System.nanoTime() - INICIO, -1);
+        synchronized (fases) {
+            emCurso.add(agendada);
+        }
+        return () -> medir(nome, () -> {
+            passo.run();
+            return null;
+        }, agendada);
+    }
+
+    /**
+     * Método que devolve o relatório das fases medidas até agora
+     *
+     * @return Representação textual do relatório (uma linha por fase e o tempo total)
+     */
+    public static String relatorio() {
+        StringBuilder sb = new StringBuilder("[EatHub] Arranque:\n");
+        synchronized (fases) {
+            for (Fase f : fases) {
+                sb.append(String.format("  %-32s +%6d ms  %6d ms  (%s)%n",
+                                        f.nome, f.inicio / 1_000_000, f.duracao / 1_000_000, f.thread));
+            }
+            for (Fase f : emCurso) {
+                sb.append(String.format("  %-32s +%6d ms  %9s  (%s)%n",
+                                        f.nome, f.inicio / 1_000_000, "em curso", f.thread));
+            }
+        }
+        sb.append(String.format("  %-32s  %15d ms%n", "Total", (System.nanoTime() - INICIO) / 1_000_000));
+        return sb.toString();
+    }
+
+    /**
+     * Método que imprime o relatório do arranque, se estiver ativo
+     */
+    public static void imprimir() {
+        if (DAOconfig.RELATORIO_ARRANQUE) {
+            System.err.print(relatorio());
+        }
+    }
+}
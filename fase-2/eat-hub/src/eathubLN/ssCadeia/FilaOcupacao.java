@@ -0,0 +1,194 @@
+package eathubLN.ssCadeia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Funcionários de uma tarefa de um restaurante ordenados pelo tempo ocupado: heap binário
+ * indexado pelo ID do funcionário (usado pelo IndiceTarefas).
+ *
+ * O índice (ID do funcionário -> posição no heap) permite atualizar o tempo ocupado de um
+ * funcionário em O(log n). Funcionários com o mesmo tempo ocupado ficam pela ordem em que
+ * foram acrescentados. Não é sincronizada: o IndiceTarefas protege todos os acessos.
+ */
+class FilaOcupacao {
+
+    /** Capacidade inicial dos arrays do heap */
+    private static final int CAPACIDADE_INICIAL = 8;
+
+    /** IDs dos funcionários, organizados em heap */
+    private String[] ids;
+
+    /** Tempo ocupado de cada posição do heap */
+    private double[] ocupacoes;
+
+    /** Ordem de entrada de cada posição do heap (desempate) */
+    private long[] entradas;
+
+    /** Posição no heap de cada funcionário */
+    private final Map<String, Integer> posicoes;
+
+    /** Número de funcionários no heap */
+    private int tamanho;
+
+    /** Ordem de entrada do próximo funcionário */
+    private long proximaEntrada;
+
+    /**
+     * Construtor de uma fila vazia
+     */
+    FilaOcupacao() {
+        this.ids = new String[CAPACIDADE_INICIAL];
+        this.ocupacoes = new double[CAPACIDADE_INICIAL];
+        this.entradas = new long[CAPACIDADE_INICIAL];
+        this.posicoes = new HashMap<>();
+        this.tamanho = 0;
+        this.proximaEntrada = 0;
+    }
+
+    /**
+     * Método que acrescenta um funcionário; se já estiver na fila, atualiza o seu tempo ocupado
+     *
+     * @param idFuncionario ID do funcionário
+     * @param ocupacao Tempo ocupado acumulado (milissegundos)
+     */
+    void adicionar(String idFuncionario, double ocupacao) {
+        if (this.atualizar(idFuncionario, ocupacao)) {
+            return;
+        }
+        if (this.tamanho == this.ids.length) {
+            int capacidade = this.ids.length * 2;
+            this.ids = Arrays.copyOf(this.ids, capacidade);
+            this.ocupacoes = Arrays.copyOf(this.ocupacoes, capacidade);
+            this.entradas = Arrays.copyOf(this.entradas, capacidade);
+        }
+        int i = this.tamanho++;
+        this.ids[i] = idFuncionario;
+        this.ocupacoes[i] = ocupacao;
+        this.entradas[i] = this.proximaEntrada++;
+        this.posicoes.put(idFuncionario, i);
+        this.subir(i);
+    }
+
+    /**
+     * Método que atualiza o tempo ocupado de um funcionário que está na fila
+     *
+     * @param idFuncionario ID do funcionário
+     * @param ocupacao Novo tempo ocupado acumulado (milissegundos)
+     * @return true se o funcionário estava na fila, false caso contrário
+     */
+    boolean atualizar(String idFuncionario, double ocupacao) {
+        Integer pos = this.posicoes.get(idFuncionario);
+        if (pos == null) {
+            return false;
+        }
+        double anterior = this.ocupacoes[pos];
+        this.ocupacoes[pos] = ocupacao;
+        if (ocupacao < anterior) {
+            this.subir(pos);
+        } else if (ocupacao > anterior) {
+            this.descer(pos);
+        }
+        return true;
+    }
+
+    /**
+     * Método que devolve o funcionário menos ocupado
+     *
+     * @return ID do funcionário, ou null se a fila estiver vazia
+     */
+    String menosOcupado() {
+        return this.tamanho == 0 ? null : this.ids[0];
+    }
+
+    /**
+     * Método que devolve uma cópia dos funcionários da fila, do menos para o mais ocupado
+     *
+     * @return Lista dos IDs dos funcionários
+     */
+    List<String> ordenados() {
+        Integer[] ordem = new Integer[this.tamanho];
+        for (int i = 0; i < this.tamanho; i++) {
+            ordem[i] = i;
+        }
+        Arrays.sort(ordem, (a, b) -> this.menor(a, b) ? -1 : (this.menor(b, a) ? 1 : 0));
+        List<String> res = new ArrayList<>(this.tamanho);
+        for (Integer i : ordem) {
+            res.add(this.ids[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Método que sobe um elemento no heap enquanto for menor que o pai
+     *
+     * @param pos Posição do elemento
+     */
+    private void subir(int pos) {
+        while (pos > 0) {
+            int pai = (pos - 1) / 2;
+            if (!this.menor(pos, pai)) {
+                return;
+            }
+            this.trocar(pos, pai);
+            pos = pai;
+        }
+    }
+
+    /**
+     * Método que desce um elemento no heap enquanto for maior que algum dos filhos
+     *
+     * @param pos Posição do elemento
+     */
+    private void descer(int pos) {
+        while (true) {
+            int filho = 2 * pos + 1;
+            if (filho >= this.tamanho) {
+                return;
+            }
+            if (filho + 1 < this.tamanho && this.menor(filho + 1, filho)) {
+                filho++;
+            }
+            if (!this.menor(filho, pos)) {
+                return;
+            }
+            this.trocar(pos, filho);
+            pos = filho;
+        }
+    }
+
+    /**
+     * Método que compara duas posições do heap (tempo ocupado e, em caso de empate, ordem de entrada)
+     *
+     * @param a Primeira posição
+     * @param b Segunda posição
+     * @return true se o funcionário em a está menos ocupado que o funcionário em b
+     */
+    private boolean menor(int a, int b) {
+        int c = Double.compare(this.ocupacoes[a], this.ocupacoes[b]);
+        return c < 0 || (c == 0 && this.entradas[a] < this.entradas[b]);
+    }
+
+    /**
+     * Método que troca duas posições do heap, atualizando o índice
+     *
+     * @param a Primeira posição
+     * @param b Segunda posição
+     */
+    private void trocar(int a, int b) {
+        String id = this.ids[a];
+        double ocupacao = this.ocupacoes[a];
+        long entrada = this.entradas[a];
+        this.ids[a] = this.ids[b];
+        this.ocupacoes[a] = this.ocupacoes[b];
+        this.entradas[a] = this.entradas[b];
+        this.posicoes.put(this.ids[a], a);
+        this.ids[b] = id;
+        this.ocupacoes[b] = ocupacao;
+        this.entradas[b] = entrada;
+        this.posicoes.put(id, b);
+    }
+}
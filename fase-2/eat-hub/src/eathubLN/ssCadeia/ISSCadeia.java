@@ -2,9 +2,12 @@ package eathubLN.ssCadeia;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.stream.Stream;
 
+import eathubLN.Pagina;
 import eathubLN.ssPedidos.Ingrediente;
 import eathubLN.ssPedidos.Pedido;
 
@@ -42,14 +45,22 @@ public interface ISSCadeia {
 
     public String getRestauranteDeFuncionario(String idFuncionario);
 
+    public Set<String> getRestaurantesDeFuncionarios(Collection<String> idsFuncionarios);
+
     public String obterIdFuncionarioTarefa_Igual_Etapa(String idRestaurante, String nomeEtapa);
 
+    public Map<String, List<String>> obterFuncionariosPorTarefa(String idRestaurante);
+
+    public void registarTempoOcupado(String idFuncionario, long duracao);
+
     public Funcionario funcionarioGet(String idFuncionario);
 
     public Funcionario funcionarioRemove(String idFuncionario);
 
     public Collection<Funcionario> funcionarioValues();
 
+    public Pagina<Funcionario> funcionarioPagina(String depoisDe, int tamanho, String idRestaurante);
+
     public Collection<String> funcionarioGetIdsFuncionariosRestaurante(String idRestaurante);
 
     public Restaurante restauranteRemove(String idRestaurante);
@@ -58,15 +69,21 @@ public interface ISSCadeia {
 
     public Set<Entry<Pair<String, String>, Integer>> stockEntrySetRestaurante(String idRestaurante);
 
-    public Collection<Historico> getHistoricoPedidosCadeia();
+    public Stream<Entry<Pair<String, String>, Integer>> stockStreamRestaurante(String idRestaurante);
 
-    public Collection<Historico> getHistoricoPedidosRestaurante(String idRestaurante);
+    public Stream<Historico> getHistoricoPedidosCadeiaStream();
+
+    public Stream<Historico> getHistoricoPedidosRestauranteStream(String idRestaurante);
+
+    public Pagina<Historico> getHistoricoPedidosPagina(String depoisDe, int tamanho, String idRestaurante, String desde);
 
     public Historico remover_historico_pedidos(String idHistorico);
 
+    public int reconstruir_estatisticas();
+
     public List<String> verificaIngredientesEmFaltaRestaurante(String idRestaurante, Collection<Ingrediente> ingredientes);
 
-    public boolean registar_Ingredientes_Utilizados_Proposta(String idRestaurante, List<Ingrediente> lista);
+    public List<String> registar_Ingredientes_Utilizados_Proposta(String idRestaurante, List<Ingrediente> lista);
 
     public String getChefeRestaurante(String idRestaurante);
 
@@ -0,0 +1,134 @@
+package eathubLN.ssCadeia;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice em memória dos funcionários de cada restaurante por tarefa.
+ *
+ * Para cada restaurante e tarefa (em minúsculas) os funcionários ficam numa FilaOcupacao
+ * ordenada pelo tempo ocupado acumulado de cada um, pelo que o funcionário menos ocupado com
+ * uma tarefa é obtido em O(1) e o registo de tempo ocupado custa O(log n). O índice de um
+ * restaurante é construído a partir da base de dados na primeira utilização e descartado
+ * quando os funcionários do restaurante mudam; o tempo ocupado de cada funcionário é mantido.
+ */
+public class IndiceTarefas {
+
+    /** Funcionários de cada restaurante: id do restaurante -> tarefa -> funcionários por tempo ocupado */
+    private final Map<String, Map<String, FilaOcupacao>> porRestaurante;
+
+    /** Fila (restaurante e tarefa) de cada funcionário indexado */
+    private final Map<String, FilaOcupacao> filaDe;
+
+    /** Tempo ocupado acumulado (milissegundos) de cada funcionário */
+    private final Map<String, Double> tempoOcupado;
+
+    /**
+     * Construtor de um índice vazio
+     */
+    public IndiceTarefas() {
+        this.porRestaurante = new HashMap<>();
+        this.filaDe = new HashMap<>();
+        this.tempoOcupado = new HashMap<>();
+    }
+
+    /**
+     * Método que verifica se o índice de um restaurante já foi construído
+     *
+     * @param idRestaurante ID do restaurante
+     * @return true se o restaurante estiver indexado
+     */
+    public synchronized boolean contem(String idRestaurante) {
+        return this.porRestaurante.containsKey(idRestaurante);
+    }
+
+    /**
+     * Método que (re)constrói o índice de um restaurante
+     *
+     * @param idRestaurante ID do restaurante
+     * @param funcionarios Funcionários do restaurante
+     */
+    public synchronized void definir(String idRestaurante, Collection<Funcionario> funcionarios) {
+        this.remover(idRestaurante);
+        Map<String, FilaOcupacao> tarefas = new HashMap<>();
+        for (Funcionario f : funcionarios) {
+            if (f == null || f.getTarefaFunc() == null) {
+                continue;
+            }
+            FilaOcupacao fila = tarefas.computeIfAbsent(f.getTarefaFunc().toLowerCase(), k -> new FilaOcupacao());
+            fila.adicionar(f.getIDFunc(), this.tempoOcupado.getOrDefault(f.getIDFunc(), 0.0));
+            this.filaDe.put(f.getIDFunc(), fila);
+        }
+        this.porRestaurante.put(idRestaurante, tarefas);
+    }
+
+    /**
+     * Método que descarta o índice de um restaurante (é reconstruído na próxima utilização)
+     *
+     * @param idRestaurante ID do restaurante
+     */
+    public synchronized void remover(String idRestaurante) {
+        Map<String, FilaOcupacao> tarefas = this.porRestaurante.remove(idRestaurante);
+        if (tarefas != null) {
+            for (FilaOcupacao fila : tarefas.values()) {
+                for (String idFuncionario : fila.ordenados()) {
+                    this.filaDe.remove(idFuncionario);
+                }
+            }
+        }
+    }
+
+    /**
+     * Método que atribui uma etapa ao funcionário menos ocupado com a tarefa dada, contando
+     * a duração prevista da etapa no seu tempo ocupado
+     *
+     * @param idRestaurante ID do restaurante
+     * @param tarefa Tarefa (nome da etapa)
+     * @param duracao Duração prevista da etapa (milissegundos)
+     * @return ID do funcionário escolhido, ou null se nenhum funcionário tiver a tarefa
+     */
+    public synchronized String atribuir(String idRestaurante, String tarefa, double duracao) {
+        Map<String, FilaOcupacao> tarefas = this.porRestaurante.get(idRestaurante);
+        FilaOcupacao fila = tarefas == null ? null : tarefas.get(tarefa.toLowerCase());
+        String idFuncionario = fila == null ? null : fila.menosOcupado();
+        if (idFuncionario != null) {
+            this.registarTempoOcupado(idFuncionario, duracao);
+        }
+        return idFuncionario;
+    }
+
+    /**
+     * Método que acrescenta tempo ocupado a um funcionário
+     *
+     * @param idFuncionario ID do funcionário
+     * @param duracao Tempo ocupado (milissegundos)
+     */
+    public synchronized void registarTempoOcupado(String idFuncionario, double duracao) {
+        double total = this.tempoOcupado.getOrDefault(idFuncionario, 0.0) + duracao;
+        this.tempoOcupado.put(idFuncionario, total);
+        FilaOcupacao fila = this.filaDe.get(idFuncionario);
+        if (fila != null) {
+            fila.atualizar(idFuncionario, total);
+        }
+    }
+
+    /**
+     * Método que devolve os funcionários de um restaurante agrupados pela sua tarefa
+     *
+     * @param idRestaurante ID do restaurante
+     * @return Mapa tarefa (em minúsculas) -> IDs dos funcionários, do menos para o mais ocupado
+     */
+    public synchronized Map<String, List<String>> funcionariosPorTarefa(String idRestaurante) {
+        Map<String, List<String>> res = new HashMap<>();
+        Map<String, FilaOcupacao> tarefas = this.porRestaurante.get(idRestaurante);
+        if (tarefas != null) {
+            for (Map.Entry<String, FilaOcupacao> e : tarefas.entrySet()) {
+                res.put(e.getKey(), new ArrayList<>(e.getValue().ordenados()));
+            }
+        }
+        return res;
+    }
+}
@@ -1,14 +1,18 @@
 package eathubLN.ssCadeia;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.ArrayList;
+import java.util.stream.Stream;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 
+import eathubDL.DAOconfig;
 import eathubDL.EstruturasDAO.FuncionarioDAO;
+import eathubLN.Pagina;
 import eathubDL.EstruturasDAO.RestauranteDAO;
 import eathubDL.EstruturasDAO.StockDAO;
 import eathubDL.EstruturasDAO.HistoricoDAO;
@@ -19,7 +23,7 @@ import eathubLN.ssPedidos.Pedido;
  * Facade do subsistema da cadeia de restaurantes
  */
 public class SSCadeiaFacade implements ISSCadeia {
-    /** Instância do gestor da cadeia */
+    /** Instância do gestor da cadeia (obtida na primeira utilização) */
     private Gestor gestor;
     /** Instância do DAO de funcionários */
     private FuncionarioDAO funcionarios;
@@ -29,6 +33,8 @@ public class SSCadeiaFacade implements ISSCadeia {
     private StockDAO stock;
     /** Instância do DAO de históricos */
     private HistoricoDAO historicos;
+    /** Índice dos funcionários de cada restaurante por tarefa e tempo ocupado */
+    private IndiceTarefas tarefas;
 
     /**
      * Construtor do Facade do subsistema da cadeia de restaurantes
@@ -38,7 +44,8 @@ public class SSCadeiaFacade implements ISSCadeia {
         this.restaurantes = RestauranteDAO.getInstance();
         this.stock = StockDAO.getInstance();
         this.historicos = HistoricoDAO.getInstance();
-        this.gestor = this.funcionarios.getGestor();
+        this.tarefas = new IndiceTarefas();
+        this.gestor = null;
     }
 
     /**
@@ -133,6 +140,7 @@ public class SSCadeiaFacade implements ISSCadeia {
                 this.funcionarios.putCompleto(novoCod, novoChefe, idRestaurante);
                 this.funcionarios.associarFuncionarioPassword(novoCod, password);
                 this.restaurantes.atualizaChefeRestaurante(idRestaurante, novoChefe.getIDFunc());
+                this.tarefas.remover(idRestaurante);
                 return novoCod;
             } else {
                 throw new IllegalArgumentException("Um chefe de restaurante deve estar associado a um restaurante.");
@@ -149,11 +157,17 @@ public class SSCadeiaFacade implements ISSCadeia {
             this.funcionarios.putCompleto(novoCod, novoGestor, idRestaurante);
             this.funcionarios.associarFuncionarioPassword(novoCod, password);
             this.gestor = novoGestor;
+            if (idRestaurante != null) {
+                this.tarefas.remover(idRestaurante);
+            }
             return novoCod;
         } else if (tipo.equalsIgnoreCase("Funcionario")) {
             Funcionario novoFunc = new Funcionario(novoCod, nome, posto, tarefa);
             this.funcionarios.putCompleto(novoCod, novoFunc, idRestaurante);
             this.funcionarios.associarFuncionarioPassword(novoCod, password);
+            if (idRestaurante != null) {
+                this.tarefas.remover(idRestaurante);
+            }
             return novoCod;
         } else {
             throw new IllegalArgumentException("Tipo de funcionário inválido.");
@@ -216,11 +230,7 @@ public class SSCadeiaFacade implements ISSCadeia {
     public boolean adicionar_ingrediente_stock_restaurante(String idRestaurante, String codIngrediente, int quantidade) {
         Restaurante r = this.restaurantes.get(idRestaurante);
         if (r != null) {
-            Integer quantidadeExistente = this.stock.get(new Pair<>(idRestaurante, codIngrediente));
-            if (quantidadeExistente == null) {
-                quantidadeExistente = 0;
-            }
-            this.stock.put(new Pair<>(idRestaurante, codIngrediente), quantidadeExistente + quantidade);
+            this.stock.repor(idRestaurante, codIngrediente, quantidade);
             return true;
         }
         return false;
@@ -237,11 +247,7 @@ public class SSCadeiaFacade implements ISSCadeia {
     public boolean remover_ingrediente_stock_restaurante(String idRestaurante, String codIngrediente, int quantidade) {
         Restaurante r = this.restaurantes.get(idRestaurante);
         if (r != null) {
-            Integer quantidadeExistente = this.stock.get(new Pair<>(idRestaurante, codIngrediente));
-            if (quantidadeExistente != null && quantidadeExistente >= quantidade) {
-                this.stock.put(new Pair<>(idRestaurante, codIngrediente), quantidadeExistente - quantidade);
-                return true;
-            }
+            return this.stock.consumir(idRestaurante, Map.of(codIngrediente, quantidade)).isEmpty();
         }
         return false;
     }
@@ -311,8 +317,16 @@ public class SSCadeiaFacade implements ISSCadeia {
      * @return ID do novo restaurante criado
      */
     public String criar_Restaurante(String nome, String chefe, List<String> funcionarios) {
+        // O chefe e os funcionários passam para o novo restaurante: os restaurantes de onde saem também mudam
+        List<String> movidos = new ArrayList<>(funcionarios);
+        movidos.add(chefe);
+        Set<String> anteriores = this.getRestaurantesDeFuncionarios(movidos);
         Restaurante novoRest = new Restaurante(this.restaurantes.generateNewId(), nome, new ChefeRestaurante(this.funcionarios.get(chefe)), funcionarios);
         this.restaurantes.put(novoRest.getIdRestaurante(), novoRest);
+        this.tarefas.remover(novoRest.getIdRestaurante());
+        for (String idRestaurante : anteriores) {
+            this.tarefas.remover(idRestaurante);
+        }
         return novoRest.getIdRestaurante();
     }
 
@@ -353,11 +367,14 @@ public class SSCadeiaFacade implements ISSCadeia {
     }
 
     /** 
-     * Método que obtém o gestor da cadeia
+     * Método que obtém o gestor da cadeia, procurando-o na base de dados na primeira utilização
      * 
-     * @return Instância do gestor
+     * @return Instância do gestor, ou null se a cadeia ainda não tiver gestor
      */
     public Gestor getGestor() {
+        if (this.gestor == null) {
+            this.gestor = this.funcionarios.getGestor();
+        }
         return this.gestor;
     }
 
@@ -380,6 +397,23 @@ public class SSCadeiaFacade implements ISSCadeia {
         return this.funcionarios.getRestauranteFuncionario(idFuncionario);
     }
 
+    /** 
+     * Método que obtém os restaurantes associados a um conjunto de funcionários
+     * 
+     * @param idsFuncionarios IDs dos funcionários
+     * @return IDs dos restaurantes a que os funcionários estão associados (sem os funcionários sem restaurante)
+     */
+    public Set<String> getRestaurantesDeFuncionarios(Collection<String> idsFuncionarios) {
+        Set<String> res = new HashSet<>();
+        for (String idFuncionario : idsFuncionarios) {
+            String idRestaurante = this.funcionarios.getRestauranteFuncionario(idFuncionario);
+            if (idRestaurante != null) {
+                res.add(idRestaurante);
+            }
+        }
+        return res;
+    }
+
     /** 
      * Método que cria um novo histórico de pedido
      * 
@@ -389,28 +423,63 @@ public class SSCadeiaFacade implements ISSCadeia {
      */
     public String criar_Historico(Pedido pedido, String idRestaurante) {
         Historico novoHistorico = new Historico(this.historicos.generateNewId(), pedido, idRestaurante);
-        this.historicos.put(novoHistorico.getIdHistorico(), novoHistorico);
+        this.historicos.adicionar(novoHistorico);
         return novoHistorico.getIdHistorico();
     }
 
     /** 
-     * Método que obtém o ID do funcionário responsável por uma determinada etapa num restaurante
+     * Método que obtém o ID do funcionário responsável por uma determinada etapa num restaurante:
+     * de entre os funcionários com a tarefa da etapa, o que tem menos tempo ocupado (a duração
+     * prevista da etapa é-lhe atribuída)
      * 
      * @param idRestaurante ID do restaurante
      * @param nomeEtapa Nome da etapa
      * @return ID do funcionário responsável pela etapa, ou null se não existir
      */
     public String obterIdFuncionarioTarefa_Igual_Etapa(String idRestaurante, String nomeEtapa) {
+        this.indexar(idRestaurante);
+        return this.tarefas.atribuir(idRestaurante, nomeEtapa, DAOconfig.MOTOR_COZINHA_DURACAO_ETAPA);
+    }
+
+    /** 
+     * Método que obtém os funcionários de um restaurante agrupados pela sua tarefa
+     * 
+     * @param idRestaurante ID do restaurante
+     * @return Mapa tarefa (em minúsculas) -> IDs dos funcionários com essa tarefa, do menos para o mais ocupado
+     *         (vazio se o restaurante não existir)
+     */
+    public Map<String, List<String>> obterFuncionariosPorTarefa(String idRestaurante) {
+        this.indexar(idRestaurante);
+        return this.tarefas.funcionariosPorTarefa(idRestaurante);
+    }
+
+    /** 
+     * Método que regista tempo ocupado de um funcionário (usado para distribuir as etapas)
+     * 
+     * @param idFuncionario ID do funcionário
+     * @param duracao Tempo ocupado em milissegundos
+     */
+    public void registarTempoOcupado(String idFuncionario, long duracao) {
+        this.tarefas.registarTempoOcupado(idFuncionario, duracao);
+    }
+
+    /** 
+     * Método que constrói o índice de tarefas de um restaurante, se ainda não existir
+     * 
+     * @param idRestaurante ID do restaurante
+     */
+    private void indexar(String idRestaurante) {
+        if (idRestaurante == null || this.tarefas.contem(idRestaurante)) {
+            return;
+        }
         Restaurante r = this.restaurantes.get(idRestaurante);
         if (r != null) {
+            List<Funcionario> funcionariosRestaurante = new ArrayList<>();
             for (String codFunc : r.getCodsFuncionarios()) {
-                Funcionario f = r.getFuncionario(codFunc);
-                if (f.getTarefaFunc().equalsIgnoreCase(nomeEtapa)) {
-                    return f.getIDFunc();
-                }
+                funcionariosRestaurante.add(r.getFuncionario(codFunc));
             }
+            this.tarefas.definir(idRestaurante, funcionariosRestaurante);
         }
-        return null;
     }
 
     // DAO Access Methods
@@ -431,7 +500,12 @@ public class SSCadeiaFacade implements ISSCadeia {
      * @return Instância do funcionário removido
      */
     public Funcionario funcionarioRemove(String idFuncionario) {
-        return this.funcionarios.remove(idFuncionario);
+        String idRestaurante = this.funcionarios.getRestauranteFuncionario(idFuncionario);
+        Funcionario res = this.funcionarios.remove(idFuncionario);
+        if (idRestaurante != null) {
+            this.tarefas.remover(idRestaurante);
+        }
+        return res;
     }
 
     /** 
@@ -443,6 +517,18 @@ public class SSCadeiaFacade implements ISSCadeia {
         return this.funcionarios.values();
     }
 
+    /** 
+     * Método que obtém uma página de funcionários, por ordem de ID
+     * 
+     * @param depoisDe ID do último funcionário da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de funcionários na página
+     * @param idRestaurante ID do restaurante, ou null para toda a cadeia
+     * @return Página de funcionários
+     */
+    public Pagina<Funcionario> funcionarioPagina(String depoisDe, int tamanho, String idRestaurante) {
+        return this.funcionarios.pagina(depoisDe, tamanho, idRestaurante);
+    }
+
     /** 
      * Método que obtém os IDs dos funcionários de um restaurante
      * 
@@ -460,7 +546,9 @@ public class SSCadeiaFacade implements ISSCadeia {
      * @return Instância do restaurante removido
      */
     public Restaurante restauranteRemove(String idRestaurante) {
-        return this.restaurantes.remove(idRestaurante);
+        Restaurante res = this.restaurantes.remove(idRestaurante);
+        this.tarefas.remover(idRestaurante);
+        return res;
     }
 
     /** 
@@ -483,22 +571,54 @@ public class SSCadeiaFacade implements ISSCadeia {
     }
 
     /** 
-     * Método que obtém todos os históricos de pedidos da cadeia
+     * Método que obtém as entradas de stock de um restaurante lidas em cursor (o Stream deve ser fechado no fim)
+     * 
+     * @param idRestaurante ID do restaurante
+     * @return Stream de entradas de stock do restaurante
+     */
+    public Stream<Map.Entry<Pair<String, String>, Integer>> stockStreamRestaurante(String idRestaurante) {
+        return this.stock.entrySetRestauranteStream(idRestaurante);
+    }
+
+    /** 
+     * Método que obtém todos os históricos de pedidos da cadeia lidos em cursor (o Stream deve ser fechado no fim)
      * 
-     * @return Coleção de históricos de pedidos
+     * @return Stream de históricos de pedidos
      */
-    public Collection<Historico> getHistoricoPedidosCadeia() {
-        return this.historicos.values();
+    public Stream<Historico> getHistoricoPedidosCadeiaStream() {
+        return this.historicos.valuesStream();
     }
 
     /** 
-     * Método que obtém os históricos de pedidos de um restaurante
+     * Método que obtém os históricos de pedidos de um restaurante lidos em cursor (o Stream deve ser fechado no fim)
      * 
      * @param idRestaurante ID do restaurante
-     * @return Coleção de históricos de pedidos do restaurante
+     * @return Stream de históricos de pedidos do restaurante
      */
-    public Collection<Historico> getHistoricoPedidosRestaurante(String idRestaurante) {
-        return this.historicos.getValuesRestaurante(idRestaurante);
+    public Stream<Historico> getHistoricoPedidosRestauranteStream(String idRestaurante) {
+        return this.historicos.valuesStreamRestaurante(idRestaurante);
+    }
+
+    /** 
+     * Método que obtém uma página de históricos de pedidos, por ordem de ID
+     * 
+     * @param depoisDe ID do último histórico da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de históricos na página
+     * @param idRestaurante ID do restaurante, ou null para toda a cadeia
+     * @param desde Data mínima de finalização (formato "YYYY-MM-DD"), ou null/vazio para todas
+     * @return Página de históricos de pedidos
+     * @throws IllegalArgumentException Se a data for inválida
+     */
+    public Pagina<Historico> getHistoricoPedidosPagina(String depoisDe, int tamanho, String idRestaurante, String desde) {
+        LocalDate dataLimite = null;
+        if (desde != null && !desde.trim().isEmpty()) {
+            try {
+                dataLimite = LocalDate.parse(desde.trim());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("O formato da data é inválido. Use 'YYYY-MM-DD'.");
+            }
+        }
+        return this.historicos.pagina(depoisDe, tamanho, idRestaurante, dataLimite);
     }
 
     /** 
@@ -510,15 +630,24 @@ public class SSCadeiaFacade implements ISSCadeia {
     public Historico remover_historico_pedidos(String idHistorico) {
         return this.historicos.remove(idHistorico);
     }
+
+    /** 
+     * Método que reconstrói os agregados diários de estatísticas a partir do histórico de pedidos
+     * 
+     * @return Número de agregados (restaurante x dia) reconstruídos
+     */
+    public int reconstruir_estatisticas() {
+        return this.historicos.reconstruirEstatisticasDiarias();
+    }
     
     /**
      * Método que regista os ingredientes utilizados numa proposta de pedido
      * 
      * @param idRestaurante ID do restaurante
      * @param lista Lista de ingredientes utilizados
-     * @return true se o registo for bem-sucedido, false caso contrário
+     * @return Nomes dos ingredientes sem stock suficiente (lista vazia se o registo for bem-sucedido)
      */
-    public boolean registar_Ingredientes_Utilizados_Proposta(String idRestaurante, List<Ingrediente> lista){
+    public List<String> registar_Ingredientes_Utilizados_Proposta(String idRestaurante, List<Ingrediente> lista){
         return this.stock.registar_Uso_Ingredientes(idRestaurante, lista);
     }
 
@@ -2,6 +2,8 @@ package eathubLN.ssComercial;
 
 import java.util.Collection;
 
+import eathubLN.Pagina;
+
 import eathubLN.ssPedidos.Pedido;
 
 public interface ISSComercial {
@@ -16,14 +18,20 @@ public interface ISSComercial {
 
     public Collection<Fatura> faturaValues();
 
+    public Pagina<Fatura> faturaPagina(String depoisDe, int tamanho);
+
     public Fatura faturaRemove(String idFatura);
 
     public Pagamento pagamentoRemove(String idPagamento);
 
     public Collection<Pagamento> pagamentoValues();
 
+    public Pagina<Pagamento> pagamentoPagina(String depoisDe, int tamanho);
+
     public Talao talaoRemove(String idTalao);
 
     public Collection<Talao> talaoValues();
+
+    public Pagina<Talao> talaoPagina(String depoisDe, int tamanho);
     
 }
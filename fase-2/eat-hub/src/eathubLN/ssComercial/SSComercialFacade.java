@@ -2,6 +2,10 @@ package eathubLN.ssComercial;
 
 import java.util.Collection;
 
+import eathubLN.Pagina;
+
+import eathubDL.CacheCatalogo;
+import eathubDL.DAOconfig;
 import eathubDL.EstruturasDAO.FaturaDAO;
 import eathubDL.EstruturasDAO.TalaoDAO;
 import eathubDL.EstruturasDAO.PagamentoDAO;
@@ -10,34 +14,61 @@ import eathubLN.ssPedidos.Pedido;
 
 /** Facade do subsistema comercial */
 public class SSComercialFacade implements ISSComercial {
-    /** Instância do DAO de faturas */
+    /** Instância do DAO de faturas (obtida na primeira utilização) */
     private FaturaDAO faturas;
-    /** Instância do DAO de talões */
+    /** Instância do DAO de talões (obtida na primeira utilização) */
     private TalaoDAO taloes;
     /** Instância do DAO de pagamentos */
     private PagamentoDAO pagamentos;
+    /** Pedidos com pagamento confirmado (LRU); um pedido pago não deixa de o estar, só a remoção do pagamento invalida a entrada */
+    private final CacheCatalogo<String, Boolean> pedidosPagos;
 
     /**
      * Construtor do Facade do subsistema comercial
      */
     public SSComercialFacade() {
-        this.faturas = FaturaDAO.getInstance();
-        this.taloes = TalaoDAO.getInstance();
+        this.faturas = null;
+        this.taloes = null;
         this.pagamentos = PagamentoDAO.getInstance();
+        this.pedidosPagos = new CacheCatalogo<>("PedidosPagos", DAOconfig.CACHE_PEDIDOS_PAGOS);
     }
 
     /**
-     * Método que regista um pagamento
+     * Método que devolve o DAO de faturas, obtendo-o na primeira utilização
+     *
+     * @return Instância do DAO de faturas
+     */
+    private FaturaDAO faturas() {
+        if (this.faturas == null) {
+            this.faturas = FaturaDAO.getInstance();
+        }
+        return this.faturas;
+    }
+
+    /**
+     * Método que devolve o DAO de talões, obtendo-o na primeira utilização
+     *
+     * @return Instância do DAO de talões
+     */
+    private TalaoDAO taloes() {
+        if (this.taloes == null) {
+            this.taloes = TalaoDAO.getInstance();
+        }
+        return this.taloes;
+    }
+
+    /**
+     * Método que regista um pagamento. Um pedido tem no máximo um pagamento: se o pedido
+     * já tiver sido pago, devolve o ID do pagamento existente.
      * 
      * @param valor          Valor do pagamento
      * @param codPedido      Código do pedido associado ao pagamento
      * @param metodoPagamento Método de pagamento utilizado
-     * @return ID do pagamento registado
+     * @return ID do pagamento do pedido
      */
     public String regista_pagamento(double valor, String codPedido, String metodoPagamento) {
         Pagamento pagamento = new Pagamento(pagamentos.generateNewId(), valor,codPedido,metodoPagamento);
-        String idPag = pagamento.getIdPagamento();
-        pagamentos.put(idPag, pagamento);
+        String idPag = pagamentos.registar(pagamento).getIdPagamento();
         return idPag;
     }
 
@@ -50,8 +81,8 @@ public class SSComercialFacade implements ISSComercial {
      */
     public Fatura gera_fatura(String idPagamento, Pedido pedido) {
         Pagamento pagamento = pagamentos.get(idPagamento);
-        Fatura fatura = new Fatura(faturas.generateNewId(),idPagamento, pedido, pagamento.getValorPagamento(),pedido.getNrContribuinte());
-        this.faturas.put(fatura.getIdFatura(), fatura);
+        Fatura fatura = new Fatura(this.faturas().generateNewId(),idPagamento, pedido, pagamento.getValorPagamento(),pedido.getNrContribuinte());
+        this.faturas().adicionar(fatura);
         return fatura;
     }
 
@@ -62,9 +93,9 @@ public class SSComercialFacade implements ISSComercial {
      * @return Talão gerado
      */
     public Talao gera_talao(String codPedido) {
-        Talao talao = new Talao(taloes.generateNewId(),codPedido);
+        Talao talao = new Talao(this.taloes().generateNewId(),codPedido);
         String idTalao = talao.getIdTalao();
-        taloes.put(idTalao, talao);
+        this.taloes().adicionar(talao);
         return talao;
     }
 
@@ -75,12 +106,8 @@ public class SSComercialFacade implements ISSComercial {
      * @return true se o pagamento foi confirmado, false caso contrário
      */
     public boolean pagamento_confirmado(String codPedido) {
-        for (Pagamento pagamento : pagamentos.values()) {
-            if (pagamento.getIdPedido().equals(codPedido)) {
-                return true;
-            }
-        }
-        return false;
+        // Só os resultados positivos ficam em cache (a cache não guarda valores nulos)
+        return this.pedidosPagos.obter(codPedido, cod -> this.pagamentos.existeParaPedido(cod) ? Boolean.TRUE : null) != null;
     }
 
     // ==================== MÉTODOS DE ACESSO AOS DAOs ====================
@@ -90,7 +117,17 @@ public class SSComercialFacade implements ISSComercial {
      * @return Coleção de faturas
      */
     public Collection<Fatura> faturaValues() {
-        return this.faturas.values();
+        return this.faturas().values();
+    }
+
+    /**
+     * Método que retorna uma página de faturas, por ordem de ID
+     * @param depoisDe ID da última fatura da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de faturas na página
+     * @return Página de faturas
+     */
+    public Pagina<Fatura> faturaPagina(String depoisDe, int tamanho) {
+        return this.faturas().pagina(depoisDe, tamanho);
     }
 
     /** Método que remove uma fatura pelo seu ID
@@ -98,7 +135,7 @@ public class SSComercialFacade implements ISSComercial {
      * @return Fatura removida
      */
     public Fatura faturaRemove(String idFatura) {
-        return this.faturas.remove(idFatura);
+        return this.faturas().remove(idFatura);
     }
 
     /**
@@ -107,7 +144,11 @@ public class SSComercialFacade implements ISSComercial {
      * @return Pagamento removido
      */
     public Pagamento pagamentoRemove(String idPagamento) {
-        return this.pagamentos.remove(idPagamento);
+        Pagamento p = this.pagamentos.remove(idPagamento);
+        if (p != null) {
+            this.pedidosPagos.invalidar(p.getIdPedido());
+        }
+        return p;
     }
 
     /**
@@ -118,18 +159,38 @@ public class SSComercialFacade implements ISSComercial {
         return this.pagamentos.values();
     }
 
+    /**
+     * Método que retorna uma página de pagamentos, por ordem de ID
+     * @param depoisDe ID do último pagamento da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de pagamentos na página
+     * @return Página de pagamentos
+     */
+    public Pagina<Pagamento> pagamentoPagina(String depoisDe, int tamanho) {
+        return this.pagamentos.pagina(depoisDe, tamanho);
+    }
+
     /** Método que remove um talão pelo seu ID
      * @param idTalao ID do talão a remover
      * @return Talão removido
      */
     public Talao talaoRemove(String idTalao) {
-        return this.taloes.remove(idTalao);
+        return this.taloes().remove(idTalao);
     }
     /**
      * Método que retorna a coleção de talões
      * @return Coleção de talões
      */
     public Collection<Talao> talaoValues() {
-        return this.taloes.values();
+        return this.taloes().values();
+    }
+
+    /**
+     * Método que retorna uma página de talões, por ordem de ID
+     * @param depoisDe ID do último talão da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de talões na página
+     * @return Página de talões
+     */
+    public Pagina<Talao> talaoPagina(String depoisDe, int tamanho) {
+        return this.taloes().pagina(depoisDe, tamanho);
     }
 }
@@ -2,6 +2,7 @@ package eathubLN.ssPedidos;
 
 import eathubDL.EstruturasDAO.MenuDAO;
 import eathubDL.EstruturasDAO.PropostaDAO;
+import eathubDL.EstruturasDAO.SnapshotCatalogo;
 import java.util.Collection;
 
 /** A Ementa do EatHub */
@@ -27,7 +28,7 @@ public class Ementa {
      * 
      * @return Instância singleton da Ementa
      */
-    public static Ementa getInstance() {
+    public static synchronized Ementa getInstance() {
         if (singleton == null) {
             singleton = new Ementa();
         }
@@ -38,14 +39,21 @@ public class Ementa {
      * Construtor Vazio
      * 
      * Cria uma Ementa consoante o que está guardado no PropostaDAO e MenuDAO
+     * (a partir do snapshot do catálogo, se estiver ativo e atualizado)
      * 
      * @return Uma nova instância de Ementa
      */
     public Ementa() {
         this.propostasEmenta = PropostaDAO.getInstance();
         this.menusEmenta = MenuDAO.getInstance();
-        this.propostas = this.propostasEmenta.values();
-        this.menus = this.menusEmenta.values();
+        SnapshotCatalogo.Catalogo catalogo = SnapshotCatalogo.getInstance().carregar();
+        if (catalogo != null) {
+            this.propostas = catalogo.getPropostas();
+            this.menus = catalogo.getMenus();
+        } else {
+            this.propostas = this.propostasEmenta.values();
+            this.menus = this.menusEmenta.values();
+        }
     }
 
     /** 
@@ -0,0 +1,306 @@
+package eathubLN.ssPedidos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fila de espera dos pedidos de um restaurante: heap binário indexado pelo código do pedido.
+ *
+ * A prioridade (tempo de espera) de cada pedido é guardada na fila quando o pedido
+ * entra, pelo que as comparações não acedem à base de dados. O índice (código do
+ * pedido -> posição no heap) permite alterar a prioridade ou remover um pedido em
+ * O(log n). Pedidos com a mesma prioridade saem pela ordem de chegada.
+ */
+public class FilaPrioridade {
+
+    /** Capacidade inicial dos arrays do heap */
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    /** Códigos dos pedidos, organizados em heap */
+    private String[] codigos;
+
+    /** Prioridade (tempo de espera) de cada posição do heap */
+    private double[] prioridades;
+
+    /** Ordem de chegada de cada posição do heap (desempate) */
+    private long[] chegadas;
+
+    /** Posição no heap de cada código de pedido */
+    private final Map<String, Integer> posicoes;
+
+    /** Número de pedidos na fila */
+    private int tamanho;
+
+    /** Ordem de chegada do próximo pedido */
+    private long proximaChegada;
+
+    /**
+     * Construtor de uma fila vazia
+     */
+    public FilaPrioridade() {
+        this.codigos = new String[CAPACIDADE_INICIAL];
+        this.prioridades = new double[CAPACIDADE_INICIAL];
+        this.chegadas = new long[CAPACIDADE_INICIAL];
+        this.posicoes = new HashMap<>();
+        this.tamanho = 0;
+        this.proximaChegada = 0;
+    }
+
+    /**
+     * Método que coloca um pedido na fila; se o pedido já estiver na fila, altera a sua prioridade
+     *
+     * @param codPedido Código do pedido
+     * @param prioridade Tempo de espera do pedido
+     */
+    public synchronized void offer(String codPedido, double prioridade) {
+        Integer pos = this.posicoes.get(codPedido);
+        if (pos != null) {
+            this.alterar(pos, prioridade);
+            return;
+        }
+        if (this.tamanho == this.codigos.length) {
+            int capacidade = this.codigos.length * 2;
+            this.codigos = Arrays.copyOf(this.codigos, capacidade);
+            this.prioridades = Arrays.copyOf(this.prioridades, capacidade);
+            this.chegadas = Arrays.copyOf(this.chegadas, capacidade);
+        }
+        int i = this.tamanho++;
+        this.codigos[i] = codPedido;
+        this.prioridades[i] = prioridade;
+        this.chegadas[i] = this.proximaChegada++;
+        this.posicoes.put(codPedido, i);
+        this.subir(i);
+    }
+
+    /**
+     * Método que altera a prioridade de um pedido que está na fila
+     *
+     * @param codPedido Código do pedido
+     * @param prioridade Novo tempo de espera do pedido
+     * @return true se o pedido estava na fila, false caso contrário
+     */
+    public synchronized boolean alterarPrioridade(String codPedido, double prioridade) {
+        Integer pos = this.posicoes.get(codPedido);
+        if (pos == null) {
+            return false;
+        }
+        this.alterar(pos, prioridade);
+        return true;
+    }
+
+    /**
+     * Método que devolve o próximo pedido sem o retirar da fila
+     *
+     * @return Código do pedido com menor tempo de espera, ou null se a fila estiver vazia
+     */
+    public synchronized String peek() {
+        return this.tamanho == 0 ? null : this.codigos[0];
+    }
+
+    /**
+     * Método que retira o próximo pedido da fila
+     *
+     * @return Código do pedido com menor tempo de espera, ou null se a fila estiver vazia
+     */
+    public synchronized String poll() {
+        if (this.tamanho == 0) {
+            return null;
+        }
+        String cod = this.codigos[0];
+        this.removerPosicao(0);
+        return cod;
+    }
+
+    /**
+     * Método que retira um pedido da fila
+     *
+     * @param codPedido Código do pedido
+     * @return true se o pedido estava na fila, false caso contrário
+     */
+    public synchronized boolean remove(String codPedido) {
+        Integer pos = this.posicoes.get(codPedido);
+        if (pos == null) {
+            return false;
+        }
+        this.removerPosicao(pos);
+        return true;
+    }
+
+    /**
+     * Método que verifica se um pedido está na fila
+     *
+     * @param codPedido Código do pedido
+     * @return true se o pedido estiver na fila, false caso contrário
+     */
+    public synchronized boolean contains(String codPedido) {
+        return this.posicoes.containsKey(codPedido);
+    }
+
+    /**
+     * Método que devolve a prioridade guardada de um pedido
+     *
+     * @param codPedido Código do pedido
+     * @return Tempo de espera do pedido, ou null se o pedido não estiver na fila
+     */
+    public synchronized Double getPrioridade(String codPedido) {
+        Integer pos = this.posicoes.get(codPedido);
+        return pos == null ? null : this.prioridades[pos];
+    }
+
+    /**
+     * Método que devolve o número de pedidos na fila
+     *
+     * @return Número de pedidos na fila
+     */
+    public synchronized int size() {
+        return this.tamanho;
+    }
+
+    /**
+     * Método que verifica se a fila está vazia
+     *
+     * @return true se a fila estiver vazia, false caso contrário
+     */
+    public synchronized boolean isEmpty() {
+        return this.tamanho == 0;
+    }
+
+    /**
+     * Método que devolve uma cópia dos pedidos da fila, pela ordem em que vão sair
+     *
+     * @return Lista dos códigos dos pedidos, do próximo para o último
+     */
+    public synchronized List<String> ordenados() {
+        Integer[] ordem = new Integer[this.tamanho];
+        for (int i = 0; i < this.tamanho; i++) {
+            ordem[i] = i;
+        }
+        Arrays.sort(ordem, (a, b) -> this.menor(a, b) ? -1 : (this.menor(b, a) ? 1 : 0));
+        List<String> res = new ArrayList<>(this.tamanho);
+        for (Integer i : ordem) {
+            res.add(this.codigos[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Método que altera a prioridade da posição dada e repõe a ordem do heap
+     *
+     * @param pos Posição no heap
+     * @param prioridade Nova prioridade
+     */
+    private void alterar(int pos, double prioridade) {
+        double anterior = this.prioridades[pos];
+        this.prioridades[pos] = prioridade;
+        if (prioridade < anterior) {
+            this.subir(pos);
+        } else if (prioridade > anterior) {
+            this.descer(pos);
+        }
+    }
+
+    /**
+     * Método que remove a posição dada, colocando nela o último elemento do heap
+     *
+     * @param pos Posição no heap
+     */
+    private void removerPosicao(int pos) {
+        this.posicoes.remove(this.codigos[pos]);
+        int ultimo = --this.tamanho;
+        if (pos != ultimo) {
+            this.mover(ultimo, pos);
+            this.codigos[ultimo] = null;
+            if (!this.subir(pos)) {
+                this.descer(pos);
+            }
+        } else {
+            this.codigos[ultimo] = null;
+        }
+    }
+
+    /**
+     * Método que sobe um elemento no heap enquanto for menor que o pai
+     *
+     * @param pos Posição do elemento
+     * @return true se o elemento mudou de posição
+     */
+    private boolean subir(int pos) {
+        int inicial = pos;
+        while (pos > 0) {
+            int pai = (pos - 1) / 2;
+            if (!this.menor(pos, pai)) {
+                break;
+            }
+            this.trocar(pos, pai);
+            pos = pai;
+        }
+        return pos != inicial;
+    }
+
+    /**
+     * Método que desce um elemento no heap enquanto for maior que algum dos filhos
+     *
+     * @param pos Posição do elemento
+     */
+    private void descer(int pos) {
+        while (true) {
+            int filho = 2 * pos + 1;
+            if (filho >= this.tamanho) {
+                return;
+            }
+            if (filho + 1 < this.tamanho && this.menor(filho + 1, filho)) {
+                filho++;
+            }
+            if (!this.menor(filho, pos)) {
+                return;
+            }
+            this.trocar(pos, filho);
+            pos = filho;
+        }
+    }
+
+    /**
+     * Método que compara duas posições do heap (prioridade e, em caso de empate, ordem de chegada)
+     *
+     * @param a Primeira posição
+     * @param b Segunda posição
+     * @return true se o elemento em a sai antes do elemento em b
+     */
+    private boolean menor(int a, int b) {
+        int c = Double.compare(this.prioridades[a], this.prioridades[b]);
+        return c < 0 || (c == 0 && this.chegadas[a] < this.chegadas[b]);
+    }
+
+    /**
+     * Método que troca duas posições do heap, atualizando o índice
+     *
+     * @param a Primeira posição
+     * @param b Segunda posição
+     */
+    private void trocar(int a, int b) {
+        String cod = this.codigos[a];
+        double prioridade = this.prioridades[a];
+        long chegada = this.chegadas[a];
+        this.mover(b, a);
+        this.codigos[b] = cod;
+        this.prioridades[b] = prioridade;
+        this.chegadas[b] = chegada;
+        this.posicoes.put(cod, b);
+    }
+
+    /**
+     * Método que copia o elemento de uma posição para outra, atualizando o índice
+     *
+     * @param de Posição de origem
+     * @param para Posição de destino
+     */
+    private void mover(int de, int para) {
+        this.codigos[para] = this.codigos[de];
+        this.prioridades[para] = this.prioridades[de];
+        this.chegadas[para] = this.chegadas[de];
+        this.posicoes.put(this.codigos[para], para);
+    }
+}
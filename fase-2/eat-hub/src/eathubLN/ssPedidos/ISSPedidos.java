@@ -1,6 +1,7 @@
 package eathubLN.ssPedidos;
 
 import Exceptions.PedidoNaoExisteException;
+import eathubLN.Pagina;
 import eathubLN.ssCadeia.Pair;
 
 import java.util.Collection;
@@ -62,6 +63,10 @@ public interface ISSPedidos {
 
     public void regista_nota(String nota, String codPedido, String idRestaurante) throws PedidoNaoExisteException;
 
+    public void adicionar_menu_pedido(String codMenu, String codPedido, String idRestaurante) throws PedidoNaoExisteException;
+
+    public void adicionar_proposta_pedido(String codProposta, String codPedido, String idRestaurante) throws PedidoNaoExisteException;
+
     public void registar_tipo_pedido(String tipo, String codPedido, String idRestaurante) throws PedidoNaoExisteException;
 
     public void cancelar_pedido(String codPedido, String idRestaurante);
@@ -76,15 +81,17 @@ public interface ISSPedidos {
 
     public void addPedidoQueue(String idPedido, String idRestaurante);
 
+    public void addPedidoQueue(String idPedido, double tempoEspera, String idRestaurante);
+
     public String peekPedidoQueue(String idRestaurante);
 
     public double calcularTempoEsperaInicial(Pedido pedido);
 
     public String listPropostaIngredientes(String codProposta);
 
-    public void alterarIngredientesProposta(Pedido pedido, String codProposta, List<String> lista, boolean adicionar);
+    public void alterarIngredientesProposta(String codPedido, String idRestaurante, String codProposta, List<String> lista, boolean adicionar) throws PedidoNaoExisteException;
 
-    public void alterarIngredientesPropostaMenu(Pedido pedido, String codMenu, String codProposta, List<String> lista, boolean adicionar);
+    public void alterarIngredientesPropostaMenu(String codPedido, String idRestaurante, String codMenu, String codProposta, List<String> lista, boolean adicionar) throws PedidoNaoExisteException;
 
     public String listMenuPropostas(String codMenu);
     
@@ -116,6 +123,14 @@ public interface ISSPedidos {
 
     public void guardarProgressoPedidoAtual(String idRestaurante);
 
+    public ProgressoPedido iniciarConfecao(String idRestaurante);
+
+    public boolean avancarConfecao(String idRestaurante, String codPedido, PropostaEtapa propostaEtapa);
+
+    public void terminarConfecao(String idRestaurante, String codPedido);
+
+    public Collection<ProgressoPedido> obterPedidosEmConfecao(String idRestaurante);
+
     public Menu menuRemove(String codMenu);
 
     public Collection<Menu> menuValues();
@@ -130,6 +145,8 @@ public interface ISSPedidos {
 
     public Collection<Pedido> pedidoValues();
 
+    public Pagina<Pedido> pedidoPagina(String depoisDe, int tamanho);
+
     public Pedido pedidoGet(String idPedido);
 
     public void propostaAddAlergenio(String alergenio);
@@ -4,6 +4,7 @@ import eathubDL.EstruturasDAO.MenuDAO;
 import eathubDL.EstruturasDAO.PropostaDAO;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import eathubLN.ssCadeia.Pair;
@@ -144,19 +145,37 @@ public class Pedido {
     /** 
      * Método que devolve os códigos (ID's) dos menus incluídos no Pedido
      * 
-     * @return Códigos (ID's) dos menus incluídos no Pedido
+     * @return Códigos (ID's) dos menus incluídos no Pedido (só de leitura)
      */
     public List<String> getCodMenus() {
-        return codMenus;
+        return Collections.unmodifiableList(codMenus);
     }
 
     /** 
      * Método que devolve os códigos (ID's) das propostas incluídas no Pedido
      * 
-     * @return Códigos (ID's) das propostas incluídas no Pedido
+     * @return Códigos (ID's) das propostas incluídas no Pedido (só de leitura)
      */
     public List<String> getCodPropostas() {
-        return codPropostas;
+        return Collections.unmodifiableList(codPropostas);
+    }
+
+    /**
+     * Método que adiciona um menu ao Pedido
+     * 
+     * @param codMenu Código (ID) do menu a adicionar
+     */
+    public void addMenu(String codMenu) {
+        this.codMenus.add(codMenu);
+    }
+
+    /**
+     * Método que adiciona uma proposta ao Pedido
+     * 
+     * @param codProposta Código (ID) da proposta a adicionar
+     */
+    public void addProposta(String codProposta) {
+        this.codPropostas.add(codProposta);
     }
 
     /**
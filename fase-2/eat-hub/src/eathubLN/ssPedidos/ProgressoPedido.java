@@ -2,182 +2,241 @@ package eathubLN.ssPedidos;
 
 import eathubDL.EstruturasDAO.MenuDAO;
 import eathubDL.EstruturasDAO.PropostaDAO;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
-/** Classe responsável por gerir e acompanhar o progresso de confeção de um Pedido */
+/**
+ * Classe responsável por gerir e acompanhar o progresso de confeção de um Pedido.
+ *
+ * No construtor o pedido é compilado num plano de execução: as propostas a confecionar (as
+ * individuais e depois as de cada menu, pela ordem do pedido) e as respetivas etapas ficam em
+ * arrays, com uma etapa atual (int) por proposta, um bitset das propostas concluídas e um
+ * cursor para a primeira proposta por concluir. Obter a próxima etapa e avançar uma etapa
+ * são O(1) e não acedem à base de dados.
+ */
 public class ProgressoPedido {
 
     /** Pedido associado ao progresso */
     private Pedido pedido;
-    
-    /** Progresso das propostas individuais pertencentes ao pedido */
-    private Map<String, Integer> progressoPropostas;
-    
-    /** Progresso das propostas pertencentes aos menus do pedido */
-    private Map<String, Map<String, Integer>> progressoMenus;
-    
-    /** Número total de etapas por proposta. */
-    private Map<String, Integer> totalEtapasPorProposta;
-
-    /** 
+
+    /** Código de cada proposta do plano */
+    private String[] codPropostas;
+
+    /** Código do menu de cada proposta do plano (null para as propostas individuais) */
+    private String[] codMenus;
+
+    /** Posição da primeira etapa de cada proposta no array das etapas */
+    private int[] inicioEtapas;
+
+    /** Número total de etapas de cada proposta */
+    private int[] totalEtapas;
+
+    /** Etapa atual de cada proposta */
+    private int[] etapaAtual;
+
+    /** Bitset das propostas concluídas */
+    private long[] concluidas;
+
+    /** Todas as etapas do plano, agrupadas por proposta */
+    private PropostaEtapa[] etapas;
+
+    /** Primeira proposta por concluir (igual ao número de propostas quando o pedido está concluído) */
+    private int cursor;
+
+    /** Posição no plano de cada proposta (chave de menu e proposta); -1 para as propostas sem etapas */
+    private Map<String, Integer> indice;
+
+    /**
      * Construtor parametrizado
-     * 
+     *
      * @param pedido Pedido cujo progresso será acompanhado
-     * @return Uma nova instância de ProgressoPedido 
+     * @return Uma nova instância de ProgressoPedido
      */
     public ProgressoPedido(Pedido pedido) {
         this.pedido = pedido;
-        this.progressoPropostas = new HashMap<>();
-        this.progressoMenus = new HashMap<>();
-        this.totalEtapasPorProposta = new HashMap<>();
-        
-        inicializarProgressos();
+        this.indice = new HashMap<>();
+
+        compilarPlano();
     }
 
     /**
-     * Método que inicializa as estruturas de progresso para todas as propostas
-     * (individuais e pertencentes a menus) associadas ao pedido.
-     * Cada proposta começa na etapa 0 e é registado o total de etapas
-     * que a mesma possui.
-     * 
+     * Método que compila o plano de execução do pedido: cada proposta (individual ou
+     * pertencente a um menu) com etapas começa na etapa 0; as propostas sem etapas
+     * ficam de fora do plano.
+     *
      */
-    private void inicializarProgressos() {
+    private void compilarPlano() {
         PropostaDAO propostaDAO = PropostaDAO.getInstance();
         MenuDAO menuDAO = MenuDAO.getInstance();
-        
-        // Inicializar progresso para propostas individuais
+        List<String> propostas = new ArrayList<>();
+        List<String> menus = new ArrayList<>();
+        List<List<String>> etapasPropostas = new ArrayList<>();
+
+        // Propostas individuais
         for (String codProposta : pedido.getCodPropostas()) {
+            String chave = chave(codProposta, null);
+            if (indice.containsKey(chave)) {
+                continue;
+            }
             Proposta proposta = propostaDAO.get(codProposta);
             if (proposta != null && proposta.getEtapas() != null) {
-                progressoPropostas.put(codProposta, 0);
-                totalEtapasPorProposta.put(codProposta, proposta.getEtapas().size());
+                indice.put(chave, propostas.size());
+                propostas.add(codProposta);
+                menus.add(null);
+                etapasPropostas.add(proposta.getEtapas());
             }
         }
-        
-        // Inicializar progresso para propostas dentro dos menus
+
+        // Propostas dentro dos menus
         for (String codMenu : pedido.getCodMenus()) {
             Menu menu = menuDAO.get(codMenu);
-            if (menu != null) {
-                Map<String, Integer> progressoPropostasDoMenu = new HashMap<>();
-                
-                for (Proposta proposta : menu.getPropostasMenu()) {
-                    if (proposta.getEtapas() != null) {
-                        progressoPropostasDoMenu.put(proposta.getIdProposta(), 0);
-                        totalEtapasPorProposta.put(proposta.getIdProposta(), proposta.getEtapas().size());
-                    }
+            if (menu == null) {
+                continue;
+            }
+            for (Proposta proposta : menu.getPropostasMenu()) {
+                String chave = chave(proposta.getIdProposta(), codMenu);
+                if (indice.containsKey(chave)) {
+                    continue;
+                }
+                if (proposta.getEtapas() == null) {
+                    indice.put(chave, -1);
+                } else {
+                    indice.put(chave, propostas.size());
+                    propostas.add(proposta.getIdProposta());
+                    menus.add(codMenu);
+                    etapasPropostas.add(proposta.getEtapas());
                 }
-                
-                progressoMenus.put(codMenu, progressoPropostasDoMenu);
             }
         }
+
+        int n = propostas.size();
+        codPropostas = propostas.toArray(new String[n]);
+        codMenus = menus.toArray(new String[n]);
+        inicioEtapas = new int[n];
+        totalEtapas = new int[n];
+        etapaAtual = new int[n];
+        concluidas = new long[(n + 63) >>> 6];
+        List<PropostaEtapa> plano = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            inicioEtapas[i] = plano.size();
+            List<String> nomes = etapasPropostas.get(i);
+            totalEtapas[i] = nomes.size();
+            for (int e = 0; e < nomes.size(); e++) {
+                plano.add(new PropostaEtapa(codPropostas[i], codMenus[i], nomes.get(e), e));
+            }
+            if (totalEtapas[i] == 0) {
+                concluir(i);
+            }
+        }
+        etapas = plano.toArray(new PropostaEtapa[0]);
+        cursor = 0;
+        avancarCursor();
     }
 
-    /** 
-     * Método que retorna o pedido associado a este progresso 
+    /**
+     * Método que retorna o pedido associado a este progresso
      *
-     * @return Pedido associado ao progresso 
+     * @return Pedido associado ao progresso
      */
     public Pedido getPedido() {
         return pedido;
     }
 
-    /** 
+    /**
+     * Método que devolve a etapa atual de cada proposta individual ainda por concluir
+     *
+     * @return Cópia do mapa código da proposta -> índice da etapa atual
+     */
+    public Map<String, Integer> getEtapasPropostas() {
+        Map<String, Integer> res = new LinkedHashMap<>();
+        for (int i = 0; i < codPropostas.length; i++) {
+            if (codMenus[i] == null && !isConcluida(i)) {
+                res.put(codPropostas[i], etapaAtual[i]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Método que devolve a etapa atual de cada proposta ainda por concluir de cada menu
+     *
+     * @return Cópia do mapa código do menu -> (código da proposta -> índice da etapa atual)
+     */
+    public Map<String, Map<String, Integer>> getEtapasMenus() {
+        Map<String, Map<String, Integer>> res = new LinkedHashMap<>();
+        for (int i = 0; i < codPropostas.length; i++) {
+            if (codMenus[i] != null && !isConcluida(i)) {
+                res.computeIfAbsent(codMenus[i], k -> new LinkedHashMap<>()).put(codPropostas[i], etapaAtual[i]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Método que repõe o progresso guardado por getEtapasPropostas e getEtapasMenus
+     * (as propostas que não aparecem no progresso guardado ficam concluídas)
+     *
+     * @param etapasPropostas Etapa atual de cada proposta individual por concluir
+     * @param etapasMenus Etapa atual de cada proposta por concluir de cada menu
+     */
+    public void restaurarEtapas(Map<String, Integer> etapasPropostas, Map<String, Map<String, Integer>> etapasMenus) {
+        for (int i = 0; i < codPropostas.length; i++) {
+            Map<String, Integer> guardadas = codMenus[i] == null ? etapasPropostas : etapasMenus.get(codMenus[i]);
+            Integer etapa = guardadas == null ? null : guardadas.get(codPropostas[i]);
+            if (etapa == null || etapa >= totalEtapas[i]) {
+                etapaAtual[i] = totalEtapas[i];
+                concluir(i);
+            } else {
+                etapaAtual[i] = etapa;
+                concluidas[i >>> 6] &= ~(1L << i);
+            }
+        }
+        cursor = 0;
+        avancarCursor();
+    }
+
+    /**
      * Obtém a próxima proposta e respetiva etapa que deve ser confeccionada.
      * A pesquisa é feita primeiro nas propostas individuais e,
      * caso todas estejam concluídas, nas propostas pertencentes a menus.
-     * 
+     *
      * @return A próxima PropostaEtapa a confeccionar, ou null se todas estiverem concluídas
      */
     public PropostaEtapa obterProximaPropostaParaConfecionar() {
-        PropostaDAO propostaDAO = PropostaDAO.getInstance();
-        
-        // Verificar propostas individuais
-        for (String codProposta : pedido.getCodPropostas()) {
-            Integer etapaAtual = progressoPropostas.get(codProposta);
-            Integer totalEtapas = totalEtapasPorProposta.get(codProposta);
-            
-            if (etapaAtual != null && totalEtapas != null && etapaAtual < totalEtapas) {
-                Proposta proposta = propostaDAO.get(codProposta);
-                String proximaEtapa = proposta.getEtapas().get(etapaAtual);
-                return new PropostaEtapa(codProposta, null, proximaEtapa, etapaAtual);
-            }
-        }
-        
-        // Verificar propostas dos menus
-        MenuDAO menuDAO = MenuDAO.getInstance();
-        for (String codMenu : pedido.getCodMenus()) {
-            Menu menu = menuDAO.get(codMenu);
-            if (menu != null) {
-                Map<String, Integer> progressoPropostasDoMenu = progressoMenus.get(codMenu);
-                
-                if (progressoPropostasDoMenu != null) {
-                    for (Proposta proposta : menu.getPropostasMenu()) {
-                        String codProposta = proposta.getIdProposta();
-                        Integer etapaAtual = progressoPropostasDoMenu.get(codProposta);
-                        Integer totalEtapas = totalEtapasPorProposta.get(codProposta);
-                        
-                        if (etapaAtual != null && totalEtapas != null && etapaAtual < totalEtapas) {
-                            String proximaEtapa = proposta.getEtapas().get(etapaAtual);
-                            return new PropostaEtapa(codProposta, codMenu, proximaEtapa, etapaAtual);
-                        }
-                    }
-                }
-            }
+        if (cursor == codPropostas.length) {
+            return null; // Todas as propostas foram completadas
         }
-        
-        return null; // Todas as propostas foram completadas
+        return etapas[inicioEtapas[cursor] + etapaAtual[cursor]];
     }
 
-    /** 
+    /**
      * Método que avança a etapa de confeção da proposta especificada.
      * Se a proposta pertencer a um menu, o código do menu deve ser fornecido.
-     * 
+     *
      * @param codProposta Código da proposta a avançar
      * @param codMenu Código do menu ao qual a proposta pertence (ou null se for individual)
      * @return true se a etapa foi avançada com sucesso, false caso contrário
      */
     public boolean avancarEtapaProposta(String codProposta, String codMenu) {
-        boolean flag = false;
-        if (codMenu == null) {
-            // Proposta individual
-            Integer etapaAtual = progressoPropostas.get(codProposta);
-            Integer totalEtapas = totalEtapasPorProposta.get(codProposta);
-            
-            if (etapaAtual != null && totalEtapas != null && etapaAtual < totalEtapas) {
-                progressoPropostas.put(codProposta, etapaAtual + 1);
-                flag = true;
-                if (etapaAtual + 1 == totalEtapas) {
-                    progressoPropostas.remove(codProposta);
-                }
-            }
-        } else {
-            // Proposta dentro de um menu
-            Map<String, Integer> progressoPropostasDoMenu = progressoMenus.get(codMenu);
-            if (progressoPropostasDoMenu != null) {
-                Integer etapaAtual = progressoPropostasDoMenu.get(codProposta);
-                Integer totalEtapas = totalEtapasPorProposta.get(codProposta);
-                
-                if (etapaAtual != null && totalEtapas != null && etapaAtual < totalEtapas) {
-                    progressoPropostasDoMenu.put(codProposta, etapaAtual + 1);
-                    flag = true;
-                    if (etapaAtual + 1 == totalEtapas) {
-                        progressoPropostasDoMenu.remove(codProposta);
-                    }
-                }
-
-                if (progressoPropostasDoMenu.isEmpty()) {/////////////////////////////////////////////////////////////
-                    progressoMenus.remove(codMenu);
-                }
+        int i = posicao(codProposta, codMenu);
+        if (i < 0 || isConcluida(i)) {
+            return false;
+        }
+        if (++etapaAtual[i] == totalEtapas[i]) {
+            concluir(i);
+            if (i == cursor) {
+                avancarCursor();
             }
         }
-        
-        return flag;
+        return true;
     }
 
-    /** 
+    /**
      * Método que verifica se uma determinada proposta já foi concluída.
-     * 
+     *
      * @param codProposta Código da proposta a verificar
      * @param codMenu Código do menu ao qual a proposta pertence (ou null se for individual)
      * @return true se a proposta estiver concluída, false caso contrário
@@ -188,28 +247,81 @@ public class ProgressoPedido {
             throw new IllegalArgumentException("Menu não pertence ao pedido.");
         } else if (codMenu == null && !pedido.containsProposta(codProposta)) {
             throw new IllegalArgumentException("Proposta não pertence ao pedido.");
-        } else if (codMenu != null && !(pedido.getMenu(codMenu).containsProposta(codProposta))) {
-            throw new IllegalArgumentException("Proposta não pertence ao menu do pedido.");
         }
 
-        if (codMenu == null) {
-            return !progressoPropostas.containsKey(codProposta);
-        } else {
-            Map<String, Integer> progressoPropostasDoMenu = progressoMenus.get(codMenu);
-            return progressoPropostasDoMenu == null || !progressoPropostasDoMenu.containsKey(codProposta);
+        Integer i = indice.get(chave(codProposta, codMenu));
+        if (i == null) {
+            if (codMenu != null) {
+                throw new IllegalArgumentException("Proposta não pertence ao menu do pedido.");
+            }
+            return true; // Proposta individual sem etapas
         }
+        return i < 0 || isConcluida(i);
     }
 
-    /** 
+    /**
      * Método que verifica se todas as propostas do pedido foram concluídas.
-     * 
+     *
      * @return true se todas as propostas estiverem concluídas, false caso contrário
      */
     public boolean isConcluido() {
-        if (!progressoPropostas.isEmpty() || !progressoMenus.isEmpty()) {
-            return false;
+        return cursor == codPropostas.length;
+    }
+
+    /**
+     * Método que devolve a posição de uma proposta no plano
+     *
+     * @param codProposta Código da proposta
+     * @param codMenu Código do menu da proposta (ou null se for individual)
+     * @return Posição no plano, ou -1 se a proposta não tiver etapas a confecionar
+     */
+    private int posicao(String codProposta, String codMenu) {
+        // Caso habitual: a proposta em curso
+        if (cursor < codPropostas.length && codPropostas[cursor].equals(codProposta)
+                && (codMenu == null ? codMenus[cursor] == null : codMenu.equals(codMenus[cursor]))) {
+            return cursor;
         }
-        return true;
+        Integer i = indice.get(chave(codProposta, codMenu));
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Método que marca uma proposta como concluída no bitset
+     *
+     * @param i Posição da proposta no plano
+     */
+    private void concluir(int i) {
+        concluidas[i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * Método que verifica no bitset se uma proposta está concluída
+     *
+     * @param i Posição da proposta no plano
+     * @return true se a proposta estiver concluída
+     */
+    private boolean isConcluida(int i) {
+        return (concluidas[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Método que avança o cursor até à primeira proposta por concluir
+     */
+    private void avancarCursor() {
+        while (cursor < codPropostas.length && isConcluida(cursor)) {
+            cursor++;
+        }
+    }
+
+    /**
+     * Método que devolve a chave de uma proposta no índice do plano
+     *
+     * @param codProposta Código da proposta
+     * @param codMenu Código do menu (ou null se for individual)
+     * @return Chave da proposta
+     */
+    private static String chave(String codProposta, String codMenu) {
+        return codMenu == null ? codProposta : codMenu + '\u0000' + codProposta;
     }
 
-}
\ No newline at end of file
+}
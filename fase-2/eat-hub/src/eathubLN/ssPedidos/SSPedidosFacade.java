@@ -1,22 +1,24 @@
 package eathubLN.ssPedidos;
 
 import java.util.Collection;
-import java.util.Queue;
-import java.util.PriorityQueue;
-import java.util.Comparator;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.ArrayList;
 
 import Exceptions.PedidoNaoExisteException;
 
+import eathubLN.Pagina;
 import eathubLN.ssCadeia.Pair;
 
+import eathubDL.EstruturasDAO.DiarioCozinha;
 import eathubDL.EstruturasDAO.PedidoDAO;
+import eathubDL.EstruturasDAO.TransicoesCozinha;
 import eathubDL.EstruturasDAO.MenuDAO;
 import eathubDL.EstruturasDAO.PropostaDAO;
+import eathubDL.UnidadeTrabalho;
 
 /** Facade do subsistema de pedidos */
 public class SSPedidosFacade implements ISSPedidos {
@@ -28,12 +30,17 @@ public class SSPedidosFacade implements ISSPedidos {
     /** Instância do DAO de propostas */
     private PropostaDAO propostaDAO;
     private Map<String, Map<String, Pedido>> pedidosPendentes; // Map<codRestaurante, Map<codPedido, Pedido>>
-    private Map<String, Queue<String>> ordemDosPedidos;
+    private Map<String, FilaPrioridade> ordemDosPedidos; // Map<IdRestaurante, fila de espera indexada por código do pedido>
 
     private Map<String, ProgressoPedido> progressoPedidoAtual; // Map<IdRestaurante, Progresso pedido atual>
 
     private Map<String, List<ProgressoPedido>> pedidosAtrasadosPorRestaurante; // Map<IdRestaurante, List<ProgressoPedido>>
 
+    private Map<String, Map<String, ProgressoPedido>> pedidosEmConfecao; // Map<IdRestaurante, Map<codPedido, progresso no MotorCozinha>>
+
+    /** Diário das transições do estado da cozinha (sem efeito se não estiver ativo) */
+    private DiarioCozinha diario;
+
     /**
      * Construtor vazio do Facade do subsistema de pedidos
      */
@@ -46,20 +53,18 @@ public class SSPedidosFacade implements ISSPedidos {
         this.ordemDosPedidos = new HashMap<>();
         this.progressoPedidoAtual = new HashMap<>();
         this.pedidosAtrasadosPorRestaurante = new HashMap<>();
+        this.pedidosEmConfecao = new HashMap<>();
 
         for (String idRestaurante : this.pedidos.getIdsRestaurantes()) {
             this.pedidosPendentes.put(idRestaurante,new HashMap<>());
-            this.ordemDosPedidos.put(idRestaurante, new PriorityQueue<>(Comparator.comparingDouble(codPedido -> {
-                try {
-                    return getPedidoBD(codPedido).getTempoEspera();
-                } catch (PedidoNaoExisteException e) {
-                    return Double.MAX_VALUE; // Pedidos não encontrados vão para o fim
-                }
-            })));
+            this.ordemDosPedidos.put(idRestaurante, new FilaPrioridade());
             this.progressoPedidoAtual.put(idRestaurante, null);
             this.pedidosAtrasadosPorRestaurante.put(idRestaurante, new ArrayList<>());
-
+            this.pedidosEmConfecao.put(idRestaurante, new LinkedHashMap<>());
         }
+
+        this.diario = DiarioCozinha.getInstance();
+        this.diario.iniciar(new Recuperacao(), this::exportarEstadoCozinha);
     }
 
     /**
@@ -73,12 +78,16 @@ public class SSPedidosFacade implements ISSPedidos {
      */
     public SSPedidosFacade(PedidoDAO pedidos, MenuDAO menuDAO, PropostaDAO propostaDAO, 
                            Map<String, Map<String, Pedido>> pedidosPendentes,
-                           Map<String, Queue<String>> ordemDosPedidos) {
+                           Map<String, FilaPrioridade> ordemDosPedidos) {
         this.pedidos = pedidos;
         this.menuDAO = menuDAO;
         this.propostaDAO = propostaDAO;
         this.pedidosPendentes = pedidosPendentes;
         this.ordemDosPedidos = ordemDosPedidos;
+        this.progressoPedidoAtual = new HashMap<>();
+        this.pedidosAtrasadosPorRestaurante = new HashMap<>();
+        this.pedidosEmConfecao = new HashMap<>();
+        this.diario = DiarioCozinha.getInstance();
     }
 
     /** 
@@ -86,17 +95,12 @@ public class SSPedidosFacade implements ISSPedidos {
      * 
      * @param idRestaurante Id do restaurante
      */
-    public void insert_Maps_Novo_Restaurante(String idRestaurante){
+    public synchronized void insert_Maps_Novo_Restaurante(String idRestaurante){
         this.pedidosPendentes.put(idRestaurante,new HashMap<>());
-        this.ordemDosPedidos.put(idRestaurante, new PriorityQueue<>(Comparator.comparingDouble(codPedido -> {
-            try {
-                return getPedidoBD(codPedido).getTempoEspera();
-            } catch (PedidoNaoExisteException e) {
-                return Double.MAX_VALUE; // Pedidos não encontrados vão para o fim
-            }
-        })));
+        this.ordemDosPedidos.put(idRestaurante, new FilaPrioridade());
         this.progressoPedidoAtual.put(idRestaurante, null);
         this.pedidosAtrasadosPorRestaurante.put(idRestaurante, new ArrayList<>());
+        this.pedidosEmConfecao.put(idRestaurante, new LinkedHashMap<>());
     }
 
     /** 
@@ -186,7 +190,8 @@ public class SSPedidosFacade implements ISSPedidos {
     }
 
     /** 
-     * Método que regista um pedido
+     * Método que regista um pedido (numa unidade de trabalho, o pedido só deixa de estar
+     * pendente depois do commit)
      * 
      * @param codPedido Código do pedido
      * @param idRestaurante Id do restaurante
@@ -197,7 +202,12 @@ public class SSPedidosFacade implements ISSPedidos {
         double tempoEspera = calcularTempoEsperaInicial(p);// Ao registar o pedido, calcular o tempo de espera consoante a complexidade do pedido
         p.alterar_TempoEspera(tempoEspera);
         this.pedidos.put(codPedido, p);
-        this.pedidosPendentes.get(idRestaurante).remove(codPedido);
+        UnidadeTrabalho.aoConfirmar(() -> {
+            synchronized (this) {
+                this.pedidosPendentes.get(idRestaurante).remove(codPedido);
+                this.diario.pendenteRemovido(idRestaurante, codPedido);
+            }
+        });
     }
 
     /** 
@@ -208,12 +218,41 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param idRestaurante Id do restaurante
      * @throws PedidoNaoExisteException Se o pedido não existir
      */
-    public void regista_nota(String nota, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
+    public synchronized void regista_nota(String nota, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
         Pedido p = getPedidoPendente(codPedido, idRestaurante);
         p.addNota(nota);
+        this.diario.pendente(idRestaurante, p);
 
     }
 
+    /** 
+     * Método que adiciona um menu a um pedido pendente
+     * 
+     * @param codMenu Código do menu
+     * @param codPedido Código do pedido
+     * @param idRestaurante Id do restaurante
+     * @throws PedidoNaoExisteException Se o pedido não existir
+     */
+    public synchronized void adicionar_menu_pedido(String codMenu, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
+        Pedido p = getPedidoPendente(codPedido, idRestaurante);
+        p.addMenu(codMenu);
+        this.diario.pendente(idRestaurante, p);
+    }
+
+    /** 
+     * Método que adiciona uma proposta a um pedido pendente
+     * 
+     * @param codProposta Código da proposta
+     * @param codPedido Código do pedido
+     * @param idRestaurante Id do restaurante
+     * @throws PedidoNaoExisteException Se o pedido não existir
+     */
+    public synchronized void adicionar_proposta_pedido(String codProposta, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
+        Pedido p = getPedidoPendente(codPedido, idRestaurante);
+        p.addProposta(codProposta);
+        this.diario.pendente(idRestaurante, p);
+    }
+
     /** 
      * Método que regista o tipo de um pedido
      * 
@@ -222,9 +261,10 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param idRestaurante Id do restaurante
      * @throws PedidoNaoExisteException Se o pedido não existir
      */
-    public void registar_tipo_pedido(String tipo, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
+    public synchronized void registar_tipo_pedido(String tipo, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
         Pedido p = getPedidoPendente(codPedido, idRestaurante);
         p.setTipoPedido(tipo);
+        this.diario.pendente(idRestaurante, p);
 
     }
 
@@ -234,8 +274,13 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param codPedido Código do pedido
      * @param idRestaurante Id do restaurante
      */
-    public void cancelar_pedido(String codPedido, String idRestaurante) {
-        this.pedidosPendentes.get(idRestaurante).remove(codPedido);
+    public synchronized void cancelar_pedido(String codPedido, String idRestaurante) {
+        if (this.pedidosPendentes.get(idRestaurante).remove(codPedido) != null) {
+            this.diario.pendenteRemovido(idRestaurante, codPedido);
+        }
+        if (this.ordemDosPedidos.get(idRestaurante).remove(codPedido)) {
+            this.diario.retirado(idRestaurante, codPedido);
+        }
 
     }
 
@@ -245,8 +290,12 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param idRestaurante Id do restaurante
      * @return Código do próximo pedido
      */
-    public String determina_proximo_pedido(String idRestaurante) {
-        return this.ordemDosPedidos.get(idRestaurante).poll();
+    public synchronized String determina_proximo_pedido(String idRestaurante) {
+        String codPedido = this.ordemDosPedidos.get(idRestaurante).poll();
+        if (codPedido != null) {
+            this.diario.retirado(idRestaurante, codPedido);
+        }
+        return codPedido;
     }
 
     /** 
@@ -257,13 +306,13 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param idRestaurante Id do restaurante
      * @throws PedidoNaoExisteException Se o pedido não existir
      */
-    public void regista_novo_tempo_espera(double tempo, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
+    public synchronized void regista_novo_tempo_espera(double tempo, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
         Pedido p = getPedidoBD(codPedido);
         p.alterar_TempoEspera(tempo);
         this.pedidos.put(codPedido, p);
-        // Reordenar a fila após alterar o tempo de espera
-        // Quando se altera o tempo de espera, é porque ele ja nao estava mais na fila de espera
-        ordemDosPedidos.get(idRestaurante).offer(codPedido);
+        // Reordenar a fila após alterar o tempo de espera (se o pedido já não estava na fila, volta a entrar)
+        ordemDosPedidos.get(idRestaurante).offer(codPedido, tempo);
+        this.diario.enfileirado(idRestaurante, codPedido, tempo);
     }
 
     /** 
@@ -272,10 +321,11 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param idRestaurante Id do restaurante
      * @return Código do pedido criado
      */
-    public String criar_Pedido(String idRestaurante) {
+    public synchronized String criar_Pedido(String idRestaurante) {
         String id = this.pedidos.generateNewId();
         Pedido p = new Pedido(id);
         pedidosPendentes.get(idRestaurante).put(p.getCodPedido(), p);
+        this.diario.pendente(idRestaurante, p);
         return p.getCodPedido();
     }
 
@@ -287,21 +337,39 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param idRestaurante Id do restaurante
      * @throws PedidoNaoExisteException Se o pedido não existir
      */
-    public void registar_contribuinte_Pedido(int nc, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
+    public synchronized void registar_contribuinte_Pedido(int nc, String codPedido, String idRestaurante) throws PedidoNaoExisteException {
         Pedido p = getPedidoPendente(codPedido, idRestaurante);
         p.setNrContribuinte(nc);
+        this.diario.pendente(idRestaurante, p);
 
     }
 
     /** 
-     * Método que adiciona um pedido à fila de espera
+     * Método que adiciona um pedido à fila de espera, obtendo o seu tempo de espera da base de dados
      * 
      * @param idPedido Id do pedido
      * @param idRestaurante Id do restaurante
      */
     public void addPedidoQueue(String idPedido, String idRestaurante) {
-        ordemDosPedidos.get(idRestaurante).offer(idPedido);
+        double tempoEspera;
+        try {
+            tempoEspera = getPedidoBD(idPedido).getTempoEspera();
+        } catch (PedidoNaoExisteException e) {
+            tempoEspera = Double.MAX_VALUE; // Pedidos não encontrados vão para o fim
+        }
+        this.addPedidoQueue(idPedido, tempoEspera, idRestaurante);
+    }
 
+    /** 
+     * Método que adiciona um pedido à fila de espera com o tempo de espera dado
+     * 
+     * @param idPedido Id do pedido
+     * @param tempoEspera Tempo de espera do pedido (prioridade na fila)
+     * @param idRestaurante Id do restaurante
+     */
+    public synchronized void addPedidoQueue(String idPedido, double tempoEspera, String idRestaurante) {
+        ordemDosPedidos.get(idRestaurante).offer(idPedido, tempoEspera);
+        this.diario.enfileirado(idRestaurante, idPedido, tempoEspera);
     }
 
     /** 
@@ -316,7 +384,7 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param idRestaurante Id do restaurante
      * @return Código do pedido criado
      */
-    public String criar_Pedido_Completo(double tempoEspera, int nContribuinte, String notas, 
+    public synchronized String criar_Pedido_Completo(double tempoEspera, int nContribuinte, String notas, 
                                         List<String> codMenus, List<String> codPropostas, 
                                         String tipoServico, String idRestaurante) {
         Pedido p = new Pedido(this.pedidos.generateNewId(), 
@@ -328,6 +396,7 @@ public class SSPedidosFacade implements ISSPedidos {
                                 tipoServico);
 
         pedidosPendentes.get(idRestaurante).put(p.getCodPedido(), p);
+        this.diario.pendente(idRestaurante, p);
         return p.getCodPedido();
     }
 
@@ -398,7 +467,7 @@ public class SSPedidosFacade implements ISSPedidos {
      * @return Coleção de IDs dos pedidos na fila de espera
      */
     public Collection<String> obterIds_CodsPedidos_FilaEspera(String idRestaurante) {
-        return new ArrayList<String>(ordemDosPedidos.get(idRestaurante));
+        return ordemDosPedidos.get(idRestaurante).ordenados();
     }
 
     /** 
@@ -437,8 +506,13 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param idRestaurante Id do restaurante
      * @param progresso Progresso do pedido
      */
-    public void definirProgressoPedidoAtual(String idRestaurante, ProgressoPedido progresso) {
+    public synchronized void definirProgressoPedidoAtual(String idRestaurante, ProgressoPedido progresso) {
         this.progressoPedidoAtual.put(idRestaurante, progresso);
+        if (progresso == null) {
+            this.diario.terminado(idRestaurante);
+        } else {
+            this.diario.iniciado(idRestaurante, progresso.getPedido(), progresso.getEtapasPropostas(), progresso.getEtapasMenus());
+        }
     }
 
     /** 
@@ -449,7 +523,7 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param propostaEtapa Etapa da proposta
      * @return true se a etapa foi processada com sucesso, false caso contrário
      */
-    public boolean processarEtapaAtualProposta(String idRestaurante, String idFuncionario, PropostaEtapa propostaEtapa) {
+    public synchronized boolean processarEtapaAtualProposta(String idRestaurante, String idFuncionario, PropostaEtapa propostaEtapa) {
         ProgressoPedido progresso = progressoPedidoAtual.get(idRestaurante);
         
         if (progresso == null) {
@@ -458,6 +532,9 @@ public class SSPedidosFacade implements ISSPedidos {
         
         // Avançar a etapa
         boolean avancou = progresso.avancarEtapaProposta(propostaEtapa.getCodProposta(), propostaEtapa.getCodMenu());
+        if (avancou) {
+            this.diario.avancado(idRestaurante, propostaEtapa.getCodProposta(), propostaEtapa.getCodMenu());
+        }
         
         return avancou;
     }
@@ -483,11 +560,12 @@ public class SSPedidosFacade implements ISSPedidos {
      * 
      * @param idRestaurante Id do restaurante
      */
-    public void guardarProgressoPedidoAtual(String idRestaurante) {
+    public synchronized void guardarProgressoPedidoAtual(String idRestaurante) {
         ProgressoPedido progressoAtual = this.progressoPedidoAtual.get(idRestaurante);
         if (progressoAtual != null) {
             this.pedidosAtrasadosPorRestaurante.get(idRestaurante).add(progressoAtual);
             this.progressoPedidoAtual.put(idRestaurante, null);
+            this.diario.adiado(idRestaurante);
         }
     }
 
@@ -498,17 +576,220 @@ public class SSPedidosFacade implements ISSPedidos {
      * @param idPedido Id do pedido
      * @return Progresso do pedido atrasado
      */
-    public ProgressoPedido obterProgressoAnteriorAtrasado(String idRestaurante, String idPedido) {
+    public synchronized ProgressoPedido obterProgressoAnteriorAtrasado(String idRestaurante, String idPedido) {
         List<ProgressoPedido> atrasados = this.pedidosAtrasadosPorRestaurante.get(idRestaurante);
         for (ProgressoPedido pp : atrasados) {
             if (pp.getPedido().getCodPedido().equals(idPedido)) {
                 atrasados.remove(pp);
+                this.diario.retomado(idRestaurante, idPedido);
                 return pp;
             }
         }
         return null;
     }
 
+    /** 
+     * Método que retira o próximo pedido da fila de espera e o coloca em confeção no motor da cozinha
+     * (retomando o progresso guardado se o pedido tinha sido adiado)
+     * 
+     * @param idRestaurante Id do restaurante
+     * @return Progresso do pedido que entrou em confeção, ou null se a fila estiver vazia
+     */
+    public synchronized ProgressoPedido iniciarConfecao(String idRestaurante) {
+        FilaPrioridade fila = this.ordemDosPedidos.get(idRestaurante);
+        String codPedido;
+        while ((codPedido = fila.poll()) != null) {
+            this.diario.retirado(idRestaurante, codPedido);
+            ProgressoPedido progresso = this.obterProgressoAnteriorAtrasado(idRestaurante, codPedido);
+            if (progresso == null) {
+                try {
+                    progresso = new ProgressoPedido(getPedidoBD(codPedido));
+                } catch (PedidoNaoExisteException e) {
+                    continue; // Pedido removido entretanto: passa ao seguinte
+                }
+            }
+            this.pedidosEmConfecao.get(idRestaurante).put(codPedido, progresso);
+            this.diario.confecaoIniciada(idRestaurante, progresso.getPedido(), progresso.getEtapasPropostas(), progresso.getEtapasMenus());
+            return progresso;
+        }
+        return null;
+    }
+
+    /** 
+     * Método que avança uma etapa de um pedido em confeção no motor da cozinha
+     * 
+     * @param idRestaurante Id do restaurante
+     * @param codPedido Código do pedido
+     * @param propostaEtapa Etapa concluída
+     * @return true se a etapa foi avançada, false caso contrário
+     */
+    public synchronized boolean avancarConfecao(String idRestaurante, String codPedido, PropostaEtapa propostaEtapa) {
+        ProgressoPedido progresso = this.pedidosEmConfecao.get(idRestaurante).get(codPedido);
+        if (progresso == null) {
+            return false;
+        }
+        boolean avancou = progresso.avancarEtapaProposta(propostaEtapa.getCodProposta(), propostaEtapa.getCodMenu());
+        if (avancou) {
+            this.diario.confecaoAvancada(idRestaurante, codPedido, propostaEtapa.getCodProposta(), propostaEtapa.getCodMenu());
+        }
+        return avancou;
+    }
+
+    /** 
+     * Método que retira um pedido do motor da cozinha (concluído ou descartado)
+     * 
+     * @param idRestaurante Id do restaurante
+     * @param codPedido Código do pedido
+     */
+    public synchronized void terminarConfecao(String idRestaurante, String codPedido) {
+        if (this.pedidosEmConfecao.get(idRestaurante).remove(codPedido) != null) {
+            this.diario.confecaoTerminada(idRestaurante, codPedido);
+        }
+    }
+
+    /** 
+     * Método que obtém os pedidos em confeção no motor da cozinha de um restaurante
+     * 
+     * @param idRestaurante Id do restaurante
+     * @return Cópia da lista dos progressos, pela ordem em que entraram em confeção
+     */
+    public synchronized Collection<ProgressoPedido> obterPedidosEmConfecao(String idRestaurante) {
+        Map<String, ProgressoPedido> emConfecao = this.pedidosEmConfecao.get(idRestaurante);
+        return emConfecao == null ? new ArrayList<>() : new ArrayList<>(emConfecao.values());
+    }
+
+    /** 
+     * Método que exporta o estado completo da cozinha como uma sequência de transições
+     * (usado pelo DiarioCozinha para escrever os snapshots)
+     * 
+     * @param destino Recetor das transições
+     */
+    private synchronized void exportarEstadoCozinha(TransicoesCozinha destino) {
+        for (String idRestaurante : this.pedidosPendentes.keySet()) {
+            for (Pedido p : this.pedidosPendentes.get(idRestaurante).values()) {
+                destino.pendente(idRestaurante, p);
+            }
+            FilaPrioridade fila = this.ordemDosPedidos.get(idRestaurante);
+            for (String codPedido : fila.ordenados()) {
+                destino.enfileirado(idRestaurante, codPedido, fila.getPrioridade(codPedido));
+            }
+            for (ProgressoPedido pp : this.pedidosAtrasadosPorRestaurante.get(idRestaurante)) {
+                destino.iniciado(idRestaurante, pp.getPedido(), pp.getEtapasPropostas(), pp.getEtapasMenus());
+                destino.adiado(idRestaurante);
+            }
+            ProgressoPedido atual = this.progressoPedidoAtual.get(idRestaurante);
+            if (atual != null) {
+                destino.iniciado(idRestaurante, atual.getPedido(), atual.getEtapasPropostas(), atual.getEtapasMenus());
+            }
+            for (ProgressoPedido pp : this.pedidosEmConfecao.get(idRestaurante).values()) {
+                destino.confecaoIniciada(idRestaurante, pp.getPedido(), pp.getEtapasPropostas(), pp.getEtapasMenus());
+            }
+        }
+    }
+
+    /**
+     * Aplicação das transições recuperadas do DiarioCozinha às estruturas em memória
+     * (as transições de restaurantes que já não existem são ignoradas)
+     */
+    private class Recuperacao implements TransicoesCozinha {
+
+        @Override
+        public void pendente(String idRestaurante, Pedido pedido) {
+            if (pedidosPendentes.containsKey(idRestaurante)) {
+                pedidosPendentes.get(idRestaurante).put(pedido.getCodPedido(), pedido);
+            }
+        }
+
+        @Override
+        public void pendenteRemovido(String idRestaurante, String codPedido) {
+            if (pedidosPendentes.containsKey(idRestaurante)) {
+                pedidosPendentes.get(idRestaurante).remove(codPedido);
+            }
+        }
+
+        @Override
+        public void enfileirado(String idRestaurante, String codPedido, double tempoEspera) {
+            if (ordemDosPedidos.containsKey(idRestaurante)) {
+                ordemDosPedidos.get(idRestaurante).offer(codPedido, tempoEspera);
+            }
+        }
+
+        @Override
+        public void retirado(String idRestaurante, String codPedido) {
+            if (ordemDosPedidos.containsKey(idRestaurante)) {
+                ordemDosPedidos.get(idRestaurante).remove(codPedido);
+            }
+        }
+
+        @Override
+        public void iniciado(String idRestaurante, Pedido pedido, Map<String, Integer> etapasPropostas,
+                             Map<String, Map<String, Integer>> etapasMenus) {
+            if (progressoPedidoAtual.containsKey(idRestaurante)) {
+                ProgressoPedido pp = new ProgressoPedido(pedido);
+                pp.restaurarEtapas(etapasPropostas, etapasMenus);
+                progressoPedidoAtual.put(idRestaurante, pp);
+            }
+        }
+
+        @Override
+        public void avancado(String idRestaurante, String codProposta, String codMenu) {
+            ProgressoPedido pp = progressoPedidoAtual.get(idRestaurante);
+            if (pp != null) {
+                pp.avancarEtapaProposta(codProposta, codMenu);
+            }
+        }
+
+        @Override
+        public void adiado(String idRestaurante) {
+            ProgressoPedido pp = progressoPedidoAtual.get(idRestaurante);
+            if (pp != null) {
+                pedidosAtrasadosPorRestaurante.get(idRestaurante).add(pp);
+                progressoPedidoAtual.put(idRestaurante, null);
+            }
+        }
+
+        @Override
+        public void retomado(String idRestaurante, String codPedido) {
+            List<ProgressoPedido> atrasados = pedidosAtrasadosPorRestaurante.get(idRestaurante);
+            if (atrasados != null) {
+                atrasados.removeIf(pp -> pp.getPedido().getCodPedido().equals(codPedido));
+            }
+        }
+
+        @Override
+        public void terminado(String idRestaurante) {
+            if (progressoPedidoAtual.containsKey(idRestaurante)) {
+                progressoPedidoAtual.put(idRestaurante, null);
+            }
+        }
+
+        @Override
+        public void confecaoIniciada(String idRestaurante, Pedido pedido, Map<String, Integer> etapasPropostas,
+                                     Map<String, Map<String, Integer>> etapasMenus) {
+            if (pedidosEmConfecao.containsKey(idRestaurante)) {
+                ProgressoPedido pp = new ProgressoPedido(pedido);
+                pp.restaurarEtapas(etapasPropostas, etapasMenus);
+                pedidosEmConfecao.get(idRestaurante).put(pedido.getCodPedido(), pp);
+            }
+        }
+
+        @Override
+        public void confecaoAvancada(String idRestaurante, String codPedido, String codProposta, String codMenu) {
+            Map<String, ProgressoPedido> emConfecao = pedidosEmConfecao.get(idRestaurante);
+            ProgressoPedido pp = emConfecao == null ? null : emConfecao.get(codPedido);
+            if (pp != null) {
+                pp.avancarEtapaProposta(codProposta, codMenu);
+            }
+        }
+
+        @Override
+        public void confecaoTerminada(String idRestaurante, String codPedido) {
+            if (pedidosEmConfecao.containsKey(idRestaurante)) {
+                pedidosEmConfecao.get(idRestaurante).remove(codPedido);
+            }
+        }
+    }
+
     // ==================== MÉTODOS DE ACESSO AOS DAOs ====================
 
     /** 
@@ -578,6 +859,17 @@ public class SSPedidosFacade implements ISSPedidos {
         return this.pedidos.values();
     }
 
+    /** 
+     * Método que obtém uma página de pedidos, por ordem de ID
+     * 
+     * @param depoisDe ID do último pedido da página anterior, ou null para a primeira página
+     * @param tamanho Número máximo de pedidos na página
+     * @return Página de pedidos
+     */
+    public Pagina<Pedido> pedidoPagina(String depoisDe, int tamanho) {
+        return this.pedidos.pagina(depoisDe, tamanho);
+    }
+
     /** 
      * Método que obtém um pedido
      * 
@@ -689,14 +981,17 @@ public class SSPedidosFacade implements ISSPedidos {
     }
 
     /** 
-     * Método que altera os ingredientes de uma proposta num pedido
+     * Método que altera os ingredientes de uma proposta num pedido pendente
      * 
-     * @param pedido Pedido
+     * @param codPedido Código do pedido
+     * @param idRestaurante Id do restaurante
      * @param codProposta Código da proposta
      * @param lista Lista de ingredientes
      * @param adicionar true para adicionar, false para remover
+     * @throws PedidoNaoExisteException Se o pedido não existir
      */
-    public void alterarIngredientesProposta(Pedido pedido, String codProposta, List<String> lista, boolean adicionar) {
+    public synchronized void alterarIngredientesProposta(String codPedido, String idRestaurante, String codProposta, List<String> lista, boolean adicionar) throws PedidoNaoExisteException {
+        Pedido pedido = getPedidoPendente(codPedido, idRestaurante);
         if (adicionar) {
             for (String nomeIngrediente : lista) {
                 pedido.addNota("Acrescentar " + nomeIngrediente + " à proposta " + codProposta + ".");
@@ -706,18 +1001,22 @@ public class SSPedidosFacade implements ISSPedidos {
                 pedido.addNota("Não usar " + nomeIngrediente + " na proposta " + codProposta + ".");
             }
         }
+        this.diario.pendente(idRestaurante, pedido);
     }
 
     /** 
-     * Método que altera os ingredientes de uma proposta de um menu num pedido
+     * Método que altera os ingredientes de uma proposta de um menu num pedido pendente
      * 
-     * @param pedido Pedido
+     * @param codPedido Código do pedido
+     * @param idRestaurante Id do restaurante
      * @param codMenu Código do menu
      * @param codProposta Código da proposta
      * @param lista Lista de ingredientes
      * @param adicionar true para adicionar, false para remover
+     * @throws PedidoNaoExisteException Se o pedido não existir
      */
-    public void alterarIngredientesPropostaMenu(Pedido pedido, String codMenu, String codProposta, List<String> lista, boolean adicionar) {
+    public synchronized void alterarIngredientesPropostaMenu(String codPedido, String idRestaurante, String codMenu, String codProposta, List<String> lista, boolean adicionar) throws PedidoNaoExisteException {
+        Pedido pedido = getPedidoPendente(codPedido, idRestaurante);
         if (adicionar) {
             for (String nomeIngrediente : lista) {
                 pedido.addNota("Acrescentar " + nomeIngrediente + " à proposta " + codProposta + " do menu " + codMenu + ".");
@@ -727,6 +1026,7 @@ public class SSPedidosFacade implements ISSPedidos {
                 pedido.addNota("Não usar " + nomeIngrediente + " na proposta " + codProposta + " do menu " + codMenu + ".");
             }
         }
+        this.diario.pendente(idRestaurante, pedido);
     }
 
     /** 
@@ -2,10 +2,12 @@ package eathubUI.UIs;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import eathubLN.IEatHubLN;
 import eathubLN.ssCadeia.Estatistica;
@@ -251,14 +253,15 @@ public class ChefeRestauranteUI {
         System.out.println("║    HISTÓRICO DE PEDIDOS DO RESTAURANTE    ║");
         System.out.println("╚═══════════════════════════════════════════╝\n");
         
-        Collection<Historico> historicos = lnFacade.getHistoricoPedidosRestaurante(idRestaurante);
-        
-        if (historicos.isEmpty()) {
-            System.out.println("  Não há histórico de pedidos para o restaurante " + idRestaurante + ".");
-        } else {
-            System.out.println("Histórico de pedidos do restaurante " + idRestaurante + ":\n");
-            for (Historico h : historicos) {
-                System.out.println(h.toString());
+        try (Stream<Historico> historicos = lnFacade.getHistoricoPedidosRestauranteStream(idRestaurante)) {
+            Iterator<Historico> it = historicos.iterator();
+            if (!it.hasNext()) {
+                System.out.println("  Não há histórico de pedidos para o restaurante " + idRestaurante + ".");
+            } else {
+                System.out.println("Histórico de pedidos do restaurante " + idRestaurante + ":\n");
+                while (it.hasNext()) {
+                    System.out.println(it.next().toString());
+                }
             }
         }
         
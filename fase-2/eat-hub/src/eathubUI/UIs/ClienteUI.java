@@ -130,6 +130,7 @@ public class ClienteUI {
             System.out.println("\n[Erro: " + e.getMessage() + "]");
             return false;
         }
+        // Vistas só de leitura: os itens são adicionados através da fachada, que regista a alteração no diário
         List<String> menusEscolhidos = p.getCodMenus();
         List<String> propostasEscolhidas = p.getCodPropostas();
 
@@ -169,8 +170,13 @@ public class ClienteUI {
                     String codMenu = scanner.nextLine();
                     boolean flagM = lnFacade.menuExiste(codMenu);
                     if (!codMenu.trim().isEmpty() && flagM) {
-                        menusEscolhidos.add(codMenu);
-                        System.out.println("[Menu " + codMenu + " adicionado!]\n");
+                        try {
+                            lnFacade.adicionar_menu_pedido(codMenu, this.pedidoAtual, this.restauranteAtual);
+                            System.out.println("[Menu " + codMenu + " adicionado!]\n");
+                        } catch (PedidoNaoExisteException e) {
+                            System.out.println("\n[Erro: " + e.getMessage() + "]");
+                            return false;
+                        }
                     } else if (!flagM) {
                         System.out.println("[Menu " + codMenu + " não existe!]\n");
                     }
@@ -181,8 +187,13 @@ public class ClienteUI {
                     String codProposta = scanner.nextLine();
                     boolean flagP = lnFacade.propostaExiste(codProposta);
                     if (!codProposta.trim().isEmpty() && flagP) {
-                        propostasEscolhidas.add(codProposta);
-                        System.out.println("[Proposta " + codProposta + " adicionada!]\n");
+                        try {
+                            lnFacade.adicionar_proposta_pedido(codProposta, this.pedidoAtual, this.restauranteAtual);
+                            System.out.println("[Proposta " + codProposta + " adicionada!]\n");
+                        } catch (PedidoNaoExisteException e) {
+                            System.out.println("\n[Erro: " + e.getMessage() + "]");
+                            return false;
+                        }
                     } else if (!flagP) {
                         System.out.println("[Proposta " + codProposta + " não existe!]\n");
                     }
@@ -242,7 +253,7 @@ public class ClienteUI {
                 System.out.print("Nota: ");
                 String nota = scanner.nextLine().trim();
                 try {
-                    lnFacade.getPedidoPendente(this.pedidoAtual, this.restauranteAtual).addNota(nota);
+                    lnFacade.regista_nota(nota, this.pedidoAtual, this.restauranteAtual);
                     System.out.println("[Nota registada.]");
                 } catch (PedidoNaoExisteException e) {
                     System.out.println("\n[Erro: " + e.getMessage() + "]");
@@ -254,7 +265,7 @@ public class ClienteUI {
                     System.out.print("Nota: ");
                     nota = scanner.nextLine().trim();
                     try {
-                        lnFacade.getPedidoPendente(this.pedidoAtual, this.restauranteAtual).addNota(nota);
+                        lnFacade.regista_nota(nota, this.pedidoAtual, this.restauranteAtual);
                         System.out.println("[Nota registada]");
                     } catch (PedidoNaoExisteException e) {
                         System.out.println("[Erro: " + e.getMessage() + "]");
@@ -478,42 +489,6 @@ public class ClienteUI {
         pausar();
     }
 
-    /**
-     * Método para registar um pedido
-     * 
-     * @param codPedido Código do Pedido
-     * @param idRestaurante ID do Restaurante
-     */
-    private void registarPedido(String codPedido, String idRestaurante) {
-        
-        if (codPedido == null) return;
-
-        boolean confirmado = lnFacade.pagamento_confirmado(codPedido);
-        if (!confirmado) {
-            System.out.println("[Erro: O pagamento do pedido ainda não foi confirmado. Não é possível registar o pedido.]");
-            pausar();
-            return;
-        }
-
-        boolean isPendente = lnFacade.ePendente(codPedido, idRestaurante);
-        if (!isPendente) {
-            System.out.println("[Erro: O pedido já foi registado anteriormente.]");
-            pausar();
-            return;
-        }
-        
-        try {
-            lnFacade.regista_pedido(codPedido, idRestaurante);
-            System.out.println("[Pedido confirmado e registado!]");
-            lnFacade.addPedidoQueue(codPedido, idRestaurante);
-            System.out.println("[Pedido " + codPedido + " registado e adicionado à fila!]");
-        } catch (PedidoNaoExisteException e) {
-            System.out.println("[Erro: " + e.getMessage() + "]");
-        }
-        
-        pausar();
-    }
-
     /**
      * Método para registar o tipo de serviço do pedido
      * 
@@ -728,10 +703,15 @@ public class ClienteUI {
                 return;
             }
 
-            if (codMenu == null) {
-                lnFacade.alterarIngredientesProposta(p, codProposta, ingredientesList, false);
-            } else {
-                lnFacade.alterarIngredientesPropostaMenu(p, codMenu, codProposta, ingredientesList, false);
+            try {
+                if (codMenu == null) {
+                    lnFacade.alterarIngredientesProposta(p.getCodPedido(), this.restauranteAtual, codProposta, ingredientesList, false);
+                } else {
+                    lnFacade.alterarIngredientesPropostaMenu(p.getCodPedido(), this.restauranteAtual, codMenu, codProposta, ingredientesList, false);
+                }
+            } catch (PedidoNaoExisteException e) {
+                System.out.println("[Erro: " + e.getMessage() + "]");
+                return;
             }
 
             System.out.println("[Operação de remoção concluída!]\n");
@@ -784,10 +764,15 @@ public class ClienteUI {
                 return;
             }
 
-            if (codMenu == null) {
-                lnFacade.alterarIngredientesProposta(p, codProposta, ingredientesList, true);
-            } else {
-                lnFacade.alterarIngredientesPropostaMenu(p, codMenu, codProposta, ingredientesList, true);
+            try {
+                if (codMenu == null) {
+                    lnFacade.alterarIngredientesProposta(p.getCodPedido(), this.restauranteAtual, codProposta, ingredientesList, true);
+                } else {
+                    lnFacade.alterarIngredientesPropostaMenu(p.getCodPedido(), this.restauranteAtual, codMenu, codProposta, ingredientesList, true);
+                }
+            } catch (PedidoNaoExisteException e) {
+                System.out.println("[Erro: " + e.getMessage() + "]");
+                return;
             }
             System.out.println("[Operação de adição concluída!]\n");
         } else {
@@ -864,26 +849,21 @@ public class ClienteUI {
             default -> opcao;
         };
         
-        String idPagamento = lnFacade.regista_pagamento(valorPedido, codPedido, metodoPagamento);
-
-        if (idPagamento == null) {
-            System.out.println("[Erro: Erro no pagamento. Pedido não finalizado.]");
-            return null;
-        }
-
-        System.out.println("\n[Pagamento registado com sucesso! ID Pagamento: " + idPagamento + "]");
-        registarPedido(codPedido, idRestaurante);
-
-        Fatura f = null;
+        Pair<Fatura, Talao> documentos = null;
 
         try {
-            f = lnFacade.gera_fatura(idPagamento, lnFacade.getPedidoBD(codPedido));
+            documentos = lnFacade.finalizar_pagamento(valorPedido, codPedido, metodoPagamento, idRestaurante);
         } catch (PedidoNaoExisteException e) {
-            System.out.println("[Erro: " + e.getMessage() + "]");
+            System.out.println("[Erro: " + e.getMessage() + " Pedido não finalizado.]");
             pausar();
             return null;
         }
-        Talao t = lnFacade.gera_talao(this.pedidoAtual);
+        Fatura f = documentos.getFirst();
+        Talao t = documentos.getSecond();
+        String idPagamento = f.getIdPagamento();
+
+        System.out.println("\n[Pagamento registado com sucesso! ID Pagamento: " + idPagamento + "]");
+        System.out.println("[Pedido " + codPedido + " registado e adicionado à fila!]");
 
         System.out.println("\n" + f.toString());
         System.out.println("\n" + t.toString());
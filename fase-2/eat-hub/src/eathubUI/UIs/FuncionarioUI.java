@@ -58,8 +58,12 @@ public class FuncionarioUI {
         opcoes.add(new MenuOpcao("Ver Perfil", () -> this.verPerfil(idFuncionario)));
         opcoes.add(new MenuOpcao("Ver Próximo Pedido", () -> this.verProximoPedido(idRestaurante)));
         opcoes.add(new MenuOpcao("Ver Fila de Pedidos", () -> this.verFilaPedidos(idRestaurante)));
-        opcoes.add(new MenuOpcao("Sinalizar início do próximo pedido", () -> lnFacade.obterProgressoPedidoAtual(idRestaurante) == null, () -> this.iniciarProximoPedido(idRestaurante)));
-        opcoes.add(new MenuOpcao("Processar Pedido", () -> lnFacade.obterProgressoPedidoAtual(idRestaurante) != null, () -> this.processarPedido(idRestaurante)));
+        if (lnFacade.motorCozinhaAtivo()) { // Os pedidos são confecionados pelo motor da cozinha
+            opcoes.add(new MenuOpcao("Ver Estado da Cozinha", () -> this.verEstadoCozinha(idRestaurante)));
+        } else {
+            opcoes.add(new MenuOpcao("Sinalizar início do próximo pedido", () -> lnFacade.obterProgressoPedidoAtual(idRestaurante) == null, () -> this.iniciarProximoPedido(idRestaurante)));
+            opcoes.add(new MenuOpcao("Processar Pedido", () -> lnFacade.obterProgressoPedidoAtual(idRestaurante) != null, () -> this.processarPedido(idRestaurante)));
+        }
         opcoes.add(new MenuOpcao("Consultar Detalhes de um Pedido Pendente", () -> this.consultarDetalhesPedidoPendente(idRestaurante)));
         opcoes.add(new MenuOpcao("Consultar Detalhes de um Pedido Finalizado", () -> this.consultarDetalhesPedidoFinalizado()));
         opcoes.add(new MenuOpcao("Ver mensagens do Gestor", () -> this.verMensagensGestor()));
@@ -149,6 +153,29 @@ public class FuncionarioUI {
         pausar();
     }
 
+    /** 
+     * Método que apresenta o estado da cozinha do restaurante no motor da cozinha
+     * 
+     * @param idRestaurante ID do Restaurante
+     */
+    private void verEstadoCozinha(String idRestaurante) {
+        System.out.println("\n╔═══════════════════════════════════════════╗");
+        System.out.println("║         ESTADO DA COZINHA                 ║");
+        System.out.println("╚═══════════════════════════════════════════╝\n");
+
+        List<String> estado = lnFacade.obterEstadoCozinha(idRestaurante);
+
+        if (estado.isEmpty()) {
+            System.out.println("[A cozinha não tem estações nem pedidos em confeção.]");
+        } else {
+            for (String linha : estado) {
+                System.out.println("  " + linha);
+            }
+        }
+
+        pausar();
+    }
+
     /** 
      * Método que inicia o próximo pedido na fila
      * 
@@ -271,9 +298,9 @@ public class FuncionarioUI {
                             } else {
                                 System.out.println("\n[Proposta " + proximaProposta.getCodProposta() + " completamente confecionada!]");
                             }
-                            boolean sucessoRegisto = lnFacade.registar_Ingredientes_Utilizados_Proposta(idRestaurante, proximaProposta.getCodProposta());
-                            if (!sucessoRegisto) {
-                                System.out.println("[Erro ao registar os ingredientes utilizados no stock do restaurante.]");
+                            List<String> emFalta = lnFacade.registar_Ingredientes_Utilizados_Proposta(idRestaurante, proximaProposta.getCodProposta());
+                            if (!emFalta.isEmpty()) {
+                                System.out.println("[Erro ao registar os ingredientes utilizados no stock do restaurante. Ingredientes em falta: " + emFalta + "]");
                                 System.out.println("[Pedido eliminado do progresso atual.]");
                                 lnFacade.definirProgressoPedidoAtual(idRestaurante, null);
                                 pausar();
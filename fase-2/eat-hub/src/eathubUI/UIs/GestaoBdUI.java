@@ -1,6 +1,7 @@
 package eathubUI.UIs;
 
 import eathubLN.IEatHubLN;
+import eathubLN.Pagina;
 import eathubLN.ssCadeia.Funcionario;
 import eathubLN.ssCadeia.Historico;
 import eathubLN.ssCadeia.MensagemGestor;
@@ -8,7 +9,6 @@ import eathubLN.ssCadeia.Pair;
 import eathubLN.ssCadeia.Restaurante;
 import eathubLN.ssComercial.Fatura;
 import eathubLN.ssComercial.Pagamento;
-import eathubLN.ssComercial.Talao;
 import eathubLN.ssPedidos.Ingrediente;
 import eathubLN.ssPedidos.Menu;
 import eathubLN.ssPedidos.Pedido;
@@ -18,10 +18,12 @@ import eathubUI.Menus.MenuUI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Scanner;
-import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Interface para a Gestão da BD
@@ -31,6 +33,8 @@ public class GestaoBdUI {
     private IEatHubLN lnFacade;
     /** Scanner para entrada do utilizador */
     private Scanner scanner;
+    /** Número de registos por página nas listagens da BD */
+    private static final int TAMANHO_PAGINA = 20;
 
     /**
      * Construtor da classe GestaoBdUI
@@ -137,6 +141,7 @@ public class GestaoBdUI {
             String idRestaurante = scanner.nextLine().trim();
             this.listarHistoricoPedidosRestaurante(idRestaurante);}));
         opcoes.add(new MenuOpcao("Remover Histórico de Pedidos", () -> this.removerHistoricoPedidos()));
+        opcoes.add(new MenuOpcao("Reconstruir Estatísticas Diárias", () -> this.reconstruirEstatisticas()));
         new MenuUI(opcoes).run();
     }
 
@@ -479,20 +484,23 @@ public class GestaoBdUI {
         System.out.print("ID do Restaurante: ");
         String idRestaurante = scanner.nextLine().trim();
 
-        Set<Entry<Pair<String, String>, Integer>> stock = lnFacade.stockEntrySetRestaurante(idRestaurante);
-
-        if (stock.isEmpty()) {
-            System.out.println("[O restaurante " + idRestaurante + " não possui ingredientes em stock ou não existe.]");
-        } else {
-            System.out.println("\nStock de ingredientes do restaurante " + idRestaurante + ":\n");
-        }
+        // Lido em cursor: as entradas são impressas à medida que chegam da BD
+        try (Stream<Entry<Pair<String, String>, Integer>> stock = lnFacade.stockStreamRestaurante(idRestaurante)) {
+            Iterator<Entry<Pair<String, String>, Integer>> it = stock.iterator();
+            if (!it.hasNext()) {
+                System.out.println("[O restaurante " + idRestaurante + " não possui ingredientes em stock ou não existe.]");
+            } else {
+                System.out.println("\nStock de ingredientes do restaurante " + idRestaurante + ":\n");
+            }
 
-        for (Entry<Pair<String, String>, Integer> entry : stock) {
-            Pair<String, String> key = entry.getKey();
-            Integer quantidade = entry.getValue();
-            System.out.println("Restaurante ID: " + key.getFirst() + 
-                               " | Ingrediente Código: " + key.getSecond() + 
-                               " | Quantidade: " + quantidade);
+            while (it.hasNext()) {
+                Entry<Pair<String, String>, Integer> entry = it.next();
+                Pair<String, String> key = entry.getKey();
+                Integer quantidade = entry.getValue();
+                System.out.println("Restaurante ID: " + key.getFirst() + 
+                                   " | Ingrediente Código: " + key.getSecond() + 
+                                   " | Quantidade: " + quantidade);
+            }
         }
 
         pausar();
@@ -690,16 +698,8 @@ public class GestaoBdUI {
         System.out.println("║   LISTA DE PEDIDOS                        ║");
         System.out.println("╚═══════════════════════════════════════════╝\n");
         
-        // Pedidos registados
-        Collection<Pedido> registados = lnFacade.pedidoValues();
-        System.out.println("Pedidos Registados (" + registados.size() + "):");
-        if (registados.isEmpty()) {
-            System.out.println("  (nenhum)");
-        } else {
-            for (Pedido p : registados) {
-                System.out.println(p.toString());
-            }
-        }
+        this.listarPaginado("Pedidos Registados:", "  (nenhum)",
+                            depoisDe -> lnFacade.pedidoPagina(depoisDe, TAMANHO_PAGINA));
         
         pausar();
     }
@@ -737,16 +737,8 @@ public class GestaoBdUI {
         System.out.println("║   LISTA DE FATURAS                        ║");
         System.out.println("╚═══════════════════════════════════════════╝\n");
         
-        Collection<Fatura> faturas = lnFacade.faturaValues();
-        
-        if (faturas.isEmpty()) {
-            System.out.println("[Não há faturas cadastradas.]");
-        } else {
-            System.out.println("Faturas registadas:");
-            for (Fatura f : faturas) {
-                System.out.println(f.toString());
-            }
-        }
+        this.listarPaginado("Faturas registadas:", "[Não há faturas cadastradas.]",
+                            depoisDe -> lnFacade.faturaPagina(depoisDe, TAMANHO_PAGINA));
         
         pausar();
     }
@@ -780,16 +772,8 @@ public class GestaoBdUI {
         System.out.println("║   LISTA DE TALÕES                         ║");
         System.out.println("╚═══════════════════════════════════════════╝\n");
         
-        Collection<Talao> taloes = lnFacade.talaoValues();
-        
-        if (taloes.isEmpty()) {
-            System.out.println("[Não há talões cadastrados.]");
-        } else {
-            System.out.println("Talões registados:");
-            for (Talao t : taloes) {
-                System.out.println(t.toString());
-            }
-        }
+        this.listarPaginado("Talões registados:", "[Não há talões cadastrados.]",
+                            depoisDe -> lnFacade.talaoPagina(depoisDe, TAMANHO_PAGINA));
         
         pausar();
     }
@@ -827,16 +811,8 @@ public class GestaoBdUI {
         System.out.println("║   LISTA DE PAGAMENTOS                     ║");
         System.out.println("╚═══════════════════════════════════════════╝\n");
         
-        Collection<Pagamento> pagamentos = lnFacade.pagamentoValues();
-        
-        if (pagamentos.isEmpty()) {
-            System.out.println("[Não há pagamentos cadastrados.]");
-        } else {
-            System.out.println("Pagamentos registados:");
-            for (Pagamento p : pagamentos) {
-                System.out.println(p.toString());
-            }
-        }
+        this.listarPaginado("Pagamentos registados:", "[Não há pagamentos cadastrados.]",
+                            depoisDe -> lnFacade.pagamentoPagina(depoisDe, TAMANHO_PAGINA));
         
         pausar();
     }
@@ -874,15 +850,12 @@ public class GestaoBdUI {
         System.out.println("║   LISTA DE FUNCIONÁRIOS                   ║");
         System.out.println("╚═══════════════════════════════════════════╝\n");
         
-        Collection<Funcionario> funcionarios = lnFacade.funcionarioValues();
+        System.out.print("ID do Restaurante (vazio para toda a cadeia): ");
+        String idRestaurante = scanner.nextLine().trim();
+        String filtro = idRestaurante.isEmpty() ? null : idRestaurante;
         
-        if (funcionarios.isEmpty()) {
-            System.out.println("[Não há funcionários cadastrados.]");
-        } else {
-            for (Funcionario f : funcionarios) {
-                System.out.println(f.toString());
-            }
-        }
+        this.listarPaginado("Funcionários registados:", "[Não há funcionários cadastrados.]",
+                            depoisDe -> lnFacade.funcionarioPagina(depoisDe, TAMANHO_PAGINA, filtro));
         
         pausar();
     }
@@ -1089,6 +1062,20 @@ public class GestaoBdUI {
         pausar();
     }
 
+    /** 
+     * Método para reconstruir os agregados diários de estatísticas a partir do histórico
+     */
+    private void reconstruirEstatisticas() {
+        System.out.println("\n╔═══════════════════════════════════════════╗");
+        System.out.println("║   RECONSTRUIR ESTATÍSTICAS DIÁRIAS        ║");
+        System.out.println("╚═══════════════════════════════════════════╝\n");
+
+        int linhas = lnFacade.reconstruir_estatisticas();
+        System.out.println("[Estatísticas reconstruídas: " + linhas + " agregados (restaurante x dia).]");
+
+        pausar();
+    }
+
     /** 
      * Método para listar histórico de pedidos na BD
      */
@@ -1098,15 +1085,14 @@ public class GestaoBdUI {
         System.out.println("║   DA CADEIA                               ║");
         System.out.println("╚═══════════════════════════════════════════╝\n");
         
-        Collection<Historico> historicos = lnFacade.getHistoricoPedidosCadeia();
+        System.out.print("Desde (YYYY-MM-DD, vazio para todos): ");
+        String desde = scanner.nextLine().trim();
         
-        if (historicos.isEmpty()) {
-            System.out.println("[Não há histórico de pedidos.]");
-        } else {
-            System.out.println("Histórico de pedidos da cadeia:\n");
-            for (Historico h : historicos) {
-                System.out.println(h.toString() + "\n");
-            }
+        try {
+            this.listarPaginado("Histórico de pedidos da cadeia:\n", "[Não há histórico de pedidos.]",
+                                depoisDe -> lnFacade.getHistoricoPedidosPagina(depoisDe, TAMANHO_PAGINA, null, desde));
+        } catch (IllegalArgumentException e) {
+            System.out.println("[Erro: " + e.getMessage() + "]");
         }
         
         pausar();
@@ -1122,21 +1108,54 @@ public class GestaoBdUI {
         System.out.println("║   DO RESTAURANTE                          ║");
         System.out.println("╚═══════════════════════════════════════════╝\n");
         
-        Collection<Historico> historicos = lnFacade.getHistoricoPedidosRestaurante(idRestaurante);
+        System.out.print("Desde (YYYY-MM-DD, vazio para todos): ");
+        String desde = scanner.nextLine().trim();
         
-        if (historicos.isEmpty()) {
-            System.out.println("[Não há histórico de pedidos para o restaurante " + idRestaurante + ".");
-        } else {
-            System.out.println("Histórico de pedidos do restaurante " + idRestaurante + ":\n");
-            for (Historico h : historicos) {
-                System.out.println(h.toString() + "\n");
-            }
+        try {
+            this.listarPaginado("Histórico de pedidos do restaurante " + idRestaurante + ":\n",
+                                "[Não há histórico de pedidos para o restaurante " + idRestaurante + ".",
+                                depoisDe -> lnFacade.getHistoricoPedidosPagina(depoisDe, TAMANHO_PAGINA, idRestaurante, desde));
+        } catch (IllegalArgumentException e) {
+            System.out.println("[Erro: " + e.getMessage() + "]");
         }
         
         pausar();
     }
 
     ///////////////////////////// Métodos auxiliares /////////////////////////// 
+
+    /**
+     * Lista uma coleção página a página, pedindo confirmação antes de carregar a página seguinte
+     * 
+     * @param <T> Tipo dos elementos listados
+     * @param titulo Título impresso antes da primeira página
+     * @param vazio Mensagem impressa se não houver elementos
+     * @param obterPagina Função que devolve a página seguinte à chave indicada (null para a primeira)
+     */
+    private <T> void listarPaginado(String titulo, String vazio, Function<String, Pagina<T>> obterPagina) {
+        Pagina<T> pagina = obterPagina.apply(null);
+        if (pagina.isVazia()) {
+            System.out.println(vazio);
+            return;
+        }
+
+        System.out.println(titulo);
+        int numero = 1;
+        while (true) {
+            for (T item : pagina.getItens()) {
+                System.out.println(item.toString());
+            }
+            if (!pagina.temMais()) {
+                break;
+            }
+            System.out.print("\n-- Página " + numero + " -- ENTER para a página seguinte, 'S' para sair: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("S")) {
+                break;
+            }
+            pagina = obterPagina.apply(pagina.getUltimaChave());
+            numero++;
+        }
+    }
     
     /**
      * Pausa a execução até o utilizador pressionar ENTER
@@ -3,8 +3,10 @@ package eathubUI.UIs;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
 import eathubLN.IEatHubLN;
 import eathubLN.ssCadeia.Estatistica;
@@ -458,15 +460,16 @@ public class GestorUI {
         System.out.println("║     HISTÓRICO DE PEDIDOS DA CADEIA        ║");
         System.out.println("╚═══════════════════════════════════════════╝\n");
         
-        Collection<Historico> historicos = lnFacade.getHistoricoPedidosCadeia();
-        
-        if (historicos.isEmpty()) {
-            System.out.println("  Não há histórico de pedidos.");
-        } else {
-            System.out.println("Histórico de pedidos da cadeia:\n");
-            for (Historico h : historicos) {
-                System.out.println(h.toString());
-                System.out.println("\n");
+        try (Stream<Historico> historicos = lnFacade.getHistoricoPedidosCadeiaStream()) {
+            Iterator<Historico> it = historicos.iterator();
+            if (!it.hasNext()) {
+                System.out.println("  Não há histórico de pedidos.");
+            } else {
+                System.out.println("Histórico de pedidos da cadeia:\n");
+                while (it.hasNext()) {
+                    System.out.println(it.next().toString());
+                    System.out.println("\n");
+                }
             }
         }
         
@@ -127,7 +127,7 @@ CREATE TABLE MensagemGestor (
     idFuncionario_FK VARCHAR(50),
     FOREIGN KEY (idFuncionario_FK) REFERENCES Funcionario(idFuncionario),
     PRIMARY KEY (idMensagem)
-)
+);
 
 CREATE TABLE EtapasProposta (
     etapa VARCHAR(255),
@@ -135,7 +135,7 @@ CREATE TABLE EtapasProposta (
     ordem INT,
     PRIMARY KEY (idProposta_FK, ordem),
     FOREIGN KEY (idProposta_FK) REFERENCES Proposta(idProposta)
-)
+);
 
 CREATE TABLE Historico (
     idHistorico VARCHAR(50) PRIMARY KEY,
@@ -144,10 +144,46 @@ CREATE TABLE Historico (
     dataFinalizacao DATETIME,
     FOREIGN KEY (idPedido_FK) REFERENCES Pedido(idPedido),
     FOREIGN KEY (idRestaurante_FK) REFERENCES Restaurante(idRestaurante)
-)
+);
+
+CREATE TABLE EstatisticaDiaria (
+    idRestaurante_FK VARCHAR(50),
+    dia DATE,
+    nPedidos INT,
+    nItens INT,
+    valorTotal DECIMAL(12,2),
+    valorGasto DECIMAL(12,2),
+    somaTempoEspera BIGINT,
+    nTempoEspera INT,
+    PRIMARY KEY (idRestaurante_FK, dia),
+    FOREIGN KEY (idRestaurante_FK) REFERENCES Restaurante(idRestaurante)
+);
+
+CREATE TABLE Sequencia (
+    nome VARCHAR(50) PRIMARY KEY,
+    valor BIGINT NOT NULL
+);
 
 CREATE TABLE Password (
     idFuncionario_FK VARCHAR(50) PRIMARY KEY,
     codigo VARCHAR(255),
     FOREIGN KEY (idFuncionario_FK) REFERENCES Funcionario(idFuncionario)
-)
\ No newline at end of file
+);
+
+CREATE TABLE VersaoCatalogo (
+    id TINYINT PRIMARY KEY,
+    versao BIGINT NOT NULL
+);
+
+INSERT INTO VersaoCatalogo (id, versao) VALUES (1, 0);
+
+CREATE INDEX idx_historico_restaurante_data ON Historico (idRestaurante_FK, dataFinalizacao);
+CREATE INDEX idx_historico_data ON Historico (dataFinalizacao);
+CREATE INDEX idx_estatisticadiaria_dia ON EstatisticaDiaria (dia);
+CREATE UNIQUE INDEX uq_pagamento_pedido ON Pagamento (idPedido);
+CREATE INDEX idx_funcionario_restaurante ON Funcionario (idRestaurante_FK, tarefa);
+CREATE INDEX idx_funcionario_tipo ON Funcionario (tipo);
+CREATE INDEX idx_menupedido_pedido ON MenuPedido (idPedido_FK, idM_FK, quantidade);
+CREATE INDEX idx_propostapedido_pedido ON PropostaPedido (idPedido_FK, idProposta_FK, quantidade);
+CREATE INDEX idx_historico_restaurante_id ON Historico (idRestaurante_FK, idHistorico);
+CREATE INDEX idx_funcionario_restaurante_id ON Funcionario (idRestaurante_FK, idFuncionario);